@@ -4,10 +4,12 @@ import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
 import org.springframework.boot.context.properties.EnableConfigurationProperties;
 import org.springframework.retry.annotation.EnableRetry;  // ← AJOUTER
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
 @EnableRetry  // ← AJOUTER CETTE LIGNE
 @EnableConfigurationProperties
+@EnableScheduling  // reprise des soumissions DGI asynchrones
 public class Application {
     public static void main(String[] args) {
         SpringApplication.run(Application.class, args);
@@ -0,0 +1,42 @@
+package com.oxalio.invoice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Pool des workers de soumission DGI asynchrone.
+ *
+ * Concurrence bornée (threads fixes) et file bornée : au-delà, la soumission reste
+ * PENDING en base et sera reprise par le balayage périodique de DgiSubmissionService.
+ * En mode threads virtuels, les workers sont virtuels : même borne (l'API DGI reste protégée),
+ * mais l'attente réseau ne bloque plus de thread de l'OS.
+ */
+@Configuration
+public class DgiSubmissionConfig {
+
+    @Value("${oxalio.invoice.dgi-submission.concurrency:4}")
+    private int concurrency;
+
+    @Value("${oxalio.invoice.dgi-submission.queue-capacity:500}")
+    private int queueCapacity;
+
+    @Bean(name = "dgiSubmissionExecutor")
+    public ThreadPoolTaskExecutor dgiSubmissionExecutor(Environment environment) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        if (Threading.VIRTUAL.isActive(environment)) {
+            executor.setThreadFactory(new VirtualThreadTaskExecutor("dgi-submit-").getVirtualThreadFactory());
+        }
+        executor.setCorePoolSize(concurrency);
+        executor.setMaxPoolSize(concurrency);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("dgi-submit-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
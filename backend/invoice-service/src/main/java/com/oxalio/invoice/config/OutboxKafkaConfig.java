@@ -0,0 +1,27 @@
+package com.oxalio.invoice.config;
+
+import org.apache.kafka.clients.admin.NewTopic;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.kafka.config.TopicBuilder;
+
+/**
+ * Topic des événements facture, créé au démarrage par KafkaAdmin s'il n'existe pas.
+ * Actif uniquement avec oxalio.invoice.outbox.broker=kafka.
+ */
+@Configuration
+@ConditionalOnProperty(name = "oxalio.invoice.outbox.broker", havingValue = "kafka")
+public class OutboxKafkaConfig {
+
+    @Bean
+    public NewTopic invoiceEventsTopic(@Value("${oxalio.invoice.outbox.topic:oxalio.invoice.events}") String topic,
+                                       @Value("${oxalio.invoice.outbox.partitions:6}") int partitions,
+                                       @Value("${oxalio.invoice.outbox.replicas:1}") int replicas) {
+        return TopicBuilder.name(topic)
+                .partitions(partitions)
+                .replicas(replicas)
+                .build();
+    }
+}
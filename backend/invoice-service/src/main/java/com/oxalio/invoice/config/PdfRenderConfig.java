@@ -0,0 +1,36 @@
+package com.oxalio.invoice.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+/**
+ * Pool de rendu PDF (mise en page + écriture Flying Saucer, coûteuses en CPU et en mémoire).
+ *
+ * Parallélisme fixe et file bornée : une rafale de téléchargements attend dans la file
+ * au lieu de saturer le CPU et le tas pour tous les autres endpoints ; file pleine → 503
+ * avec Retry-After (PdfRenderService). Threads plateforme dans tous les modes :
+ * le rendu est borné par le CPU, pas par des attentes réseau.
+ */
+@Configuration
+public class PdfRenderConfig {
+
+    @Value("${oxalio.invoice.pdf-render.parallelism:2}")
+    private int parallelism;
+
+    @Value("${oxalio.invoice.pdf-render.queue-capacity:50}")
+    private int queueCapacity;
+
+    @Bean(name = "pdfRenderExecutor")
+    public ThreadPoolTaskExecutor pdfRenderExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(Math.max(1, parallelism));
+        executor.setMaxPoolSize(Math.max(1, parallelism));
+        executor.setQueueCapacity(Math.max(0, queueCapacity));
+        executor.setThreadNamePrefix("pdf-render-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        return executor;
+    }
+}
@@ -1,13 +1,23 @@
 package com.oxalio.invoice.config;
 
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.thread.Threading;
+import org.springframework.boot.web.client.ClientHttpRequestFactories;
 import org.springframework.boot.web.client.RestTemplateBuilder;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
 import org.springframework.web.client.RestTemplate;
 
 import java.time.Duration;
 
+/**
+ * RestTemplate des appels FNE / DGI.
+ *
+ * Mode threads virtuels (spring.threads.virtual.enabled, Java 21+) : client java.net.http,
+ * dont le pool de connexions n'épingle pas le thread porteur pendant l'attente réseau.
+ */
 @Configuration
 public class RestTemplateConfig {
 
@@ -15,7 +25,11 @@ public class RestTemplateConfig {
     private int timeout;
 
     @Bean
-    public RestTemplate restTemplate(RestTemplateBuilder builder) {
+    public RestTemplate restTemplate(RestTemplateBuilder builder, Environment environment) {
+        if (Threading.VIRTUAL.isActive(environment)) {
+            builder = builder.requestFactory(settings ->
+                    ClientHttpRequestFactories.get(JdkClientHttpRequestFactory.class, settings));
+        }
         return builder
                 .setConnectTimeout(Duration.ofMillis(timeout))
                 .setReadTimeout(Duration.ofMillis(timeout))
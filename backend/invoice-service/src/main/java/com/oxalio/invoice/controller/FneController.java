@@ -7,10 +7,13 @@ import com.oxalio.invoice.client.FneStickerClient.FneInvoiceResponse;
 import com.oxalio.invoice.client.FneStickerClient.FneRefundRequest;
 import com.oxalio.invoice.client.FneStickerClient.FneRefundResponse;
 import com.oxalio.invoice.config.FneConfiguration;
+import com.oxalio.invoice.dto.InvoiceResponse;
 import com.oxalio.invoice.entity.InvoiceEntity;
-import com.oxalio.invoice.entity.InvoiceLineEntity;
 import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.service.IdempotencyService;
+import com.oxalio.invoice.service.InvoiceService;
 import com.oxalio.invoice.service.QrCodeGenerator;
+import com.oxalio.invoice.service.RefundLedgerService;
 import com.oxalio.invoice.service.RneTicketPdfService;
 
 import jakarta.validation.Valid;
@@ -53,6 +56,9 @@ public class FneController {
     private final InvoiceRepository invoiceRepository;
     private final QrCodeGenerator qrCodeGenerator; // ✅ injecte
     private final RneTicketPdfService rneTicketPdfService; // recommandé (voir 2.3)
+    private final IdempotencyService idempotencyService;
+    private final InvoiceService invoiceService;
+    private final RefundLedgerService refundLedgerService;
 
     /**
      * Endpoint de test - Informations configuration.
@@ -74,7 +80,15 @@ public class FneController {
      * pour permettre la création de refunds ultérieurs.
      */
     @PostMapping("/invoices/sign")
-    public ResponseEntity<FneInvoiceResponse> signInvoice(@Valid @RequestBody InvoiceSignRequest request) {
+    public ResponseEntity<FneInvoiceResponse> signInvoice(
+            @Valid @RequestBody InvoiceSignRequest request,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey) {
+
+        // Un réessai avec la même clé renvoie la signature déjà obtenue (pas de 2e appel FNE)
+        return idempotencyService.execute("fne-sign", idempotencyKey, request, () -> sign(request));
+    }
+
+    private ResponseEntity<FneInvoiceResponse> sign(InvoiceSignRequest request) {
 
         log.info("Creating {} invoice - Template: {}", request.getInvoiceType(), request.getTemplate());
 
@@ -158,39 +172,9 @@ public class FneController {
         // ════════════════════════════════════════════════════════════════
         if (request.getInternalInvoiceId() != null) {
             try {
-                InvoiceEntity invoice = invoiceRepository.findById(request.getInternalInvoiceId())
-                        .orElseThrow(() -> new RuntimeException("Invoice not found: " + request.getInternalInvoiceId()));
-
-                // Stocker l'ID UUID, la référence DGI, FneToken, PaymentMethod, Template et IsRne pour request Rne
-                invoice.setFneInvoiceId(response.getInvoice().getId());
-                invoice.setFneReference(response.getReference());
-                invoice.setFneToken(response.getToken());     // ✅ AJOUT
-                invoice.setPaymentMethod(request.getPaymentMethod()); // ✅ utile pour ticket
-                invoice.setTemplate(request.getTemplate());
-                invoice.setIsRne(isRne);
-                invoice.setRne(request.getRne());
-
-                // Stocker les IDs des items
-                List<InvoiceLineEntity> lines = invoice.getLines();
-                List<FneInvoiceResponse.InvoiceDetails.InvoiceItemDetails> fneItems =
-                        response.getInvoice().getItems();
-
-                if (lines != null && fneItems != null) {
-                    for (int i = 0; i < Math.min(lines.size(), fneItems.size()); i++) {
-                        lines.get(i).setFneItemId(fneItems.get(i).getId());
-                    }
-                }
-
-
-                // Générer QR Code avec le token FNE
-                if (response.getToken() != null && !response.getToken().isEmpty()) {
-                    String qrBase64 = qrCodeGenerator.generateQRCodeBase64(
-                        response.getToken(), 300, 300
-                    );
-                    invoice.setQrBase64(qrBase64);
-                }
-
-                invoiceRepository.save(invoice);
+                // Même transaction que l'événement INVOICE_FNE_SIGNED (outbox)
+                invoiceService.applyFneSignature(request.getInternalInvoiceId(), response,
+                        request.getPaymentMethod(), request.getTemplate(), isRne, request.getRne());
 
                 log.info("Stored FNE UUID: {} for invoice: {}",
                         response.getInvoice().getId(), request.getInternalInvoiceId());
@@ -209,6 +193,9 @@ public class FneController {
      *
      * ⚠️ IMPORTANT: Cette méthode utilise maintenant l'ID UUID de la facture
      * stocké en base de données, pas la référence DGI.
+     *
+     * Les quantités sont validées et réservées dans le registre des avoirs avant l'appel FNE
+     * (422 sans appel externe en cas de dépassement), rendues si la FNE échoue.
      */
     @PostMapping("/invoices/{invoiceIdOrReference}/refund")
     public ResponseEntity<FneRefundResponse> createRefund(
@@ -230,10 +217,8 @@ public class FneController {
         if (invoiceIdOrReference.length() == 36 && invoiceIdOrReference.contains("-")) {
             fneInvoiceId = invoiceIdOrReference;
         } else {
-            // C'est une référence DGI, chercher l'UUID dans la BDD
-            InvoiceEntity invoice = invoiceRepository.findByFneReference(invoiceIdOrReference)
-                    .orElseThrow(() -> new RuntimeException(
-                            "Invoice not found with FNE reference: " + invoiceIdOrReference));
+            // C'est une référence DGI, chercher l'UUID (cache local, sinon BDD)
+            InvoiceResponse invoice = invoiceService.getInvoiceByFneReference(invoiceIdOrReference);
 
             if (invoice.getFneInvoiceId() == null) {
                 throw new RuntimeException(
@@ -255,8 +240,18 @@ public class FneController {
                         .collect(Collectors.toList())
         );
 
+        // Validation locale + réservation des quantités (transaction courte, avant l'appel FNE)
+        RefundLedgerService.Reservation reservation = refundLedgerService.reserve(fneInvoiceId, fneRequest.getItems());
+
         // Appeler l'API FNE avec l'UUID
-        FneRefundResponse response = fneClient.createRefund(fneInvoiceId, fneRequest);
+        FneRefundResponse response;
+        try {
+            response = fneClient.createRefund(fneInvoiceId, fneRequest);
+        } catch (RuntimeException e) {
+            refundLedgerService.release(reservation);
+            throw e;
+        }
+        refundLedgerService.confirm(reservation, response != null ? response.getReference() : null);
 
         return ResponseEntity.ok(response);
     }
@@ -1,21 +1,54 @@
 package com.oxalio.invoice.controller;
 
+import com.oxalio.invoice.dto.DgiSubmissionResponse;
+import com.oxalio.invoice.dto.InvoiceBatchRequest;
+import com.oxalio.invoice.dto.InvoiceBatchResponse;
+import com.oxalio.invoice.dto.InvoiceMultiGetRequest;
+import com.oxalio.invoice.dto.InvoiceMultiGetResponse;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoicePageResponse;
 import com.oxalio.invoice.dto.InvoiceRequest;
 import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceSearchResponse;
+import com.oxalio.invoice.dto.VatDeclarationResponse;
+import com.oxalio.invoice.security.TenantContext;
+import com.oxalio.invoice.service.DgiSubmissionService;
+import com.oxalio.invoice.service.InvoiceBatchService;
+import com.oxalio.invoice.service.IdempotencyService;
+import com.oxalio.invoice.service.InvoiceExportService;
+import com.oxalio.invoice.service.InvoiceQrService;
+import com.oxalio.invoice.service.InvoiceSearchService;
+import com.oxalio.invoice.model.InvoiceStatus;
 import com.oxalio.invoice.service.InvoiceService;
+import com.oxalio.invoice.service.PdfDiskCache;
+import com.oxalio.invoice.service.VatDeclarationService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import jakarta.validation.Valid;
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.*;
 import org.springframework.validation.annotation.Validated;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import com.oxalio.invoice.dto.RefundRequest;
-import java.util.List;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.net.URI;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 
 @Slf4j
 @RestController
@@ -30,6 +63,23 @@ import java.util.List;
 public class InvoiceController {
 
     private final InvoiceService invoiceService;
+    private final InvoiceBatchService invoiceBatchService;
+    private final InvoiceExportService invoiceExportService;
+    private final InvoiceQrService invoiceQrService;
+    private final IdempotencyService idempotencyService;
+    private final DgiSubmissionService dgiSubmissionService;
+    private final InvoiceSearchService invoiceSearchService;
+    private final VatDeclarationService vatDeclarationService;
+    private final PdfDiskCache pdfDiskCache;
+
+    private static final ZoneId INVOICE_ZONE = ZoneId.of("Africa/Abidjan");
+    /** PDF de facture : privé, revalidé à chaque téléchargement par ETag (304 sans rendu) */
+    private static final CacheControl PDF_CACHE_CONTROL = CacheControl.noCache().cachePrivate();
+    /** Attributs de requête de l'envoi zéro copie de Tomcat (sendfile), comme DefaultServlet */
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
 
     // ============================================================
     // CREATE
@@ -37,7 +87,8 @@ public class InvoiceController {
     @PostMapping
     @Operation(
             summary = "Créer une facture",
-            description = "Crée une facture FNE complète avec numéro, totals auto, QR et sticker",
+            description = "Crée une facture FNE complète avec numéro, totals auto, QR et sticker. "
+                    + "Avec l'en-tête Idempotency-Key, un réessai renvoie la facture déjà créée.",
             responses = {
                     @ApiResponse(
                             responseCode = "201",
@@ -45,29 +96,187 @@ public class InvoiceController {
                             content = @Content(schema = @Schema(implementation = InvoiceResponse.class))
                     ),
                     @ApiResponse(responseCode = "400", description = "Données invalides"),
+                    @ApiResponse(responseCode = "409", description = "Requête de même Idempotency-Key encore en cours"),
+                    @ApiResponse(responseCode = "422", description = "Idempotency-Key déjà utilisée pour une autre facture"),
                     @ApiResponse(responseCode = "500", description = "Erreur interne")
             }
     )
     public ResponseEntity<InvoiceResponse> createInvoice(
-            @Valid @RequestBody InvoiceRequest request
+            @Valid @RequestBody InvoiceRequest request,
+            @RequestHeader(name = IdempotencyService.HEADER, required = false) String idempotencyKey
+    ) {
+        return idempotencyService.execute("invoice-create", idempotencyKey, request, () -> {
+            log.info("Création facture type={} IFU vendeur={}",
+                    request.getInvoiceType(), request.getSeller().getTaxId());
+
+            InvoiceResponse response = invoiceService.createInvoice(request);
+
+            log.info("Facture créée : {}", response.getInvoiceNumber());
+            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        });
+    }
+
+    // ============================================================
+    // CREATE (BATCH)
+    // ============================================================
+    @PostMapping("/batch")
+    @Operation(
+            summary = "Créer un lot de factures",
+            description = "Création en masse (ERP) avec batching JDBC ; résultat rapporté facture par facture",
+            responses = {
+                    @ApiResponse(
+                            responseCode = "201",
+                            description = "Toutes les factures ont été créées",
+                            content = @Content(schema = @Schema(implementation = InvoiceBatchResponse.class))
+                    ),
+                    @ApiResponse(
+                            responseCode = "207",
+                            description = "Lot traité avec au moins un échec (voir results[].errors)",
+                            content = @Content(schema = @Schema(implementation = InvoiceBatchResponse.class))
+                    ),
+                    @ApiResponse(responseCode = "400", description = "Lot vide ou trop volumineux")
+            }
+    )
+    public ResponseEntity<InvoiceBatchResponse> createInvoicesBatch(
+            @Valid @RequestBody InvoiceBatchRequest request
     ) {
-        log.info("Création facture type={} IFU vendeur={}",
-                request.getInvoiceType(), request.getSeller().getTaxId());
+        log.info("Création par lot : {} factures", request.getInvoices().size());
 
-        InvoiceResponse response = invoiceService.createInvoice(request);
+        InvoiceBatchResponse response = invoiceBatchService.createBatch(request.getInvoices());
 
-        log.info("Facture créée : {}", response.getInvoiceNumber());
-        return ResponseEntity.status(HttpStatus.CREATED).body(response);
+        HttpStatus status = response.getFailed() == 0 ? HttpStatus.CREATED : HttpStatus.MULTI_STATUS;
+        return ResponseEntity.status(status).body(response);
     }
 
     // ============================================================
-    // LIST ALL
+    // LIST (PAGINATION PAR CURSEUR)
     // ============================================================
     @GetMapping
-    @Operation(summary = "Lister toutes les factures")
-    public ResponseEntity<List<InvoiceResponse>> getAllInvoices() {
-        List<InvoiceResponse> list = invoiceService.getAllInvoices();
-        return ResponseEntity.ok(list);
+    @Operation(
+            summary = "Lister les factures",
+            description = "Factures du tenant courant, plus récentes d'abord. Pagination par curseur : "
+                    + "renvoyer nextCursor dans 'cursor' pour la page suivante. Résumés sans lignes ni QR."
+    )
+    public ResponseEntity<InvoicePageResponse> listInvoices(
+            @RequestParam(required = false) InvoiceStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String buyerNcc,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "50") @Min(1) @Max(200) int size
+    ) {
+        InvoiceListFilter filter = buildFilter(status, from, to, buyerNcc);
+        return ResponseEntity.ok(invoiceService.listInvoices(filter, cursor, size));
+    }
+
+    /** Bornes de jour en heure d'Abidjan ; 'to' inclus */
+    private static InvoiceListFilter buildFilter(InvoiceStatus status, LocalDate from, LocalDate to, String buyerNcc) {
+        if (from != null && to != null && from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' doit être antérieure ou égale à 'to'");
+        }
+        return InvoiceListFilter.builder()
+                .status(status)
+                .from(from != null ? from.atStartOfDay(INVOICE_ZONE).toInstant() : null)
+                .to(to != null ? to.plusDays(1).atStartOfDay(INVOICE_ZONE).toInstant() : null)
+                .buyerNcc(buyerNcc)
+                .build();
+    }
+
+    // ============================================================
+    // EXPORT (FLUX NDJSON / CSV)
+    // ============================================================
+    @GetMapping("/export")
+    @Operation(
+            summary = "Exporter les factures",
+            description = "Export comptable en flux (csv ou ndjson, gzip optionnel), trié par date d'émission. "
+                    + "Mêmes filtres que la liste ; aucune limite de volume."
+    )
+    public ResponseEntity<StreamingResponseBody> exportInvoices(
+            @RequestParam(defaultValue = "csv") String format,
+            @RequestParam(defaultValue = "false") boolean gzip,
+            @RequestParam(required = false) InvoiceStatus status,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String buyerNcc
+    ) {
+        InvoiceExportService.Format exportFormat = InvoiceExportService.Format.parse(format);
+        InvoiceListFilter filter = buildFilter(status, from, to, buyerNcc);
+
+        // Le corps est écrit sur un thread async : on capture le tenant maintenant
+        Long tenantId = TenantContext.getTenantId();
+        StreamingResponseBody body = out -> invoiceExportService.export(tenantId, filter, exportFormat, gzip, out);
+
+        String filename = "invoices-export." + exportFormat.extension() + (gzip ? ".gz" : "");
+        return ResponseEntity.ok()
+                .contentType(gzip
+                        ? MediaType.parseMediaType("application/gzip")
+                        : MediaType.parseMediaType(exportFormat.contentType() + ";charset=UTF-8"))
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + filename + "\"")
+                .body(body);
+    }
+
+    // ============================================================
+    // SEARCH (SUPPORT)
+    // ============================================================
+    @GetMapping("/search")
+    @Operation(
+            summary = "Rechercher des factures",
+            description = "Factures du tenant courant par nom acheteur (partiel, ou approché si fuzzy), "
+                    + "téléphone client, NCC, référence FNE (préfixe) et/ou total à payer exact. "
+                    + "Plus pertinentes d'abord, puis plus récentes."
+    )
+    public ResponseEntity<InvoiceSearchResponse> searchInvoices(
+            @RequestParam(required = false) String q,
+            @RequestParam(required = false) BigDecimal amount,
+            @RequestParam(defaultValue = "true") boolean fuzzy,
+            @RequestParam(defaultValue = "0") @Min(0) int page,
+            @RequestParam(defaultValue = "20") @Min(1) @Max(100) int size
+    ) {
+        return ResponseEntity.ok(invoiceSearchService.search(q, amount, fuzzy, page, size));
+    }
+
+    // ============================================================
+    // DÉCLARATION TVA (AGRÉGATS JOURNALIERS)
+    // ============================================================
+    @GetMapping("/vat-declaration")
+    @Operation(
+            summary = "Déclaration de TVA d'une période",
+            description = "Base HT, TVA et timbre par taux et mode de paiement, jours 'from' et 'to' inclus "
+                    + "(heure d'Abidjan). Factures certifiées (à déclarer) et en attente séparées ; avoirs déduits."
+    )
+    public ResponseEntity<VatDeclarationResponse> getVatDeclaration(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(vatDeclarationService.declaration(from, to));
+    }
+
+    @PostMapping("/vat-declaration/rebuild")
+    @Operation(
+            summary = "Reconstruire les agrégats TVA d'une période",
+            description = "Recalcule les agrégats journaliers depuis les factures (y compris archivées), "
+                    + "puis renvoie la déclaration de la période."
+    )
+    public ResponseEntity<VatDeclarationResponse> rebuildVatDeclaration(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to
+    ) {
+        return ResponseEntity.ok(vatDeclarationService.rebuild(from, to));
+    }
+
+    // ============================================================
+    // MULTI-GET
+    // ============================================================
+    @PostMapping("/_mget")
+    @Operation(
+            summary = "Lire plusieurs factures par ID",
+            description = "Factures complètes (lignes, totaux) dans l'ordre des ids demandés ; "
+                    + "les ids introuvables sont listés dans 'missing'"
+    )
+    public ResponseEntity<InvoiceMultiGetResponse> getInvoices(
+            @Valid @RequestBody InvoiceMultiGetRequest request
+    ) {
+        return ResponseEntity.ok(invoiceService.getInvoices(request.getIds()));
     }
 
     // ============================================================
@@ -90,19 +299,56 @@ public class InvoiceController {
         return ResponseEntity.ok(invoiceService.getInvoiceByNumber(invoiceNumber));
     }
 
+    // ============================================================
+    // GET BY FNE REFERENCE / UUID
+    // ============================================================
+    @GetMapping("/fne/{fneReferenceOrUuid}")
+    @Operation(summary = "Obtenir une facture par référence FNE ou UUID FNE")
+    public ResponseEntity<InvoiceResponse> getInvoiceByFne(@PathVariable String fneReferenceOrUuid) {
+        boolean isUuid = fneReferenceOrUuid.length() == 36 && fneReferenceOrUuid.indexOf('-') > 0;
+        return ResponseEntity.ok(isUuid
+                ? invoiceService.getInvoiceByFneInvoiceId(fneReferenceOrUuid)
+                : invoiceService.getInvoiceByFneReference(fneReferenceOrUuid));
+    }
+
     // ============================================================
     // UPDATE
     // ============================================================
+    // Version lue par le client obligatoire : champ version ou If-Match: "<version>" (absente → 428)
     @PutMapping("/{id}")
     @Operation(summary = "Mettre à jour une facture")
     public ResponseEntity<InvoiceResponse> updateInvoice(
             @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_MATCH, required = false) String ifMatch,
             @Valid @RequestBody InvoiceRequest request
     ) {
+        if (ifMatch != null) {
+            Long version = parseVersion(ifMatch);
+            if (request.getVersion() != null && !request.getVersion().equals(version)) {
+                throw new IllegalArgumentException("If-Match et 'version' différents");
+            }
+            request.setVersion(version);
+        }
         InvoiceResponse response = invoiceService.updateInvoice(id, request);
         return ResponseEntity.ok(response);
     }
 
+    /** If-Match: "3" (ou W/"3") → 3 */
+    private static Long parseVersion(String ifMatch) {
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        if (tag.length() >= 2 && tag.startsWith("\"") && tag.endsWith("\"")) {
+            tag = tag.substring(1, tag.length() - 1);
+        }
+        try {
+            return Long.valueOf(tag);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("If-Match invalide : version de la facture attendue");
+        }
+    }
+
     // ============================================================
     // DELETE
     // ============================================================
@@ -123,6 +369,25 @@ public class InvoiceController {
         return ResponseEntity.ok(resp);
     }
 
+    // ============================================================
+    // SUBMIT TO DGI (ASYNCHRONE)
+    // ============================================================
+    @PostMapping("/{id}/dgi-submission")
+    @Operation(summary = "Soumettre une facture à la DGI en arrière-plan (202 + suivi par polling)")
+    public ResponseEntity<DgiSubmissionResponse> requestDgiSubmission(@PathVariable Long id) {
+        DgiSubmissionResponse resp = dgiSubmissionService.requestSubmission(id);
+        return ResponseEntity.accepted()
+                .location(URI.create("/api/v1/invoices/" + id + "/dgi-submission"))
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(resp);
+    }
+
+    @GetMapping("/{id}/dgi-submission")
+    @Operation(summary = "Statut de la dernière soumission DGI d'une facture")
+    public ResponseEntity<DgiSubmissionResponse> getDgiSubmission(@PathVariable Long id) {
+        return ResponseEntity.ok(dgiSubmissionService.getLatestSubmission(id));
+    }
+
     // ============================================================
     // REFUND (AVOIR)
     // ============================================================
@@ -140,16 +405,150 @@ public class InvoiceController {
     // ============================================================
     // PDF FACTURE (Format RNE/FNE)
     // ============================================================
+    // Empreinte d'abord : un 304 ne lit ni le cache ni les lignes.
+    // Cache disque : sendfile Tomcat (zéro copie, réponse écrite ici et méthode sans valeur de retour,
+    // hors async : Tomcat n'envoie le fichier qu'en fin de traitement synchrone), sinon transferTo du
+    // fichier. Sinon rendu dans le pool PDF borné (thread de requête libéré,
+    // 503 + Retry-After si la file est pleine), puis mise en cache sur le thread qui écrit la réponse
+    // (le pool de rendu ne fait pas d'E/S disque). ETag et clé viennent de la version rendue : If-None-Match
+    // est comparé sans checkNotModified, qui poserait déjà l'ETag pré-rendu sur la réponse.
     @GetMapping("/{id}/pdf")
-    public ResponseEntity<byte[]> downloadPdf(@PathVariable Long id) {
-        byte[] pdf = invoiceService.generateFnePdf(id);
-        
+    public CompletableFuture<ResponseEntity<StreamingResponseBody>> downloadPdf(
+            @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) {
+        String etag = invoiceService.fnePdfKey(id);
+        if (matchesIfNoneMatch(ifNoneMatch, etag)) {
+            return CompletableFuture.completedFuture(ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(etag)
+                    .cacheControl(PDF_CACHE_CONTROL)
+                    .build());
+        }
+
+        Optional<PdfDiskCache.CachedPdf> cached = pdfDiskCache.open(etag);
+        if (cached.isPresent()) {
+            PdfDiskCache.CachedPdf pdf = cached.get();
+            ResponseEntity.BodyBuilder ok = pdfResponse(id, etag, pdf.size());
+            if (sendfile(pdf, ok.build().getHeaders(), request, response)) {
+                return null;
+            }
+            return CompletableFuture.completedFuture(ok.body(pdf::transferTo));
+        }
+
+        return invoiceService.renderFnePdf(id).thenApply(rendered -> pdfResponse(id, rendered.key(), rendered.pdf().length)
+                .body(out -> {
+                    try {
+                        out.write(rendered.pdf());
+                        out.flush();
+                    } finally {
+                        pdfDiskCache.put(rendered.key(), rendered.pdf());
+                    }
+                }));
+    }
+
+    /**
+     * Confie le fichier en cache au connecteur Tomcat (sendfile) : en-têtes écrits sur la réponse,
+     * corps envoyé par le noyau après le retour de la méthode. false si le connecteur ne le permet pas
+     * (TLS, autre conteneur, tests) ou si le fichier a disparu : le canal ouvert reste alors utilisable.
+     * Un fichier évincé avant l'envoi ferait couper la connexion ; il vient d'être lu, donc le plus récent
+     * de l'ordre LRU : il faudrait renouveler tout le cache entre-temps.
+     */
+    private static boolean sendfile(PdfDiskCache.CachedPdf pdf, HttpHeaders headers,
+                                    HttpServletRequest request, HttpServletResponse response) {
+        if (!Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            return false;
+        }
+        String file;
+        try {
+            // Tomcat exige le chemin canonique
+            file = pdf.file().toRealPath().toString();
+            pdf.close();
+        } catch (IOException e) {
+            return false;
+        }
+        headers.forEach((name, values) -> values.forEach(value -> response.addHeader(name, value)));
+        request.setAttribute(SENDFILE_FILENAME, file);
+        request.setAttribute(SENDFILE_START, 0L);
+        request.setAttribute(SENDFILE_END, pdf.size());
+        return true;
+    }
+
+    /** Comparaison faible d'If-None-Match (RFC 9110), sans effet sur la réponse */
+    private static boolean matchesIfNoneMatch(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        String quoted = "\"" + etag + "\"";
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(quoted)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static ResponseEntity.BodyBuilder pdfResponse(Long id, String etag, long length) {
         return ResponseEntity.ok()
-            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_PDF_VALUE)
-            .header(HttpHeaders.CONTENT_DISPOSITION, 
-                    "attachment; filename=\"facture-fne-" + id + ".pdf\"")
-            .body(pdf);
+            .eTag(etag)
+            .cacheControl(PDF_CACHE_CONTROL)
+            .contentType(MediaType.APPLICATION_PDF)
+            .contentLength(length)
+            .header(HttpHeaders.CONTENT_DISPOSITION,
+                    "attachment; filename=\"facture-fne-" + id + ".pdf\"");
     }
 
-    
+    // ============================================================
+    // QR CODE (PNG)
+    // ============================================================
+    @GetMapping(value = "/{id}/qr.png", produces = MediaType.IMAGE_PNG_VALUE)
+    @Operation(
+            summary = "QR code de la facture",
+            description = "PNG servi avec un ETag fort (SHA-256). Avec ?v= (voir qrUrl), la réponse est immuable."
+    )
+    public ResponseEntity<byte[]> downloadQrCode(
+            @PathVariable Long id,
+            @RequestParam(required = false) String v,
+            WebRequest webRequest
+    ) {
+        // Empreinte seule d'abord : un 304 ne lit jamais l'image
+        String sha256 = invoiceQrService.findSha256(id).orElse(null);
+        if (sha256 == null) {
+            return ResponseEntity.notFound().build();
+        }
+        CacheControl cacheControl = qrCacheControl(sha256, v);
+        if (webRequest.checkNotModified(sha256)) {
+            return ResponseEntity.status(HttpStatus.NOT_MODIFIED)
+                    .eTag(sha256)
+                    .cacheControl(cacheControl)
+                    .build();
+        }
+
+        return invoiceQrService.find(id)
+                .map(qr -> ResponseEntity.ok()
+                        .eTag(qr.getSha256())
+                        .cacheControl(qrCacheControl(qr.getSha256(), v))
+                        .contentType(MediaType.IMAGE_PNG)
+                        .contentLength(qr.getPng().length)
+                        .body(qr.getPng()))
+                .orElseGet(() -> ResponseEntity.notFound().build());
+    }
+
+    /**
+     * URL versionnée (?v= préfixe de l'empreinte courante) : contenu figé, cache 1 an.
+     * Sans version (ou version périmée) : revalidation systématique par ETag.
+     */
+    private static CacheControl qrCacheControl(String sha256, String version) {
+        if (version != null
+                && version.length() >= InvoiceQrService.VERSION_LENGTH
+                && sha256.startsWith(version)) {
+            return CacheControl.maxAge(365, TimeUnit.DAYS).cachePublic().immutable();
+        }
+        return CacheControl.noCache();
+    }
 }
\ No newline at end of file
@@ -0,0 +1,35 @@
+package com.oxalio.invoice.dto;
+
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * État d'une soumission DGI asynchrone (réponse 202 puis polling).
+ * dgiReference / stickerId sont renseignés une fois la soumission SUCCEEDED.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class DgiSubmissionResponse {
+
+    private Long submissionId;
+    private Long invoiceId;
+    private String invoiceNumber;
+    private DgiSubmissionStatus status;
+    private int attempts;
+    private String lastError;
+
+    private String invoiceStatus;
+    private String dgiReference;
+    private String stickerId;
+
+    private Instant createdAt;
+    private Instant updatedAt;
+    private Instant completedAt;
+}
@@ -0,0 +1,28 @@
+package com.oxalio.invoice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lot de factures à créer en une seule requête (intégration ERP).
+ *
+ * Les factures ne sont PAS validées en bloc (@Valid absent volontairement) :
+ * chaque élément est validé individuellement pour pouvoir rapporter
+ * succès/échec ligne par ligne au lieu de rejeter tout le lot.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceBatchRequest {
+
+    @NotEmpty(message = "Le lot doit contenir au moins une facture")
+    @Size(max = 1000, message = "Un lot ne peut excéder 1000 factures")
+    private List<InvoiceRequest> invoices;
+}
@@ -0,0 +1,40 @@
+package com.oxalio.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Rapport de création par lot : un résultat par facture, dans l'ordre de la requête.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceBatchResponse {
+
+    private int total;
+    private int created;
+    private int failed;
+
+    private List<ItemResult> results;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class ItemResult {
+        /** Position de la facture dans le lot (0-based) */
+        private int index;
+        /** CREATED ou FAILED */
+        private String status;
+        private Long id;
+        private String invoiceNumber;
+        /** Erreurs par champ (validation) ou "error" (échec technique) */
+        private Map<String, String> errors;
+    }
+}
@@ -0,0 +1,40 @@
+package com.oxalio.invoice.dto;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.Base64;
+
+/**
+ * Position dans la liste triée (issue_date DESC, id DESC) : dernière facture de la page précédente.
+ * Sérialisée en Base64 URL-safe pour rester opaque côté client.
+ */
+public record InvoiceCursor(Instant issueDate, Long id) {
+
+    private static final char SEPARATOR = '|';
+
+    public String encode() {
+        String raw = issueDate.toString() + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * @throws IllegalArgumentException si le curseur est illisible (→ 400)
+     */
+    public static InvoiceCursor decode(String cursor) {
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int sep = raw.lastIndexOf(SEPARATOR);
+            if (sep <= 0) {
+                throw new IllegalArgumentException("Curseur de pagination invalide");
+            }
+            return new InvoiceCursor(
+                    Instant.parse(raw.substring(0, sep)),
+                    Long.parseLong(raw.substring(sep + 1)));
+        } catch (DateTimeParseException | IllegalArgumentException e) {
+            // NumberFormatException est une IllegalArgumentException
+            throw new IllegalArgumentException("Curseur de pagination invalide", e);
+        }
+    }
+}
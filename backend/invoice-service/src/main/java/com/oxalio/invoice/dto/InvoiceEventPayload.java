@@ -0,0 +1,38 @@
+package com.oxalio.invoice.dto;
+
+import com.oxalio.invoice.model.InvoiceEventType;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Corps JSON d'un événement facture publié sur Kafka.
+ * L'identifiant d'événement (id outbox) et le type sont aussi portés en en-têtes,
+ * pour le dédoublonnage côté consommateur (livraison au moins une fois).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceEventPayload {
+
+    private InvoiceEventType eventType;
+    private Instant occurredAt;
+
+    private Long invoiceId;
+    private Long tenantId;
+    private String invoiceNumber;
+    private String invoiceType;
+    private String status;
+    private String currency;
+    private BigDecimal totalToPay;
+
+    private String dgiReference;
+    private String stickerId;
+    private String fneReference;
+    private String fneInvoiceId;
+}
@@ -0,0 +1,30 @@
+package com.oxalio.invoice.dto;
+
+import com.oxalio.invoice.model.InvoiceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Filtres optionnels de la liste des factures (null = pas de filtre).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceListFilter {
+
+    private InvoiceStatus status;
+
+    /** Date d'émission >= from (inclus) */
+    private Instant from;
+
+    /** Date d'émission < to (exclu) */
+    private Instant to;
+
+    /** NCC de l'acheteur (buyerTaxId) */
+    private String buyerNcc;
+}
@@ -0,0 +1,25 @@
+package com.oxalio.invoice.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Lecture groupée de factures par id (POST /api/v1/invoices/_mget).
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceMultiGetRequest {
+
+    @NotEmpty(message = "Au moins un id est requis")
+    @Size(max = 500, message = "Une lecture groupée ne peut excéder 500 ids")
+    private List<@NotNull Long> ids;
+}
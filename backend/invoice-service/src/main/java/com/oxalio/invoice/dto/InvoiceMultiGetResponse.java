@@ -0,0 +1,23 @@
+package com.oxalio.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Factures trouvées dans l'ordre de la requête (doublons retirés), et ids introuvables.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceMultiGetResponse {
+
+    private List<InvoiceResponse> items;
+
+    /** Ids absents des tables et de l'archive, dans l'ordre de la requête */
+    private List<Long> missing;
+}
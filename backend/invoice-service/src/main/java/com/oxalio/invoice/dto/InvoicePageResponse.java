@@ -0,0 +1,29 @@
+package com.oxalio.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de factures (pagination par curseur).
+ * Pour la page suivante, renvoyer {@code nextCursor} dans le paramètre {@code cursor}.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoicePageResponse {
+
+    private List<InvoiceSummary> items;
+
+    /** Curseur opaque de la page suivante (null si dernière page) */
+    private String nextCursor;
+
+    private boolean hasMore;
+
+    /** Taille de page demandée */
+    private int size;
+}
@@ -20,6 +20,9 @@ public class InvoiceRequest {
 
     private String invoiceNumber;
 
+    /** Version lue par le client, obligatoire en mise à jour (ou en-tête If-Match) : absente → 428, changée entre-temps → 409 */
+    private Long version;
+
     @NotBlank(message = "Le type de facture est obligatoire")
     @Pattern(regexp = "STANDARD|PROFORMA|CREDIT_NOTE|purchase", message = "Type de facture invalide")
     private String invoiceType;
@@ -57,6 +60,9 @@ public class InvoiceRequest {
     @AllArgsConstructor
     public static class InvoiceLineDTO {
 
+        /** Identifiant de la ligne existante (mise à jour) ; absent = rapprochement par SKU, sinon nouvelle ligne */
+        private Long id;
+
         /** Référence article (facultatif) */
         @Size(max = 64, message = "La référence (SKU) ne peut excéder 64 caractères")
         private String sku;
@@ -1,6 +1,7 @@
 // src/main/java/com/oxalio/invoice/dto/InvoiceResponse.java
 package com.oxalio.invoice.dto;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.*;
 import java.math.BigDecimal;
 import java.time.Instant;
@@ -11,6 +12,8 @@ import java.time.LocalDateTime;
 public class InvoiceResponse {
     private Long id;
     private String invoiceNumber;
+    /** Version courante, à renvoyer dans la requête de mise à jour */
+    private Long version;
     private String invoiceType;
     
     private String template; 
@@ -28,6 +31,11 @@ public class InvoiceResponse {
     private String status;      // Enum -> String pour affichage
     private String paymentMode; // ✅ ajouté pour corriger le mapper
     private String stickerId;
+    /** URL du QR code PNG (versionnée, cacheable) */
+    private String qrUrl;
+
+    /** Usage interne (rendu PDF) : jamais sérialisé, voir qrUrl */
+    @JsonIgnore
     private String qrBase64;
     private String dgiReference;
     private Instant dgiSubmittedAt;
@@ -74,6 +82,7 @@ public class InvoiceResponse {
 
     @Data @NoArgsConstructor @AllArgsConstructor @Builder
     public static class InvoiceLineDTO {
+        private Long id;
         private String description;
         private BigDecimal quantity;
         private BigDecimal unitPrice;
@@ -96,5 +105,15 @@ public class InvoiceResponse {
         // 🔥 Nouveaux champs validés
         private BigDecimal otherTaxes;
         private BigDecimal totalToPay;
+        /** Résumé TVA par taux (ordre d'apparition des lignes) */
+        private List<VatBreakdownDTO> vatBreakdown;
+    }
+
+    @Data @NoArgsConstructor @AllArgsConstructor @Builder
+    public static class VatBreakdownDTO {
+        private String taxCode;   // TVA, TVAB, TVAC, TVAD (null si taux hors barème FNE)
+        private BigDecimal rate;
+        private BigDecimal base;
+        private BigDecimal vat;
     }
 }
@@ -0,0 +1,28 @@
+package com.oxalio.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+/**
+ * Page de résultats de la recherche support, du plus pertinent au moins pertinent.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceSearchResponse {
+
+    private List<InvoiceSummary> items;
+
+    /** Numéro de page (0 = première) */
+    private int page;
+
+    /** Taille de page demandée */
+    private int size;
+
+    private boolean hasMore;
+}
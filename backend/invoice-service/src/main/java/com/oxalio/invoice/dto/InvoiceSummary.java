@@ -0,0 +1,45 @@
+package com.oxalio.invoice.dto;
+
+import com.oxalio.invoice.model.InvoiceStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Vue allégée d'une facture pour les listes.
+ *
+ * Construite directement par la requête JPQL (constructor expression) :
+ * ni lignes, ni QR (LOB), ni entité managée.
+ * L'ordre du constructeur doit rester celui de InvoiceRepositoryImpl.findSummaries.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class InvoiceSummary {
+
+    private Long id;
+    private String invoiceNumber;
+    private String invoiceType;
+    private InvoiceStatus status;
+    private Instant issueDate;
+    private String currency;
+
+    private String sellerTaxId;
+    private String sellerCompanyName;
+    private String buyerTaxId;
+    private String buyerName;
+    /** Téléphone client (recherche support) */
+    private String clientPhone;
+
+    private BigDecimal totalAmount;
+    private BigDecimal totalToPay;
+    private String paymentMethod;
+
+    private String fneReference;
+    private String dgiReference;
+}
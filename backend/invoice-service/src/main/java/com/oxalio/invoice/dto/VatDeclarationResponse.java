@@ -0,0 +1,63 @@
+package com.oxalio.invoice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Déclaration de TVA d'une période (jours d'émission inclus, heure d'Abidjan),
+ * lue dans les agrégats journaliers (V25). Factures annulées exclues.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class VatDeclarationResponse {
+
+    private LocalDate from;
+    private LocalDate to;
+
+    /** Factures certifiées (DGI ou FNE) : montants à déclarer */
+    private TotalsDTO declared;
+
+    /** Factures émises, pas encore certifiées */
+    private TotalsDTO pending;
+
+    /** Détail par taux et mode de paiement, certifiées d'abord */
+    private List<LineDTO> lines;
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class LineDTO {
+        private String taxCode;
+        private BigDecimal vatRate;
+        private String paymentMethod;
+        private boolean certified;
+        /** Factures portant ce taux (une facture à plusieurs taux compte sur chaque ligne : ne pas sommer) */
+        private long invoiceCount;
+        private BigDecimal base;
+        private BigDecimal vat;
+        /** Timbre de quittance, porté par le premier taux de chaque facture */
+        private BigDecimal stampDuty;
+    }
+
+    @Data
+    @Builder
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class TotalsDTO {
+        private BigDecimal subtotal;
+        private BigDecimal totalVat;
+        private BigDecimal stampDuty;
+        private BigDecimal totalToPay;
+        /** Factures de la période, comptées une fois chacune (à sommer plutôt que LineDTO.invoiceCount) */
+        private long invoiceCount;
+    }
+}
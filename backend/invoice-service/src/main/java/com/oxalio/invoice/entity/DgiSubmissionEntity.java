@@ -0,0 +1,70 @@
+package com.oxalio.invoice.entity;
+
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Demande de soumission DGI asynchrone (V19).
+ *
+ * Sans association JPA vers InvoiceEntity : le worker ne charge la facture
+ * que le temps de la réservation, puis appelle la DGI hors transaction.
+ */
+@Entity
+@Table(name = "dgi_submissions")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class DgiSubmissionEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "invoice_id", nullable = false)
+    private Long invoiceId;
+
+    @Column(name = "tenant_id")
+    private Long tenantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private DgiSubmissionStatus status;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    /** Date à partir de laquelle un worker peut (re)prendre la soumission */
+    @Column(name = "next_attempt_at", nullable = false)
+    private Instant nextAttemptAt;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @Column(name = "completed_at")
+    private Instant completedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        Instant now = Instant.now();
+        if (createdAt == null) createdAt = now;
+        if (nextAttemptAt == null) nextAttemptAt = now;
+        updatedAt = now;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+}
@@ -0,0 +1,40 @@
+package com.oxalio.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Index de l'archive (V23) : facture archivée → segment qui la contient.
+ */
+@Entity
+@Table(name = "invoice_archive_entries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class InvoiceArchiveEntryEntity {
+
+    @Id
+    @Column(name = "invoice_id")
+    private Long invoiceId;
+
+    @Column(name = "invoice_number", nullable = false, length = 255)
+    private String invoiceNumber;
+
+    /** Référence FNE (V29) ; null si certifiée DGI uniquement */
+    @Column(name = "fne_reference", length = 50)
+    private String fneReference;
+
+    @Column(name = "tenant_id")
+    private Long tenantId;
+
+    @Column(name = "issue_date", nullable = false)
+    private Instant issueDate;
+
+    @Column(name = "segment_id", nullable = false)
+    private Long segmentId;
+}
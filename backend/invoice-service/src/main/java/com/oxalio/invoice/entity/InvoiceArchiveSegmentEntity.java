@@ -0,0 +1,55 @@
+package com.oxalio.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Segment d'archive (V23) : lot de factures certifiées anciennes, sérialisées en JSON
+ * puis compressées. Lu uniquement en repli, quand la facture n'est plus dans invoices.
+ */
+@Entity
+@Table(name = "invoice_archive_segments")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "payload")
+public class InvoiceArchiveSegmentEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /** Format du contenu, ex. "gzip+json" */
+    @Column(nullable = false, length = 16)
+    private String codec;
+
+    @Column(name = "invoice_count", nullable = false)
+    private int invoiceCount;
+
+    @Column(name = "first_issue_date", nullable = false)
+    private Instant firstIssueDate;
+
+    @Column(name = "last_issue_date", nullable = false)
+    private Instant lastIssueDate;
+
+    /** Taille JSON avant compression (octets) */
+    @Column(name = "raw_size", nullable = false)
+    private long rawSize;
+
+    @Column(name = "compressed_size", nullable = false)
+    private long compressedSize;
+
+    @Column(nullable = false)
+    private byte[] payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    /** Références FNE des entrées renseignées (V29) ; false = segment antérieur, à indexer */
+    @Column(name = "fne_indexed", nullable = false)
+    private boolean fneIndexed;
+}
@@ -1,7 +1,12 @@
 package com.oxalio.invoice.entity;
 
 import com.oxalio.invoice.model.InvoiceStatus;
+import com.oxalio.invoice.service.InvoiceSearchIndexListener;
 import jakarta.persistence.*;
+import org.hibernate.annotations.BatchSize;
+import org.hibernate.annotations.Filter;
+import org.hibernate.annotations.FilterDef;
+import org.hibernate.annotations.ParamDef;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
@@ -17,6 +22,14 @@ import java.util.List;
 @NoArgsConstructor
 @AllArgsConstructor
 @Entity
+@EntityListeners(InvoiceSearchIndexListener.class)
+// Lecture par id élaguée : issue_date (clé de partition, V22) lue dans le registre invoice_numbers (V33)
+@FilterDef(
+    name = InvoiceEntity.PARTITION_FILTER,
+    parameters = @ParamDef(name = "invoiceId", type = Long.class),
+    defaultCondition = "issue_date = (SELECT n.issue_date FROM invoice_numbers n WHERE n.invoice_id = :invoiceId)"
+)
+@Filter(name = InvoiceEntity.PARTITION_FILTER)
 @Table(
     name = "invoices",
     indexes = {
@@ -27,6 +40,9 @@ import java.util.List;
 )
 public class InvoiceEntity {
 
+    /** Filtre activé par InvoiceRepositoryImpl le temps d'une lecture par id */
+    public static final String PARTITION_FILTER = "invoicePartition";
+
     private String clientCompanyName;
     private String clientPhone;
     private String clientEmail;
@@ -36,10 +52,16 @@ public class InvoiceEntity {
     private String commercialMessage;
     private BigDecimal totalDiscount;
 
+    /** Séquence pooled (V14) : permet le batching JDBC des INSERT */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoices_seq")
+    @SequenceGenerator(name = "invoices_seq", sequenceName = "invoices_seq", allocationSize = 50)
     private Long id;
 
+    /** Tenant propriétaire (V9) – null en mode mono-tenant */
+    @Column(name = "tenant_id")
+    private Long tenantId;
+
     /** Numéro unique (ex: INV-2025-000123) */
     @Column(nullable = false, unique = true, length = 64)
     private String invoiceNumber;
@@ -51,8 +73,11 @@ public class InvoiceEntity {
     @Column(nullable = false, length = 8)
     private String currency;
 
-    /** Date d'émission – définie par le service ou par @PrePersist */
-    @Column(nullable = false)
+    /**
+     * Date d'émission – définie par le service ou par @PrePersist.
+     * Clé de partition PostgreSQL (V22) : jamais modifiée après création.
+     */
+    @Column(nullable = false, updatable = false)
     private Instant issueDate;
 
     // ---------------- Seller (résumé minimal persistant)
@@ -94,9 +119,9 @@ public class InvoiceEntity {
     @Column(length = 64)
     private String stickerId;
 
-    @Lob
-    @Basic(fetch = FetchType.LAZY)
-    private String qrBase64; // PNG/JPG en Base64
+    /** Empreinte du QR (PNG stocké dans invoice_qr_codes, V16) – null si pas de QR */
+    @Column(name = "qr_sha256", length = 64)
+    private String qrSha256;
 
     // ---------------- Statut
     @Enumerated(EnumType.STRING)
@@ -122,6 +147,19 @@ public class InvoiceEntity {
     @Column(precision = 15, scale = 2)
     private BigDecimal totalToPay;
 
+    // ---------------- Verrouillage optimiste (V21)
+    /** Incrémentée à chaque mise à jour ; une modification concurrente échoue au lieu d'écraser */
+    @Version
+    private Long version;
+
+    // ---------------- Totaux figés à l'écriture (V18)
+    /** Version de FneTaxEngine ayant calculé les totaux (null = facture antérieure, recalculée à la lecture) */
+    private Integer totalsVersion;
+
+    /** Résumé TVA par taux, encodé par FneTotals */
+    @Column(length = 512)
+    private String vatBreakdown;
+
     // ════════════════════════════════════════════════════════════════
     // ✨ NOUVEAUX CHAMPS FNE (V8) - Pour système de refund
     // ════════════════════════════════════════════════════════════════
@@ -142,6 +180,10 @@ public class InvoiceEntity {
     private String fneReference;
 
     // ---------------- Lignes
+    // BatchSize : si plusieurs factures chargées touchent leurs lignes,
+    // une seule requête IN (...) au lieu d'une par facture
+    @BatchSize(size = 50)
+    @Filter(name = PARTITION_FILTER)
     @OneToMany(
         mappedBy = "invoice",
         cascade = CascadeType.ALL,
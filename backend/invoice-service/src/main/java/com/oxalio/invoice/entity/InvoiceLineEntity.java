@@ -4,6 +4,7 @@ import jakarta.persistence.*;
 import lombok.*;
 
 import java.math.BigDecimal;
+import java.time.Instant;
 
 @Entity
 @Table(
@@ -21,8 +22,10 @@ import java.math.BigDecimal;
 @EqualsAndHashCode(exclude = "invoice")
 public class InvoiceLineEntity {
 
+    /** Séquence pooled (V14) : permet le batching JDBC des INSERT */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "invoice_lines_seq")
+    @SequenceGenerator(name = "invoice_lines_seq", sequenceName = "invoice_lines_seq", allocationSize = 50)
     private Long id;
 
     // Parent
@@ -30,6 +33,10 @@ public class InvoiceLineEntity {
     @JoinColumn(name = "invoice_id", nullable = false)
     private InvoiceEntity invoice;
 
+    /** Date d'émission de la facture, recopiée : clé de partition PostgreSQL (V22) */
+    @Column(name = "issue_date", nullable = false, updatable = false)
+    private Instant issueDate;
+
     // Référence article (facultatif) – utile pour le PDF "spécimen"
     @Column(name = "sku", length = 64)
     private String sku;
@@ -81,6 +88,7 @@ public class InvoiceLineEntity {
     @PrePersist
     @PreUpdate
     private void ensureDefaults() {
+        if (issueDate == null && invoice != null) issueDate = invoice.getIssueDate();
         if (discount == null)   discount   = BigDecimal.ZERO;
         if (vatAmount == null)  vatAmount  = BigDecimal.ZERO;
         if (quantity == null)   quantity   = BigDecimal.ZERO;
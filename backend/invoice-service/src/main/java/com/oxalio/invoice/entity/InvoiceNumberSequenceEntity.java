@@ -0,0 +1,86 @@
+package com.oxalio.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.springframework.data.domain.Persistable;
+
+import java.io.Serializable;
+import java.time.Instant;
+
+/**
+ * Compteur de numérotation des factures, par (tenant, exercice, point de vente).
+ *
+ * La ligne ne stocke que la "borne haute" : chaque instance réserve un bloc
+ * de numéros en avançant next_value, puis les distribue en mémoire.
+ *
+ * Clé attribuée (tenant, exercice, point de vente) : Persistable force un INSERT pour une ligne
+ * créée ici. Sans cela, save() ferait un merge, qui écraserait la ligne créée entre-temps par
+ * une autre instance au lieu d'échouer sur la contrainte d'unicité (bloc distribué deux fois).
+ */
+@Entity
+@Table(name = "invoice_number_sequences")
+@IdClass(InvoiceNumberSequenceEntity.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class InvoiceNumberSequenceEntity implements Persistable<InvoiceNumberSequenceEntity.Key> {
+
+    /** 0 = pas de tenant (mode mono-tenant / mock) */
+    @Id
+    @Column(name = "tenant_id", nullable = false)
+    private Long tenantId;
+
+    @Id
+    @Column(name = "fiscal_year", nullable = false)
+    private Integer fiscalYear;
+
+    /** Code normalisé du point de vente ("" = non renseigné) */
+    @Id
+    @Column(name = "point_of_sale", nullable = false, length = 32)
+    private String pointOfSale;
+
+    /** Prochain numéro non encore réservé par une instance */
+    @Column(name = "next_value", nullable = false)
+    private Long nextValue;
+
+    @Column(name = "updated_at")
+    private Instant updatedAt;
+
+    /** true tant que la ligne n'a été ni lue ni insérée */
+    @Transient
+    @Builder.Default
+    private boolean newRow = true;
+
+    @PrePersist
+    @PreUpdate
+    protected void touch() {
+        updatedAt = Instant.now();
+    }
+
+    @PostLoad
+    @PostPersist
+    protected void markStored() {
+        newRow = false;
+    }
+
+    @Override
+    public Key getId() {
+        return new Key(tenantId, fiscalYear, pointOfSale);
+    }
+
+    @Override
+    public boolean isNew() {
+        return newRow;
+    }
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Key implements Serializable {
+        private Long tenantId;
+        private Integer fiscalYear;
+        private String pointOfSale;
+    }
+}
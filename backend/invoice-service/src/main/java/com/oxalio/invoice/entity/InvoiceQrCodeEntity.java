@@ -0,0 +1,49 @@
+package com.oxalio.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * QR code d'une facture (PNG brut), stocké hors de la table invoices (V16).
+ *
+ * Volontairement sans association JPA vers InvoiceEntity : lire une facture
+ * ne charge jamais l'image. Elle n'est lue que par /invoices/{id}/qr.png et le PDF.
+ */
+@Entity
+@Table(name = "invoice_qr_codes")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "png")
+public class InvoiceQrCodeEntity {
+
+    @Id
+    @Column(name = "invoice_id")
+    private Long invoiceId;
+
+    /** Empreinte SHA-256 (hex) du PNG : ETag et version d'URL */
+    @Column(name = "sha256", nullable = false, length = 64)
+    private String sha256;
+
+    @Column(name = "content_type", nullable = false, length = 32)
+    private String contentType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Integer sizeBytes;
+
+    @Column(name = "png", nullable = false)
+    private byte[] png;
+
+    @Column(name = "created_at")
+    private Instant createdAt;
+
+    @PrePersist
+    @PreUpdate
+    protected void touch() {
+        createdAt = Instant.now();
+    }
+}
@@ -0,0 +1,63 @@
+package com.oxalio.invoice.entity;
+
+import com.oxalio.invoice.model.InvoiceEventType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.Instant;
+
+/**
+ * Événement facture en attente de publication (V20).
+ *
+ * Inséré dans la transaction métier : l'événement existe si et seulement si
+ * la modification de la facture est validée. OutboxRelay le publie ensuite.
+ */
+@Entity
+@Table(name = "outbox_events")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString(exclude = "payload")
+public class OutboxEventEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "outbox_events_seq")
+    @SequenceGenerator(name = "outbox_events_seq", sequenceName = "outbox_events_seq", allocationSize = 50)
+    private Long id;
+
+    /**
+     * Ordre de relais (V31), attribué par la base à l'INSERT : les id sont réservés par blocs
+     * de 50 par instance et ne suivent pas l'ordre des écritures.
+     */
+    @Column(name = "relay_order", insertable = false, updatable = false)
+    private Long relayOrder;
+
+    /** Facture concernée : clé de partition Kafka (ordre garanti par facture) */
+    @Column(name = "aggregate_id", nullable = false)
+    private Long aggregateId;
+
+    @Column(name = "tenant_id")
+    private Long tenantId;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "event_type", nullable = false, length = 64)
+    private InvoiceEventType eventType;
+
+    /** Corps JSON de l'événement */
+    @Column(nullable = false, length = 4000)
+    private String payload;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "published_at")
+    private Instant publishedAt;
+
+    @Column(nullable = false)
+    private int attempts;
+
+    @Column(name = "last_error", length = 1000)
+    private String lastError;
+}
@@ -0,0 +1,65 @@
+package com.oxalio.invoice.entity;
+
+import com.oxalio.invoice.model.RefundEntryStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Article d'un avoir demandé à la FNE (V26) : une ligne par article,
+ * regroupées par refundId (une demande d'avoir).
+ */
+@Entity
+@Table(name = "refund_ledger_entries")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class RefundLedgerEntryEntity {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "refund_id", nullable = false, length = 36)
+    private String refundId;
+
+    @Column(name = "fne_invoice_id", nullable = false, length = 36)
+    private String fneInvoiceId;
+
+    @Column(name = "fne_item_id", nullable = false, length = 36)
+    private String fneItemId;
+
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal quantity;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 16)
+    private RefundEntryStatus status;
+
+    /** Référence de l'avoir FNE, une fois confirmé */
+    @Column(name = "fne_reference", length = 50)
+    private String fneReference;
+
+    @Column(name = "created_at", nullable = false)
+    private Instant createdAt;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        Instant now = Instant.now();
+        if (createdAt == null) createdAt = now;
+        updatedAt = now;
+    }
+
+    @PreUpdate
+    protected void onUpdate() {
+        updatedAt = Instant.now();
+    }
+}
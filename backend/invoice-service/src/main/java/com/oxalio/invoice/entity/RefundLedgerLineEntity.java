@@ -0,0 +1,53 @@
+package com.oxalio.invoice.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+
+/**
+ * Article signé par la FNE et quantité encore remboursable (V26).
+ *
+ * remainingQuantity n'est modifiée que par UPDATE conditionnel
+ * (RefundLedgerLineRepository.consume / restore), jamais par l'entité.
+ */
+@Entity
+@Table(name = "refund_ledger_lines")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+@ToString
+public class RefundLedgerLineEntity {
+
+    /** ID UUID de l'article FNE (InvoiceLineEntity.fneItemId) */
+    @Id
+    @Column(name = "fne_item_id", length = 36)
+    private String fneItemId;
+
+    @Column(name = "fne_invoice_id", nullable = false, length = 36)
+    private String fneInvoiceId;
+
+    @Column(name = "invoice_id", nullable = false)
+    private Long invoiceId;
+
+    @Column(name = "tenant_id")
+    private Long tenantId;
+
+    /** Quantité facturée */
+    @Column(nullable = false, precision = 19, scale = 2)
+    private BigDecimal quantity;
+
+    @Column(name = "remaining_quantity", nullable = false, precision = 19, scale = 2)
+    private BigDecimal remainingQuantity;
+
+    @Column(name = "updated_at", nullable = false)
+    private Instant updatedAt;
+
+    @PrePersist
+    protected void onCreate() {
+        if (updatedAt == null) updatedAt = Instant.now();
+    }
+}
@@ -8,6 +8,8 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.http.converter.HttpMessageNotReadableException;
@@ -128,6 +130,46 @@ public class GlobalExceptionHandler {
                 "Contrainte de base de données violée", request, null, ex);
     }
 
+    // ---------- 409: Modification concurrente (@Version) ----------
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLock(OptimisticLockingFailureException ex, WebRequest request) {
+        log.warn("Concurrent modification on {}: {}", path(request), ex.getMessage());
+        return build(HttpStatus.CONFLICT, "Conflict",
+                "La facture a été modifiée entre-temps : rechargez-la puis réessayez", request, null, ex);
+    }
+
+    // ---------- 428: Mise à jour sans version ----------
+    @ExceptionHandler(InvoiceVersionRequiredException.class)
+    public ResponseEntity<ErrorResponse> handleVersionRequired(InvoiceVersionRequiredException ex, WebRequest request) {
+        log.warn("Missing version on {}: {}", path(request), ex.getMessage());
+        return build(HttpStatus.PRECONDITION_REQUIRED, "Precondition Required", ex.getMessage(), request, null, ex);
+    }
+
+    // ---------- 409 / 422: Idempotency-Key ----------
+    @ExceptionHandler(IdempotencyConflictException.class)
+    public ResponseEntity<ErrorResponse> handleIdempotencyConflict(IdempotencyConflictException ex, WebRequest request) {
+        log.warn("Idempotency conflict on {}: {}", path(request), ex.getMessage());
+        return build(ex.getStatus(), "Idempotency Conflict", ex.getMessage(), request, null, ex);
+    }
+
+    // ---------- 422: Avoir refusé localement (registre des avoirs) ----------
+    @ExceptionHandler(RefundQuantityException.class)
+    public ResponseEntity<ErrorResponse> handleRefundQuantity(RefundQuantityException ex, WebRequest request) {
+        log.warn("Refund rejected on {}: {}", path(request), ex.getErrors());
+        return build(HttpStatus.UNPROCESSABLE_ENTITY, "Refund Rejected",
+                "Avoir refusé : quantités non remboursables", request, ex.getErrors(), ex);
+    }
+
+    // ---------- 503: Pool de rendu PDF saturé ----------
+    @ExceptionHandler(PdfRenderRejectedException.class)
+    public ResponseEntity<ErrorResponse> handlePdfRenderRejected(PdfRenderRejectedException ex, WebRequest request) {
+        ResponseEntity<ErrorResponse> response = build(HttpStatus.SERVICE_UNAVAILABLE, "Service Unavailable",
+                ex.getMessage(), request, null, ex);
+        return ResponseEntity.status(response.getStatusCode())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, ex.getRetryAfter().toSeconds())))
+                .body(response.getBody());
+    }
+
     // ---------- 400: Mauvaise requête générique ----------
     @ExceptionHandler(IllegalArgumentException.class)
     public ResponseEntity<ErrorResponse> handleIllegalArg(IllegalArgumentException ex, WebRequest request) {
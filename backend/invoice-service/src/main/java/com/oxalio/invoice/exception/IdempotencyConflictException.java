@@ -0,0 +1,21 @@
+package com.oxalio.invoice.exception;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Idempotency-Key inutilisable : clé déjà utilisée pour une autre requête (422)
+ * ou requête d'origine toujours en cours au-delà du délai d'attente (409).
+ */
+public class IdempotencyConflictException extends RuntimeException {
+
+    private final HttpStatus status;
+
+    public IdempotencyConflictException(HttpStatus status, String message) {
+        super(message);
+        this.status = status;
+    }
+
+    public HttpStatus getStatus() {
+        return status;
+    }
+}
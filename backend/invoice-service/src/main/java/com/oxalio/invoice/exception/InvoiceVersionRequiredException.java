@@ -0,0 +1,12 @@
+package com.oxalio.invoice.exception;
+
+/**
+ * Mise à jour sans version lue par le client (champ version ou en-tête If-Match) : 428.
+ * Sans elle, le contrôle de modification concurrente ne peut pas avoir lieu.
+ */
+public class InvoiceVersionRequiredException extends RuntimeException {
+
+    public InvoiceVersionRequiredException(Long id) {
+        super("Version de la facture " + id + " requise (champ 'version' ou en-tête If-Match)");
+    }
+}
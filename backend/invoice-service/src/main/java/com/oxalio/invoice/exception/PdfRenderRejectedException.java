@@ -0,0 +1,20 @@
+package com.oxalio.invoice.exception;
+
+import java.time.Duration;
+
+/**
+ * Pool de rendu PDF saturé (file pleine) : 503 avec Retry-After.
+ */
+public class PdfRenderRejectedException extends RuntimeException {
+
+    private final Duration retryAfter;
+
+    public PdfRenderRejectedException(Duration retryAfter, Throwable cause) {
+        super("Génération PDF momentanément saturée : réessayez dans " + retryAfter.toSeconds() + " s", cause);
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+}
@@ -0,0 +1,22 @@
+package com.oxalio.invoice.exception;
+
+import java.util.Map;
+
+/**
+ * Avoir refusé localement (422), avant tout appel FNE :
+ * article inconnu pour la facture, quantité invalide ou supérieure au restant remboursable.
+ */
+public class RefundQuantityException extends RuntimeException {
+
+    private final Map<String, String> errors;
+
+    public RefundQuantityException(Map<String, String> errors) {
+        super("Avoir refusé : " + errors);
+        this.errors = Map.copyOf(errors);
+    }
+
+    /** Erreur par fneItemId */
+    public Map<String, String> getErrors() {
+        return errors;
+    }
+}
@@ -0,0 +1,43 @@
+package com.oxalio.invoice.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Broker en mémoire : remplace Kafka en dev et en tests (oxalio.invoice.outbox.broker=in-memory).
+ * Garde les messages publiés, dans l'ordre, pour inspection.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.outbox.broker", havingValue = "in-memory", matchIfMissing = true)
+public class InMemoryInvoiceEventBroker implements InvoiceEventBroker {
+
+    private final List<Message> published = new CopyOnWriteArrayList<>();
+
+    @Override
+    public int publish(List<Message> messages) {
+        published.addAll(messages);
+        log.debug("{} événement(s) facture publié(s) en mémoire", messages.size());
+        return messages.size();
+    }
+
+    /** Messages publiés, dans l'ordre de publication */
+    public List<Message> published() {
+        return new ArrayList<>(published);
+    }
+
+    /** Messages publiés pour une facture */
+    public List<Message> publishedFor(Long invoiceId) {
+        String key = String.valueOf(invoiceId);
+        return published.stream().filter(m -> m.key().equals(key)).toList();
+    }
+
+    public void clear() {
+        published.clear();
+    }
+}
@@ -0,0 +1,31 @@
+package com.oxalio.invoice.integration;
+
+import java.util.List;
+
+/**
+ * Broker des événements facture (Kafka en production, mémoire en dev/tests).
+ */
+public interface InvoiceEventBroker {
+
+    /** En-têtes portés par chaque message */
+    String HEADER_EVENT_ID = "eventId";
+    String HEADER_EVENT_TYPE = "eventType";
+    String HEADER_TENANT_ID = "tenantId";
+
+    /**
+     * Message prêt à publier.
+     *
+     * @param eventId id outbox (dédoublonnage côté consommateur)
+     * @param key     clé de partition : id de la facture (ordre garanti par facture)
+     */
+    record Message(long eventId, String key, String eventType, Long tenantId, String payload) {
+    }
+
+    /**
+     * Publie les messages dans l'ordre et attend leur acquittement.
+     *
+     * @return nombre de messages acquittés en tête de liste ; s'il est inférieur à la taille,
+     *         le message suivant est en échec et sera republié (avec ceux qui le suivent)
+     */
+    int publish(List<Message> messages);
+}
@@ -0,0 +1,78 @@
+package com.oxalio.invoice.integration;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.kafka.core.KafkaTemplate;
+import org.springframework.kafka.support.SendResult;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Publication Kafka des événements facture (oxalio.invoice.outbox.broker=kafka).
+ *
+ * - clé = id de la facture : tous les événements d'une facture sur la même partition, dans l'ordre
+ * - compression par lot côté producteur (spring.kafka.producer.compression-type)
+ * - producteur idempotent (pas de doublon sur réessai interne du client)
+ * - le lot entier est envoyé avant d'attendre les acquittements (un aller-retour par lot)
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.outbox.broker", havingValue = "kafka")
+public class KafkaInvoiceEventBroker implements InvoiceEventBroker {
+
+    private final KafkaTemplate<String, String> kafkaTemplate;
+    private final String topic;
+    private final long sendTimeoutMs;
+
+    public KafkaInvoiceEventBroker(KafkaTemplate<String, String> kafkaTemplate,
+                                   @Value("${oxalio.invoice.outbox.topic:oxalio.invoice.events}") String topic,
+                                   @Value("${oxalio.invoice.outbox.send-timeout:10s}") Duration sendTimeout) {
+        this.kafkaTemplate = kafkaTemplate;
+        this.topic = topic;
+        this.sendTimeoutMs = sendTimeout.toMillis();
+    }
+
+    @Override
+    public int publish(List<Message> messages) {
+        List<CompletableFuture<SendResult<String, String>>> acks = new ArrayList<>(messages.size());
+        for (Message m : messages) {
+            acks.add(kafkaTemplate.send(toRecord(m)));
+        }
+        kafkaTemplate.flush();
+
+        long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(sendTimeoutMs);
+        for (int i = 0; i < acks.size(); i++) {
+            try {
+                acks.get(i).get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return i;
+            } catch (ExecutionException | TimeoutException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                log.warn("Publication Kafka de l'événement {} en échec : {}", messages.get(i).eventId(), cause.toString());
+                return i;
+            }
+        }
+        return acks.size();
+    }
+
+    private ProducerRecord<String, String> toRecord(Message m) {
+        ProducerRecord<String, String> record = new ProducerRecord<>(topic, m.key(), m.payload());
+        record.headers().add(HEADER_EVENT_ID, String.valueOf(m.eventId()).getBytes(StandardCharsets.UTF_8));
+        record.headers().add(HEADER_EVENT_TYPE, m.eventType().getBytes(StandardCharsets.UTF_8));
+        if (m.tenantId() != null) {
+            record.headers().add(HEADER_TENANT_ID, String.valueOf(m.tenantId()).getBytes(StandardCharsets.UTF_8));
+        }
+        return record;
+    }
+}
@@ -3,8 +3,10 @@ package com.oxalio.invoice.mapper;
 import com.oxalio.invoice.dto.InvoiceRequest;
 import com.oxalio.invoice.dto.InvoiceRequest.InvoiceLineDTO;
 import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
 import com.oxalio.invoice.entity.InvoiceEntity;
 import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.service.FneTotals;
 import org.mapstruct.*;
 
 import java.util.List;
@@ -48,12 +50,15 @@ public interface InvoiceMapper {
     @Mapping(target = "buyer.name", source = "buyerName")
     @Mapping(target = "buyer.taxId", source = "buyerTaxId")
     @Mapping(target = "buyer.address", source = "buyerAddress")
+    @Mapping(target = "buyer.phone", source = "clientPhone")
     
     @Mapping(target = "totals.subtotal", source = "subtotal")
     @Mapping(target = "totals.totalVat", source = "totalVat")
     @Mapping(target = "totals.totalAmount", source = "totalAmount")
     @Mapping(target = "totals.otherTaxes", source = "otherTaxes")
     @Mapping(target = "totals.totalToPay", source = "totalToPay")
+    @Mapping(target = "totals.totalDiscount", source = "totalDiscount")
+    @Mapping(target = "totals.vatBreakdown", source = "vatBreakdown", qualifiedByName = "vatBreakdown")
     
     // Champ avec nom différent
     @Mapping(target = "paymentMode", source = "paymentMethod")
@@ -61,6 +66,10 @@ public interface InvoiceMapper {
     // Expression pour enum -> string
     @Mapping(target = "status", expression = "java(entity.getStatus() != null ? entity.getStatus().name() : null)")
     
+    // QR : URL versionnée, l'image est servie par /invoices/{id}/qr.png
+    @Mapping(target = "qrUrl", expression = "java(com.oxalio.invoice.service.InvoiceQrService.qrUrl(entity.getId(), entity.getQrSha256()))")
+    @Mapping(target = "qrBase64", ignore = true)
+
     // Champs ignorés (non exposés dans l'API)
     @Mapping(target = "notes", ignore = true)
     @Mapping(target = "message", ignore = true)
@@ -73,6 +82,31 @@ public interface InvoiceMapper {
      */
     List<InvoiceResponse> toResponseList(List<InvoiceEntity> entities);
 
+    /**
+     * Comme toResponse, sans toucher aux lignes (chargées à part, cf. InvoiceService.getInvoices)
+     */
+    @Named("header")
+    @InheritConfiguration(name = "toResponse")
+    @Mapping(target = "lines", ignore = true)
+    InvoiceResponse toHeaderResponse(InvoiceEntity entity);
+
+    /**
+     * Résumé TVA stocké (colonne vat_breakdown) -> DTO, sans recalcul
+     */
+    @Named("vatBreakdown")
+    default List<InvoiceResponse.VatBreakdownDTO> vatBreakdown(String encoded) {
+        return FneTotals.breakdownDTOs(encoded);
+    }
+
+    // ════════════════════════════════════════════════════════════════
+    // ENTITY -> SUMMARY (index de recherche en mémoire)
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * Convertit InvoiceEntity -> InvoiceSummary (mêmes colonnes que la projection de liste)
+     */
+    InvoiceSummary toSummary(InvoiceEntity entity);
+
     // ════════════════════════════════════════════════════════════════
     // ENTITY LINE -> RESPONSE LINE
     // ════════════════════════════════════════════════════════════════
@@ -101,10 +135,11 @@ public interface InvoiceMapper {
      * Inverse du mapping Entity -> Response
      */
     @Mapping(target = "id", ignore = true)
+    @Mapping(target = "version", ignore = true)
     @Mapping(target = "invoiceNumber", ignore = true)
     @Mapping(target = "issueDate", ignore = true)
     @Mapping(target = "stickerId", ignore = true)
-    @Mapping(target = "qrBase64", ignore = true)
+    @Mapping(target = "qrSha256", ignore = true)
     @Mapping(target = "status", ignore = true)
     @Mapping(target = "dgiReference", ignore = true)
     @Mapping(target = "dgiSubmittedAt", ignore = true)
@@ -122,6 +157,7 @@ public interface InvoiceMapper {
     @Mapping(target = "buyerName", source = "buyer.name")
     @Mapping(target = "buyerTaxId", source = "buyer.taxId")
     @Mapping(target = "buyerAddress", source = "buyer.address")
+    @Mapping(target = "clientPhone", source = "buyer.phone")
     
     @Mapping(target = "subtotal", source = "totals.subtotal")
     @Mapping(target = "totalVat", source = "totals.totalVat")
@@ -143,6 +179,7 @@ public interface InvoiceMapper {
      */
     @Mapping(target = "id", ignore = true)
     @Mapping(target = "invoice", ignore = true)
+    @Mapping(target = "issueDate", ignore = true) // recopiée de la facture (@PrePersist)
     @Mapping(target = "fneItemId", ignore = true)
     // @Mapping(target = "tenantId", ignore = true)
     @Mapping(target = "lineTotal", ignore = true) // Calculé par la logique métier
@@ -153,6 +190,20 @@ public interface InvoiceMapper {
      */
     List<InvoiceLineEntity> toLineEntityList(List<InvoiceLineDTO> lines);
 
+    /**
+     * Met à jour une ligne existante (remplacement complet de ses champs saisis).
+     * Identifiant, parent et fneItemId sont conservés ; Hibernate n'émet un UPDATE
+     * que si une valeur a réellement changé.
+     */
+    @BeanMapping(nullValuePropertyMappingStrategy = NullValuePropertyMappingStrategy.SET_TO_NULL)
+    @Mapping(target = "id", ignore = true)
+    @Mapping(target = "invoice", ignore = true)
+    @Mapping(target = "issueDate", ignore = true) // recopiée de la facture (@PrePersist)
+    @Mapping(target = "fneItemId", ignore = true)
+    @Mapping(target = "lineTotal", ignore = true)
+    @Mapping(target = "vatAmount", ignore = true) // recalculé par FneTaxEngine
+    void updateLineFromRequest(InvoiceLineDTO line, @MappingTarget InvoiceLineEntity entity);
+
     // ════════════════════════════════════════════════════════════════
     // UPDATE (PATCH)
     // ════════════════════════════════════════════════════════════════
@@ -183,6 +234,7 @@ public interface InvoiceMapper {
     @Mapping(target = "buyerName", source = "buyer.name")
     @Mapping(target = "buyerTaxId", source = "buyer.taxId")
     @Mapping(target = "buyerAddress", source = "buyer.address")
+    @Mapping(target = "clientPhone", source = "buyer.phone")
     
     void updateEntityFromRequest(InvoiceRequest request, @MappingTarget InvoiceEntity entity);
 }
\ No newline at end of file
@@ -0,0 +1,12 @@
+package com.oxalio.invoice.model;
+
+public enum DgiSubmissionStatus {
+    PENDING,       // enregistrée, en attente d'un worker (ou d'un nouvel essai)
+    IN_PROGRESS,   // appel DGI en cours
+    SUCCEEDED,     // facture certifiée
+    FAILED;        // abandon après le nombre maximal d'essais
+
+    public boolean isActive() {
+        return this == PENDING || this == IN_PROGRESS;
+    }
+}
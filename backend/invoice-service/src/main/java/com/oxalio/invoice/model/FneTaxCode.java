@@ -0,0 +1,41 @@
+package com.oxalio.invoice.model;
+
+/**
+ * Codes de taxe FNE (champ "taxes" des articles) et leur taux, en points de base (1/100 de %).
+ */
+public enum FneTaxCode {
+    TVA(1800, "TVA normal - TVA sur HT 18.00% - A"),       // taux normal
+    TVAB(900, "TVA réduit - TVA sur HT 9.00% - B"),        // taux réduit
+    TVAC(0, "TVA exonérée conventionnelle - C"),           // exonération conventionnelle
+    TVAD(0, "EXONÉRÉ");                                    // exonération légale (TEE, RME)
+
+    private final int rateBasisPoints;
+    private final String summaryLabel;
+
+    FneTaxCode(int rateBasisPoints, String summaryLabel) {
+        this.rateBasisPoints = rateBasisPoints;
+        this.summaryLabel = summaryLabel;
+    }
+
+    public int rateBasisPoints() {
+        return rateBasisPoints;
+    }
+
+    /** Libellé du résumé TVA de la facture PDF */
+    public String summaryLabel() {
+        return summaryLabel;
+    }
+
+    /**
+     * Code correspondant à un taux de ligne (les lignes ne portent que le taux).
+     * Un taux nul est une exonération légale (TVAD) ; null si le taux n'est pas un taux FNE.
+     */
+    public static FneTaxCode fromRate(int rateBasisPoints) {
+        return switch (rateBasisPoints) {
+            case 1800 -> TVA;
+            case 900 -> TVAB;
+            case 0 -> TVAD;
+            default -> null;
+        };
+    }
+}
@@ -0,0 +1,11 @@
+package com.oxalio.invoice.model;
+
+/**
+ * Événements du cycle de vie d'une facture publiés via l'outbox (topic Kafka des factures).
+ */
+public enum InvoiceEventType {
+    INVOICE_CREATED,
+    INVOICE_SUBMITTED_TO_DGI,
+    INVOICE_FNE_SIGNED,
+    INVOICE_REFUNDED
+}
@@ -0,0 +1,7 @@
+package com.oxalio.invoice.model;
+
+public enum RefundEntryStatus {
+    RESERVED,      // quantité déduite, appel FNE en cours
+    CONFIRMED,     // avoir émis par la FNE
+    RELEASED       // appel FNE en échec : quantité rendue
+}
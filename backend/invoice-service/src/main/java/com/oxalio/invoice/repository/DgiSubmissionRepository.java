@@ -0,0 +1,48 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.DgiSubmissionEntity;
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface DgiSubmissionRepository extends JpaRepository<DgiSubmissionEntity, Long> {
+
+    /** Dernière soumission de la facture (polling) */
+    Optional<DgiSubmissionEntity> findFirstByInvoiceIdOrderByIdDesc(Long invoiceId);
+
+    /**
+     * Réservation par un worker : PENDING → IN_PROGRESS, une seule fois.
+     *
+     * @return 1 si la soumission est réservée, 0 si un autre worker l'a déjà prise
+     */
+    @Modifying
+    @Query("UPDATE DgiSubmissionEntity s SET s.status = :inProgress, s.attempts = s.attempts + 1, s.updatedAt = :now "
+            + "WHERE s.id = :id AND s.status = :pending")
+    int claim(@Param("id") Long id,
+              @Param("now") Instant now,
+              @Param("pending") DgiSubmissionStatus pending,
+              @Param("inProgress") DgiSubmissionStatus inProgress);
+
+    /** Soumissions PENDING dont l'échéance est passée, plus anciennes d'abord */
+    @Query("SELECT s.id FROM DgiSubmissionEntity s WHERE s.status = :status AND s.nextAttemptAt <= :now "
+            + "ORDER BY s.nextAttemptAt")
+    List<Long> findDueIds(@Param("status") DgiSubmissionStatus status, @Param("now") Instant now, Pageable page);
+
+    /** Soumissions restées IN_PROGRESS (worker arrêté en cours d'appel) : remises en file */
+    @Modifying
+    @Query("UPDATE DgiSubmissionEntity s SET s.status = :pending, s.nextAttemptAt = :now, s.updatedAt = :now "
+            + "WHERE s.status = :inProgress AND s.updatedAt < :staleBefore")
+    int requeueStale(@Param("staleBefore") Instant staleBefore,
+                     @Param("now") Instant now,
+                     @Param("pending") DgiSubmissionStatus pending,
+                     @Param("inProgress") DgiSubmissionStatus inProgress);
+}
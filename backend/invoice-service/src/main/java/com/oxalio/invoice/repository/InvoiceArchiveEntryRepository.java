@@ -0,0 +1,34 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.InvoiceArchiveEntryEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+@Repository
+public interface InvoiceArchiveEntryRepository extends JpaRepository<InvoiceArchiveEntryEntity, Long> {
+
+    Optional<InvoiceArchiveEntryEntity> findByInvoiceNumber(String invoiceNumber);
+
+    Optional<InvoiceArchiveEntryEntity> findByFneReference(String fneReference);
+
+    List<InvoiceArchiveEntryEntity> findBySegmentId(Long segmentId);
+
+    /**
+     * Segments contenant au moins une facture émise dans [from, to) : du tenant donné
+     * (tenant null = factures sans tenant), ou de tous les tenants si allTenants.
+     */
+    @Query("SELECT DISTINCT e.segmentId FROM InvoiceArchiveEntryEntity e "
+            + "WHERE e.issueDate >= :from AND e.issueDate < :to "
+            + "AND (:allTenants = TRUE OR e.tenantId = :tenantId OR (:tenantId IS NULL AND e.tenantId IS NULL)) "
+            + "ORDER BY e.segmentId")
+    List<Long> findSegmentIdsIssuedBetween(@Param("allTenants") boolean allTenants,
+                                           @Param("tenantId") Long tenantId,
+                                           @Param("from") Instant from,
+                                           @Param("to") Instant to);
+}
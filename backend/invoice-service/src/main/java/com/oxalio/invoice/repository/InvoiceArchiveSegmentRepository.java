@@ -0,0 +1,16 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.InvoiceArchiveSegmentEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.stereotype.Repository;
+
+import java.util.List;
+
+@Repository
+public interface InvoiceArchiveSegmentRepository extends JpaRepository<InvoiceArchiveSegmentEntity, Long> {
+
+    /** Segments archivés avant V29, dont les références FNE ne sont pas encore indexées */
+    @Query("SELECT s.id FROM InvoiceArchiveSegmentEntity s WHERE s.fneIndexed = false ORDER BY s.id")
+    List<Long> findIdsNotFneIndexed();
+}
@@ -0,0 +1,27 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.InvoiceNumberSequenceEntity;
+import jakarta.persistence.LockModeType;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InvoiceNumberSequenceRepository
+        extends JpaRepository<InvoiceNumberSequenceEntity, InvoiceNumberSequenceEntity.Key> {
+
+    /**
+     * Lit le compteur en verrouillant la ligne (SELECT ... FOR UPDATE).
+     * Sérialise les réservations de blocs entre instances, uniquement pour ce compteur.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT s FROM InvoiceNumberSequenceEntity s " +
+           "WHERE s.tenantId = :tenantId AND s.fiscalYear = :fiscalYear AND s.pointOfSale = :pointOfSale")
+    Optional<InvoiceNumberSequenceEntity> findForUpdate(@Param("tenantId") Long tenantId,
+                                                        @Param("fiscalYear") Integer fiscalYear,
+                                                        @Param("pointOfSale") String pointOfSale);
+}
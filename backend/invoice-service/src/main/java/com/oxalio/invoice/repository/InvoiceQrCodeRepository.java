@@ -0,0 +1,19 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.InvoiceQrCodeEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface InvoiceQrCodeRepository extends JpaRepository<InvoiceQrCodeEntity, Long> {
+
+    /**
+     * Empreinte seule (sans lire l'image) : suffit pour répondre 304.
+     */
+    @Query("SELECT q.sha256 FROM InvoiceQrCodeEntity q WHERE q.invoiceId = :invoiceId")
+    Optional<String> findSha256ByInvoiceId(@Param("invoiceId") Long invoiceId);
+}
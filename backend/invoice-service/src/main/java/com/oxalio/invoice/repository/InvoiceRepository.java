@@ -1,18 +1,40 @@
 package com.oxalio.invoice.repository;
 
 import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
-public interface InvoiceRepository extends JpaRepository<InvoiceEntity, Long> {
+public interface InvoiceRepository extends JpaRepository<InvoiceEntity, Long>, InvoiceRepositoryCustom {
     
     /**
      * Recherche une facture par son numéro unique.
      */
     Optional<InvoiceEntity> findByInvoiceNumber(String invoiceNumber);
+
+    /**
+     * Lecture élaguée à la partition de la facture, implémentée par InvoiceRepositoryImpl.
+     */
+    @Override
+    Optional<InvoiceEntity> findById(Long id);
+
+    /**
+     * Variante par numéro de findWithLinesById (InvoiceRepositoryCustom).
+     */
+    @EntityGraph(attributePaths = "lines")
+    Optional<InvoiceEntity> findWithLinesByInvoiceNumber(String invoiceNumber);
     
     // ════════════════════════════════════════════════════════════════
     // ✨ NOUVELLES MÉTHODES FNE (V8) - Pour système de refund
@@ -36,4 +58,62 @@ public interface InvoiceRepository extends JpaRepository<InvoiceEntity, Long> {
      * @return Optional contenant la facture si trouvée
      */
     Optional<InvoiceEntity> findByFneInvoiceId(String fneInvoiceId);
-}
\ No newline at end of file
+
+    /**
+     * Variantes avec lignes (entity graph) des recherches FNE : lecture complète en une requête.
+     */
+    @EntityGraph(attributePaths = "lines")
+    Optional<InvoiceEntity> findWithLinesByFneReference(String fneReference);
+
+    @EntityGraph(attributePaths = "lines")
+    Optional<InvoiceEntity> findWithLinesByFneInvoiceId(String fneInvoiceId);
+
+    // ════════════════════════════════════════════════════════════════
+    // ARCHIVAGE (V23)
+    // ════════════════════════════════════════════════════════════════
+
+    /**
+     * Prochain lot à archiver : factures certifiées (DGI ou FNE) émises avant {@code before}, par id.
+     */
+    @Query("SELECT i.id FROM InvoiceEntity i WHERE i.issueDate < :before "
+            + "AND (i.dgiReference IS NOT NULL OR i.fneReference IS NOT NULL) ORDER BY i.id")
+    List<Long> findArchivableIds(@Param("before") Instant before, Pageable page);
+
+    @EntityGraph(attributePaths = "lines")
+    List<InvoiceEntity> findWithLinesByIdIn(Collection<Long> ids);
+
+    // ════════════════════════════════════════════════════════════════
+    // TOTAUX ANTÉRIEURS (V18)
+    // ════════════════════════════════════════════════════════════════
+
+    /** Prochain lot de factures dont les totaux viennent d'une autre version du moteur (ou d'avant V18), par id */
+    @Query("SELECT i.id FROM InvoiceEntity i WHERE i.id > :afterId "
+            + "AND (i.totalsVersion IS NULL OR i.totalsVersion <> :version) ORDER BY i.id")
+    List<Long> findIdsWithStaleTotals(@Param("afterId") long afterId, @Param("version") int version, Pageable page);
+
+    /**
+     * Totaux recalculés, écrits sans changer la version de la facture (verrou optimiste, ETag du PDF) :
+     * ce sont ceux que la lecture calculait déjà. Sans effet si la facture a été recalculée entre-temps.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE InvoiceEntity i SET i.subtotal = :subtotal, i.totalVat = :totalVat, "
+            + "i.totalDiscount = :totalDiscount, i.otherTaxes = :otherTaxes, i.totalAmount = :totalAmount, "
+            + "i.totalToPay = :totalToPay, i.vatBreakdown = :vatBreakdown, i.totalsVersion = :version "
+            + "WHERE i.id = :id AND (i.totalsVersion IS NULL OR i.totalsVersion <> :version)")
+    int updateStaleTotals(@Param("id") Long id,
+                          @Param("subtotal") BigDecimal subtotal,
+                          @Param("totalVat") BigDecimal totalVat,
+                          @Param("totalDiscount") BigDecimal totalDiscount,
+                          @Param("otherTaxes") BigDecimal otherTaxes,
+                          @Param("totalAmount") BigDecimal totalAmount,
+                          @Param("totalToPay") BigDecimal totalToPay,
+                          @Param("vatBreakdown") String vatBreakdown,
+                          @Param("version") int version);
+
+    /**
+     * Lignes de plusieurs factures en une requête, groupées par facture (multi-get).
+     * Sans jointure : les colonnes de la facture ne sont pas répétées sur chaque ligne.
+     */
+    @Query("SELECT l FROM InvoiceLineEntity l WHERE l.invoice.id IN :invoiceIds ORDER BY l.invoice.id, l.id")
+    List<InvoiceLineEntity> findLinesByInvoiceIdIn(@Param("invoiceIds") Collection<Long> invoiceIds);
+}
@@ -0,0 +1,53 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.dto.InvoiceCursor;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.InvoiceEntity;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+/**
+ * Requêtes dynamiques (Criteria) et lectures par id élaguées de InvoiceRepository.
+ */
+public interface InvoiceRepositoryCustom {
+
+    /**
+     * Facture par id, en ne lisant que la partition de son issue_date (registre invoice_numbers, V33).
+     * Remplace le findById de JpaRepository.
+     */
+    Optional<InvoiceEntity> findById(Long id);
+
+    /**
+     * Facture + lignes en une seule requête (LEFT JOIN FETCH), partition de son issue_date seulement.
+     * À utiliser dès que les lignes sont lues (réponse complète, PDF, signature FNE).
+     */
+    Optional<InvoiceEntity> findWithLinesById(Long id);
+
+    /**
+     * Page de résumés triée par (issue_date DESC, id DESC), strictement après {@code after}.
+     *
+     * @param tenantId tenant courant (null = factures sans tenant, tenant_id IS NULL)
+     * @param filter   filtres optionnels
+     * @param after    curseur de la page précédente (null = première page)
+     * @param limit    nombre maximum de lignes
+     */
+    List<InvoiceSummary> findSummaries(Long tenantId, InvoiceListFilter filter, InvoiceCursor after, int limit);
+
+    /**
+     * Flux en lecture seule des factures filtrées, triées par (issue_date, id).
+     * À consommer dans une transaction et à fermer (try-with-resources).
+     *
+     * @param tenantId  tenant courant (null = factures sans tenant, tenant_id IS NULL)
+     * @param fetchSize nombre de lignes lues par aller-retour JDBC
+     */
+    Stream<InvoiceEntity> streamForExport(Long tenantId, InvoiceListFilter filter, int fetchSize);
+
+    /**
+     * Comme streamForExport, tous tenants confondus : traitements internes uniquement
+     * (chargement de l'index de recherche, reconstruction des agrégats), jamais une requête client.
+     */
+    Stream<InvoiceEntity> streamAll(InvoiceListFilter filter, int fetchSize);
+}
@@ -0,0 +1,182 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.dto.InvoiceCursor;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Path;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import org.hibernate.Session;
+import org.hibernate.jpa.HibernateHints;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * Implémentation du fragment InvoiceRepositoryCustom (suffixe Impl détecté par Spring Data).
+ *
+ * Pagination keyset : au lieu d'un OFFSET, on reprend après le dernier (issue_date, id) lu.
+ * Avec l'index (tenant_id, issue_date DESC, id DESC) (V15), chaque page est un parcours
+ * d'index borné, quelle que soit sa profondeur. Seuls les prédicats des filtres renseignés
+ * sont générés, pour garder un plan d'exécution exploitable. Le tenant est toujours filtré
+ * (tenant_id IS NULL sans tenant, cf. TenantContext) : l'index sert aussi ce cas.
+ *
+ * Lectures par id : invoices / invoice_lines sont partitionnées par issue_date (V22, PostgreSQL).
+ * Le filtre InvoiceEntity.PARTITION_FILTER ajoute issue_date = (issue_date du registre
+ * invoice_numbers) à la facture et à ses lignes : PostgreSQL élague à l'exécution et ne lit
+ * qu'une partition, toujours en une seule requête. Les UPDATE/DELETE d'Hibernate restent par id.
+ */
+public class InvoiceRepositoryImpl implements InvoiceRepositoryCustom {
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    // Transaction (comme SimpleJpaRepository) : filtre et requête sur la même session
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<InvoiceEntity> findById(Long id) {
+        return inPartitionOf(id, () -> entityManager
+                .createQuery("SELECT i FROM InvoiceEntity i WHERE i.id = :id", InvoiceEntity.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<InvoiceEntity> findWithLinesById(Long id) {
+        return inPartitionOf(id, () -> entityManager
+                .createQuery("SELECT DISTINCT i FROM InvoiceEntity i LEFT JOIN FETCH i.lines WHERE i.id = :id",
+                        InvoiceEntity.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst());
+    }
+
+    @Override
+    public List<InvoiceSummary> findSummaries(Long tenantId, InvoiceListFilter filter, InvoiceCursor after, int limit) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<InvoiceSummary> q = cb.createQuery(InvoiceSummary.class);
+        Root<InvoiceEntity> i = q.from(InvoiceEntity.class);
+
+        // Projection : colonnes scalaires uniquement (pas de lignes, pas de qrBase64)
+        q.select(cb.construct(InvoiceSummary.class,
+                i.get("id"),
+                i.get("invoiceNumber"),
+                i.get("invoiceType"),
+                i.get("status"),
+                i.get("issueDate"),
+                i.get("currency"),
+                i.get("sellerTaxId"),
+                i.get("sellerCompanyName"),
+                i.get("buyerTaxId"),
+                i.get("buyerName"),
+                i.get("clientPhone"),
+                i.get("totalAmount"),
+                i.get("totalToPay"),
+                i.get("paymentMethod"),
+                i.get("fneReference"),
+                i.get("dgiReference")));
+
+        Path<Instant> issueDate = i.get("issueDate");
+        Path<Long> id = i.get("id");
+
+        List<Predicate> where = filterPredicates(cb, i, filter);
+        where.add(tenantPredicate(cb, i, tenantId));
+        if (after != null) {
+            // (issue_date, id) < (:issueDate, :id)
+            where.add(cb.or(
+                    cb.lessThan(issueDate, after.issueDate()),
+                    cb.and(cb.equal(issueDate, after.issueDate()), cb.lessThan(id, after.id()))));
+        }
+
+        q.where(where.toArray(new Predicate[0]));
+        q.orderBy(cb.desc(issueDate), cb.desc(id));
+
+        return entityManager.createQuery(q)
+                .setMaxResults(limit)
+                .getResultList();
+    }
+
+    @Override
+    public Stream<InvoiceEntity> streamForExport(Long tenantId, InvoiceListFilter filter, int fetchSize) {
+        return stream(true, tenantId, filter, fetchSize);
+    }
+
+    @Override
+    public Stream<InvoiceEntity> streamAll(InvoiceListFilter filter, int fetchSize) {
+        return stream(false, null, filter, fetchSize);
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /** Exécute la lecture avec le filtre de partition de la facture {@code id}, désactivé ensuite */
+    private <T> T inPartitionOf(Long id, Supplier<T> read) {
+        Session session = entityManager.unwrap(Session.class);
+        session.enableFilter(InvoiceEntity.PARTITION_FILTER).setParameter("invoiceId", id);
+        try {
+            return read.get();
+        } finally {
+            session.disableFilter(InvoiceEntity.PARTITION_FILTER);
+        }
+    }
+
+    private Stream<InvoiceEntity> stream(boolean byTenant, Long tenantId, InvoiceListFilter filter, int fetchSize) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<InvoiceEntity> q = cb.createQuery(InvoiceEntity.class);
+        Root<InvoiceEntity> i = q.from(InvoiceEntity.class);
+
+        List<Predicate> where = filterPredicates(cb, i, filter);
+        if (byTenant) {
+            where.add(tenantPredicate(cb, i, tenantId));
+        }
+        q.select(i)
+                .where(where.toArray(new Predicate[0]))
+                .orderBy(cb.asc(i.get("issueDate")), cb.asc(i.get("id")));
+
+        // fetchSize : le driver lit par paquets (curseur serveur sous PostgreSQL, transaction requise)
+        // readOnly : pas de snapshot pour le dirty checking
+        return entityManager.createQuery(q)
+                .setHint(HibernateHints.HINT_FETCH_SIZE, fetchSize)
+                .setHint(HibernateHints.HINT_READ_ONLY, true)
+                .getResultStream();
+    }
+
+    /** Tenant courant ; sans tenant, factures sans tenant seulement (jamais tous les tenants) */
+    private static Predicate tenantPredicate(CriteriaBuilder cb, Root<InvoiceEntity> i, Long tenantId) {
+        return tenantId != null ? cb.equal(i.get("tenantId"), tenantId) : cb.isNull(i.get("tenantId"));
+    }
+
+    private static List<Predicate> filterPredicates(CriteriaBuilder cb, Root<InvoiceEntity> i,
+                                                    InvoiceListFilter filter) {
+        Path<Instant> issueDate = i.get("issueDate");
+
+        List<Predicate> where = new ArrayList<>();
+        if (filter != null) {
+            if (filter.getStatus() != null) {
+                where.add(cb.equal(i.get("status"), filter.getStatus()));
+            }
+            if (filter.getFrom() != null) {
+                where.add(cb.greaterThanOrEqualTo(issueDate, filter.getFrom()));
+            }
+            if (filter.getTo() != null) {
+                where.add(cb.lessThan(issueDate, filter.getTo()));
+            }
+            if (filter.getBuyerNcc() != null && !filter.getBuyerNcc().isBlank()) {
+                where.add(cb.equal(i.get("buyerTaxId"), filter.getBuyerNcc().trim()));
+            }
+        }
+        return where;
+    }
+}
@@ -0,0 +1,43 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.OutboxEventEntity;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface OutboxEventRepository extends JpaRepository<OutboxEventEntity, Long> {
+
+    /** Prochain lot à relayer, dans l'ordre d'écriture (relay_order, V31) */
+    @Query("SELECT e FROM OutboxEventEntity e WHERE e.publishedAt IS NULL ORDER BY e.relayOrder")
+    List<OutboxEventEntity> findUnpublished(Pageable page);
+
+    /**
+     * Verrou du relais (V31), tenu jusqu'à la fin de la transaction.
+     * Vide si un autre relais (autre instance ou autre thread) le détient : pas d'attente.
+     */
+    @Query(value = "SELECT id FROM outbox_relay_lock WHERE id = 1 FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Integer> tryLockRelay();
+
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.publishedAt = :now WHERE e.id IN :ids")
+    int markPublished(@Param("ids") Collection<Long> ids, @Param("now") Instant now);
+
+    @Modifying
+    @Query("UPDATE OutboxEventEntity e SET e.attempts = e.attempts + 1, e.lastError = :error WHERE e.id = :id")
+    int recordFailure(@Param("id") Long id, @Param("error") String error);
+
+    /** Purge des événements publiés au-delà de la rétention */
+    @Modifying
+    @Query("DELETE FROM OutboxEventEntity e WHERE e.publishedAt < :before")
+    int deletePublishedBefore(@Param("before") Instant before);
+
+    long countByPublishedAtIsNull();
+}
@@ -0,0 +1,28 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.RefundLedgerEntryEntity;
+import com.oxalio.invoice.model.RefundEntryStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RefundLedgerEntryRepository extends JpaRepository<RefundLedgerEntryEntity, Long> {
+
+    List<RefundLedgerEntryEntity> findByRefundIdAndStatus(String refundId, RefundEntryStatus status);
+
+    /** Passage d'état d'un avoir entier, une seule fois (RESERVED → CONFIRMED / RELEASED) */
+    @Modifying
+    @Query("UPDATE RefundLedgerEntryEntity e SET e.status = :to, e.fneReference = :fneReference, e.updatedAt = :now "
+            + "WHERE e.refundId = :refundId AND e.status = :from")
+    int transition(@Param("refundId") String refundId,
+                   @Param("from") RefundEntryStatus from,
+                   @Param("to") RefundEntryStatus to,
+                   @Param("fneReference") String fneReference,
+                   @Param("now") Instant now);
+}
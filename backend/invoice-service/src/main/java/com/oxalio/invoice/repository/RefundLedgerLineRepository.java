@@ -0,0 +1,39 @@
+package com.oxalio.invoice.repository;
+
+import com.oxalio.invoice.entity.RefundLedgerLineEntity;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.List;
+
+@Repository
+public interface RefundLedgerLineRepository extends JpaRepository<RefundLedgerLineEntity, String> {
+
+    /** Articles d'une facture FNE (validation d'un avoir) */
+    List<RefundLedgerLineEntity> findByFneInvoiceId(String fneInvoiceId);
+
+    /**
+     * Déduit une quantité remboursée, seulement s'il en reste assez.
+     *
+     * @return 1 si la quantité est déduite, 0 si un avoir concurrent l'a déjà consommée
+     */
+    @Modifying
+    @Query("UPDATE RefundLedgerLineEntity l SET l.remainingQuantity = l.remainingQuantity - :quantity, "
+            + "l.updatedAt = :now WHERE l.fneItemId = :fneItemId AND l.remainingQuantity >= :quantity")
+    int consume(@Param("fneItemId") String fneItemId,
+                @Param("quantity") BigDecimal quantity,
+                @Param("now") Instant now);
+
+    /** Rend une quantité réservée (appel FNE en échec) */
+    @Modifying
+    @Query("UPDATE RefundLedgerLineEntity l SET l.remainingQuantity = l.remainingQuantity + :quantity, "
+            + "l.updatedAt = :now WHERE l.fneItemId = :fneItemId")
+    int restore(@Param("fneItemId") String fneItemId,
+                @Param("quantity") BigDecimal quantity,
+                @Param("now") Instant now);
+}
@@ -1,5 +1,12 @@
 package com.oxalio.invoice.security;
 
+/**
+ * Tenant de la requête courante (en-tête X-Tenant-ID, posé par TenantFilter).
+ *
+ * Sans en-tête, le tenant est null : les factures sont créées avec tenant_id NULL, et les lectures
+ * filtrées par tenant (liste, export, recherche, déclaration TVA) ne portent que sur ces factures
+ * (tenant_id IS NULL), jamais sur tous les tenants.
+ */
 public class TenantContext {
     private static final ThreadLocal<Long> currentTenant = new ThreadLocal<>();
     
@@ -0,0 +1,266 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.DgiSubmissionResponse;
+import com.oxalio.invoice.entity.DgiSubmissionEntity;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.exception.InvoiceNotFoundException;
+import com.oxalio.invoice.integration.DgiClientMock;
+import com.oxalio.invoice.integration.DgiClientMock.DgiCertification;
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import com.oxalio.invoice.repository.DgiSubmissionRepository;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.security.TenantContext;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Soumission DGI asynchrone.
+ *
+ * 1. requestSubmission : enregistre une soumission PENDING (courte transaction) → 202
+ * 2. un worker du pool borné la réserve (PENDING → IN_PROGRESS) et prend un instantané de la facture
+ * 3. l'appel DGI se fait hors transaction : ni connexion JDBC ni thread Tomcat retenus
+ * 4. le résultat est reporté sur la facture (statut, dgiReference, stickerId, QR)
+ *
+ * Échec : nouvel essai après retry-delay × essais, FAILED après max-attempts.
+ * Un balayage périodique reprend les soumissions échues, refusées par le pool plein,
+ * ou bloquées IN_PROGRESS (arrêt du service pendant l'appel).
+ */
+@Slf4j
+@Service
+public class DgiSubmissionService {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final DgiSubmissionRepository submissionRepository;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceService invoiceService;
+    private final DgiClientMock dgiClient;
+    private final TransactionTemplate transactionTemplate;
+    private final TaskExecutor executor;
+    private final int maxAttempts;
+    private final Duration retryDelay;
+    private final Duration staleAfter;
+    private final int sweepBatchSize;
+
+    public DgiSubmissionService(DgiSubmissionRepository submissionRepository,
+                                InvoiceRepository invoiceRepository,
+                                InvoiceService invoiceService,
+                                DgiClientMock dgiClient,
+                                TransactionTemplate transactionTemplate,
+                                @Qualifier("dgiSubmissionExecutor") TaskExecutor executor,
+                                @Value("${oxalio.invoice.dgi-submission.max-attempts:3}") int maxAttempts,
+                                @Value("${oxalio.invoice.dgi-submission.retry-delay:30s}") Duration retryDelay,
+                                @Value("${oxalio.invoice.dgi-submission.stale-after:5m}") Duration staleAfter,
+                                @Value("${oxalio.invoice.dgi-submission.sweep-batch-size:100}") int sweepBatchSize) {
+        this.submissionRepository = submissionRepository;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceService = invoiceService;
+        this.dgiClient = dgiClient;
+        this.transactionTemplate = transactionTemplate;
+        this.executor = executor;
+        this.maxAttempts = Math.max(1, maxAttempts);
+        this.retryDelay = retryDelay;
+        this.staleAfter = staleAfter;
+        this.sweepBatchSize = Math.max(1, sweepBatchSize);
+    }
+
+    // ============================================================
+    // DEMANDE (202)
+    // ============================================================
+    /**
+     * Enregistre une soumission PENDING, confiée au pool après commit.
+     * Idempotent : une soumission en cours ou réussie est renvoyée telle quelle.
+     */
+    @Transactional
+    public DgiSubmissionResponse requestSubmission(Long invoiceId) {
+        InvoiceEntity invoice = invoiceRepository.findById(invoiceId)
+                .orElseThrow(() -> new InvoiceNotFoundException(invoiceId));
+
+        Optional<DgiSubmissionEntity> latest = submissionRepository.findFirstByInvoiceIdOrderByIdDesc(invoiceId);
+        if (latest.isPresent() && latest.get().getStatus() != DgiSubmissionStatus.FAILED) {
+            return toResponse(latest.get(), invoice);
+        }
+
+        Instant now = now();
+        DgiSubmissionEntity submission = DgiSubmissionEntity.builder()
+                .invoiceId(invoiceId)
+                .tenantId(invoice.getTenantId() != null ? invoice.getTenantId() : TenantContext.getTenantId())
+                .status(DgiSubmissionStatus.PENDING)
+                .nextAttemptAt(now)
+                .build();
+
+        // Déjà certifiée (soumission synchrone) : rien à envoyer
+        if (invoice.getDgiReference() != null) {
+            submission.setStatus(DgiSubmissionStatus.SUCCEEDED);
+            submission.setCompletedAt(now);
+        }
+
+        DgiSubmissionEntity saved = submissionRepository.save(submission);
+        if (saved.getStatus() == DgiSubmissionStatus.PENDING) {
+            dispatchAfterCommit(saved.getId());
+        }
+        return toResponse(saved, invoice);
+    }
+
+    // ============================================================
+    // POLLING
+    // ============================================================
+    @Transactional(readOnly = true)
+    public DgiSubmissionResponse getLatestSubmission(Long invoiceId) {
+        InvoiceEntity invoice = invoiceRepository.findById(invoiceId)
+                .orElseThrow(() -> new InvoiceNotFoundException(invoiceId));
+        DgiSubmissionEntity submission = submissionRepository.findFirstByInvoiceIdOrderByIdDesc(invoiceId)
+                .orElseThrow(() -> new InvoiceNotFoundException("Aucune soumission DGI pour la facture : " + invoiceId));
+        return toResponse(submission, invoice);
+    }
+
+    // ============================================================
+    // WORKER
+    // ============================================================
+    /**
+     * Traite une soumission si elle est encore PENDING (sinon un autre worker l'a prise).
+     */
+    void process(Long submissionId) {
+        // 1. Réservation + instantané de la facture (transaction courte)
+        InvoiceEntity snapshot = transactionTemplate.execute(tx -> {
+            if (submissionRepository.claim(submissionId, now(),
+                    DgiSubmissionStatus.PENDING, DgiSubmissionStatus.IN_PROGRESS) == 0) {
+                return null;
+            }
+            Long invoiceId = submissionRepository.findById(submissionId)
+                    .map(DgiSubmissionEntity::getInvoiceId)
+                    .orElseThrow();
+            return invoiceRepository.findWithLinesById(invoiceId).orElse(null);
+        });
+        if (snapshot == null) {
+            return;
+        }
+
+        // 2. Appel DGI hors transaction
+        DgiCertification cert;
+        try {
+            cert = snapshot.getDgiReference() == null ? dgiClient.simulateCertification(snapshot) : null;
+        } catch (RuntimeException e) {
+            log.warn("Soumission DGI {} (facture {}) en échec : {}",
+                    submissionId, snapshot.getInvoiceNumber(), e.getMessage());
+            transactionTemplate.executeWithoutResult(tx -> recordFailure(submissionId, e));
+            return;
+        }
+
+        // 3. Report du résultat
+        transactionTemplate.executeWithoutResult(tx -> {
+            InvoiceEntity invoice = invoiceRepository.findById(snapshot.getId()).orElse(null);
+            DgiSubmissionEntity submission = submissionRepository.findById(submissionId).orElseThrow();
+            // Facture certifiée entre-temps (soumission synchrone) : on garde sa certification
+            if (invoice != null && cert != null && invoice.getDgiReference() == null) {
+                invoiceService.applyCertification(invoice, cert);
+            }
+            submission.setStatus(DgiSubmissionStatus.SUCCEEDED);
+            submission.setLastError(null);
+            submission.setCompletedAt(now());
+        });
+        log.info("Soumission DGI {} réussie (facture {})", submissionId, snapshot.getInvoiceNumber());
+    }
+
+    private void recordFailure(Long submissionId, RuntimeException e) {
+        DgiSubmissionEntity submission = submissionRepository.findById(submissionId).orElseThrow();
+        submission.setLastError(truncate(e.getClass().getSimpleName() + ": " + e.getMessage()));
+        if (submission.getAttempts() >= maxAttempts) {
+            submission.setStatus(DgiSubmissionStatus.FAILED);
+            submission.setCompletedAt(now());
+        } else {
+            submission.setStatus(DgiSubmissionStatus.PENDING);
+            submission.setNextAttemptAt(now().plus(retryDelay.multipliedBy(submission.getAttempts())));
+        }
+    }
+
+    // ============================================================
+    // REPRISE PÉRIODIQUE
+    // ============================================================
+    @Scheduled(fixedDelayString = "${oxalio.invoice.dgi-submission.sweep-interval-ms:15000}",
+               initialDelayString = "${oxalio.invoice.dgi-submission.sweep-interval-ms:15000}")
+    public void sweep() {
+        Instant now = now();
+        List<Long> due = transactionTemplate.execute(tx -> {
+            int stale = submissionRepository.requeueStale(now.minus(staleAfter), now,
+                    DgiSubmissionStatus.PENDING, DgiSubmissionStatus.IN_PROGRESS);
+            if (stale > 0) {
+                log.warn("{} soumission(s) DGI bloquée(s) IN_PROGRESS remise(s) en file", stale);
+            }
+            return submissionRepository.findDueIds(DgiSubmissionStatus.PENDING, now, PageRequest.of(0, sweepBatchSize));
+        });
+        if (due != null) {
+            due.forEach(this::dispatch);
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /**
+     * Horloge tronquée à la microseconde (précision des colonnes TIMESTAMP) : une échéance
+     * écrite avec {@code now} relue avec ce même {@code now} est bien échue (arrondi évité).
+     */
+    private static Instant now() {
+        return Instant.now().truncatedTo(ChronoUnit.MICROS);
+    }
+
+    private void dispatchAfterCommit(Long submissionId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            dispatch(submissionId);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                dispatch(submissionId);
+            }
+        });
+    }
+
+    private void dispatch(Long submissionId) {
+        try {
+            executor.execute(() -> process(submissionId));
+        } catch (RejectedExecutionException e) {
+            // Pool saturé : la soumission reste PENDING, reprise au prochain balayage
+            log.warn("Pool DGI saturé : soumission {} différée", submissionId);
+        }
+    }
+
+    private static DgiSubmissionResponse toResponse(DgiSubmissionEntity s, InvoiceEntity invoice) {
+        return DgiSubmissionResponse.builder()
+                .submissionId(s.getId())
+                .invoiceId(s.getInvoiceId())
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .status(s.getStatus())
+                .attempts(s.getAttempts())
+                .lastError(s.getLastError())
+                .invoiceStatus(invoice.getStatus() != null ? invoice.getStatus().name() : null)
+                .dgiReference(invoice.getDgiReference())
+                .stickerId(invoice.getStickerId())
+                .createdAt(s.getCreatedAt())
+                .updatedAt(s.getUpdatedAt())
+                .completedAt(s.getCompletedAt())
+                .build();
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
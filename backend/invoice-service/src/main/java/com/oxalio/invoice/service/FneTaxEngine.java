@@ -0,0 +1,190 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.model.FneTaxCode;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Calcul unique des totaux FNE (création, mise à jour, lecture, PDF).
+ *
+ * Arithmétique entière : montants en centimes, quantités en millièmes, taux en points de base.
+ * Aucune division BigDecimal, donc pas d'ArithmeticException sur un quotient non terminé.
+ *
+ * CALCULS CONFORMES FNE :
+ * - HT ligne    = Prix Unitaire × Quantité − Remise (arrondi au centime, jamais négatif)
+ * - TVA ligne   = HT ligne × Taux, arrondie au FCFA (HALF_UP)
+ * - Total TTC   = Σ HT + Σ TVA
+ * - Timbre      = oxalio.invoice.tax.stamp-duty-cash si paiement cash
+ * - Total à payer = Total TTC + Timbre
+ */
+@Service
+public class FneTaxEngine {
+
+    /**
+     * Version des règles de calcul, stockée avec les totaux de chaque facture.
+     * À incrémenter si les règles changent : les factures d'une autre version sont recalculées à la lecture.
+     */
+    public static final int VERSION = 1;
+
+    /** Accès aux champs d'une ligne, quel que soit son type (entité, DTO) */
+    public interface LineView<L> {
+        BigDecimal quantity(L line);
+
+        BigDecimal unitPrice(L line);
+
+        BigDecimal discount(L line);
+
+        BigDecimal vatRate(L line);
+    }
+
+    public static final LineView<InvoiceLineEntity> ENTITY_LINES = new LineView<>() {
+        public BigDecimal quantity(InvoiceLineEntity l) { return l.getQuantity(); }
+        public BigDecimal unitPrice(InvoiceLineEntity l) { return l.getUnitPrice(); }
+        public BigDecimal discount(InvoiceLineEntity l) { return l.getDiscount(); }
+        public BigDecimal vatRate(InvoiceLineEntity l) { return l.getVatRate(); }
+    };
+
+    public static final LineView<InvoiceResponse.InvoiceLineDTO> RESPONSE_LINES = new LineView<>() {
+        public BigDecimal quantity(InvoiceResponse.InvoiceLineDTO l) { return l.getQuantity(); }
+        public BigDecimal unitPrice(InvoiceResponse.InvoiceLineDTO l) { return l.getUnitPrice(); }
+        public BigDecimal discount(InvoiceResponse.InvoiceLineDTO l) { return l.getDiscount(); }
+        public BigDecimal vatRate(InvoiceResponse.InvoiceLineDTO l) { return l.getVatRate(); }
+    };
+
+    private static final int AMOUNT_SCALE = 2;     // centimes
+    private static final int QUANTITY_SCALE = 3;   // millièmes (colonne quantity scale 3)
+    private static final int RATE_SCALE = 2;       // points de base
+
+    private static final long QUANTITY_ONE = 1_000L;
+    /** centimes × points de base → FCFA entiers : / (100 × 10 000) */
+    private static final long VAT_TO_FRANCS = 1_000_000L;
+    private static final long CENTS_PER_FRANC = 100L;
+
+    private final long stampDutyCash;
+
+    public FneTaxEngine(@Value("${oxalio.invoice.tax.stamp-duty-cash:100}") BigDecimal stampDutyCash) {
+        this.stampDutyCash = toUnits(stampDutyCash, AMOUNT_SCALE);
+    }
+
+    /**
+     * Calcule les totaux d'une liste de lignes.
+     *
+     * @param paymentMethod mode de paiement ("cash" → timbre de quittance)
+     */
+    public <L> FneTotals compute(List<L> lines, LineView<L> view, String paymentMethod) {
+        int n = lines == null ? 0 : lines.size();
+        long[] lineNet = new long[n];
+        long[] lineVat = new long[n];
+
+        // Résumé par taux : quelques taux distincts au plus, recherche linéaire
+        int[] rates = new int[4];
+        long[] bases = new long[4];
+        long[] vats = new long[4];
+        int rateCount = 0;
+
+        long subtotal = 0;
+        long totalVat = 0;
+        long totalDiscount = 0;
+
+        try {
+            for (int i = 0; i < n; i++) {
+                L line = lines.get(i);
+                long price = toUnits(view.unitPrice(line), AMOUNT_SCALE);
+                long qty = toUnits(view.quantity(line), QUANTITY_SCALE);
+                long discount = toUnits(view.discount(line), AMOUNT_SCALE);
+                int rate = Math.toIntExact(toUnits(view.vatRate(line), RATE_SCALE));
+
+                long gross = roundDiv(Math.multiplyExact(price, qty), QUANTITY_ONE);
+                long net = Math.max(0, gross - discount);
+                long vat = roundDiv(Math.multiplyExact(net, rate), VAT_TO_FRANCS) * CENTS_PER_FRANC;
+
+                lineNet[i] = net;
+                lineVat[i] = vat;
+                subtotal = Math.addExact(subtotal, net);
+                totalVat = Math.addExact(totalVat, vat);
+                totalDiscount = Math.addExact(totalDiscount, discount);
+
+                int slot = 0;
+                while (slot < rateCount && rates[slot] != rate) slot++;
+                if (slot == rateCount) {
+                    if (rateCount == rates.length) {
+                        rates = Arrays.copyOf(rates, rateCount * 2);
+                        bases = Arrays.copyOf(bases, rateCount * 2);
+                        vats = Arrays.copyOf(vats, rateCount * 2);
+                    }
+                    rates[slot] = rate;
+                    rateCount++;
+                }
+                bases[slot] += net;
+                vats[slot] += vat;
+            }
+        } catch (ArithmeticException e) {
+            throw new IllegalArgumentException("Montants de facture hors limites", e);
+        }
+
+        List<FneTotals.VatBreakdown> breakdown;
+        if (rateCount == 0) {
+            breakdown = Collections.emptyList();
+        } else {
+            breakdown = new ArrayList<>(rateCount);
+            for (int s = 0; s < rateCount; s++) {
+                breakdown.add(new FneTotals.VatBreakdown(rates[s], FneTaxCode.fromRate(rates[s]), bases[s], vats[s]));
+            }
+        }
+
+        long stamp = "cash".equalsIgnoreCase(paymentMethod) ? stampDutyCash : 0;
+        return new FneTotals(lineNet, lineVat, subtotal, totalVat, totalDiscount, stamp, breakdown);
+    }
+
+    /**
+     * Calcule et reporte les montants sur la facture : TVA et total de chaque ligne,
+     * puis totaux (le timbre est stocké dans otherTaxes), résumé TVA et version.
+     */
+    public FneTotals applyTo(InvoiceEntity invoice) {
+        List<InvoiceLineEntity> lines = invoice.getLines();
+        FneTotals totals = compute(lines, ENTITY_LINES, invoice.getPaymentMethod());
+
+        for (int i = 0; i < totals.lineCount(); i++) {
+            InvoiceLineEntity line = lines.get(i);
+            line.setVatAmount(totals.lineVat(i));
+            line.setLineTotal(totals.lineTotal(i));
+        }
+
+        invoice.setSubtotal(totals.subtotal());
+        invoice.setTotalVat(totals.totalVat());
+        invoice.setTotalDiscount(totals.totalDiscount());
+        invoice.setOtherTaxes(totals.stampDuty());
+        invoice.setTotalAmount(totals.totalAmount());
+        invoice.setTotalToPay(totals.totalToPay());
+        invoice.setVatBreakdown(totals.encodeBreakdown());
+        invoice.setTotalsVersion(VERSION);
+        return totals;
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /** Valeur entière à l'échelle donnée (ex. 12.345 à l'échelle 2 → 1235) ; null → 0 */
+    static long toUnits(BigDecimal value, int scale) {
+        if (value == null) return 0;
+        return value.setScale(scale, RoundingMode.HALF_UP).movePointRight(scale).longValueExact();
+    }
+
+    /** Division entière arrondie HALF_UP (à partir de zéro), divisor > 0 */
+    static long roundDiv(long dividend, long divisor) {
+        long half = divisor / 2;
+        return dividend >= 0
+                ? (dividend + half) / divisor
+                : -((-dividend + half) / divisor);
+    }
+}
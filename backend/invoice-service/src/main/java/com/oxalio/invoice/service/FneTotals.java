@@ -0,0 +1,184 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.model.FneTaxCode;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Résultat de FneTaxEngine. Tous les montants sont en centimes de FCFA (long) ;
+ * la conversion en BigDecimal (échelle 2, celle des colonnes) ne se fait qu'à la lecture.
+ *
+ * - totalAmount = HT + TVA (TTC, hors timbre)
+ * - totalToPay  = TTC + timbre de quittance
+ *
+ * Le résumé TVA est stocké sur la facture (colonne vat_breakdown) sous la forme compacte
+ * "taux:base:tva;taux:base:tva" (points de base et centimes), relu sans recalcul.
+ */
+public final class FneTotals {
+
+    /** Résumé TVA d'un taux : base HT et TVA cumulées */
+    public record VatBreakdown(int rateBasisPoints, FneTaxCode code, long base, long vat) {
+
+        /** Taux en % (échelle 2) */
+        public BigDecimal rate() {
+            return BigDecimal.valueOf(rateBasisPoints, 2);
+        }
+
+        public BigDecimal baseAmount() {
+            return amount(base);
+        }
+
+        public BigDecimal vatAmount() {
+            return amount(vat);
+        }
+
+        public InvoiceResponse.VatBreakdownDTO toDTO() {
+            return InvoiceResponse.VatBreakdownDTO.builder()
+                    .taxCode(code != null ? code.name() : null)
+                    .rate(rate())
+                    .base(baseAmount())
+                    .vat(vatAmount())
+                    .build();
+        }
+    }
+
+    private final long[] lineNet;
+    private final long[] lineVat;
+    private final long subtotal;
+    private final long totalVat;
+    private final long totalDiscount;
+    private final long stampDuty;
+    private final List<VatBreakdown> breakdown;
+
+    FneTotals(long[] lineNet, long[] lineVat, long subtotal, long totalVat, long totalDiscount,
+              long stampDuty, List<VatBreakdown> breakdown) {
+        this.lineNet = lineNet;
+        this.lineVat = lineVat;
+        this.subtotal = subtotal;
+        this.totalVat = totalVat;
+        this.totalDiscount = totalDiscount;
+        this.stampDuty = stampDuty;
+        this.breakdown = breakdown;
+    }
+
+    // ============================================================
+    // LIGNES
+    // ============================================================
+    public int lineCount() {
+        return lineNet.length;
+    }
+
+    /** Montant HT de la ligne i, remise déduite */
+    public BigDecimal lineNet(int i) {
+        return amount(lineNet[i]);
+    }
+
+    public BigDecimal lineVat(int i) {
+        return amount(lineVat[i]);
+    }
+
+    /** HT + TVA de la ligne i */
+    public BigDecimal lineTotal(int i) {
+        return amount(lineNet[i] + lineVat[i]);
+    }
+
+    // ============================================================
+    // TOTAUX
+    // ============================================================
+    public BigDecimal subtotal() {
+        return amount(subtotal);
+    }
+
+    public BigDecimal totalVat() {
+        return amount(totalVat);
+    }
+
+    public BigDecimal totalDiscount() {
+        return amount(totalDiscount);
+    }
+
+    public BigDecimal stampDuty() {
+        return amount(stampDuty);
+    }
+
+    public BigDecimal totalAmount() {
+        return amount(subtotal + totalVat);
+    }
+
+    public BigDecimal totalToPay() {
+        return amount(subtotal + totalVat + stampDuty);
+    }
+
+    /** Résumé TVA par taux, dans l'ordre d'apparition des lignes */
+    public List<VatBreakdown> breakdown() {
+        return breakdown;
+    }
+
+    /** Le timbre de quittance est la seule "autre taxe" portée par la facture */
+    public InvoiceResponse.TotalsDTO toTotalsDTO() {
+        return InvoiceResponse.TotalsDTO.builder()
+                .subtotal(subtotal())
+                .totalVat(totalVat())
+                .totalAmount(totalAmount())
+                .totalDiscount(totalDiscount())
+                .otherTaxes(stampDuty())
+                .totalToPay(totalToPay())
+                .vatBreakdown(breakdownDTOs(breakdown))
+                .build();
+    }
+
+    // ============================================================
+    // STOCKAGE DU RÉSUMÉ TVA
+    // ============================================================
+    public String encodeBreakdown() {
+        StringBuilder sb = new StringBuilder(breakdown.size() * 24);
+        for (VatBreakdown b : breakdown) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(b.rateBasisPoints()).append(':').append(b.base()).append(':').append(b.vat());
+        }
+        return sb.toString();
+    }
+
+    /** Inverse de encodeBreakdown ; null → liste vide */
+    public static List<VatBreakdown> decodeBreakdown(String encoded) {
+        if (encoded == null || encoded.isEmpty()) return Collections.emptyList();
+        List<VatBreakdown> result = new ArrayList<>(4);
+        int start = 0;
+        while (start < encoded.length()) {
+            int end = encoded.indexOf(';', start);
+            if (end < 0) end = encoded.length();
+            int c1 = encoded.indexOf(':', start);
+            int c2 = encoded.indexOf(':', c1 + 1);
+            if (c1 < 0 || c2 < 0 || c2 > end) {
+                throw new IllegalStateException("Résumé TVA illisible : " + encoded);
+            }
+            int rate = Integer.parseInt(encoded, start, c1, 10);
+            result.add(new VatBreakdown(rate, FneTaxCode.fromRate(rate),
+                    Long.parseLong(encoded, c1 + 1, c2, 10),
+                    Long.parseLong(encoded, c2 + 1, end, 10)));
+            start = end + 1;
+        }
+        return result;
+    }
+
+    /** Résumé stocké → DTO (null si la facture n'a pas de totaux figés) */
+    public static List<InvoiceResponse.VatBreakdownDTO> breakdownDTOs(String encoded) {
+        return encoded == null ? null : breakdownDTOs(decodeBreakdown(encoded));
+    }
+
+    private static List<InvoiceResponse.VatBreakdownDTO> breakdownDTOs(List<VatBreakdown> breakdown) {
+        List<InvoiceResponse.VatBreakdownDTO> dtos = new ArrayList<>(breakdown.size());
+        for (VatBreakdown b : breakdown) {
+            dtos.add(b.toDTO());
+        }
+        return dtos;
+    }
+
+    static BigDecimal amount(long cents) {
+        return BigDecimal.valueOf(cents, 2);
+    }
+}
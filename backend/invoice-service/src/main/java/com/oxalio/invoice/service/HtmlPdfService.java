@@ -6,6 +6,8 @@ import com.oxalio.invoice.dto.InvoiceResponse.InvoiceLineDTO;
 import com.oxalio.invoice.dto.InvoiceResponse.SellerDTO;
 import com.oxalio.invoice.dto.InvoiceResponse.BuyerDTO;
 import com.oxalio.invoice.dto.InvoiceResponse.TotalsDTO;
+import com.oxalio.invoice.dto.InvoiceResponse.VatBreakdownDTO;
+import com.oxalio.invoice.model.FneTaxCode;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
@@ -19,8 +21,6 @@ import java.io.*;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
 import java.text.DecimalFormat;
 import java.text.DecimalFormatSymbols;
 import java.time.Instant;
@@ -39,6 +39,8 @@ import java.util.*;
  * - Total TTC = Total HT + TVA
  * - Timbre = 100 FCFA si paiement cash
  * - Total à payer = Total TTC + Timbre
+ *
+ * Les montants viennent de FneTaxEngine (mêmes règles que la facture enregistrée).
  */
 @Service
 public class HtmlPdfService {
@@ -46,8 +48,13 @@ public class HtmlPdfService {
     private static final Logger log = LoggerFactory.getLogger(HtmlPdfService.class);
 
     private static final String TEMPLATE_PATH = "templates/invoice-template.html";
-    private static final String FNE_STICKER_PATH = "static/fne-logo.png";
-    private static final String DEFAULT_LOGO_PATH = "static/default-logo.png";
+    /** Document de préchauffage : mêmes polices et images que le template */
+    private static final String WARM_UP_HTML = "<html><head><style>body { font-family: Arial, Helvetica, sans-serif; }"
+            + "</style></head><body><p><b>FNE</b> 0123456789</p>"
+            + "<img src=\"" + PdfResourceResolver.DEFAULT_LOGO + "\"/><img src=\"" + PdfResourceResolver.FNE_STICKER
+            + "\"/></body></html>";
+    /** À incrémenter quand le rendu change sans que le template change (formats, calculs) */
+    private static final int RENDER_REVISION = 1;
     
     private static final DateTimeFormatter DATE_TIME_FORMATTER = 
             DateTimeFormatter.ofPattern("dd/MM/yyyy HH:mm:ss")
@@ -62,36 +69,44 @@ public class HtmlPdfService {
         AMOUNT_FORMAT = new DecimalFormat("#,##0", symbols);
     }
 
-    @Value("${oxalio.seller-logos-path:seller-logos/}")
-    private String sellerLogosPath;
-    
     @Value("${oxalio.default-regime:TEE}")
     private String defaultRegime;
     
     @Value("${oxalio.default-tax-center:838 Impôts de Bouake i}")
     private String defaultTaxCenter;
 
-    private String templateHtml;
-    private String fneStickerBase64;
-    private String defaultLogoBase64;
+    private final FneTaxEngine fneTaxEngine;
+    private final PdfResourceResolver resources;
+
+    private HtmlTemplate<Placeholder> template;
+    /** Empreinte du template, des images embarquées et des valeurs par défaut (cache des PDF) */
+    private String templateVersion;
+
+    public HtmlPdfService(FneTaxEngine fneTaxEngine, PdfResourceResolver resources) {
+        this.fneTaxEngine = fneTaxEngine;
+        this.resources = resources;
+    }
 
     @PostConstruct
     public void init() {
         log.info("🚀 Initialisation HtmlPdfService...");
-        loadTemplate();
-        loadFneSticker();
-        loadDefaultLogo();
+        String templateSource = loadTemplate();
+        templateVersion = InvoiceQrService.sha256Hex((RENDER_REVISION + "\n" + defaultRegime + "\n"
+                + defaultTaxCenter + "\n" + resources.version() + "\n" + templateSource)
+                .getBytes(StandardCharsets.UTF_8));
         log.info("✅ HtmlPdfService initialisé avec succès");
     }
 
-    private void loadTemplate() {
+    private String loadTemplate() {
         try {
             Resource resource = new ClassPathResource(TEMPLATE_PATH);
             if (resource.exists()) {
                 try (InputStream is = resource.getInputStream()) {
-                    templateHtml = new String(is.readAllBytes(), StandardCharsets.UTF_8);
-                    log.info("📄 Template HTML chargé ({} caractères)", templateHtml.length());
-                    return;
+                    String html = new String(is.readAllBytes(), StandardCharsets.UTF_8);
+                    template = HtmlTemplate.compile(html, Placeholder.class);
+                    log.info("📄 Template HTML chargé ({} caractères, {} emplacements)",
+                            html.length(), template.slotCount());
+                    return html;
                 }
             }
         } catch (IOException e) {
@@ -99,37 +114,23 @@ public class HtmlPdfService {
         }
         
         log.warn("⚠️ Template non trouvé: {} - utilisation du template par défaut", TEMPLATE_PATH);
-        templateHtml = getDefaultTemplate();
-    }
-
-    private void loadFneSticker() {
-        try {
-            Resource resource = new ClassPathResource(FNE_STICKER_PATH);
-            if (resource.exists()) {
-                fneStickerBase64 = encodeResourceToBase64(resource, "image/png");
-                log.info("🏷️ Sticker FNE chargé");
-                return;
-            }
-        } catch (IOException e) {
-            log.warn("⚠️ Erreur chargement sticker FNE: {}", e.getMessage());
-        }
-        
-        log.warn("⚠️ Sticker FNE non trouvé - utilisation placeholder");
-        fneStickerBase64 = createPlaceholderImage();
+        String html = getDefaultTemplate();
+        template = HtmlTemplate.compile(html, Placeholder.class);
+        return html;
     }
 
-    private void loadDefaultLogo() {
+    /**
+     * Rendu à blanc : parseur CSS, polices de base (Helvetica, gras compris) et chemin
+     * des images partagées prêts avant la première facture (lancé par PdfRenderService au démarrage).
+     */
+    public void warmUp() {
+        long start = System.nanoTime();
         try {
-            Resource resource = new ClassPathResource(DEFAULT_LOGO_PATH);
-            if (resource.exists()) {
-                defaultLogoBase64 = encodeResourceToBase64(resource, "image/png");
-                return;
-            }
-        } catch (IOException e) {
-            log.warn("⚠️ Erreur chargement logo par défaut: {}", e.getMessage());
+            convertHtmlToPdf(WARM_UP_HTML);
+            log.info("🔥 Moteur PDF préchauffé en {} ms", (System.nanoTime() - start) / 1_000_000);
+        } catch (Exception e) {
+            log.warn("⚠️ Préchauffage du moteur PDF impossible: {}", e.getMessage());
         }
-        
-        defaultLogoBase64 = createPlaceholderImage();
     }
 
     /**
@@ -147,165 +148,94 @@ public class HtmlPdfService {
         }
     }
 
-    private String buildHtml(InvoiceResponse invoice) {
-        String html = templateHtml;
-        
+    /** HTML de la facture, en une passe sur le template précompilé */
+    String buildHtml(InvoiceResponse invoice) {
         SellerDTO seller = invoice.getSeller();
         BuyerDTO buyer = invoice.getBuyer();
         
         // ════════════════════════════════════════════════════════════════
-        // RECALCULER LES TOTAUX COMME FNE
+        // TOTAUX FNE : figés à l'écriture, recalculés seulement s'ils manquent
         // ════════════════════════════════════════════════════════════════
-        CalculatedTotals totals = calculateTotalsLikeFne(invoice);
+        TotalsDTO totals = totalsOf(invoice);
+
+        EnumMap<Placeholder, CharSequence> v = new EnumMap<>(Placeholder.class);
         
         // INFORMATIONS VENDEUR (HEADER)
-        html = html.replace("{{SELLER_COMPANY_NAME}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getCompanyName() : null)));
-        html = html.replace("{{SELLER_NCC}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getTaxId() : null)));
-        html = html.replace("{{SELLER_REGIME}}", 
-                escapeHtml(getSellerRegime(seller)));
-        html = html.replace("{{SELLER_TAX_CENTER}}", 
-                escapeHtml(getSellerTaxCenter(seller)));
+        v.put(Placeholder.SELLER_COMPANY_NAME, escapeHtml(nullSafe(seller != null ? seller.getCompanyName() : null)));
+        v.put(Placeholder.SELLER_NCC, escapeHtml(nullSafe(seller != null ? seller.getTaxId() : null)));
+        v.put(Placeholder.SELLER_REGIME, escapeHtml(getSellerRegime(seller)));
+        v.put(Placeholder.SELLER_TAX_CENTER, escapeHtml(getSellerTaxCenter(seller)));
         
         // LOGO VENDEUR
-        html = html.replace("{{SELLER_LOGO_BASE64}}", 
-                getSellerLogoBase64(seller != null ? seller.getTaxId() : null));
+        v.put(Placeholder.SELLER_LOGO_BASE64, resources.sellerLogoUri(seller != null ? seller.getTaxId() : null));
         
         // DÉTAILS VENDEUR
-        html = html.replace("{{SELLER_RCCM}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getRccm() : null)));
-        html = html.replace("{{SELLER_BANK_REF}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getBankRef() : null)));
-        html = html.replace("{{SELLER_ESTABLISHMENT}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getEstablishment() : null, 
-                        seller != null ? seller.getCompanyName() : null)));
-        html = html.replace("{{SELLER_ADDRESS}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getAddress() : null)));
-        html = html.replace("{{SELLER_PHONE}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getPhone() : null)));
-        html = html.replace("{{SELLER_EMAIL}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getEmail() : null)));
-        html = html.replace("{{SELLER_NAME}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getSellerDisplayName() : null)));
-        html = html.replace("{{SELLER_POS_NAME}}", 
-                escapeHtml(nullSafe(seller != null ? seller.getPointOfSaleName() : null)));
+        v.put(Placeholder.SELLER_RCCM, escapeHtml(nullSafe(seller != null ? seller.getRccm() : null)));
+        v.put(Placeholder.SELLER_BANK_REF, escapeHtml(nullSafe(seller != null ? seller.getBankRef() : null)));
+        v.put(Placeholder.SELLER_ESTABLISHMENT, escapeHtml(nullSafe(seller != null ? seller.getEstablishment() : null,
+                seller != null ? seller.getCompanyName() : null)));
+        v.put(Placeholder.SELLER_ADDRESS, escapeHtml(nullSafe(seller != null ? seller.getAddress() : null)));
+        v.put(Placeholder.SELLER_PHONE, escapeHtml(nullSafe(seller != null ? seller.getPhone() : null)));
+        v.put(Placeholder.SELLER_EMAIL, escapeHtml(nullSafe(seller != null ? seller.getEmail() : null)));
+        v.put(Placeholder.SELLER_NAME, escapeHtml(nullSafe(seller != null ? seller.getSellerDisplayName() : null)));
+        v.put(Placeholder.SELLER_POS_NAME, escapeHtml(nullSafe(seller != null ? seller.getPointOfSaleName() : null)));
         
         // DATE ET PAIEMENT
-        html = html.replace("{{INVOICE_DATE_TIME}}", 
-                formatDateTime(invoice.getIssueDate()));
-        html = html.replace("{{PAYMENT_MODE}}", 
-                escapeHtml(translatePaymentMode(invoice.getPaymentMode())));
+        v.put(Placeholder.INVOICE_DATE_TIME, formatDateTime(invoice.getIssueDate()));
+        v.put(Placeholder.PAYMENT_MODE, escapeHtml(translatePaymentMode(invoice.getPaymentMode())));
         
         // MESSAGE COMMERCIAL
-        html = html.replace("{{COMMERCIAL_MESSAGE}}", 
-                escapeHtml(nullSafe(invoice.getNotes(), "Merci pour votre confiance")));
+        v.put(Placeholder.COMMERCIAL_MESSAGE, escapeHtml(nullSafe(invoice.getNotes(), "Merci pour votre confiance")));
         
         // RÉFÉRENCE FACTURE
-        html = html.replace("{{FNE_REFERENCE}}", 
-                escapeHtml(nullSafe(invoice.getFneReference())));
+        v.put(Placeholder.FNE_REFERENCE, escapeHtml(nullSafe(invoice.getFneReference())));
         
         // QR CODE
-        html = html.replace("{{QR_CODE_BASE64}}", 
-                formatBase64Image(invoice.getQrBase64(), "image/png"));
+        v.put(Placeholder.QR_CODE_BASE64, formatBase64Image(invoice.getQrBase64(), "image/png"));
         
         // STICKER FNE
-        html = html.replace("{{FNE_STICKER_BASE64}}", fneStickerBase64);
+        v.put(Placeholder.FNE_STICKER_BASE64, PdfResourceResolver.FNE_STICKER);
         
         // INFORMATIONS CLIENT
-        html = html.replace("{{BUYER_NAME}}", 
-                escapeHtml(nullSafe(buyer != null ? buyer.getName() : null)));
-        html = html.replace("{{BUYER_ADDRESS}}", 
-                escapeHtml(nullSafe(buyer != null ? buyer.getAddress() : null, 
-                        buyer != null ? buyer.getEmail() : null)));
-        html = html.replace("{{BUYER_NCC}}",
-                escapeHtml(nullSafe(buyer != null ? buyer.getTaxId() : null)));
+        v.put(Placeholder.BUYER_NAME, escapeHtml(nullSafe(buyer != null ? buyer.getName() : null)));
+        v.put(Placeholder.BUYER_ADDRESS, escapeHtml(nullSafe(buyer != null ? buyer.getAddress() : null,
+                buyer != null ? buyer.getEmail() : null)));
+        v.put(Placeholder.BUYER_NCC, escapeHtml(nullSafe(buyer != null ? buyer.getTaxId() : null)));
 
         // INFORMATIONS CLIENT - Régime optionnel (ligne entière)
         String buyerRegime = nullSafe(buyer != null ? buyer.getRegime() : null);
         if (!buyerRegime.isBlank()) {
-            html = html.replace("{{BUYER_REGIME_LINE}}",
+            v.put(Placeholder.BUYER_REGIME_LINE,
                     "<span class=\"label\">Régime d'imposition :</span> " + escapeHtml(buyerRegime) + "<br/>");
-        } else {
-            html = html.replace("{{BUYER_REGIME_LINE}}", "");
         }
         
         // LIGNES DE FACTURE (avec calculs HT corrects)
-        html = html.replace("{{INVOICE_LINES}}", buildInvoiceLines(invoice.getLines()));
+        v.put(Placeholder.INVOICE_LINES, buildInvoiceLines(invoice.getLines()));
         
         // TOTAUX (calculés comme FNE)
-        html = html.replace("{{TOTAL_HT}}", formatAmount(totals.totalHT));
-        html = html.replace("{{TOTAL_TVA}}", formatAmount(totals.totalTVA));
-        html = html.replace("{{TOTAL_TTC}}", formatAmount(totals.totalTTC));
-        html = html.replace("{{OTHER_TAXES}}", formatAmount(totals.otherTaxes));
-        html = html.replace("{{STAMP_TAX}}", formatAmount(totals.stampTax));
-        html = html.replace("{{TOTAL_TO_PAY}}", formatAmount(totals.totalToPay));
+        v.put(Placeholder.TOTAL_HT, formatAmount(totals.getSubtotal()));
+        v.put(Placeholder.TOTAL_TVA, formatAmount(totals.getTotalVat()));
+        v.put(Placeholder.TOTAL_TTC, formatAmount(totals.getTotalAmount()));
+        v.put(Placeholder.OTHER_TAXES, formatAmount(BigDecimal.ZERO)); // Pas d'autres taxes que le timbre
+        v.put(Placeholder.STAMP_TAX, formatAmount(totals.getOtherTaxes()));
+        v.put(Placeholder.TOTAL_TO_PAY, formatAmount(totals.getTotalToPay()));
         
         // RÉSUMÉ TVA
-        html = html.replace("{{TAX_SUMMARY_LINES}}", buildTaxSummary(invoice.getLines(), totals));
+        v.put(Placeholder.TAX_SUMMARY_LINES, buildTaxSummary(totals.getVatBreakdown()));
         
-        return html;
+        return template.render(v);
     }
 
     /**
-     * Calcule les totaux exactement comme FNE :
-     * - Montant HT = Prix Unitaire × Quantité (SANS TVA)
-     * - Total HT = Somme des montants HT
-     * - TVA = Total HT × 18%
-     * - Timbre = 100 si cash
+     * Totaux portés par la facture (stockés avec leur résumé TVA) ; à défaut, calcul FNE sur les lignes.
      */
-    private CalculatedTotals calculateTotalsLikeFne(InvoiceResponse invoice) {
-        CalculatedTotals result = new CalculatedTotals();
-        
-        BigDecimal totalHT = BigDecimal.ZERO;
-        BigDecimal totalTVA = BigDecimal.ZERO;
-        
-        if (invoice.getLines() != null) {
-            for (InvoiceLineDTO line : invoice.getLines()) {
-                // Montant HT = Prix Unitaire × Quantité
-                BigDecimal unitPrice = safe(line.getUnitPrice());
-                BigDecimal quantity = safe(line.getQuantity());
-                BigDecimal discount = safe(line.getDiscount());
-                BigDecimal vatRate = safe(line.getVatRate());
-                
-                // Calcul HT de la ligne
-                BigDecimal lineHT = unitPrice.multiply(quantity);
-                
-                // Appliquer remise si présente (en valeur, pas en pourcentage)
-                lineHT = lineHT.subtract(discount);
-                
-                totalHT = totalHT.add(lineHT);
-                
-                // TVA sur le HT
-                if (vatRate.compareTo(BigDecimal.ZERO) > 0) {
-                    BigDecimal lineTVA = lineHT.multiply(vatRate)
-                            .divide(BigDecimal.valueOf(100), 0, RoundingMode.HALF_UP);
-                    totalTVA = totalTVA.add(lineTVA);
-                }
-            }
-        }
-        
-        // Total TTC = HT + TVA
-        BigDecimal totalTTC = totalHT.add(totalTVA);
-        
-        // Timbre de quittance : 1000 FCFA si paiement cash
-        BigDecimal stampTax = BigDecimal.ZERO;
-        String paymentMode = invoice.getPaymentMode();
-        if (paymentMode != null && paymentMode.equalsIgnoreCase("CASH")) {
-            stampTax = BigDecimal.valueOf(1000);
+    private TotalsDTO totalsOf(InvoiceResponse invoice) {
+        TotalsDTO totals = invoice.getTotals();
+        if (totals != null && totals.getVatBreakdown() != null) {
+            return totals;
         }
-        
-        // Total à payer = TTC + Timbre
-        BigDecimal totalToPay = totalTTC.add(stampTax);
-        
-        result.totalHT = totalHT;
-        result.totalTVA = totalTVA;
-        result.totalTTC = totalTTC;
-        result.otherTaxes = BigDecimal.ZERO; // Pas d'autres taxes pour l'instant
-        result.stampTax = stampTax;
-        result.totalToPay = totalToPay;
-        
-        return result;
+        return fneTaxEngine.compute(invoice.getLines(), FneTaxEngine.RESPONSE_LINES, invoice.getPaymentMode())
+                .toTotalsDTO();
     }
 
     /**
@@ -346,11 +276,8 @@ public class HtmlPdfService {
             // Remise
             sb.append("<td>").append(formatDiscount(line.getDiscount())).append("</td>");
             
-            // Montant HT = Prix Unitaire × Quantité (SANS TVA)
-            BigDecimal montantHT = safe(line.getUnitPrice())
-                    .multiply(safe(line.getQuantity()))
-                    .subtract(safe(line.getDiscount()));
-            sb.append("<td class=\"right\">").append(formatAmount(montantHT)).append("</td>");
+            // Montant HT = Prix Unitaire × Quantité − Remise (SANS TVA)
+            sb.append("<td class=\"right\">").append(formatAmount(lineNet(line))).append("</td>");
             
             sb.append("</tr>");
             index++;
@@ -362,42 +289,18 @@ public class HtmlPdfService {
     /**
      * Construit le résumé TVA par catégorie.
      */
-    private String buildTaxSummary(List<InvoiceLineDTO> lines, CalculatedTotals totals) {
-        Map<BigDecimal, TaxSummaryItem> taxSummaries = new LinkedHashMap<>();
-        
-        if (lines != null) {
-            for (InvoiceLineDTO line : lines) {
-                BigDecimal vatRate = safe(line.getVatRate());
-                BigDecimal unitPrice = safe(line.getUnitPrice());
-                BigDecimal quantity = safe(line.getQuantity());
-                BigDecimal discount = safe(line.getDiscount());
-                
-                // Montant HT de la ligne
-                BigDecimal lineHT = unitPrice.multiply(quantity).subtract(discount);
-                
-                // TVA de la ligne
-                BigDecimal lineTVA = BigDecimal.ZERO;
-                if (vatRate.compareTo(BigDecimal.ZERO) > 0) {
-                    lineTVA = lineHT.multiply(vatRate)
-                            .divide(BigDecimal.valueOf(100), 0, RoundingMode.HALF_UP);
-                }
-                
-                taxSummaries.computeIfAbsent(vatRate, TaxSummaryItem::new)
-                        .addAmount(lineHT, lineTVA);
-            }
-        }
-        
+    private String buildTaxSummary(List<VatBreakdownDTO> breakdown) {
         StringBuilder sb = new StringBuilder();
         
-        if (taxSummaries.isEmpty()) {
+        if (breakdown == null || breakdown.isEmpty()) {
             sb.append("<tr><td colspan=\"4\" style=\"text-align:center;\">-</td></tr>");
         } else {
-            for (TaxSummaryItem summary : taxSummaries.values()) {
+            for (VatBreakdownDTO summary : breakdown) {
                 sb.append("<tr>");
-                sb.append("<td class=\"left\">").append(escapeHtml(summary.getCategoryName())).append("</td>");
-                sb.append("<td class=\"right\">").append(formatAmount(summary.getSubtotal())).append("</td>");
+                sb.append("<td class=\"left\">").append(escapeHtml(taxCategoryName(summary))).append("</td>");
+                sb.append("<td class=\"right\">").append(formatAmount(summary.getBase())).append("</td>");
                 sb.append("<td>").append(formatPercentage(summary.getRate())).append("</td>");
-                sb.append("<td class=\"right\">").append(formatAmount(summary.getTotalTax())).append("</td>");
+                sb.append("<td class=\"right\">").append(formatAmount(summary.getVat())).append("</td>");
                 sb.append("</tr>");
             }
         }
@@ -406,7 +309,7 @@ public class HtmlPdfService {
     }
 
     private byte[] convertHtmlToPdf(String html) throws DocumentException, IOException {
-        ITextRenderer renderer = new ITextRenderer();
+        ITextRenderer renderer = resources.newRenderer();
         renderer.setDocumentFromString(html);
         renderer.layout();
         
@@ -418,36 +321,17 @@ public class HtmlPdfService {
 
     // ==================== UTILITAIRES ====================
 
-    private String encodeResourceToBase64(Resource resource, String mimeType) throws IOException {
-        try (InputStream is = resource.getInputStream()) {
-            byte[] bytes = is.readAllBytes();
-            String base64 = Base64.getEncoder().encodeToString(bytes);
-            return "data:" + mimeType + ";base64," + base64;
-        }
-    }
-
-    private String getSellerLogoBase64(String taxId) {
-        if (taxId == null || taxId.isEmpty()) {
-            return defaultLogoBase64;
-        }
-        
-        try {
-            Path logoPath = Path.of(sellerLogosPath, taxId + ".png");
-            if (Files.exists(logoPath)) {
-                byte[] bytes = Files.readAllBytes(logoPath);
-                String base64 = Base64.getEncoder().encodeToString(bytes);
-                return "data:image/png;base64," + base64;
-            }
-        } catch (IOException e) {
-            log.warn("Impossible de charger le logo pour {}: {}", taxId, e.getMessage());
-        }
-        
-        return defaultLogoBase64;
+    /**
+     * Version du rendu pour un vendeur : template courant + empreinte du logo du vendeur (SellerLogoCache).
+     * Deux rendus de la même facture avec la même version produisent le même PDF.
+     */
+    public String renderVersion(String sellerTaxId) {
+        return templateVersion + ":" + resources.sellerLogoVersion(sellerTaxId);
     }
 
     private String formatBase64Image(String base64, String mimeType) {
         if (base64 == null || base64.isEmpty()) {
-            return createPlaceholderImage();
+            return PdfResourceResolver.PLACEHOLDER;
         }
         if (base64.startsWith("data:")) {
             return base64;
@@ -455,10 +339,6 @@ public class HtmlPdfService {
         return "data:" + mimeType + ";base64," + base64;
     }
 
-    private String createPlaceholderImage() {
-        return "data:image/png;base64,iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
-    }
-
     private String formatDateTime(Instant instant) {
         if (instant == null) return "-";
         return DATE_TIME_FORMATTER.format(instant);
@@ -494,6 +374,23 @@ public class HtmlPdfService {
         return rate.setScale(0, RoundingMode.HALF_UP).toString() + "%";
     }
 
+    private String taxCategoryName(VatBreakdownDTO summary) {
+        return summary.getTaxCode() != null
+                ? FneTaxCode.valueOf(summary.getTaxCode()).summaryLabel()
+                : "TVA sur HT " + summary.getRate() + "%";
+    }
+
+    /** Montant HT de la ligne (remise déduite) : total ligne − TVA, tels que stockés */
+    private static BigDecimal lineNet(InvoiceLineDTO line) {
+        if (line.getLineTotal() != null && line.getVatAmount() != null) {
+            return line.getLineTotal().subtract(line.getVatAmount());
+        }
+        BigDecimal unitPrice = line.getUnitPrice() != null ? line.getUnitPrice() : BigDecimal.ZERO;
+        BigDecimal quantity = line.getQuantity() != null ? line.getQuantity() : BigDecimal.ZERO;
+        BigDecimal discount = line.getDiscount() != null ? line.getDiscount() : BigDecimal.ZERO;
+        return unitPrice.multiply(quantity).subtract(discount);
+    }
+
     private String translatePaymentMode(String paymentMode) {
         if (paymentMode == null) return "Non spécifié";
         return switch (paymentMode.toUpperCase()) {
@@ -529,17 +426,28 @@ public class HtmlPdfService {
         return value != null && !value.isBlank() ? value : (defaultValue != null ? defaultValue : "");
     }
 
+    /** Échappement en une passe ; la chaîne d'origine si rien à échapper (cas courant) */
     private String escapeHtml(String text) {
         if (text == null) return "";
-        return text.replace("&", "&amp;")
-                   .replace("<", "&lt;")
-                   .replace(">", "&gt;")
-                   .replace("\"", "&quot;")
-                   .replace("'", "&#39;");
-    }
-
-    private static BigDecimal safe(BigDecimal v) {
-        return v == null ? BigDecimal.ZERO : v;
+        int i = 0;
+        while (i < text.length() && "&<>\"'".indexOf(text.charAt(i)) < 0) {
+            i++;
+        }
+        if (i == text.length()) return text;
+
+        StringBuilder sb = new StringBuilder(text.length() + 16).append(text, 0, i);
+        for (; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '&' -> sb.append("&amp;");
+                case '<' -> sb.append("&lt;");
+                case '>' -> sb.append("&gt;");
+                case '"' -> sb.append("&quot;");
+                case '\'' -> sb.append("&#39;");
+                default -> sb.append(c);
+            }
+        }
+        return sb.toString();
     }
 
     /**
@@ -602,48 +510,24 @@ public class HtmlPdfService {
 
     // ==================== CLASSES INTERNES ====================
 
-    public static class PdfGenerationException extends RuntimeException {
-        public PdfGenerationException(String message, Throwable cause) {
-            super(message, cause);
-        }
-    }
-
     /**
-     * Totaux calculés comme FNE.
+     * Emplacements {{NOM}} reconnus dans invoice-template.html.
+     * Les emplacements d'image (*_BASE64) reçoivent une URI : oxalio: (PdfResourceResolver) ou data URI (QR).
      */
-    private static class CalculatedTotals {
-        BigDecimal totalHT = BigDecimal.ZERO;
-        BigDecimal totalTVA = BigDecimal.ZERO;
-        BigDecimal totalTTC = BigDecimal.ZERO;
-        BigDecimal otherTaxes = BigDecimal.ZERO;
-        BigDecimal stampTax = BigDecimal.ZERO;
-        BigDecimal totalToPay = BigDecimal.ZERO;
+    public enum Placeholder {
+        SELLER_COMPANY_NAME, SELLER_NCC, SELLER_REGIME, SELLER_TAX_CENTER, SELLER_LOGO_BASE64,
+        SELLER_RCCM, SELLER_BANK_REF, SELLER_ESTABLISHMENT, SELLER_ADDRESS, SELLER_PHONE,
+        SELLER_EMAIL, SELLER_NAME, SELLER_POS_NAME,
+        INVOICE_DATE_TIME, PAYMENT_MODE, COMMERCIAL_MESSAGE, FNE_REFERENCE,
+        QR_CODE_BASE64, FNE_STICKER_BASE64,
+        BUYER_NAME, BUYER_ADDRESS, BUYER_NCC, BUYER_REGIME_LINE,
+        INVOICE_LINES, TOTAL_HT, TOTAL_TVA, TOTAL_TTC, OTHER_TAXES, STAMP_TAX, TOTAL_TO_PAY,
+        TAX_SUMMARY_LINES
     }
 
-    /**
-     * Item de résumé TVA par catégorie.
-     */
-    private static class TaxSummaryItem {
-        private final BigDecimal rate;
-        private BigDecimal subtotal = BigDecimal.ZERO;
-        private BigDecimal totalTax = BigDecimal.ZERO;
-
-        public TaxSummaryItem(BigDecimal rate) {
-            this.rate = rate != null ? rate : BigDecimal.ZERO;
-        }
-
-        public void addAmount(BigDecimal amount, BigDecimal taxAmount) {
-            this.subtotal = this.subtotal.add(amount != null ? amount : BigDecimal.ZERO);
-            this.totalTax = this.totalTax.add(taxAmount != null ? taxAmount : BigDecimal.ZERO);
-        }
-
-        public String getCategoryName() {
-            if (rate.compareTo(BigDecimal.ZERO) == 0) return "EXONÉRÉ";
-            return "TVA normal - TVA sur HT " + rate.setScale(2, RoundingMode.HALF_UP) + "% - A";
+    public static class PdfGenerationException extends RuntimeException {
+        public PdfGenerationException(String message, Throwable cause) {
+            super(message, cause);
         }
-
-        public BigDecimal getRate() { return rate; }
-        public BigDecimal getSubtotal() { return subtotal; }
-        public BigDecimal getTotalTax() { return totalTax; }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,107 @@
+package com.oxalio.invoice.service;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+
+/**
+ * Template HTML précompilé : segments littéraux et emplacements {{NOM}}, découpés une fois au chargement.
+ *
+ * Le rendu calcule la taille exacte du document puis écrit chaque segment et chaque valeur
+ * une seule fois dans un StringBuilder dimensionné : pas de copie intermédiaire du document
+ * (une par String.replace), même avec des images base64 de plusieurs kilo-octets.
+ *
+ * Les emplacements sont les constantes de l'enum K ; un {{NOM}} inconnu reste tel quel dans le texte.
+ * Immuable : partagé entre threads.
+ */
+public final class HtmlTemplate<K extends Enum<K>> {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+
+    private final String[] literals;   // slots.length + 1 segments
+    private final K[] slots;
+    private final int literalLength;
+
+    private HtmlTemplate(String[] literals, K[] slots) {
+        this.literals = literals;
+        this.slots = slots;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    public static <K extends Enum<K>> HtmlTemplate<K> compile(String html, Class<K> placeholders) {
+        List<String> literals = new ArrayList<>();
+        List<K> slots = new ArrayList<>();
+        StringBuilder literal = new StringBuilder();
+
+        int from = 0;
+        while (true) {
+            int open = html.indexOf(OPEN, from);
+            int close = open < 0 ? -1 : html.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                literal.append(html, from, html.length());
+                break;
+            }
+            K slot = slotOf(placeholders, html.substring(open + OPEN.length(), close));
+            if (slot == null) {
+                // Inconnu : conservé, on reprend juste après "{{"
+                literal.append(html, from, open + OPEN.length());
+                from = open + OPEN.length();
+                continue;
+            }
+            literal.append(html, from, open);
+            literals.add(literal.toString());
+            literal.setLength(0);
+            slots.add(slot);
+            from = close + CLOSE.length();
+        }
+        literals.add(literal.toString());
+
+        @SuppressWarnings("unchecked")
+        K[] slotArray = slots.toArray((K[]) Array.newInstance(placeholders, slots.size()));
+        return new HtmlTemplate<>(literals.toArray(String[]::new), slotArray);
+    }
+
+    /**
+     * Document complet ; une valeur absente est rendue vide.
+     */
+    public String render(EnumMap<K, ? extends CharSequence> values) {
+        int length = literalLength;
+        for (K slot : slots) {
+            CharSequence value = values.get(slot);
+            if (value != null) {
+                length += value.length();
+            }
+        }
+
+        StringBuilder out = new StringBuilder(length);
+        for (int i = 0; i < slots.length; i++) {
+            out.append(literals[i]);
+            CharSequence value = values.get(slots[i]);
+            if (value != null) {
+                out.append(value);
+            }
+        }
+        out.append(literals[slots.length]);
+        return out.toString();
+    }
+
+    /** Nombre d'emplacements (un même nom peut apparaître plusieurs fois) */
+    public int slotCount() {
+        return slots.length;
+    }
+
+    private static <K extends Enum<K>> K slotOf(Class<K> placeholders, String name) {
+        for (K constant : placeholders.getEnumConstants()) {
+            if (constant.name().equals(name)) {
+                return constant;
+            }
+        }
+        return null;
+    }
+}
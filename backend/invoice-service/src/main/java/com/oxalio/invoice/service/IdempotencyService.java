@@ -0,0 +1,75 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.security.TenantContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.function.Supplier;
+
+/**
+ * Support de l'en-tête Idempotency-Key (réessais des caisses sur réseau mobile instable).
+ *
+ * - la première requête d'une clé s'exécute ; sa réponse est gardée pendant le TTL
+ * - un rejeu renvoie la réponse gardée (en-tête Idempotent-Replayed: true), sans appel FNE
+ * - une requête concurrente de même clé attend la fin de la première au lieu de s'exécuter
+ * - même clé avec un corps différent → 422 ; première requête trop longue → 409
+ *
+ * Les clés sont propres au tenant et à l'opération. Une requête en échec n'est pas gardée :
+ * le client peut la rejouer avec la même clé. Réponses gardées par IdempotencyStore, en base
+ * par défaut : un réessai routé vers une autre instance est aussi rejoué.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdempotencyService {
+
+    public static final String HEADER = "Idempotency-Key";
+    public static final String REPLAYED_HEADER = "Idempotent-Replayed";
+
+    private static final int MAX_KEY_LENGTH = 255;
+
+    private final ObjectMapper objectMapper;
+    private final IdempotencyStore store;
+
+    /**
+     * Exécute {@code action} au plus une fois par clé.
+     *
+     * @param operation nom de l'opération (espace de clés)
+     * @param key       valeur de l'en-tête Idempotency-Key (null/vide = pas d'idempotence)
+     * @param request   corps de la requête, comparé d'un rejeu à l'autre
+     */
+    public <T> ResponseEntity<T> execute(String operation, String key, Object request,
+                                         Supplier<ResponseEntity<T>> action) {
+        if (key == null || key.isBlank()) {
+            return action.get();
+        }
+        if (key.length() > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException(HEADER + " ne peut excéder " + MAX_KEY_LENGTH + " caractères");
+        }
+
+        String storeKey = operation + '|' + TenantContext.getTenantId() + '|' + key;
+        IdempotencyStore.Outcome<T> outcome = store.execute(storeKey, fingerprint(request), action);
+        if (!outcome.replayed()) {
+            return outcome.response();
+        }
+        ResponseEntity<T> stored = outcome.response();
+        return ResponseEntity.status(stored.getStatusCode())
+                .headers(stored.getHeaders())
+                .header(REPLAYED_HEADER, "true")
+                .body(stored.getBody());
+    }
+
+    private String fingerprint(Object request) {
+        try {
+            byte[] body = objectMapper.writeValueAsBytes(request);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(body));
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalStateException("Empreinte de requête impossible", e);
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.oxalio.invoice.service;
+
+import org.springframework.http.ResponseEntity;
+
+import java.util.function.Supplier;
+
+/**
+ * Stockage des réponses Idempotency-Key (cf. IdempotencyService).
+ *
+ * Implémentations (oxalio.invoice.idempotency.store) :
+ * - jdbc      : table idempotency_keys (V32), partagée entre instances (JdbcIdempotencyStore, par défaut)
+ * - in-memory : mémoire de l'instance, une seule instance derrière le répartiteur (tests web)
+ */
+public interface IdempotencyStore {
+
+    /**
+     * Exécute {@code action} si la clé est libre (ou expirée) et garde sa réponse 2xx pendant le TTL ;
+     * sinon attend la réponse de la requête d'origine (au plus wait-timeout) et la renvoie.
+     *
+     * @param storeKey    opération, tenant et valeur de l'en-tête
+     * @param fingerprint empreinte du corps de la requête
+     * @throws com.oxalio.invoice.exception.IdempotencyConflictException 422 si l'empreinte diffère,
+     *         409 si la requête d'origine est toujours en cours au-delà de l'attente
+     */
+    <T> Outcome<T> execute(String storeKey, String fingerprint, Supplier<ResponseEntity<T>> action);
+
+    /** Réponse ; replayed = réponse gardée d'une requête précédente */
+    record Outcome<T>(ResponseEntity<T> response, boolean replayed) {
+    }
+}
@@ -0,0 +1,155 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.exception.IdempotencyConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Comparator;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Réponses Idempotency-Key en mémoire de l'instance (oxalio.invoice.idempotency.store=in-memory) :
+ * une seule instance seulement, un réessai routé vers une autre instance s'exécuterait à nouveau.
+ *
+ * Une requête concurrente de même clé attend la fin de la première (même issue, succès ou exception).
+ * Capacité bornée par max-entries : au-delà, les réponses les plus proches de l'expiration sont évincées.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.idempotency.store", havingValue = "in-memory")
+public class InMemoryIdempotencyStore implements IdempotencyStore {
+
+    private static final long SWEEP_INTERVAL_MS = 60_000L;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong nextSweep = new AtomicLong();
+
+    private final long ttlMs;
+    private final int maxEntries;
+    private final long waitTimeoutMs;
+
+    public InMemoryIdempotencyStore(@Value("${oxalio.invoice.idempotency.ttl:24h}") Duration ttl,
+                                    @Value("${oxalio.invoice.idempotency.max-entries:10000}") int maxEntries,
+                                    @Value("${oxalio.invoice.idempotency.wait-timeout:30s}") Duration waitTimeout) {
+        this.ttlMs = ttl.toMillis();
+        this.maxEntries = Math.max(1, maxEntries);
+        this.waitTimeoutMs = waitTimeout.toMillis();
+    }
+
+    @Override
+    public <T> Outcome<T> execute(String storeKey, String fingerprint, Supplier<ResponseEntity<T>> action) {
+        sweepIfDue();
+
+        while (true) {
+            Entry mine = new Entry(fingerprint);
+            Entry existing = entries.putIfAbsent(storeKey, mine);
+            if (existing == null) {
+                return new Outcome<>(runAndStore(storeKey, mine, action), false);
+            }
+            if (existing.isExpired(System.currentTimeMillis())) {
+                entries.remove(storeKey, existing);
+                continue;
+            }
+            if (!existing.fingerprint.equals(fingerprint)) {
+                throw new IdempotencyConflictException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        IdempotencyService.HEADER + " déjà utilisée pour une requête différente");
+            }
+            return new Outcome<>(await(existing), true);
+        }
+    }
+
+    // ============================================================
+    // EXÉCUTION / ATTENTE
+    // ============================================================
+    private <T> ResponseEntity<T> runAndStore(String storeKey, Entry entry, Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            entries.remove(storeKey, entry);
+            entry.response.completeExceptionally(e);
+            throw e;
+        }
+
+        if (response.getStatusCode().is2xxSuccessful()) {
+            entry.expiresAt = System.currentTimeMillis() + ttlMs;
+        } else {
+            entries.remove(storeKey, entry);
+        }
+        entry.response.complete(response);
+        return response;
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> await(Entry entry) {
+        try {
+            return (ResponseEntity<T>) entry.response.get(waitTimeoutMs, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            throw new IdempotencyConflictException(HttpStatus.CONFLICT,
+                    "Requête d'origine toujours en cours pour cette " + IdempotencyService.HEADER);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(HttpStatus.CONFLICT, "Attente interrompue");
+        } catch (ExecutionException e) {
+            // Même issue que la requête d'origine
+            if (e.getCause() instanceof RuntimeException re) throw re;
+            if (e.getCause() instanceof Error err) throw err;
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // ============================================================
+    // ÉVICTION
+    // ============================================================
+    /** Purge des entrées expirées au plus une fois par minute, ou dès que la capacité est atteinte */
+    private void sweepIfDue() {
+        long now = System.currentTimeMillis();
+        long due = nextSweep.get();
+        boolean full = entries.size() >= maxEntries;
+        if ((now < due && !full) || !nextSweep.compareAndSet(due, now + SWEEP_INTERVAL_MS)) {
+            return;
+        }
+
+        entries.values().removeIf(e -> e.isExpired(now));
+
+        int excess = entries.size() - maxEntries + 1;
+        if (excess > 0) {
+            // Capacité atteinte : on libère les réponses les plus proches de l'expiration
+            entries.entrySet().stream()
+                    .filter(e -> e.getValue().response.isDone())
+                    .sorted(Comparator.comparingLong(e -> e.getValue().expiresAt))
+                    .limit(excess)
+                    .toList()
+                    .forEach(e -> entries.remove(e.getKey(), e.getValue()));
+            log.warn("Idempotency store plein ({} clés max) : {} réponses évincées avant expiration",
+                    maxEntries, excess);
+        }
+    }
+
+    private static final class Entry {
+        final String fingerprint;
+        final CompletableFuture<ResponseEntity<?>> response = new CompletableFuture<>();
+        /** Long.MAX_VALUE tant que la requête d'origine est en cours */
+        volatile long expiresAt = Long.MAX_VALUE;
+
+        Entry(String fingerprint) {
+            this.fingerprint = fingerprint;
+        }
+
+        boolean isExpired(long now) {
+            return now >= expiresAt;
+        }
+    }
+}
@@ -0,0 +1,303 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.mapper.InvoiceMapper;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * Index inversé de trigrammes en mémoire : moteur de recherche des profils H2 (dev, mock) et des tests
+ * (oxalio.invoice.search.engine=in-memory, jamais par défaut : chaque instance charge toute la table).
+ * Reproduit la sémantique de PostgresInvoiceSearchEngine :
+ *
+ * - nom acheteur contenant le texte (insensible à la casse et aux accents), commençant par le texte
+ *   ou l'un de ses mots sous contains-min-length caractères
+ * - NCC et référence FNE commençant par le texte
+ * - téléphone client contenant les chiffres saisis (contains-min-length au moins)
+ * - en mode approché, nom dont la part de trigrammes du texte retrouvés atteint fuzzy-threshold
+ *
+ * Chargé au démarrage (lecture en flux), puis tenu à jour après commit (InvoiceSearchIndexListener).
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.search.engine", havingValue = "in-memory")
+public class InMemoryInvoiceSearchIndex implements InvoiceSearchEngine {
+
+    private static final int GRAM = 3;
+    private static final int LOAD_FETCH_SIZE = 1000;
+
+    private static final Comparator<Hit> RANKING = Comparator
+            .comparingDouble(Hit::score).reversed()
+            .thenComparing(h -> h.document().summary().getIssueDate(), Comparator.nullsLast(Comparator.reverseOrder()))
+            .thenComparing(h -> h.document().summary().getId(), Comparator.reverseOrder());
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceMapper invoiceMapper;
+    private final TransactionTemplate transactionTemplate;
+    private final double fuzzyThreshold;
+    private final int containsMinLength;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<Long, Document> documents = new HashMap<>();
+    /** trigramme → factures dont un champ recherché le contient */
+    private final Map<String, Set<Long>> postings = new HashMap<>();
+
+    public InMemoryInvoiceSearchIndex(InvoiceRepository invoiceRepository,
+                                      InvoiceMapper invoiceMapper,
+                                      TransactionTemplate transactionTemplate,
+                                      @Value("${oxalio.invoice.search.fuzzy-threshold:0.5}") double fuzzyThreshold,
+                                      @Value("${oxalio.invoice.search.contains-min-length:4}") int containsMinLength) {
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceMapper = invoiceMapper;
+        this.transactionTemplate = transactionTemplate;
+        this.fuzzyThreshold = fuzzyThreshold;
+        this.containsMinLength = containsMinLength;
+    }
+
+    // ============================================================
+    // CHARGEMENT INITIAL
+    // ============================================================
+    @EventListener(ApplicationReadyEvent.class)
+    public void load() {
+        Integer loaded = transactionTemplate.execute(tx -> {
+            try (Stream<InvoiceEntity> invoices = invoiceRepository.streamAll(null, LOAD_FETCH_SIZE)) {
+                int[] count = {0};
+                invoices.forEach(invoice -> {
+                    put(invoiceMapper.toSummary(invoice), invoice.getTenantId());
+                    count[0]++;
+                });
+                return count[0];
+            }
+        });
+        log.info("Index de recherche en mémoire : {} facture(s) chargée(s)", loaded);
+    }
+
+    // ============================================================
+    // MISE À JOUR (APRÈS COMMIT)
+    // ============================================================
+    @Override
+    public void indexed(InvoiceEntity invoice) {
+        afterCommit(() -> {
+            InvoiceSummary summary = invoiceMapper.toSummary(invoice);
+            if (summary.getId() != null) {
+                put(summary, invoice.getTenantId());
+            }
+        });
+    }
+
+    @Override
+    public void removed(Collection<Long> invoiceIds) {
+        List<Long> ids = List.copyOf(invoiceIds);
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                ids.forEach(this::removeLocked);
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    // ============================================================
+    // RECHERCHE
+    // ============================================================
+    @Override
+    public List<InvoiceSummary> search(Query query) {
+        String text = query.text() != null ? fold(query.text()) : null;
+        String digits = query.text() != null ? query.text().replaceAll("[^0-9]", "") : "";
+
+        lock.readLock().lock();
+        try {
+            List<Hit> hits = new ArrayList<>();
+            for (Long id : candidates(text, query.fuzzy())) {
+                Document doc = documents.get(id);
+                if (doc == null
+                        || !Objects.equals(query.tenantId(), doc.tenantId())
+                        || (query.amount() != null && !sameAmount(query.amount(), doc.summary()))) {
+                    continue;
+                }
+                double score = text == null ? 1.0 : score(doc, text, digits, query.fuzzy());
+                if (score > 0) {
+                    hits.add(new Hit(doc, score));
+                }
+            }
+            hits.sort(RANKING);
+            return hits.stream()
+                    .skip(query.offset())
+                    .limit(query.limit())
+                    .map(h -> h.document().summary())
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Factures partageant des trigrammes avec le texte : toutes en recherche approchée,
+     * celles qui les ont tous en recherche exacte. Texte trop court : tout l'index.
+     */
+    private Collection<Long> candidates(String text, boolean fuzzy) {
+        Set<String> grams = text != null ? grams(text) : Set.of();
+        if (grams.isEmpty()) {
+            return documents.keySet();
+        }
+        Set<Long> union = new HashSet<>();
+        Set<Long> intersection = null;
+        for (String gram : grams) {
+            Set<Long> ids = postings.getOrDefault(gram, Set.of());
+            union.addAll(ids);
+            if (intersection == null) {
+                intersection = new HashSet<>(ids);
+            } else {
+                intersection.retainAll(ids);
+            }
+        }
+        return fuzzy ? union : intersection;
+    }
+
+    private double score(Document doc, String text, String digits, boolean fuzzy) {
+        if (text.equals(doc.ncc()) || text.equals(doc.reference())) {
+            return 3.0;
+        }
+        if (startsWith(doc.ncc(), text) || startsWith(doc.reference(), text) || startsWith(doc.name(), text)) {
+            return 2.0;
+        }
+        if ((text.length() >= containsMinLength && doc.name() != null && doc.name().contains(text))
+                || (digits.length() >= containsMinLength && doc.phone() != null && doc.phone().contains(digits))) {
+            return 1.5;
+        }
+        if (fuzzy && doc.name() != null) {
+            double similarity = wordSimilarity(text, doc.nameGrams());
+            return similarity >= fuzzyThreshold ? similarity : 0;
+        }
+        return 0;
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private void put(InvoiceSummary summary, Long tenantId) {
+        String name = summary.getBuyerName() != null ? fold(summary.getBuyerName()) : null;
+        String phone = summary.getClientPhone() != null ? summary.getClientPhone().replaceAll("[^0-9]", "") : null;
+        String ncc = summary.getBuyerTaxId() != null ? fold(summary.getBuyerTaxId()) : null;
+        String reference = summary.getFneReference() != null ? fold(summary.getFneReference()) : null;
+
+        Set<String> grams = new LinkedHashSet<>();
+        Set<String> nameGrams = name != null ? grams(name) : Set.of();
+        grams.addAll(nameGrams);
+        if (phone != null) grams.addAll(grams(phone));
+        if (ncc != null) grams.addAll(grams(ncc));
+        if (reference != null) grams.addAll(grams(reference));
+
+        Document doc = new Document(tenantId, summary, name, phone, ncc, reference, nameGrams, grams);
+        lock.writeLock().lock();
+        try {
+            removeLocked(summary.getId());
+            documents.put(summary.getId(), doc);
+            for (String gram : grams) {
+                postings.computeIfAbsent(gram, g -> new HashSet<>()).add(summary.getId());
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void removeLocked(Long id) {
+        Document previous = documents.remove(id);
+        if (previous == null) {
+            return;
+        }
+        for (String gram : previous.grams()) {
+            Set<Long> ids = postings.get(gram);
+            if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                postings.remove(gram);
+            }
+        }
+    }
+
+    /** Part des trigrammes du texte présents dans le nom (équivalent de word_similarity) */
+    private static double wordSimilarity(String text, Set<String> nameGrams) {
+        Set<String> textGrams = grams(text);
+        if (textGrams.isEmpty()) {
+            return 0;
+        }
+        long found = textGrams.stream().filter(nameGrams::contains).count();
+        return (double) found / textGrams.size();
+    }
+
+    private static Set<String> grams(String value) {
+        Set<String> grams = new LinkedHashSet<>();
+        for (String word : value.split(" ")) {
+            for (int i = 0; i + GRAM <= word.length(); i++) {
+                grams.add(word.substring(i, i + GRAM));
+            }
+        }
+        return grams;
+    }
+
+    /** Minuscules, sans accents, séparateurs réduits à un espace */
+    static String fold(String value) {
+        String decomposed = Normalizer.normalize(value, Normalizer.Form.NFD).replaceAll("\\p{M}", "");
+        return decomposed.toLowerCase().replaceAll("[^a-z0-9]+", " ").trim();
+    }
+
+    private static boolean startsWith(String field, String text) {
+        if (field == null) {
+            return false;
+        }
+        if (field.startsWith(text)) {
+            return true;
+        }
+        // début d'un mot du nom ("yao" trouve "kouassi yao")
+        return field.contains(" " + text);
+    }
+
+    private static boolean sameAmount(BigDecimal amount, InvoiceSummary s) {
+        BigDecimal total = s.getTotalToPay() != null ? s.getTotalToPay() : s.getTotalAmount();
+        return total != null && total.compareTo(amount) == 0;
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            action.run();
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                action.run();
+            }
+        });
+    }
+
+    private record Document(Long tenantId, InvoiceSummary summary, String name, String phone, String ncc,
+                            String reference, Set<String> nameGrams, Set<String> grams) {
+    }
+
+    private record Hit(Document document, double score) {
+    }
+}
@@ -0,0 +1,295 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceArchiveEntryEntity;
+import com.oxalio.invoice.entity.InvoiceArchiveSegmentEntity;
+import com.oxalio.invoice.entity.InvoiceQrCodeEntity;
+import com.oxalio.invoice.repository.InvoiceArchiveEntryRepository;
+import com.oxalio.invoice.repository.InvoiceArchiveSegmentRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Archive froide des factures (V23) : segments JSON compressés + index par id, numéro
+ * et référence FNE (V29).
+ *
+ * Écriture par InvoiceArchiveJob ; lecture en repli par InvoiceService (facture absente
+ * des tables chaudes) et InvoiceQrService (QR d'une facture archivée).
+ * Une facture archivée est figée : elle n'est plus modifiable.
+ */
+@Slf4j
+@Component
+@RequiredArgsConstructor
+public class InvoiceArchive {
+
+    public static final String CODEC = "gzip+json";
+
+    private static final TypeReference<List<ArchivedInvoice>> SEGMENT_TYPE = new TypeReference<>() { };
+
+    private final InvoiceArchiveSegmentRepository segmentRepository;
+    private final InvoiceArchiveEntryRepository entryRepository;
+    private final ObjectMapper objectMapper;
+    private final EntityManager entityManager;
+
+    /**
+     * Facture archivée : réponse complète (lignes, totaux) et QR code d'origine.
+     */
+    public record ArchivedInvoice(Long tenantId,
+                                  InvoiceResponse invoice,
+                                  String qrSha256,
+                                  String qrContentType,
+                                  byte[] qrPng) {
+    }
+
+    // ============================================================
+    // ÉCRITURE
+    // ============================================================
+    /**
+     * Écrit un segment et ses entrées d'index, dans la transaction de l'appelant
+     * (qui supprime les factures des tables chaudes dans la même transaction).
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public InvoiceArchiveSegmentEntity write(List<ArchivedInvoice> invoices) {
+        if (invoices.isEmpty()) {
+            throw new IllegalArgumentException("Segment d'archive vide");
+        }
+        byte[] json = toJson(invoices);
+        byte[] payload = gzip(json);
+
+        Comparator<Instant> byDate = Comparator.naturalOrder();
+        List<Instant> dates = invoices.stream().map(a -> a.invoice().getIssueDate()).toList();
+
+        InvoiceArchiveSegmentEntity segment = segmentRepository.save(InvoiceArchiveSegmentEntity.builder()
+                .codec(CODEC)
+                .invoiceCount(invoices.size())
+                .firstIssueDate(dates.stream().min(byDate).orElseThrow())
+                .lastIssueDate(dates.stream().max(byDate).orElseThrow())
+                .rawSize(json.length)
+                .compressedSize(payload.length)
+                .payload(payload)
+                .createdAt(Instant.now())
+                .fneIndexed(true)
+                .build());
+
+        entryRepository.saveAll(invoices.stream()
+                .map(a -> InvoiceArchiveEntryEntity.builder()
+                        .invoiceId(a.invoice().getId())
+                        .invoiceNumber(a.invoice().getInvoiceNumber())
+                        .fneReference(a.invoice().getFneReference())
+                        .tenantId(a.tenantId())
+                        .issueDate(a.invoice().getIssueDate())
+                        .segmentId(segment.getId())
+                        .build())
+                .toList());
+        return segment;
+    }
+
+    // ============================================================
+    // LECTURE (REPLI)
+    // ============================================================
+    @Transactional(readOnly = true)
+    public Optional<InvoiceResponse> findById(Long invoiceId) {
+        return entryRepository.findById(invoiceId)
+                .flatMap(this::load)
+                .map(ArchivedInvoice::invoice);
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<InvoiceResponse> findByNumber(String invoiceNumber) {
+        return entryRepository.findByInvoiceNumber(invoiceNumber)
+                .flatMap(this::load)
+                .map(ArchivedInvoice::invoice);
+    }
+
+    /**
+     * Par référence FNE : index, puis parcours des segments antérieurs à V29 pas encore indexés
+     * (aucun une fois {@link #indexFneReferences()} passé sur chacun).
+     */
+    @Transactional(readOnly = true)
+    public Optional<InvoiceResponse> findByFneReference(String fneReference) {
+        Optional<InvoiceResponse> indexed = entryRepository.findByFneReference(fneReference)
+                .flatMap(this::load)
+                .map(ArchivedInvoice::invoice);
+        if (indexed.isPresent()) {
+            return indexed;
+        }
+        for (Long segmentId : segmentRepository.findIdsNotFneIndexed()) {
+            Optional<InvoiceResponse> found = segmentRepository.findById(segmentId)
+                    .flatMap(segment -> {
+                        List<ArchivedInvoice> invoices = decode(segment);
+                        entityManager.detach(segment);
+                        return invoices.stream()
+                                .map(ArchivedInvoice::invoice)
+                                .filter(invoice -> fneReference.equals(invoice.getFneReference()))
+                                .findFirst();
+                    });
+            if (found.isPresent()) {
+                return found;
+            }
+        }
+        return Optional.empty();
+    }
+
+    /**
+     * Plusieurs factures archivées : chaque segment concerné n'est décompressé qu'une fois.
+     *
+     * @return factures trouvées, par id
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, ArchivedInvoice> findAllById(Collection<Long> invoiceIds) {
+        Map<Long, List<Long>> idsBySegment = new HashMap<>();
+        for (InvoiceArchiveEntryEntity entry : entryRepository.findAllById(invoiceIds)) {
+            idsBySegment.computeIfAbsent(entry.getSegmentId(), s -> new ArrayList<>()).add(entry.getInvoiceId());
+        }
+        Map<Long, ArchivedInvoice> found = new HashMap<>();
+        idsBySegment.forEach((segmentId, ids) -> segmentRepository.findById(segmentId)
+                .ifPresent(segment -> {
+                    for (ArchivedInvoice a : decode(segment)) {
+                        if (ids.contains(a.invoice().getId())) {
+                            found.put(a.invoice().getId(), a);
+                        }
+                    }
+                }));
+        return found;
+    }
+
+    /**
+     * QR code d'une facture archivée, sous la forme servie par /invoices/{id}/qr.png (non persistée).
+     */
+    @Transactional(readOnly = true)
+    public Optional<InvoiceQrCodeEntity> findQrCode(Long invoiceId) {
+        return entryRepository.findById(invoiceId)
+                .flatMap(this::load)
+                .filter(a -> a.qrPng() != null && a.qrSha256() != null)
+                .map(a -> InvoiceQrCodeEntity.builder()
+                        .invoiceId(invoiceId)
+                        .sha256(a.qrSha256())
+                        .contentType(a.qrContentType())
+                        .sizeBytes(a.qrPng().length)
+                        .png(a.qrPng())
+                        .build());
+    }
+
+    /**
+     * Parcourt les factures archivées du tenant émises dans [from, to) (tenant null = factures
+     * sans tenant), segment par segment : un seul segment décompressé en mémoire à la fois.
+     * Sert à la reconstruction des agrégats de TVA.
+     */
+    @Transactional(readOnly = true)
+    public void forEachIssuedBetween(Long tenantId, Instant from, Instant to, Consumer<ArchivedInvoice> action) {
+        forEachIssuedBetween(false, tenantId, from, to, action);
+    }
+
+    /** Idem, tous tenants confondus (reconstruction complète) */
+    @Transactional(readOnly = true)
+    public void forEachIssuedBetween(Instant from, Instant to, Consumer<ArchivedInvoice> action) {
+        forEachIssuedBetween(true, null, from, to, action);
+    }
+
+    private void forEachIssuedBetween(boolean allTenants, Long tenantId, Instant from, Instant to,
+                                      Consumer<ArchivedInvoice> action) {
+        for (Long segmentId : entryRepository.findSegmentIdsIssuedBetween(allTenants, tenantId, from, to)) {
+            segmentRepository.findById(segmentId).ifPresent(segment -> {
+                List<ArchivedInvoice> invoices = decode(segment);
+                entityManager.detach(segment);
+                for (ArchivedInvoice a : invoices) {
+                    Instant issueDate = a.invoice().getIssueDate();
+                    if ((allTenants || Objects.equals(tenantId, a.tenantId()))
+                            && !issueDate.isBefore(from) && issueDate.isBefore(to)) {
+                        action.accept(a);
+                    }
+                }
+            });
+        }
+    }
+
+    // ============================================================
+    // INDEX FNE DES SEGMENTS ANTÉRIEURS (V29)
+    // ============================================================
+    /**
+     * Renseigne les références FNE des entrées du plus ancien segment non indexé.
+     *
+     * @return false s'il ne reste aucun segment à indexer
+     */
+    @Transactional
+    public boolean indexFneReferences() {
+        List<Long> pending = segmentRepository.findIdsNotFneIndexed();
+        if (pending.isEmpty()) {
+            return false;
+        }
+        InvoiceArchiveSegmentEntity segment = segmentRepository.findById(pending.get(0)).orElseThrow();
+        Map<Long, String> references = new HashMap<>();
+        for (ArchivedInvoice a : decode(segment)) {
+            references.put(a.invoice().getId(), a.invoice().getFneReference());
+        }
+        for (InvoiceArchiveEntryEntity entry : entryRepository.findBySegmentId(segment.getId())) {
+            entry.setFneReference(references.get(entry.getInvoiceId()));
+        }
+        segment.setFneIndexed(true);
+        return true;
+    }
+
+    private Optional<ArchivedInvoice> load(InvoiceArchiveEntryEntity entry) {
+        return segmentRepository.findById(entry.getSegmentId())
+                .flatMap(segment -> decode(segment).stream()
+                        .filter(a -> entry.getInvoiceId().equals(a.invoice().getId()))
+                        .findFirst());
+    }
+
+    // ============================================================
+    // CODEC
+    // ============================================================
+    private List<ArchivedInvoice> decode(InvoiceArchiveSegmentEntity segment) {
+        if (!CODEC.equals(segment.getCodec())) {
+            throw new IllegalStateException("Codec d'archive inconnu : " + segment.getCodec());
+        }
+        try (InputStream in = new GZIPInputStream(new ByteArrayInputStream(segment.getPayload()))) {
+            return objectMapper.readValue(in, SEGMENT_TYPE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Segment d'archive " + segment.getId() + " illisible", e);
+        }
+    }
+
+    private byte[] toJson(List<ArchivedInvoice> invoices) {
+        try {
+            return objectMapper.writeValueAsBytes(invoices);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Sérialisation du segment d'archive impossible", e);
+        }
+    }
+
+    private static byte[] gzip(byte[] bytes) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(512, bytes.length / 4));
+        try (OutputStream out = new GZIPOutputStream(buffer, 8192)) {
+            out.write(bytes);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+}
@@ -0,0 +1,151 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceQrCodeEntity;
+import com.oxalio.invoice.repository.InvoiceQrCodeRepository;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.service.InvoiceArchive.ArchivedInvoice;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Archivage des factures certifiées (DGI ou FNE) plus anciennes que min-age.
+ *
+ * Par lots de batch-size, chacun dans sa propre transaction :
+ * 1. lecture des factures + lignes + QR
+ * 2. écriture d'un segment compressé et de son index (InvoiceArchive)
+ * 3. suppression des tables chaudes (lignes, QR et soumissions DGI suivent par cascade)
+ *
+ * Les tables invoices / invoice_lines ne gardent que les factures vivantes :
+ * le jeu de travail tient dans le cache de la base.
+ *
+ * Avant d'archiver, chaque passage indexe les références FNE des segments antérieurs à V29
+ * (un segment par transaction, au plus max-batches-per-run).
+ */
+@Slf4j
+@Service
+public class InvoiceArchiveJob {
+
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceQrCodeRepository qrCodeRepository;
+    private final InvoiceService invoiceService;
+    private final InvoiceArchive invoiceArchive;
+    private final InvoiceLookupCache lookupCache;
+    private final InvoiceSearchEngine searchEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final Duration minAge;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    public InvoiceArchiveJob(InvoiceRepository invoiceRepository,
+                             InvoiceQrCodeRepository qrCodeRepository,
+                             InvoiceService invoiceService,
+                             InvoiceArchive invoiceArchive,
+                             InvoiceLookupCache lookupCache,
+                             InvoiceSearchEngine searchEngine,
+                             TransactionTemplate transactionTemplate,
+                             @Value("${oxalio.invoice.archive.enabled:true}") boolean enabled,
+                             @Value("${oxalio.invoice.archive.min-age:365d}") Duration minAge,
+                             @Value("${oxalio.invoice.archive.batch-size:200}") int batchSize,
+                             @Value("${oxalio.invoice.archive.max-batches-per-run:100}") int maxBatchesPerRun) {
+        this.invoiceRepository = invoiceRepository;
+        this.qrCodeRepository = qrCodeRepository;
+        this.invoiceService = invoiceService;
+        this.invoiceArchive = invoiceArchive;
+        this.lookupCache = lookupCache;
+        this.searchEngine = searchEngine;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.minAge = minAge;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+    }
+
+    @Scheduled(cron = "${oxalio.invoice.archive.cron:0 30 3 * * *}")
+    public void scheduledRun() {
+        if (enabled) {
+            indexFneReferences();
+            archiveOlderThan(Instant.now().minus(minAge));
+        }
+    }
+
+    /**
+     * Indexe les références FNE des segments archivés avant V29.
+     *
+     * @return nombre de segments indexés
+     */
+    public int indexFneReferences() {
+        int indexed = 0;
+        while (indexed < maxBatchesPerRun && invoiceArchive.indexFneReferences()) {
+            indexed++;
+        }
+        if (indexed > 0) {
+            log.info("Références FNE de {} segment(s) d'archive indexées", indexed);
+        }
+        return indexed;
+    }
+
+    /**
+     * Archive les factures certifiées émises avant {@code before}, lot par lot.
+     *
+     * @return nombre de factures archivées
+     */
+    public int archiveOlderThan(Instant before) {
+        int archived = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            Integer count = transactionTemplate.execute(tx -> archiveBatch(before));
+            if (count == null || count == 0) {
+                break;
+            }
+            archived += count;
+        }
+        if (archived > 0) {
+            log.info("{} facture(s) certifiée(s) antérieure(s) au {} archivée(s)", archived, before);
+        }
+        return archived;
+    }
+
+    private int archiveBatch(Instant before) {
+        List<Long> ids = invoiceRepository.findArchivableIds(before, PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        List<InvoiceEntity> invoices = invoiceRepository.findWithLinesByIdIn(ids);
+        Map<Long, InvoiceQrCodeEntity> qrCodes = qrCodeRepository.findAllById(ids).stream()
+                .collect(Collectors.toMap(InvoiceQrCodeEntity::getInvoiceId, Function.identity()));
+
+        List<ArchivedInvoice> archived = invoices.stream()
+                .sorted(Comparator.comparing(InvoiceEntity::getId))
+                .map(invoice -> {
+                    InvoiceQrCodeEntity qr = qrCodes.get(invoice.getId());
+                    return new ArchivedInvoice(
+                            invoice.getTenantId(),
+                            invoiceService.toFullResponse(invoice),
+                            qr != null ? qr.getSha256() : null,
+                            qr != null ? qr.getContentType() : null,
+                            qr != null ? qr.getPng() : null);
+                })
+                .toList();
+        invoiceArchive.write(archived);
+
+        // Suppression en masse : lignes, QR et soumissions DGI suivent (ON DELETE CASCADE / trigger V22)
+        invoiceRepository.deleteAllByIdInBatch(ids);
+        ids.forEach(lookupCache::invalidate);
+        // Suppression en masse : pas de callback JPA pour l'index de recherche
+        searchEngine.removed(ids);
+        return ids.size();
+    }
+}
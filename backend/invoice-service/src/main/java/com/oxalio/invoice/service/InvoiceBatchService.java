@@ -0,0 +1,192 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceBatchResponse;
+import com.oxalio.invoice.dto.InvoiceBatchResponse.ItemResult;
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.model.InvoiceEventType;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Création de factures par lot (intégration ERP de fin de journée).
+ *
+ * - Validation Jakarta facture par facture (un élément invalide n'invalide pas le lot)
+ * - Persistance par tranches de {@code chunk-size} factures, une transaction par tranche :
+ *   les identifiants viennent des séquences pooled (V14), Hibernate regroupe donc les
+ *   INSERT invoices / invoice_lines en batchs JDBC (hibernate.jdbc.batch_size)
+ * - flush + clear à chaque tranche : le contexte de persistance reste borné
+ * - un événement INVOICE_CREATED par facture est écrit dans l'outbox, dans la même tranche,
+ *   et les agrégats TVA de la tranche sont mis à jour en un seul batch d'upserts au commit
+ * - si une tranche échoue en base, elle est rejouée facture par facture
+ *   pour isoler l'élément fautif et rapporter l'erreur au bon index
+ */
+@Slf4j
+@Service
+public class InvoiceBatchService {
+
+    private static final String CREATED = "CREATED";
+    private static final String FAILED = "FAILED";
+
+    private final InvoiceService invoiceService;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceOutboxService invoiceOutboxService;
+    private final VatRollupService vatRollupService;
+    private final EntityManager entityManager;
+    private final Validator validator;
+    private final TransactionTemplate tx;
+    private final int chunkSize;
+
+    public InvoiceBatchService(InvoiceService invoiceService,
+                               InvoiceRepository invoiceRepository,
+                               InvoiceOutboxService invoiceOutboxService,
+                               VatRollupService vatRollupService,
+                               EntityManager entityManager,
+                               Validator validator,
+                               PlatformTransactionManager transactionManager,
+                               @Value("${oxalio.invoice.batch.chunk-size:200}") int chunkSize) {
+        this.invoiceService = invoiceService;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceOutboxService = invoiceOutboxService;
+        this.vatRollupService = vatRollupService;
+        this.entityManager = entityManager;
+        this.validator = validator;
+        this.tx = new TransactionTemplate(transactionManager);
+        this.chunkSize = Math.max(1, chunkSize);
+    }
+
+    public InvoiceBatchResponse createBatch(List<InvoiceRequest> requests) {
+        ItemResult[] results = new ItemResult[requests.size()];
+
+        // 1. Validation individuelle
+        List<Integer> valid = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            Map<String, String> errors = validate(requests.get(i));
+            if (errors.isEmpty()) {
+                valid.add(i);
+            } else {
+                results[i] = failed(i, errors);
+            }
+        }
+
+        // 2. Persistance par tranches
+        for (int from = 0; from < valid.size(); from += chunkSize) {
+            List<Integer> chunk = valid.subList(from, Math.min(from + chunkSize, valid.size()));
+            try {
+                for (ItemResult r : persistChunk(requests, chunk)) {
+                    results[r.getIndex()] = r;
+                }
+            } catch (RuntimeException e) {
+                log.warn("Échec de la tranche [{}..{}] du lot, reprise unitaire : {}",
+                        chunk.get(0), chunk.get(chunk.size() - 1), e.getMessage());
+                for (Integer index : chunk) {
+                    results[index] = persistOne(requests, index);
+                }
+            }
+        }
+
+        int created = 0;
+        for (ItemResult r : results) {
+            if (CREATED.equals(r.getStatus())) created++;
+        }
+        log.info("Lot de factures traité : {} créées, {} en échec", created, results.length - created);
+
+        return InvoiceBatchResponse.builder()
+                .total(results.length)
+                .created(created)
+                .failed(results.length - created)
+                .results(List.of(results))
+                .build();
+    }
+
+    // ============================================================
+    // PERSISTANCE
+    // ============================================================
+    private List<ItemResult> persistChunk(List<InvoiceRequest> requests, List<Integer> chunk) {
+        return tx.execute(status -> {
+            List<InvoiceEntity> entities = new ArrayList<>(chunk.size());
+            for (Integer index : chunk) {
+                entities.add(invoiceService.buildNewInvoice(requests.get(index)));
+            }
+
+            invoiceRepository.saveAll(entities);
+            invoiceOutboxService.recordAll(InvoiceEventType.INVOICE_CREATED, entities);
+            vatRollupService.recordCreated(entities);
+            entityManager.flush();
+
+            List<ItemResult> chunkResults = new ArrayList<>(chunk.size());
+            for (int i = 0; i < chunk.size(); i++) {
+                chunkResults.add(created(chunk.get(i), entities.get(i)));
+            }
+            entityManager.clear();
+            return chunkResults;
+        });
+    }
+
+    private ItemResult persistOne(List<InvoiceRequest> requests, int index) {
+        try {
+            return tx.execute(status -> {
+                InvoiceEntity entity = invoiceRepository.save(invoiceService.buildNewInvoice(requests.get(index)));
+                invoiceOutboxService.record(InvoiceEventType.INVOICE_CREATED, entity);
+                vatRollupService.recordCreated(List.of(entity));
+                entityManager.flush();
+                entityManager.clear();
+                return created(index, entity);
+            });
+        } catch (RuntimeException e) {
+            log.warn("Facture {} du lot rejetée : {}", index, e.getMessage());
+            return failed(index, Map.of("error", rootMessage(e)));
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private Map<String, String> validate(InvoiceRequest request) {
+        if (request == null) {
+            return Map.of("invoice", "Facture absente");
+        }
+        Set<ConstraintViolation<InvoiceRequest>> violations = validator.validate(request);
+        Map<String, String> errors = new LinkedHashMap<>();
+        for (ConstraintViolation<InvoiceRequest> v : violations) {
+            errors.put(v.getPropertyPath().toString(), v.getMessage());
+        }
+        return errors;
+    }
+
+    private static ItemResult created(int index, InvoiceEntity entity) {
+        return ItemResult.builder()
+                .index(index)
+                .status(CREATED)
+                .id(entity.getId())
+                .invoiceNumber(entity.getInvoiceNumber())
+                .build();
+    }
+
+    private static ItemResult failed(int index, Map<String, String> errors) {
+        return ItemResult.builder()
+                .index(index)
+                .status(FAILED)
+                .errors(errors)
+                .build();
+    }
+
+    private static String rootMessage(Throwable t) {
+        Throwable r = t;
+        while (r.getCause() != null) r = r.getCause();
+        return r.getClass().getSimpleName() + ": " + (r.getMessage() == null ? "" : r.getMessage());
+    }
+}
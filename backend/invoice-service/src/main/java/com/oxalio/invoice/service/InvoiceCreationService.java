@@ -5,6 +5,7 @@ import com.oxalio.invoice.controller.dto.InvoiceCreateRequest;
 import com.oxalio.invoice.entity.InvoiceEntity;
 import com.oxalio.invoice.entity.InvoiceLineEntity;
 import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.security.TenantContext;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
@@ -17,6 +18,8 @@ import java.math.RoundingMode;
 public class InvoiceCreationService {
 
     private final InvoiceRepository invoiceRepository;
+    private final InvoiceNumberService invoiceNumberService;
+    private final FneTaxEngine fneTaxEngine;
 
     @Transactional
     public InvoiceEntity createInternalInvoice(InvoiceCreateRequest req) {
@@ -48,11 +51,7 @@ public class InvoiceCreationService {
         // Statut initial
         invoice.setStatus(com.oxalio.invoice.model.InvoiceStatus.RECEIVED);
 
-        // Lignes + calculs
-        BigDecimal subtotal = BigDecimal.ZERO;
-        BigDecimal totalVat = BigDecimal.ZERO;
-        BigDecimal totalDiscount = BigDecimal.ZERO;
-
+        // Lignes (valeurs ramenées à l'échelle des colonnes)
         for (InvoiceCreateRequest.Line l : req.getLines()) {
             InvoiceLineEntity line = new InvoiceLineEntity();
             line.setInvoice(invoice);
@@ -61,42 +60,21 @@ public class InvoiceCreationService {
             line.setUnit(l.getUnit());
             line.setDescription(l.getDescription());
 
-            BigDecimal qty = nvl(l.getQuantity()).setScale(3, RoundingMode.HALF_UP);
-            BigDecimal unitPrice = nvl(l.getUnitPrice()).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal vatRate = nvl(l.getVatRate()).setScale(2, RoundingMode.HALF_UP);
-            BigDecimal discount = nvl(l.getDiscount()).setScale(2, RoundingMode.HALF_UP);
-
-            line.setQuantity(qty);
-            line.setUnitPrice(unitPrice);
-            line.setVatRate(vatRate);
-            line.setDiscount(discount);
-
-            // base = qty * unitPrice - discount
-            BigDecimal base = qty.multiply(unitPrice).setScale(2, RoundingMode.HALF_UP)
-                    .subtract(discount).max(BigDecimal.ZERO);
-
-            BigDecimal vatAmount = base.multiply(vatRate)
-                    .divide(new BigDecimal("100"), 2, RoundingMode.HALF_UP);
-
-            BigDecimal lineTotal = base.add(vatAmount).setScale(2, RoundingMode.HALF_UP);
-
-            line.setVatAmount(vatAmount);
-            line.setLineTotal(lineTotal);
+            line.setQuantity(nvl(l.getQuantity()).setScale(3, RoundingMode.HALF_UP));
+            line.setUnitPrice(nvl(l.getUnitPrice()).setScale(2, RoundingMode.HALF_UP));
+            line.setVatRate(nvl(l.getVatRate()).setScale(2, RoundingMode.HALF_UP));
+            line.setDiscount(nvl(l.getDiscount()).setScale(2, RoundingMode.HALF_UP));
 
             invoice.getLines().add(line);
-
-            subtotal = subtotal.add(base);
-            totalVat = totalVat.add(vatAmount);
-            totalDiscount = totalDiscount.add(discount);
         }
 
-        invoice.setSubtotal(subtotal.setScale(2, RoundingMode.HALF_UP));
-        invoice.setTotalVat(totalVat.setScale(2, RoundingMode.HALF_UP));
-        invoice.setTotalAmount(subtotal.add(totalVat).setScale(2, RoundingMode.HALF_UP));
-        invoice.setTotalDiscount(totalDiscount.setScale(2, RoundingMode.HALF_UP));
+        // Calculs FNE (TVA des lignes, totaux, timbre)
+        fneTaxEngine.applyTo(invoice);
 
-        // Numéro interne si tu en as un (sinon laisse null et générer plus tard)
-        // invoice.setInvoiceNumber(...)
+        // Numéro interne (compteur par tenant / année / point de vente)
+        invoice.setTenantId(TenantContext.getTenantId());
+        invoice.setInvoiceNumber(invoiceNumberService.generateInvoiceNumber(
+                invoice.getTenantId(), req.getPointOfSale()));
 
         return invoiceRepository.save(invoice);
     }
@@ -0,0 +1,233 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Iterator;
+import java.util.Locale;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Export comptable des factures en flux (NDJSON ou CSV, gzip optionnel).
+ *
+ * - lecture par Stream JPA en lecture seule, fetch size réglable (curseur côté serveur)
+ * - chaque facture est écrite puis détachée : le contexte de persistance reste vide
+ * - écriture directe dans le flux de réponse via un tampon fixe
+ *
+ * La mémoire consommée ne dépend donc pas du nombre de factures exportées.
+ */
+@Slf4j
+@Service
+public class InvoiceExportService {
+
+    public enum Format {
+        NDJSON("application/x-ndjson", "ndjson"),
+        CSV("text/csv", "csv");
+
+        private final String contentType;
+        private final String extension;
+
+        Format(String contentType, String extension) {
+            this.contentType = contentType;
+            this.extension = extension;
+        }
+
+        public String contentType() {
+            return contentType;
+        }
+
+        public String extension() {
+            return extension;
+        }
+
+        /** "csv", "ndjson" (insensible à la casse) */
+        public static Format parse(String value) {
+            try {
+                return Format.valueOf(value.trim().toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException | NullPointerException e) {
+                throw new IllegalArgumentException("Format d'export non supporté : " + value + " (csv, ndjson)");
+            }
+        }
+    }
+
+    private static final String[] COLUMNS = {
+            "id", "invoiceNumber", "issueDate", "status", "invoiceType", "currency",
+            "sellerTaxId", "sellerCompanyName", "buyerTaxId", "buyerName", "paymentMethod",
+            "subtotal", "totalVat", "otherTaxes", "totalAmount", "totalToPay",
+            "fneReference", "dgiReference", "stickerId"
+    };
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final InvoiceRepository invoiceRepository;
+    private final EntityManager entityManager;
+    private final ObjectMapper objectMapper;
+    private final int fetchSize;
+
+    public InvoiceExportService(InvoiceRepository invoiceRepository,
+                                EntityManager entityManager,
+                                ObjectMapper objectMapper,
+                                @Value("${oxalio.invoice.export.fetch-size:500}") int fetchSize) {
+        this.invoiceRepository = invoiceRepository;
+        this.entityManager = entityManager;
+        this.objectMapper = objectMapper;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    /**
+     * Écrit l'export dans {@code out}. Le tenant est passé explicitement :
+     * l'écriture se fait hors du thread de la requête (TenantContext non disponible).
+     *
+     * @return nombre de factures exportées
+     */
+    @Transactional(readOnly = true)
+    public long export(Long tenantId, InvoiceListFilter filter, Format format, boolean gzip, OutputStream out)
+            throws IOException {
+
+        OutputStream target = gzip ? new GZIPOutputStream(out, BUFFER_SIZE) : out;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(target, StandardCharsets.UTF_8), BUFFER_SIZE);
+
+        long count = 0;
+        try (Stream<InvoiceEntity> stream = invoiceRepository.streamForExport(tenantId, filter, fetchSize)) {
+            RowWriter rows = format == Format.CSV ? new CsvRowWriter(writer) : new NdjsonRowWriter(writer);
+            rows.header();
+
+            Iterator<InvoiceEntity> it = stream.iterator();
+            while (it.hasNext()) {
+                InvoiceEntity invoice = it.next();
+                rows.write(invoice);
+                entityManager.detach(invoice);
+                count++;
+            }
+            rows.close();
+        }
+
+        writer.flush();
+        if (target instanceof GZIPOutputStream gz) {
+            gz.finish();
+        }
+        log.info("Export {} terminé : {} factures (tenant={})", format, count, tenantId);
+        return count;
+    }
+
+    // ============================================================
+    // ÉCRITURE PAR FORMAT
+    // ============================================================
+    private interface RowWriter {
+        default void header() throws IOException {}
+
+        void write(InvoiceEntity invoice) throws IOException;
+
+        default void close() throws IOException {}
+    }
+
+    private static Object[] values(InvoiceEntity i) {
+        return new Object[]{
+                i.getId(), i.getInvoiceNumber(), i.getIssueDate(), i.getStatus(), i.getInvoiceType(), i.getCurrency(),
+                i.getSellerTaxId(), i.getSellerCompanyName(), i.getBuyerTaxId(), i.getBuyerName(), i.getPaymentMethod(),
+                i.getSubtotal(), i.getTotalVat(), i.getOtherTaxes(), i.getTotalAmount(), i.getTotalToPay(),
+                i.getFneReference(), i.getDgiReference(), i.getStickerId()
+        };
+    }
+
+    /** Une facture = un objet JSON par ligne */
+    private final class NdjsonRowWriter implements RowWriter {
+        private final Writer writer;
+        private final JsonGenerator json;
+
+        NdjsonRowWriter(Writer writer) throws IOException {
+            this.writer = writer;
+            this.json = objectMapper.getFactory().createGenerator(writer);
+            this.json.disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+            this.json.disable(JsonGenerator.Feature.FLUSH_PASSED_TO_STREAM);
+            // Pas d'espace entre objets racine : le séparateur est le saut de ligne
+            this.json.setRootValueSeparator(null);
+        }
+
+        @Override
+        public void write(InvoiceEntity invoice) throws IOException {
+            Object[] v = values(invoice);
+            json.writeStartObject();
+            for (int c = 0; c < COLUMNS.length; c++) {
+                Object value = v[c];
+                if (value == null) {
+                    json.writeNullField(COLUMNS[c]);
+                } else if (value instanceof Long l) {
+                    json.writeNumberField(COLUMNS[c], l);
+                } else if (value instanceof BigDecimal d) {
+                    json.writeNumberField(COLUMNS[c], d);
+                } else {
+                    json.writeStringField(COLUMNS[c], value.toString());
+                }
+            }
+            json.writeEndObject();
+            json.flush();
+            writer.write('\n');
+        }
+
+        @Override
+        public void close() throws IOException {
+            json.close();
+        }
+    }
+
+    /** CSV RFC 4180 (séparateur virgule, guillemets doublés) */
+    private static final class CsvRowWriter implements RowWriter {
+        private final Writer writer;
+
+        CsvRowWriter(Writer writer) {
+            this.writer = writer;
+        }
+
+        @Override
+        public void header() throws IOException {
+            writeRow(COLUMNS);
+        }
+
+        @Override
+        public void write(InvoiceEntity invoice) throws IOException {
+            writeRow(values(invoice));
+        }
+
+        private void writeRow(Object[] values) throws IOException {
+            for (int c = 0; c < values.length; c++) {
+                if (c > 0) writer.write(',');
+                Object value = values[c];
+                if (value == null) continue;
+                String s = value instanceof BigDecimal d ? d.toPlainString() : value.toString();
+                if (needsQuoting(s)) {
+                    writer.write('"');
+                    writer.write(s.replace("\"", "\"\""));
+                    writer.write('"');
+                } else {
+                    writer.write(s);
+                }
+            }
+            writer.write("\r\n");
+        }
+
+        private static boolean needsQuoting(String s) {
+            for (int k = 0; k < s.length(); k++) {
+                char ch = s.charAt(k);
+                if (ch == ',' || ch == '"' || ch == '\n' || ch == '\r') return true;
+            }
+            return false;
+        }
+    }
+}
@@ -0,0 +1,284 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Cache local des lectures de facture par numéro, référence FNE et UUID FNE
+ * (écrans caisse : la même facture relue en boucle).
+ *
+ * - borné en taille (LRU par facture) et en durée (TTL)
+ * - une facture est indexée sous toutes ses clés : une seule copie, une seule invalidation
+ * - invalidé par id à chaque écriture (mise à jour, certification, signature FNE, avoir, suppression),
+ *   une première fois tout de suite puis après commit
+ * - un chargement concurrent d'une invalidation n'est pas mis en cache (compteur de génération)
+ * - métriques Micrometer standard cache.gets / cache.size / cache.evictions (name=invoice-lookup)
+ *   et oxalio.invoice.cache.hit.ratio
+ *
+ * Les réponses sont partagées entre appelants : elles ne doivent pas être modifiées.
+ */
+@Slf4j
+@Component
+public class InvoiceLookupCache {
+
+    public static final String CACHE_NAME = "invoice-lookup";
+
+    public enum KeyType {
+        NUMBER("n:"),
+        FNE_REFERENCE("r:"),
+        FNE_UUID("u:");
+
+        private final String prefix;
+
+        KeyType(String prefix) {
+            this.prefix = prefix;
+        }
+
+        String key(String value) {
+            return prefix + value;
+        }
+    }
+
+    private final int maxEntries;
+    private final long ttlNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** id facture → entrée, en ordre d'accès (LRU) */
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    /** clé préfixée (numéro, référence, UUID) → id facture */
+    private final Map<String, Long> index = new HashMap<>();
+    /** incrémenté à chaque invalidation */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public InvoiceLookupCache(MeterRegistry meterRegistry,
+                              @Value("${oxalio.invoice.cache.max-entries:10000}") int maxEntries,
+                              @Value("${oxalio.invoice.cache.ttl:10m}") Duration ttl) {
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlNanos = ttl.toNanos();
+        new Metrics(this).bindTo(meterRegistry);
+    }
+
+    // ============================================================
+    // LECTURE
+    // ============================================================
+    /**
+     * Facture en cache pour cette clé, sinon chargée par {@code loader} puis mise en cache.
+     * Le loader lève InvoiceNotFoundException si la facture n'existe pas (absence non mise en cache).
+     */
+    public InvoiceResponse get(KeyType type, String value, Supplier<InvoiceResponse> loader) {
+        if (ttlNanos <= 0) {
+            return loader.get();
+        }
+        String key = type.key(value);
+        InvoiceResponse cached = lookup(key);
+        if (cached != null) {
+            hits.increment();
+            return cached;
+        }
+        misses.increment();
+
+        long loadGeneration = generation.get();
+        InvoiceResponse loaded = loader.get();
+        put(loaded, loadGeneration);
+        return loaded;
+    }
+
+    private InvoiceResponse lookup(String key) {
+        lock.lock();
+        try {
+            Long id = index.get(key);
+            if (id == null) {
+                return null;
+            }
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                index.remove(key);
+                return null;
+            }
+            if (System.nanoTime() - entry.loadedAt > ttlNanos) {
+                removeLocked(id);
+                evictions.increment();
+                return null;
+            }
+            return entry.response;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void put(InvoiceResponse response, long loadGeneration) {
+        if (response == null || response.getId() == null) {
+            return;
+        }
+        lock.lock();
+        try {
+            // Invalidation pendant le chargement : la réponse est peut-être déjà périmée
+            if (generation.get() != loadGeneration) {
+                return;
+            }
+            removeLocked(response.getId());
+            Entry entry = new Entry(response, System.nanoTime(), keysOf(response));
+            entries.put(response.getId(), entry);
+            for (String key : entry.keys) {
+                index.put(key, response.getId());
+            }
+            puts.increment();
+
+            Iterator<Map.Entry<Long, Entry>> eldest = entries.entrySet().iterator();
+            while (entries.size() > maxEntries && eldest.hasNext()) {
+                Map.Entry<Long, Entry> e = eldest.next();
+                eldest.remove();
+                e.getValue().keys.forEach(index::remove);
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // INVALIDATION
+    // ============================================================
+    /**
+     * Retire la facture du cache, tout de suite et, dans une transaction, de nouveau après commit
+     * (une lecture concurrente a pu recharger l'état d'avant la modification).
+     */
+    public void invalidate(Long invoiceId) {
+        if (invoiceId == null) {
+            return;
+        }
+        evict(invoiceId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(invoiceId);
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.clear();
+            index.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(Long invoiceId) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            removeLocked(invoiceId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeLocked(Long invoiceId) {
+        Entry removed = entries.remove(invoiceId);
+        if (removed != null) {
+            removed.keys.forEach(index::remove);
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private static List<String> keysOf(InvoiceResponse r) {
+        List<String> keys = new ArrayList<>(3);
+        if (r.getInvoiceNumber() != null) keys.add(KeyType.NUMBER.key(r.getInvoiceNumber()));
+        if (r.getFneReference() != null) keys.add(KeyType.FNE_REFERENCE.key(r.getFneReference()));
+        if (r.getFneInvoiceId() != null) keys.add(KeyType.FNE_UUID.key(r.getFneInvoiceId()));
+        return keys;
+    }
+
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** Part des lectures servies par le cache depuis le démarrage */
+    public double hitRatio() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    private record Entry(InvoiceResponse response, long loadedAt, List<String> keys) {
+    }
+
+    /** Métriques au format des caches Spring/Caffeine (cache.gets{result=hit|miss}, cache.size…) */
+    private static final class Metrics extends CacheMeterBinder<InvoiceLookupCache> {
+
+        Metrics(InvoiceLookupCache cache) {
+            super(cache, CACHE_NAME, Tags.empty());
+        }
+
+        @Override
+        protected Long size() {
+            return (long) getCache().size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return getCache().hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return getCache().misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return getCache().evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return getCache().puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+            Gauge.builder("oxalio.invoice.cache.hit.ratio", getCache(), InvoiceLookupCache::hitRatio)
+                    .tag("cache", CACHE_NAME)
+                    .description("Part des lectures de facture servies par le cache local")
+                    .register(registry);
+        }
+    }
+}
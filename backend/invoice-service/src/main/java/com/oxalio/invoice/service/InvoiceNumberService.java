@@ -1,27 +1,192 @@
 package com.oxalio.invoice.service;
 
+import com.oxalio.invoice.entity.InvoiceNumberSequenceEntity;
+import com.oxalio.invoice.repository.InvoiceNumberSequenceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
 import java.time.Year;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
- * Service responsable de la numérotation annuelle des factures
- * Exemple : INV-2025-000001
- * À terme : remplacer AtomicInteger par une séquence DB transactionnelle
+ * Service responsable de la numérotation annuelle des factures,
+ * par tenant et par point de vente.
+ * Exemples : INV-2025-000001 (sans tenant ni point de vente), INV-T12-2025-000001,
+ * INV-T12-CAISSE1-2025-000001, INV-T0-CAISSE1-2025-000001 (point de vente sans tenant)
+ *
+ * Le segment tenant (T{id}) est toujours présent, sauf pour le compteur global historique
+ * (INV-AAAA-NNNNNN) : un code point de vente ("T1") ne peut donc jamais se lire comme un tenant,
+ * et deux compteurs distincts ne produisent jamais le même numéro.
+ *
+ * Allocation hi/lo :
+ * - la table invoice_number_sequences garde la borne haute de chaque compteur
+ * - chaque instance réserve un bloc de {@code block-size} numéros (transaction dédiée,
+ *   ligne verrouillée le temps de l'UPDATE) puis les distribue en mémoire sans I/O
+ * - aucun COUNT(*) ni verrou global : seuls les appels d'un même compteur
+ *   se sérialisent, et uniquement lors du renouvellement du bloc
+ *
+ * Les numéros restent uniques entre réplicas. En contrepartie, un redémarrage
+ * abandonne le reste du bloc en cours (trous possibles, jamais de doublons).
  */
+@Slf4j
 @Service
 public class InvoiceNumberService {
 
-    private final AtomicInteger counter = new AtomicInteger(0);
-    private int currentYear = Year.now().getValue();
+    /** Tenant "technique" quand aucun X-Tenant-ID n'est fourni */
+    static final long NO_TENANT = 0L;
+
+    private static final int MAX_POS_LENGTH = 16;
+    private static final int MAX_LEASE_ATTEMPTS = 3;
+
+    private final InvoiceNumberSequenceRepository sequenceRepository;
+    private final TransactionTemplate leaseTx;
+    private final int blockSize;
+
+    private final ConcurrentMap<SequenceKey, Allocator> allocators = new ConcurrentHashMap<>();
+
+    public InvoiceNumberService(InvoiceNumberSequenceRepository sequenceRepository,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${oxalio.invoice.numbering.block-size:50}") int blockSize) {
+        if (blockSize < 1) {
+            throw new IllegalArgumentException("oxalio.invoice.numbering.block-size doit être >= 1");
+        }
+        this.sequenceRepository = sequenceRepository;
+        this.blockSize = blockSize;
+
+        // Réservation indépendante de la transaction appelante :
+        // le bloc reste acquis même si la création de facture échoue.
+        this.leaseTx = new TransactionTemplate(transactionManager);
+        this.leaseTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+    }
+
+    /**
+     * Attribue le prochain numéro pour le compteur (tenant, année courante, point de vente).
+     *
+     * @param tenantId    tenant courant (null = pas de tenant)
+     * @param pointOfSale point de vente libre (ex: "Caisse 1"), normalisé en code
+     */
+    public String generateInvoiceNumber(Long tenantId, String pointOfSale) {
+        SequenceKey key = new SequenceKey(
+                tenantId != null ? tenantId : NO_TENANT,
+                Year.now().getValue(),
+                normalizePointOfSale(pointOfSale));
+
+        long value = allocators.computeIfAbsent(key, k -> new Allocator()).next(key);
+        return format(key, value);
+    }
+
+    // ============================================================
+    // RÉSERVATION D'UN BLOC (DB)
+    // ============================================================
+    private Block leaseBlock(SequenceKey key) {
+        for (int attempt = 1; ; attempt++) {
+            try {
+                Block block = leaseTx.execute(status -> {
+                    InvoiceNumberSequenceEntity seq = sequenceRepository
+                            .findForUpdate(key.tenantId(), key.year(), key.pointOfSale())
+                            .orElseGet(() -> InvoiceNumberSequenceEntity.builder()
+                                    .tenantId(key.tenantId())
+                                    .fiscalYear(key.year())
+                                    .pointOfSale(key.pointOfSale())
+                                    .nextValue(1L)
+                                    .build());
+
+                    long start = seq.getNextValue();
+                    seq.setNextValue(start + blockSize);
+                    sequenceRepository.saveAndFlush(seq);
+                    return new Block(start, start + blockSize);
+                });
+                log.debug("Bloc de numéros réservé {} : [{}, {})", key, block.first(), block.end());
+                return block;
+
+            } catch (DataIntegrityViolationException e) {
+                // Deux instances ont créé le compteur en même temps : on relit la ligne gagnante
+                if (attempt >= MAX_LEASE_ATTEMPTS) {
+                    throw e;
+                }
+                log.debug("Création concurrente du compteur {}, nouvelle tentative", key);
+            }
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    static String normalizePointOfSale(String pointOfSale) {
+        if (pointOfSale == null || pointOfSale.isBlank()) {
+            return "";
+        }
+        String ascii = Normalizer.normalize(pointOfSale, Normalizer.Form.NFD)
+                .replaceAll("\\p{M}", "")
+                .toUpperCase(Locale.ROOT)
+                .replaceAll("[^A-Z0-9]", "");
+        return ascii.length() > MAX_POS_LENGTH ? ascii.substring(0, MAX_POS_LENGTH) : ascii;
+    }
+
+    static String format(SequenceKey key, long value) {
+        StringBuilder sb = new StringBuilder(48).append("INV-");
+        if (key.tenantId() != NO_TENANT || !key.pointOfSale().isEmpty()) {
+            sb.append('T').append(key.tenantId()).append('-');
+        }
+        if (!key.pointOfSale().isEmpty()) {
+            sb.append(key.pointOfSale()).append('-');
+        }
+        sb.append(key.year()).append('-');
+
+        String digits = Long.toString(value);
+        for (int i = digits.length(); i < 6; i++) {
+            sb.append('0');
+        }
+        return sb.append(digits).toString();
+    }
+
+    record SequenceKey(long tenantId, int year, String pointOfSale) {}
+
+    /**
+     * Intervalle [first, end) réservé en base. Le curseur est partagé entre threads.
+     */
+    private record Block(long first, long end, AtomicLong cursor) {
+        Block(long first, long end) {
+            this(first, end, new AtomicLong(first));
+        }
+
+        static final Block EMPTY = new Block(0, 0);
+    }
+
+    /**
+     * Distribution en mémoire d'un compteur. Chemin nominal sans verrou
+     * (getAndIncrement) ; le verrou ne protège que le renouvellement du bloc.
+     */
+    private final class Allocator {
+        private final ReentrantLock refillLock = new ReentrantLock();
+        private volatile Block block = Block.EMPTY;
 
-    public synchronized String generateInvoiceNumber() {
-        int year = Year.now().getValue();
-        if (year != currentYear) {
-            counter.set(0); // reset chaque nouvelle année
-            currentYear = year;
+        long next(SequenceKey key) {
+            while (true) {
+                Block current = block;
+                long value = current.cursor().getAndIncrement();
+                if (value < current.end()) {
+                    return value;
+                }
+                refillLock.lock();
+                try {
+                    if (block == current) {
+                        block = leaseBlock(key);
+                    }
+                } finally {
+                    refillLock.unlock();
+                }
+            }
         }
-        int next = counter.incrementAndGet();
-        return String.format("INV-%d-%06d", year, next);
     }
 }
@@ -0,0 +1,86 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.dto.InvoiceEventPayload;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.OutboxEventEntity;
+import com.oxalio.invoice.model.InvoiceEventType;
+import com.oxalio.invoice.repository.OutboxEventRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Écriture des événements facture dans l'outbox (V20).
+ *
+ * Toujours appelé dans la transaction métier (MANDATORY) : l'événement est validé
+ * ou annulé avec la facture. La publication vers Kafka est faite par OutboxRelay.
+ */
+@Service
+@RequiredArgsConstructor
+public class InvoiceOutboxService {
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final ObjectMapper objectMapper;
+
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void record(InvoiceEventType type, InvoiceEntity invoice) {
+        outboxEventRepository.save(toEvent(type, invoice, Instant.now()));
+    }
+
+    /** Création par lot : un événement par facture, insérés en batch JDBC */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordAll(InvoiceEventType type, List<InvoiceEntity> invoices) {
+        Instant now = Instant.now();
+        List<OutboxEventEntity> events = new ArrayList<>(invoices.size());
+        for (InvoiceEntity invoice : invoices) {
+            events.add(toEvent(type, invoice, now));
+        }
+        outboxEventRepository.saveAll(events);
+    }
+
+    private OutboxEventEntity toEvent(InvoiceEventType type, InvoiceEntity invoice, Instant now) {
+        if (invoice.getId() == null) {
+            throw new IllegalStateException("Événement " + type + " sur une facture non persistée");
+        }
+        return OutboxEventEntity.builder()
+                .aggregateId(invoice.getId())
+                .tenantId(invoice.getTenantId())
+                .eventType(type)
+                .payload(toJson(payload(type, invoice, now)))
+                .createdAt(now)
+                .build();
+    }
+
+    private static InvoiceEventPayload payload(InvoiceEventType type, InvoiceEntity invoice, Instant now) {
+        return InvoiceEventPayload.builder()
+                .eventType(type)
+                .occurredAt(now)
+                .invoiceId(invoice.getId())
+                .tenantId(invoice.getTenantId())
+                .invoiceNumber(invoice.getInvoiceNumber())
+                .invoiceType(invoice.getInvoiceType())
+                .status(invoice.getStatus() != null ? invoice.getStatus().name() : null)
+                .currency(invoice.getCurrency())
+                .totalToPay(invoice.getTotalToPay())
+                .dgiReference(invoice.getDgiReference())
+                .stickerId(invoice.getStickerId())
+                .fneReference(invoice.getFneReference())
+                .fneInvoiceId(invoice.getFneInvoiceId())
+                .build();
+    }
+
+    private String toJson(InvoiceEventPayload payload) {
+        try {
+            return objectMapper.writeValueAsString(payload);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Sérialisation de l'événement facture impossible", e);
+        }
+    }
+}
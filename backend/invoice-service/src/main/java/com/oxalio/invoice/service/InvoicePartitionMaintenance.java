@@ -0,0 +1,98 @@
+package com.oxalio.invoice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.time.LocalDate;
+
+/**
+ * Création anticipée des partitions mensuelles de invoices / invoice_lines (PostgreSQL, V22).
+ *
+ * Appelle ensure_invoice_partitions() au démarrage puis chaque jour : le mois courant
+ * et les months-ahead suivants existent toujours avant qu'une facture n'y tombe
+ * (sinon elle irait dans la partition DEFAULT). Sans effet sur H2 (pas de partitionnement).
+ *
+ * Lectures par id (findById, findWithLinesById) : issue_date, clé de partition, est lue dans
+ * le registre invoice_numbers (V33) par sous-requête ; PostgreSQL élague à l'exécution et ne lit
+ * qu'une partition de invoices et de invoice_lines (cf. InvoiceRepositoryImpl). Restent par id
+ * seul, donc sur toutes les partitions : UPDATE/DELETE d'Hibernate et lignes chargées en lot
+ * (@BatchSize). Leur nombre reste borné : les factures certifiées quittent invoices après
+ * oxalio.invoice.archive.min-age (InvoiceArchiveJob), et les mois vidés peuvent être détachés.
+ */
+@Slf4j
+@Service
+public class InvoicePartitionMaintenance {
+
+    private final JdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final int monthsAhead;
+    private volatile Boolean partitioned;
+
+    public InvoicePartitionMaintenance(JdbcTemplate jdbcTemplate,
+                                       DataSource dataSource,
+                                       @Value("${oxalio.invoice.partitions.months-ahead:3}") int monthsAhead) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.monthsAhead = Math.max(1, monthsAhead);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onStartup() {
+        ensurePartitions();
+    }
+
+    /**
+     * Crée les partitions manquantes jusqu'au mois courant + months-ahead.
+     *
+     * @return nombre de partitions créées (0 hors PostgreSQL)
+     */
+    @Scheduled(cron = "${oxalio.invoice.partitions.maintenance-cron:0 15 2 * * *}")
+    public int ensurePartitions() {
+        if (!isPartitioned()) {
+            return 0;
+        }
+        try {
+            Integer created = jdbcTemplate.queryForObject(
+                    "SELECT ensure_invoice_partitions(?, ?)", Integer.class, LocalDate.now(), monthsAhead);
+            if (created != null && created > 0) {
+                log.info("{} partition(s) mensuelle(s) invoices / invoice_lines créée(s)", created);
+            }
+            return created != null ? created : 0;
+        } catch (DataAccessException e) {
+            log.error("Création des partitions de factures impossible : {}", e.getMessage());
+            return 0;
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private boolean isPartitioned() {
+        Boolean result = partitioned;
+        if (result == null) {
+            result = isPostgres();
+            partitioned = result;
+        }
+        return result;
+    }
+
+    private boolean isPostgres() {
+        try {
+            String product = JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+            return "PostgreSQL".equalsIgnoreCase(product);
+        } catch (MetaDataAccessException e) {
+            log.warn("Type de base inconnu, maintenance des partitions désactivée : {}", e.getMessage());
+            return false;
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceQrCodeEntity;
+import com.oxalio.invoice.repository.InvoiceQrCodeRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Optional;
+
+/**
+ * Stockage des QR codes de factures (PNG brut, table invoice_qr_codes).
+ *
+ * L'empreinte SHA-256 est recopiée dans invoices.qr_sha256 : les réponses JSON
+ * exposent une URL versionnée (qrUrl) sans jamais lire l'image.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class InvoiceQrService {
+
+    /** Nombre de caractères hex de l'empreinte utilisés comme version d'URL (?v=) */
+    public static final int VERSION_LENGTH = 16;
+
+    private final InvoiceQrCodeRepository qrCodeRepository;
+    private final InvoiceArchive invoiceArchive;
+
+    /**
+     * Enregistre (ou remplace) le QR de la facture. La facture doit être persistée.
+     */
+    @Transactional
+    public void store(InvoiceEntity invoice, byte[] png) {
+        if (invoice.getId() == null) {
+            throw new IllegalStateException("La facture doit être enregistrée avant son QR code");
+        }
+        String sha256 = sha256Hex(png);
+        if (sha256.equals(invoice.getQrSha256())) {
+            return;
+        }
+
+        InvoiceQrCodeEntity qr = qrCodeRepository.findById(invoice.getId())
+                .orElseGet(() -> InvoiceQrCodeEntity.builder().invoiceId(invoice.getId()).build());
+        qr.setSha256(sha256);
+        qr.setContentType(MediaType.IMAGE_PNG_VALUE);
+        qr.setSizeBytes(png.length);
+        qr.setPng(png);
+        qrCodeRepository.save(qr);
+
+        invoice.setQrSha256(sha256);
+    }
+
+    /**
+     * Variante pour les QR reçus en base64 (certification DGI), avec ou sans préfixe data:.
+     * Une valeur illisible est ignorée (journalisée) : la certification n'échoue pas pour le QR.
+     */
+    @Transactional
+    public void storeBase64(InvoiceEntity invoice, String base64) {
+        if (base64 == null || base64.isBlank()) {
+            return;
+        }
+        String payload = base64.startsWith("data:") ? base64.substring(base64.indexOf(',') + 1) : base64;
+        byte[] png;
+        try {
+            png = Base64.getMimeDecoder().decode(payload.getBytes(StandardCharsets.US_ASCII));
+        } catch (IllegalArgumentException e) {
+            log.warn("QR base64 illisible pour la facture {} : ignoré", invoice.getId());
+            return;
+        }
+        if (png.length > 0) {
+            store(invoice, png);
+        }
+    }
+
+    // Facture archivée : QR relu dans son segment d'archive (InvoiceArchive)
+    @Transactional(readOnly = true)
+    public Optional<String> findSha256(Long invoiceId) {
+        return qrCodeRepository.findSha256ByInvoiceId(invoiceId)
+                .or(() -> invoiceArchive.findQrCode(invoiceId).map(InvoiceQrCodeEntity::getSha256));
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<InvoiceQrCodeEntity> find(Long invoiceId) {
+        return qrCodeRepository.findById(invoiceId)
+                .or(() -> invoiceArchive.findQrCode(invoiceId));
+    }
+
+    /**
+     * QR en base64 pour le rendu PDF (null si absent).
+     */
+    @Transactional(readOnly = true)
+    public String loadBase64(Long invoiceId) {
+        return qrCodeRepository.findById(invoiceId)
+                .map(qr -> Base64.getEncoder().encodeToString(qr.getPng()))
+                .orElse(null);
+    }
+
+    /**
+     * URL versionnée du QR (immuable tant que l'empreinte ne change pas), null si pas de QR.
+     */
+    public static String qrUrl(Long invoiceId, String sha256) {
+        if (invoiceId == null || sha256 == null) {
+            return null;
+        }
+        return "/api/v1/invoices/" + invoiceId + "/qr.png?v=" + sha256.substring(0, VERSION_LENGTH);
+    }
+
+    static String sha256Hex(byte[] bytes) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 indisponible", e);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.InvoiceEntity;
+
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Moteur de la recherche support (nom acheteur, téléphone, NCC, référence FNE, montant).
+ *
+ * Implémentations (oxalio.invoice.search.engine) :
+ * - postgres  : index trigrammes GIN (V24), PostgresInvoiceSearchEngine (par défaut)
+ * - in-memory : index inversé de trigrammes tenu à jour par InvoiceSearchIndexListener (profils H2 dev et mock, tests)
+ */
+public interface InvoiceSearchEngine {
+
+    /**
+     * @param tenantId tenant courant ; null = factures sans tenant (tenant_id IS NULL), jamais tous les tenants
+     * @param text     texte saisi, normalisé par l'appelant (null = montant seul)
+     * @param amount   total à payer exact (null = pas de filtre)
+     * @param fuzzy    accepter les noms approchés (fautes de frappe)
+     * @param offset   première ligne
+     * @param limit    nombre maximum de lignes
+     */
+    record Query(Long tenantId, String text, BigDecimal amount, boolean fuzzy, int offset, int limit) {
+    }
+
+    /**
+     * Résultats du plus pertinent au moins pertinent, puis du plus récent au plus ancien.
+     */
+    List<InvoiceSummary> search(Query query);
+
+    /** Facture créée ou modifiée (sans effet pour un moteur adossé à la base) */
+    default void indexed(InvoiceEntity invoice) {
+    }
+
+    /** Factures supprimées ou archivées (sans effet pour un moteur adossé à la base) */
+    default void removed(Collection<Long> invoiceIds) {
+    }
+}
@@ -0,0 +1,34 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.InvoiceEntity;
+import jakarta.persistence.PostPersist;
+import jakarta.persistence.PostRemove;
+import jakarta.persistence.PostUpdate;
+import org.springframework.beans.factory.ObjectProvider;
+
+import java.util.List;
+
+/**
+ * Listener JPA de InvoiceEntity : répercute chaque écriture sur le moteur de recherche.
+ * Instancié par Hibernate via le conteneur Spring (injection du moteur).
+ * Les suppressions en masse (archivage) appellent InvoiceSearchEngine.removed directement.
+ */
+public class InvoiceSearchIndexListener {
+
+    private final ObjectProvider<InvoiceSearchEngine> searchEngine;
+
+    public InvoiceSearchIndexListener(ObjectProvider<InvoiceSearchEngine> searchEngine) {
+        this.searchEngine = searchEngine;
+    }
+
+    @PostPersist
+    @PostUpdate
+    void saved(InvoiceEntity invoice) {
+        searchEngine.ifAvailable(engine -> engine.indexed(invoice));
+    }
+
+    @PostRemove
+    void removed(InvoiceEntity invoice) {
+        searchEngine.ifAvailable(engine -> engine.removed(List.of(invoice.getId())));
+    }
+}
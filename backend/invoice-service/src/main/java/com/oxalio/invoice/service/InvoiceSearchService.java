@@ -0,0 +1,63 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceSearchResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.security.TenantContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * Recherche support des factures du tenant courant (obligatoire) : nom acheteur (partiel ou approché),
+ * téléphone client, NCC, référence FNE, montant. Pagination par numéro de page,
+ * bornée à max-results résultats (au-delà, affiner la recherche).
+ */
+@Service
+public class InvoiceSearchService {
+
+    /** Longueur minimale du texte : en dessous, aucun trigramme exploitable par l'index */
+    public static final int MIN_TEXT_LENGTH = 3;
+
+    private final InvoiceSearchEngine searchEngine;
+    private final int maxResults;
+
+    public InvoiceSearchService(InvoiceSearchEngine searchEngine,
+                                @Value("${oxalio.invoice.search.max-results:1000}") int maxResults) {
+        this.searchEngine = searchEngine;
+        this.maxResults = Math.max(1, maxResults);
+    }
+
+    @Transactional(readOnly = true)
+    public InvoiceSearchResponse search(String text, BigDecimal amount, boolean fuzzy, int page, int size) {
+        // Sans en-tête X-Tenant-ID : factures sans tenant seulement (cf. TenantContext)
+        Long tenantId = TenantContext.getTenantId();
+        String normalized = text == null ? null : text.trim().replaceAll("\\s+", " ");
+        if (normalized != null && normalized.isEmpty()) {
+            normalized = null;
+        }
+        if (normalized == null && amount == null) {
+            throw new IllegalArgumentException("Renseigner 'q' ou 'amount'");
+        }
+        if (normalized != null && normalized.length() < MIN_TEXT_LENGTH) {
+            throw new IllegalArgumentException("'q' doit contenir au moins " + MIN_TEXT_LENGTH + " caractères");
+        }
+        if ((long) (page + 1) * size > maxResults) {
+            throw new IllegalArgumentException("Au-delà de " + maxResults + " résultats : affiner la recherche");
+        }
+
+        // size + 1 : la ligne supplémentaire indique s'il reste une page
+        List<InvoiceSummary> rows = searchEngine.search(new InvoiceSearchEngine.Query(
+                tenantId, normalized, amount, fuzzy, page * size, size + 1));
+
+        boolean hasMore = rows.size() > size;
+        return InvoiceSearchResponse.builder()
+                .items(hasMore ? rows.subList(0, size) : rows)
+                .page(page)
+                .size(size)
+                .hasMore(hasMore)
+                .build();
+    }
+}
@@ -1,26 +1,43 @@
 package com.oxalio.invoice.service;
 
+import com.oxalio.invoice.client.FneStickerClient.FneInvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceCursor;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceMultiGetResponse;
+import com.oxalio.invoice.dto.InvoicePageResponse;
 import com.oxalio.invoice.dto.InvoiceRequest;
 import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
 import com.oxalio.invoice.entity.InvoiceEntity;
 import com.oxalio.invoice.entity.InvoiceLineEntity;
 import com.oxalio.invoice.exception.InvoiceNotFoundException;
+import com.oxalio.invoice.exception.InvoiceVersionRequiredException;
 import com.oxalio.invoice.integration.DgiClientMock;
 import com.oxalio.invoice.integration.DgiClientMock.DgiCertification;
 import com.oxalio.invoice.mapper.InvoiceMapper;
+import com.oxalio.invoice.model.InvoiceEventType;
 import com.oxalio.invoice.model.InvoiceStatus;
 import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.security.TenantContext;
 
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
 import java.time.Instant;
-import java.time.Year;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
 
 @Slf4j
 @Service
@@ -32,7 +49,15 @@ public class InvoiceService {
     private final QrCodeGenerator qrCodeGenerator;
     private final DgiClientMock dgiClientMock;
     private final SellerProfileService sellerProfileService;
-    private final HtmlPdfService htmlPdfService;
+    private final PdfRenderService pdfRenderService;
+    private final InvoiceNumberService invoiceNumberService;
+    private final InvoiceQrService invoiceQrService;
+    private final FneTaxEngine fneTaxEngine;
+    private final InvoiceOutboxService invoiceOutboxService;
+    private final InvoiceLookupCache lookupCache;
+    private final InvoiceArchive invoiceArchive;
+    private final VatRollupService vatRollupService;
+    private final RefundLedgerService refundLedgerService;
 
     // ============================================================
     // CREATE — FNE STRICT (TOTAUX CALCULÉS PAR LE BACKEND)
@@ -40,80 +65,175 @@ public class InvoiceService {
     @Transactional
     public InvoiceResponse createInvoice(InvoiceRequest request) {
 
+        InvoiceEntity saved = invoiceRepository.save(buildNewInvoice(request));
+        invoiceOutboxService.record(InvoiceEventType.INVOICE_CREATED, saved);
+        vatRollupService.recordCreated(List.of(saved));
+
+        InvoiceResponse resp = invoiceMapper.toResponse(saved);
+        resp.setLines(invoiceMapper.toLineResponseList(saved.getLines()));
+        return resp;
+    }
+
+    /**
+     * Construit une facture prête à persister (lignes, numéro, statut, totaux FNE),
+     * sans l'enregistrer. Partagé entre la création unitaire et la création par lot.
+     */
+    public InvoiceEntity buildNewInvoice(InvoiceRequest request) {
+
         // Conversion partielle → entité sans lignes
         InvoiceEntity entity = invoiceMapper.toEntity(request);
 
         // Création des lignes
         List<InvoiceLineEntity> lines = invoiceMapper.toLineEntityList(request.getLines());
-        lines.forEach(line -> {
-            line.setInvoice(entity);
-
-            BigDecimal base      = safe(line.getUnitPrice()).multiply(safe(line.getQuantity()));
-            BigDecimal discount  = safe(line.getDiscount());
-            BigDecimal vatRate   = safe(line.getVatRate());
-            BigDecimal vatAmount = (base.subtract(discount))
-                    .multiply(vatRate)
-                    .divide(BigDecimal.valueOf(100));
-
-            line.setVatAmount(vatAmount);
-            line.setLineTotal(base.subtract(discount).add(vatAmount));
-        });
+        lines.forEach(line -> line.setInvoice(entity));
         entity.setLines(lines);
 
-        // Numéro facture
-        entity.setInvoiceNumber(generateInvoiceNumber());
+        // Numéro facture (compteur par tenant / année / point de vente)
+        entity.setTenantId(TenantContext.getTenantId());
+        entity.setInvoiceNumber(invoiceNumberService.generateInvoiceNumber(
+                entity.getTenantId(), pointOfSaleOf(entity)));
         entity.setIssueDate(Instant.now());
         entity.setStatus(InvoiceStatus.RECEIVED);
         entity.setStickerId(generateStickerId());
 
-        // Calcul FNE automatique
-        computeTotalsFne(entity);
+        // Calcul FNE automatique (TVA des lignes + totaux)
+        fneTaxEngine.applyTo(entity);
 
-        // QR code
-        entity.setQrBase64(null);
+        // QR code : généré à la certification (InvoiceQrService)
+        entity.setQrSha256(null);
 
-        InvoiceEntity saved = invoiceRepository.save(entity);
-
-        InvoiceResponse resp = invoiceMapper.toResponse(saved);
-        resp.setLines(invoiceMapper.toLineResponseList(saved.getLines()));
-        return resp;
+        return entity;
     }
 
     // ============================================================
-    // GET ALL
+    // LIST (KEYSET)
     // ============================================================
+    /**
+     * Page de factures du tenant courant, de la plus récente à la plus ancienne.
+     * Lecture par projection (InvoiceSummary) : ni lignes ni QR chargés.
+     *
+     * @param cursor curseur renvoyé par la page précédente (null = première page)
+     */
     @Transactional(readOnly = true)
-    public List<InvoiceResponse> getAllInvoices() {
-        return invoiceMapper.toResponseList(invoiceRepository.findAll());
+    public InvoicePageResponse listInvoices(InvoiceListFilter filter, String cursor, int size) {
+        InvoiceCursor after = (cursor == null || cursor.isBlank()) ? null : InvoiceCursor.decode(cursor);
+
+        // size + 1 : la ligne supplémentaire indique s'il reste une page
+        List<InvoiceSummary> rows = invoiceRepository.findSummaries(
+                TenantContext.getTenantId(), filter, after, size + 1);
+
+        boolean hasMore = rows.size() > size;
+        List<InvoiceSummary> items = hasMore ? rows.subList(0, size) : rows;
+
+        String nextCursor = null;
+        if (hasMore) {
+            InvoiceSummary last = items.get(items.size() - 1);
+            nextCursor = new InvoiceCursor(last.getIssueDate(), last.getId()).encode();
+        }
+
+        return InvoicePageResponse.builder()
+                .items(items)
+                .nextCursor(nextCursor)
+                .hasMore(hasMore)
+                .size(size)
+                .build();
     }
 
     // ============================================================
     // GET BY ID
     // ============================================================
+    // Repli sur l'archive froide (InvoiceArchive) pour les factures certifiées anciennes
     @Transactional(readOnly = true)
     public InvoiceResponse getInvoiceById(Long id) {
-        InvoiceEntity entity = invoiceRepository.findById(id)
+        return invoiceRepository.findWithLinesById(id)
+                .map(this::toFullResponse)
+                .or(() -> invoiceArchive.findById(id))
                 .orElseThrow(() -> new InvoiceNotFoundException(id));
+    }
 
-        InvoiceResponse resp = invoiceMapper.toResponse(entity);
-        resp.setLines(invoiceMapper.toLineResponseList(entity.getLines()));
-        resp.setTotals(computeTotalsResponse(resp));
+    // ============================================================
+    // MULTI-GET
+    // ============================================================
+    // Deux requêtes quel que soit le nombre d'ids : factures, puis toutes leurs lignes
+    // (sans jointure, les colonnes de la facture ne sont pas répétées par ligne).
+    // Repli sur l'archive froide pour les ids restants, un décodage par segment.
+    @Transactional(readOnly = true)
+    public InvoiceMultiGetResponse getInvoices(List<Long> ids) {
+        Set<Long> requested = new LinkedHashSet<>(ids);
+
+        List<InvoiceEntity> entities = invoiceRepository.findAllById(requested);
+        Map<Long, List<InvoiceLineEntity>> linesByInvoice = new HashMap<>();
+        if (!entities.isEmpty()) {
+            List<Long> foundIds = entities.stream().map(InvoiceEntity::getId).toList();
+            for (InvoiceLineEntity line : invoiceRepository.findLinesByInvoiceIdIn(foundIds)) {
+                linesByInvoice.computeIfAbsent(line.getInvoice().getId(), k -> new ArrayList<>()).add(line);
+            }
+        }
 
-        return resp;
+        Map<Long, InvoiceResponse> byId = new HashMap<>();
+        for (InvoiceEntity entity : entities) {
+            InvoiceResponse resp = invoiceMapper.toHeaderResponse(entity);
+            resp.setLines(invoiceMapper.toLineResponseList(
+                    linesByInvoice.getOrDefault(entity.getId(), List.of())));
+            resp.setTotals(totalsOf(entity, resp));
+            byId.put(entity.getId(), resp);
+        }
+
+        if (byId.size() < requested.size()) {
+            List<Long> notHot = requested.stream().filter(id -> !byId.containsKey(id)).toList();
+            invoiceArchive.findAllById(notHot).forEach((id, archived) -> byId.put(id, archived.invoice()));
+        }
+
+        List<InvoiceResponse> items = new ArrayList<>(byId.size());
+        List<Long> missing = new ArrayList<>();
+        for (Long id : requested) {
+            InvoiceResponse resp = byId.get(id);
+            if (resp != null) {
+                items.add(resp);
+            } else {
+                missing.add(id);
+            }
+        }
+        return InvoiceMultiGetResponse.builder()
+                .items(items)
+                .missing(missing)
+                .build();
     }
 
     // ============================================================
-    // GET BY NUMBER
+    // GET BY NUMBER / FNE REFERENCE / FNE UUID (CACHE LOCAL)
     // ============================================================
-    @Transactional(readOnly = true)
+    // Pas de transaction englobante : un hit du cache ne prend pas de connexion,
+    // un miss lit facture + lignes en une requête (entity graph) puis mappe hors session.
+    // La réponse est partagée (InvoiceLookupCache) : ne pas la modifier.
+    // Par numéro et référence FNE, repli sur l'archive froide comme getInvoiceById.
     public InvoiceResponse getInvoiceByNumber(String invoiceNumber) {
-        InvoiceEntity entity = invoiceRepository.findByInvoiceNumber(invoiceNumber)
-                .orElseThrow(() -> new InvoiceNotFoundException("numéro", invoiceNumber));
+        return lookupCache.get(InvoiceLookupCache.KeyType.NUMBER, invoiceNumber, () ->
+                invoiceRepository.findWithLinesByInvoiceNumber(invoiceNumber)
+                        .map(this::toFullResponse)
+                        .or(() -> invoiceArchive.findByNumber(invoiceNumber))
+                        .orElseThrow(() -> new InvoiceNotFoundException("numéro", invoiceNumber)));
+    }
+
+    public InvoiceResponse getInvoiceByFneReference(String fneReference) {
+        return lookupCache.get(InvoiceLookupCache.KeyType.FNE_REFERENCE, fneReference, () ->
+                invoiceRepository.findWithLinesByFneReference(fneReference)
+                        .map(this::toFullResponse)
+                        .or(() -> invoiceArchive.findByFneReference(fneReference))
+                        .orElseThrow(() -> new InvoiceNotFoundException("référence FNE", fneReference)));
+    }
 
+    public InvoiceResponse getInvoiceByFneInvoiceId(String fneInvoiceId) {
+        return lookupCache.get(InvoiceLookupCache.KeyType.FNE_UUID, fneInvoiceId, () ->
+                toFullResponse(invoiceRepository.findWithLinesByFneInvoiceId(fneInvoiceId)
+                        .orElseThrow(() -> new InvoiceNotFoundException("UUID FNE", fneInvoiceId))));
+    }
+
+    /** Réponse complète (lignes, totaux) : lectures et archivage (InvoiceArchiveJob) */
+    InvoiceResponse toFullResponse(InvoiceEntity entity) {
         InvoiceResponse resp = invoiceMapper.toResponse(entity);
         resp.setLines(invoiceMapper.toLineResponseList(entity.getLines()));
-        resp.setTotals(computeTotalsResponse(resp));
-
+        resp.setTotals(totalsOf(entity, resp));
         return resp;
     }
 
@@ -123,55 +243,122 @@ public class InvoiceService {
     @Transactional
     public InvoiceResponse updateInvoice(Long id, InvoiceRequest request) {
 
-        InvoiceEntity entity = invoiceRepository.findById(id)
+        InvoiceEntity entity = invoiceRepository.findWithLinesById(id)
                 .orElseThrow(() -> new InvoiceNotFoundException(id));
 
+        // Version lue par le client obligatoire (428), périmée : modification concurrente (409)
+        if (request.getVersion() == null) {
+            throw new InvoiceVersionRequiredException(id);
+        }
+        if (!request.getVersion().equals(entity.getVersion())) {
+            throw new ObjectOptimisticLockingFailureException(InvoiceEntity.class, id);
+        }
+        lookupCache.invalidate(id);
+        VatRollupService.Contribution before = vatRollupService.contributionOf(entity);
+
         // apply patch
         invoiceMapper.updateEntityFromRequest(request, entity);
 
-        // reset lignes
-        entity.getLines().clear();
-        List<InvoiceLineEntity> newLines = invoiceMapper.toLineEntityList(request.getLines());
-        newLines.forEach(line -> {
-            line.setInvoice(entity);
-
-            BigDecimal base      = safe(line.getUnitPrice()).multiply(safe(line.getQuantity()));
-            BigDecimal discount  = safe(line.getDiscount());
-            BigDecimal vatRate   = safe(line.getVatRate());
-            BigDecimal vatAmount = (base.subtract(discount))
-                    .multiply(vatRate)
-                    .divide(BigDecimal.valueOf(100));
-
-            line.setVatAmount(vatAmount);
-            line.setLineTotal(base.subtract(discount).add(vatAmount));
-        });
-        entity.getLines().addAll(newLines);
+        // lignes : UPDATE / INSERT / DELETE des seules lignes modifiées
+        if (request.getLines() != null) {
+            reconcileLines(entity, request.getLines());
+        }
 
         // recalc totals
-        computeTotalsFne(entity);
+        fneTaxEngine.applyTo(entity);
 
         // regenerate QR
-        entity.setQrBase64(qrCodeGenerator.generateQRCodeBase64(
+        invoiceQrService.store(entity, qrCodeGenerator.generateQrCode(
                 buildQRContent(entity), 300, 300));
 
-        InvoiceEntity updated = invoiceRepository.save(entity);
+        // flush : conflit de version détecté ici (409), version à jour dans la réponse
+        InvoiceEntity updated = invoiceRepository.saveAndFlush(entity);
+        vatRollupService.recordChange(before, updated);
 
         InvoiceResponse resp = invoiceMapper.toResponse(updated);
         resp.setLines(invoiceMapper.toLineResponseList(updated.getLines()));
-        resp.setTotals(computeTotalsResponse(resp));
 
         return resp;
     }
 
+    /**
+     * Rapproche les lignes reçues des lignes existantes, au lieu de tout supprimer / réinsérer.
+     *
+     * - ligne reçue avec id : met à jour la ligne de même id (id inconnu sur la facture → 400)
+     * - sans id : rapprochée par SKU d'une ligne existante encore libre
+     * - sinon : nouvelle ligne (INSERT)
+     * - lignes existantes non rapprochées : supprimées (orphanRemoval)
+     *
+     * Les lignes conservées gardent leur id et leur fneItemId (avoirs FNE).
+     * L'ordre de la liste suit celui de la requête.
+     */
+    private void reconcileLines(InvoiceEntity entity, List<InvoiceRequest.InvoiceLineDTO> incoming) {
+        List<InvoiceLineEntity> current = entity.getLines();
+        Map<Long, InvoiceLineEntity> byId = new HashMap<>(current.size() * 2);
+        for (InvoiceLineEntity line : current) {
+            byId.put(line.getId(), line);
+        }
+
+        // 1. Rapprochements explicites par id
+        InvoiceLineEntity[] matched = new InvoiceLineEntity[incoming.size()];
+        for (int i = 0; i < incoming.size(); i++) {
+            Long lineId = incoming.get(i).getId();
+            if (lineId != null) {
+                InvoiceLineEntity line = byId.remove(lineId);
+                if (line == null) {
+                    throw new IllegalArgumentException(
+                            "Ligne " + lineId + " inconnue ou dupliquée sur la facture " + entity.getId());
+                }
+                matched[i] = line;
+            }
+        }
+
+        // 2. Rapprochement par SKU parmi les lignes restantes (dans l'ordre existant)
+        Map<String, Deque<InvoiceLineEntity>> bySku = new HashMap<>();
+        for (InvoiceLineEntity line : current) {
+            if (line.getSku() != null && byId.containsKey(line.getId())) {
+                bySku.computeIfAbsent(line.getSku(), k -> new ArrayDeque<>()).add(line);
+            }
+        }
+        for (int i = 0; i < incoming.size(); i++) {
+            String sku = incoming.get(i).getSku();
+            if (matched[i] == null && sku != null) {
+                Deque<InvoiceLineEntity> candidates = bySku.get(sku);
+                if (candidates != null && !candidates.isEmpty()) {
+                    matched[i] = candidates.poll();
+                    byId.remove(matched[i].getId());
+                }
+            }
+        }
+
+        // 3. Mise à jour / création, dans l'ordre de la requête
+        List<InvoiceLineEntity> ordered = new ArrayList<>(incoming.size());
+        for (int i = 0; i < incoming.size(); i++) {
+            InvoiceLineEntity line = matched[i];
+            if (line == null) {
+                line = invoiceMapper.toLineEntity(incoming.get(i));
+                line.setInvoice(entity);
+            } else {
+                invoiceMapper.updateLineFromRequest(incoming.get(i), line);
+            }
+            ordered.add(line);
+        }
+
+        // 4. Lignes non reprises (byId) : retirées → DELETE
+        current.clear();
+        current.addAll(ordered);
+    }
+
     // ============================================================
     // DELETE
     // ============================================================
     @Transactional
     public void deleteInvoice(Long id) {
-        if (!invoiceRepository.existsById(id)) {
-            throw new InvoiceNotFoundException(id);
-        }
-        invoiceRepository.deleteById(id);
+        InvoiceEntity entity = invoiceRepository.findById(id)
+                .orElseThrow(() -> new InvoiceNotFoundException(id));
+        lookupCache.invalidate(id);
+        vatRollupService.recordChange(vatRollupService.contributionOf(entity), null);
+        invoiceRepository.delete(entity);
     }
 
     // ============================================================
@@ -180,7 +367,7 @@ public class InvoiceService {
     @Transactional
     public InvoiceResponse submitToDgi(Long id) {
 
-        InvoiceEntity entity = invoiceRepository.findById(id)
+        InvoiceEntity entity = invoiceRepository.findWithLinesById(id)
                 .orElseThrow(() -> new InvoiceNotFoundException(id));
 
         if (entity.getDgiReference() != null) {
@@ -188,115 +375,159 @@ public class InvoiceService {
         }
 
         DgiCertification cert = dgiClientMock.simulateCertification(entity);
+        applyCertification(entity, cert);
 
+        InvoiceEntity updated = invoiceRepository.save(entity);
+        return invoiceMapper.toResponse(updated);
+    }
+
+    /**
+     * Reporte une certification DGI sur la facture (statut, références, QR).
+     * Partagé entre la soumission synchrone et les workers de DgiSubmissionService.
+     */
+    @Transactional
+    public void applyCertification(InvoiceEntity entity, DgiCertification cert) {
+        lookupCache.invalidate(entity.getId());
+        VatRollupService.Contribution before = vatRollupService.contributionOf(entity);
         entity.setStatus(InvoiceStatus.SUBMITTED_TO_DGI);
         entity.setDgiReference(cert.dgiReference());
         entity.setStickerId(cert.stickerId());
         entity.setDgiSubmittedAt(Instant.now());
-        entity.setQrBase64(cert.qrBase64());
-
-        InvoiceEntity updated = invoiceRepository.save(entity);
-        return invoiceMapper.toResponse(updated);
+        invoiceQrService.storeBase64(entity, cert.qrBase64());
+        invoiceOutboxService.record(InvoiceEventType.INVOICE_SUBMITTED_TO_DGI, entity);
+        vatRollupService.recordChange(before, entity);
     }
 
     // ============================================================
-    // BUSINESS LOGIC — CALCUL TOTALS FNE / RNE
+    // FNE SIGN — STOCKAGE DE LA SIGNATURE
     // ============================================================
-    private void computeTotalsFne(InvoiceEntity entity) {
-
-        BigDecimal subtotal  = BigDecimal.ZERO;
-        BigDecimal totalVat  = BigDecimal.ZERO;
-        BigDecimal discount  = BigDecimal.ZERO;
-
-        for (InvoiceLineEntity l : entity.getLines()) {
-            BigDecimal base = safe(l.getUnitPrice()).multiply(safe(l.getQuantity()));
-
-            subtotal = subtotal.add(base.subtract(safe(l.getDiscount())));
-            totalVat = totalVat.add(safe(l.getVatAmount()));
-            discount = discount.add(safe(l.getDiscount()));
+    /**
+     * Enregistre la signature FNE sur la facture interne : UUID et référence FNE,
+     * token, ids des articles (registre des avoirs), QR du token, événement INVOICE_FNE_SIGNED.
+     */
+    @Transactional
+    public void applyFneSignature(Long invoiceId, FneInvoiceResponse response,
+                                  String paymentMethod, String template, boolean isRne, String rne) {
+        InvoiceEntity invoice = invoiceRepository.findWithLinesById(invoiceId)
+                .orElseThrow(() -> new InvoiceNotFoundException(invoiceId));
+        lookupCache.invalidate(invoiceId);
+        VatRollupService.Contribution before = vatRollupService.contributionOf(invoice);
+
+        invoice.setFneInvoiceId(response.getInvoice().getId());
+        invoice.setFneReference(response.getReference());
+        invoice.setFneToken(response.getToken());
+        invoice.setPaymentMethod(paymentMethod);
+        invoice.setTemplate(template);
+        invoice.setIsRne(isRne);
+        invoice.setRne(rne);
+
+        // Ids des articles FNE, dans l'ordre des lignes
+        List<InvoiceLineEntity> lines = invoice.getLines();
+        List<FneInvoiceResponse.InvoiceDetails.InvoiceItemDetails> fneItems = response.getInvoice().getItems();
+        if (lines != null && fneItems != null) {
+            for (int i = 0; i < Math.min(lines.size(), fneItems.size()); i++) {
+                lines.get(i).setFneItemId(fneItems.get(i).getId());
+            }
         }
 
-        // --- GESTION DU TIMBRE DE QUITTANCE ---
-        BigDecimal stampDuty = BigDecimal.ZERO;
-        if ("cash".equalsIgnoreCase(entity.getPaymentMethod())) {
-            stampDuty = BigDecimal.valueOf(100);
+        if (response.getToken() != null && !response.getToken().isEmpty()) {
+            invoiceQrService.store(invoice, qrCodeGenerator.generateQrCode(response.getToken(), 300, 300));
         }
 
-        entity.setSubtotal(subtotal);
-        entity.setTotalVat(totalVat);
-        entity.setTotalAmount(subtotal.add(totalVat).add(stampDuty));
-        entity.setOtherTaxes(stampDuty);
-        entity.setTotalToPay(subtotal.add(totalVat).add(stampDuty));
+        InvoiceEntity saved = invoiceRepository.save(invoice);
+        refundLedgerService.open(saved);
+        invoiceOutboxService.record(InvoiceEventType.INVOICE_FNE_SIGNED, saved);
+        vatRollupService.recordChange(before, saved);
     }
 
     // ============================================================
-    // UTILS — BUILD TOTALS FOR RESPONSE
+    // UTILS — TOTALS FOR RESPONSE
     // ============================================================
-    private InvoiceResponse.TotalsDTO computeTotalsResponse(InvoiceResponse r) {
-
-        BigDecimal subtotal = BigDecimal.ZERO;
-        BigDecimal vat      = BigDecimal.ZERO;
-        BigDecimal discount = BigDecimal.ZERO;
-
-        if (r.getLines() != null) {
-            for (InvoiceResponse.InvoiceLineDTO l : r.getLines()) {
-                BigDecimal base = safe(l.getUnitPrice())
-                        .multiply(safe(l.getQuantity()));
-
-                subtotal = subtotal.add(base.subtract(safe(l.getDiscount())));
-                vat      = vat.add(safe(l.getVatAmount()));
-                discount = discount.add(safe(l.getDiscount()));
-            }
+    /**
+     * Totaux figés à l'écriture (déjà mappés depuis la ligne invoices).
+     * Recalcul depuis les lignes uniquement pour une facture calculée par une autre version du moteur.
+     */
+    private InvoiceResponse.TotalsDTO totalsOf(InvoiceEntity entity, InvoiceResponse r) {
+        if (Integer.valueOf(FneTaxEngine.VERSION).equals(entity.getTotalsVersion()) && r.getTotals() != null) {
+            return r.getTotals();
         }
-
-        BigDecimal other = safe(r.getTotals() != null ? r.getTotals().getOtherTaxes() : BigDecimal.ZERO);
-
-        return InvoiceResponse.TotalsDTO.builder()
-                .subtotal(subtotal)
-                .totalVat(vat)
-                .totalAmount(subtotal.add(vat))
-                .totalDiscount(discount)
-                .otherTaxes(other)
-                .totalToPay(subtotal.add(vat).add(other))
-                .build();
+        return fneTaxEngine.compute(r.getLines(), FneTaxEngine.RESPONSE_LINES, r.getPaymentMode())
+                .toTotalsDTO();
     }
 
     // ============================================================
     // GENERATE FNE PDF (avec ou sans certification)
     // ============================================================
-    @Transactional(readOnly = true)
+    // Pas de transaction englobante : facture + lignes en une requête (entity graph), mappées
+    // hors session, puis rendu dans le pool borné (PdfRenderService) sans retenir de connexion.
     public byte[] generateFnePdf(Long invoiceId) {
-        // 1. Récupérer la facture
+        return pdfRenderService.render(fnePdfModel(findWithLines(invoiceId)));
+    }
+
+    /**
+     * Empreinte du PDF FNE (ETag et clé du cache disque) : facture (version, QR), template et logo.
+     * Une lecture de l'en-tête seul, sans les lignes ni le rendu.
+     */
+    @Transactional(readOnly = true)
+    public String fnePdfKey(Long invoiceId) {
         InvoiceEntity entity = invoiceRepository.findById(invoiceId)
             .orElseThrow(() -> new InvoiceNotFoundException(invoiceId));
-        
-        // 2. Mapper vers InvoiceResponse
+        return fnePdfKey(entity);
+    }
+
+    /** PDF FNE rendu et empreinte de la version de la facture effectivement rendue */
+    public record RenderedPdf(String key, byte[] pdf) {
+    }
+
+    /**
+     * Comme generateFnePdf, sans bloquer le thread appelant pendant l'attente et le rendu.
+     * La clé vient de la facture lue pour le rendu : une modification concurrente après fnePdfKey
+     * donne la clé de la nouvelle version, jamais l'ancienne clé sur le nouveau contenu.
+     */
+    public CompletableFuture<RenderedPdf> renderFnePdf(Long invoiceId) {
+        InvoiceEntity entity = findWithLines(invoiceId);
+        String key = fnePdfKey(entity);
+        return pdfRenderService.submit(fnePdfModel(entity)).thenApply(pdf -> new RenderedPdf(key, pdf));
+    }
+
+    private String fnePdfKey(InvoiceEntity entity) {
+        String fingerprint = entity.getId() + "\n" + entity.getVersion() + "\n" + entity.getQrSha256() + "\n"
+            + pdfRenderService.renderVersion(entity.getSellerTaxId());
+        return InvoiceQrService.sha256Hex(fingerprint.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private InvoiceEntity findWithLines(Long invoiceId) {
+        return invoiceRepository.findWithLinesById(invoiceId)
+            .orElseThrow(() -> new InvoiceNotFoundException(invoiceId));
+    }
+
+    private InvoiceResponse fnePdfModel(InvoiceEntity entity) {
+        // 1. Mapper vers InvoiceResponse
         InvoiceResponse response = invoiceMapper.toResponse(entity);
         response.setLines(invoiceMapper.toLineResponseList(entity.getLines()));
-        response.setTotals(computeTotalsResponse(response));
+        response.setTotals(totalsOf(entity, response));
+        response.setQrBase64(invoiceQrService.loadBase64(entity.getId()));
         
-        // 3. Si pas certifié FNE, ajouter une référence "BROUILLON"
+        // 2. Si pas certifié FNE, ajouter une référence "BROUILLON"
         if (response.getFneReference() == null || response.getFneReference().isEmpty()) {
             response.setFneReference("BROUILLON-" + entity.getInvoiceNumber());
         }
-        
-        // 4. Générer le PDF
-        return htmlPdfService.generatePdf(response);
+        return response;
     }
 
     // ============================================================
     // GENERATE MOCK PDF (preview sans certification)
     // ============================================================
-    @Transactional(readOnly = true)
     public byte[] generateMockPdf(Long id) {
-        InvoiceEntity entity = invoiceRepository.findById(id)
+        InvoiceEntity entity = invoiceRepository.findWithLinesById(id)
             .orElseThrow(() -> new InvoiceNotFoundException(id));
         
         InvoiceResponse response = invoiceMapper.toResponse(entity);
         response.setLines(invoiceMapper.toLineResponseList(entity.getLines()));
-        response.setTotals(computeTotalsResponse(response));
+        response.setTotals(totalsOf(entity, response));
+        response.setQrBase64(invoiceQrService.loadBase64(entity.getId()));
         
-        return htmlPdfService.generatePdf(response);
+        return pdfRenderService.render(response);
     }
 
     // ============================================================
@@ -313,29 +544,27 @@ public class InvoiceService {
     // ============================================================
     @Transactional
     public InvoiceResponse refundInvoice(Long id, com.oxalio.invoice.dto.RefundRequest refundRequest) {
-        InvoiceEntity original = invoiceRepository.findById(id)
+        InvoiceEntity original = invoiceRepository.findWithLinesById(id)
                 .orElseThrow(() -> new InvoiceNotFoundException(id));
 
         log.info("Traitement de l'avoir pour la facture : {} pour la raison : {}", 
                 original.getInvoiceNumber(), refundRequest.getReason());
 
+        VatRollupService.Contribution before = vatRollupService.contributionOf(original);
         original.setStatus(InvoiceStatus.CANCELLED);
+        lookupCache.invalidate(id);
         
         InvoiceEntity saved = invoiceRepository.save(original);
+        invoiceOutboxService.record(InvoiceEventType.INVOICE_REFUNDED, saved);
+        vatRollupService.recordChange(before, saved);
         return invoiceMapper.toResponse(saved);
     }
 
     // ============================================================
     // HELPERS
     // ============================================================
-    private static BigDecimal safe(BigDecimal v) {
-        return v == null ? BigDecimal.ZERO : v;
-    }
-
-    private String generateInvoiceNumber() {
-        int year = Year.now().getValue();
-        long count = invoiceRepository.count() + 1;
-        return String.format("INV-%d-%06d", year, count);
+    private static String pointOfSaleOf(InvoiceEntity e) {
+        return e.getPointOfSale() != null ? e.getPointOfSale() : e.getPointOfSaleName();
     }
 
     private String generateStickerId() {
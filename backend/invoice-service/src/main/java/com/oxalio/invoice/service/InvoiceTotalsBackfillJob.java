@@ -0,0 +1,128 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Recalcul, une fois pour toutes, des totaux des factures écrites avant V18 (totals_version NULL)
+ * ou par une autre version de FneTaxEngine : sans lui, chaque lecture les recalcule depuis les lignes.
+ *
+ * Par lots de batch-size, par id croissant, chacun dans sa propre transaction. Lancé en arrière-plan
+ * peu après le démarrage, puis de nouveau tant qu'il reste des factures (max-batches-per-run par passage) ;
+ * une fois la table à jour, l'instance ne relance plus la recherche jusqu'au prochain démarrage
+ * (nouvelle version du moteur).
+ *
+ * Colonnes de totaux mises à jour directement (InvoiceRepository.updateStaleTotals) : la version
+ * de la facture ne change pas, les montants sont ceux que la lecture calculait déjà.
+ */
+@Slf4j
+@Service
+public class InvoiceTotalsBackfillJob {
+
+    private final InvoiceRepository invoiceRepository;
+    private final FneTaxEngine fneTaxEngine;
+    private final InvoiceLookupCache lookupCache;
+    private final InvoiceSearchEngine searchEngine;
+    private final TransactionTemplate transactionTemplate;
+    private final boolean enabled;
+    private final int batchSize;
+    private final int maxBatchesPerRun;
+
+    /** Plus aucune facture à recalculer pour cette version du moteur */
+    private volatile boolean done;
+
+    public InvoiceTotalsBackfillJob(InvoiceRepository invoiceRepository,
+                                    FneTaxEngine fneTaxEngine,
+                                    InvoiceLookupCache lookupCache,
+                                    InvoiceSearchEngine searchEngine,
+                                    TransactionTemplate transactionTemplate,
+                                    @Value("${oxalio.invoice.totals-backfill.enabled:true}") boolean enabled,
+                                    @Value("${oxalio.invoice.totals-backfill.batch-size:200}") int batchSize,
+                                    @Value("${oxalio.invoice.totals-backfill.max-batches-per-run:50}") int maxBatchesPerRun) {
+        this.invoiceRepository = invoiceRepository;
+        this.fneTaxEngine = fneTaxEngine;
+        this.lookupCache = lookupCache;
+        this.searchEngine = searchEngine;
+        this.transactionTemplate = transactionTemplate;
+        this.enabled = enabled;
+        this.batchSize = Math.max(1, batchSize);
+        this.maxBatchesPerRun = Math.max(1, maxBatchesPerRun);
+    }
+
+    @Scheduled(fixedDelayString = "${oxalio.invoice.totals-backfill.interval-ms:60000}",
+               initialDelayString = "${oxalio.invoice.totals-backfill.interval-ms:60000}")
+    public void scheduledRun() {
+        if (enabled && !done) {
+            backfill();
+        }
+    }
+
+    /**
+     * Recalcule un passage de max-batches-per-run lots au plus.
+     *
+     * @return nombre de factures mises à jour
+     */
+    public int backfill() {
+        long afterId = 0;
+        int updated = 0;
+        for (int batch = 0; batch < maxBatchesPerRun; batch++) {
+            long from = afterId;
+            BatchResult result = transactionTemplate.execute(tx -> backfillBatch(from));
+            if (result == null || result.lastId() == null) {
+                done = true;
+                break;
+            }
+            afterId = result.lastId();
+            updated += result.updated();
+        }
+        if (updated > 0) {
+            log.info("🧮 Totaux recalculés et figés pour {} facture(s) antérieure(s) (moteur v{})",
+                    updated, FneTaxEngine.VERSION);
+        }
+        return updated;
+    }
+
+    private BatchResult backfillBatch(long afterId) {
+        List<Long> ids = invoiceRepository.findIdsWithStaleTotals(afterId, FneTaxEngine.VERSION,
+                PageRequest.of(0, batchSize));
+        if (ids.isEmpty()) {
+            return new BatchResult(null, 0);
+        }
+
+        // Calcul d'abord, sans modifier les entités chargées (pas d'écriture ni de version incrémentée au flush)
+        Map<Long, FneTotals> totals = new LinkedHashMap<>();
+        for (InvoiceEntity invoice : invoiceRepository.findWithLinesByIdIn(ids)) {
+            totals.put(invoice.getId(), fneTaxEngine.compute(invoice.getLines(), FneTaxEngine.ENTITY_LINES,
+                    invoice.getPaymentMethod()));
+        }
+
+        List<Long> updated = new ArrayList<>();
+        totals.forEach((id, t) -> {
+            int rows = invoiceRepository.updateStaleTotals(id, t.subtotal(), t.totalVat(), t.totalDiscount(),
+                    t.stampDuty(), t.totalAmount(), t.totalToPay(), t.encodeBreakdown(), FneTaxEngine.VERSION);
+            if (rows > 0) {
+                updated.add(id);
+            }
+        });
+
+        // Réponses en cache et index de recherche construits sur les anciennes colonnes
+        updated.forEach(lookupCache::invalidate);
+        invoiceRepository.findAllById(updated).forEach(searchEngine::indexed);
+        return new BatchResult(ids.get(ids.size() - 1), updated.size());
+    }
+
+    /** lastId null : plus rien à recalculer */
+    private record BatchResult(Long lastId, int updated) {
+    }
+}
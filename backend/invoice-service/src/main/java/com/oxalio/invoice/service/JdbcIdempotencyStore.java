@@ -0,0 +1,228 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.exception.IdempotencyConflictException;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.util.ClassUtils;
+
+import java.io.IOException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.function.Supplier;
+
+/**
+ * Réponses Idempotency-Key en base (V32), partagées par toutes les instances (store par défaut).
+ *
+ * - la clé est réservée par un INSERT (clé primaire) validé aussitôt : une seule instance l'obtient
+ * - les autres relisent la ligne jusqu'à la réponse (attente croissante, au plus wait-timeout)
+ * - réponse 2xx gardée (statut, en-têtes, corps JSON et son type) jusqu'à expiration du TTL ;
+ *   échec ou réponse non 2xx : ligne supprimée, une requête en attente s'exécute à son tour
+ * - réservation d'une instance arrêtée en cours de requête : reprise après le bail (lease)
+ *
+ * Lignes expirées purgées périodiquement ; une ligne expirée non purgée est ignorée.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.idempotency.store", havingValue = "jdbc", matchIfMissing = true)
+public class JdbcIdempotencyStore implements IdempotencyStore {
+
+    private static final long MIN_POLL_MS = 10L;
+    private static final long MAX_POLL_MS = 500L;
+    private static final TypeReference<Map<String, List<String>>> HEADERS_TYPE = new TypeReference<>() { };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final ObjectMapper objectMapper;
+    /** Réservation et réponse validées hors de la transaction éventuelle de l'appelant */
+    private final TransactionTemplate storeTx;
+    private final Duration ttl;
+    private final Duration waitTimeout;
+    private final Duration lease;
+
+    public JdbcIdempotencyStore(NamedParameterJdbcTemplate jdbcTemplate,
+                                ObjectMapper objectMapper,
+                                PlatformTransactionManager transactionManager,
+                                @Value("${oxalio.invoice.idempotency.ttl:24h}") Duration ttl,
+                                @Value("${oxalio.invoice.idempotency.wait-timeout:30s}") Duration waitTimeout,
+                                @Value("${oxalio.invoice.idempotency.lease:5m}") Duration lease) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.objectMapper = objectMapper;
+        this.storeTx = new TransactionTemplate(transactionManager);
+        this.storeTx.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.ttl = ttl;
+        this.waitTimeout = waitTimeout;
+        this.lease = lease;
+    }
+
+    /** Ligne idempotency_keys ; statusCode null tant que la requête d'origine est en cours */
+    private record Stored(String fingerprint, Integer statusCode, String headers, byte[] body, String bodyType) {
+    }
+
+    @Override
+    public <T> Outcome<T> execute(String storeKey, String fingerprint, Supplier<ResponseEntity<T>> action) {
+        String owner = UUID.randomUUID().toString();
+        long deadline = System.currentTimeMillis() + waitTimeout.toMillis();
+        long pause = MIN_POLL_MS;
+
+        while (true) {
+            if (claim(storeKey, fingerprint, owner)) {
+                return new Outcome<>(runAndStore(storeKey, owner, action), false);
+            }
+            Stored stored = find(storeKey);
+            if (stored == null) {
+                // Requête d'origine en échec ou réponse expirée entre-temps : on réessaie de réserver
+                continue;
+            }
+            if (!stored.fingerprint().equals(fingerprint)) {
+                throw new IdempotencyConflictException(HttpStatus.UNPROCESSABLE_ENTITY,
+                        IdempotencyService.HEADER + " déjà utilisée pour une requête différente");
+            }
+            if (stored.statusCode() != null) {
+                return new Outcome<>(toResponse(stored), true);
+            }
+            if (System.currentTimeMillis() >= deadline) {
+                throw new IdempotencyConflictException(HttpStatus.CONFLICT,
+                        "Requête d'origine toujours en cours pour cette " + IdempotencyService.HEADER);
+            }
+            sleep(pause);
+            pause = Math.min(pause * 2, MAX_POLL_MS);
+        }
+    }
+
+    // ============================================================
+    // RÉSERVATION / RÉPONSE
+    // ============================================================
+    /** Réserve la clé (ligne expirée remplacée) ; false si une autre requête la détient */
+    private boolean claim(String storeKey, String fingerprint, String owner) {
+        Instant now = Instant.now();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("key", storeKey)
+                .addValue("fingerprint", fingerprint)
+                .addValue("owner", owner)
+                .addValue("now", Timestamp.from(now))
+                .addValue("expiresAt", Timestamp.from(now.plus(lease)));
+        try {
+            storeTx.executeWithoutResult(tx -> {
+                jdbcTemplate.update("DELETE FROM idempotency_keys WHERE store_key = :key AND expires_at <= :now",
+                        params);
+                jdbcTemplate.update("INSERT INTO idempotency_keys"
+                        + " (store_key, fingerprint, owner, created_at, expires_at)"
+                        + " VALUES (:key, :fingerprint, :owner, :now, :expiresAt)", params);
+            });
+            return true;
+        } catch (DuplicateKeyException e) {
+            return false;
+        }
+    }
+
+    private <T> ResponseEntity<T> runAndStore(String storeKey, String owner, Supplier<ResponseEntity<T>> action) {
+        ResponseEntity<T> response;
+        try {
+            response = action.get();
+        } catch (RuntimeException | Error e) {
+            release(storeKey, owner);
+            throw e;
+        }
+
+        if (!response.getStatusCode().is2xxSuccessful() || !complete(storeKey, owner, response)) {
+            release(storeKey, owner);
+        }
+        return response;
+    }
+
+    /** Garde la réponse jusqu'à expiration du TTL ; false si elle n'est pas sérialisable */
+    private boolean complete(String storeKey, String owner, ResponseEntity<?> response) {
+        Object body = response.getBody();
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("key", storeKey)
+                .addValue("owner", owner)
+                .addValue("status", response.getStatusCode().value())
+                .addValue("expiresAt", Timestamp.from(Instant.now().plus(ttl)));
+        try {
+            params.addValue("headers", objectMapper.writeValueAsString(response.getHeaders()))
+                    .addValue("body", body != null ? objectMapper.writeValueAsBytes(body) : null)
+                    .addValue("bodyType", body != null ? body.getClass().getName() : null);
+        } catch (IOException e) {
+            log.warn("Réponse non gardée pour la clé {} : {}", storeKey, e.getMessage());
+            return false;
+        }
+        storeTx.executeWithoutResult(tx -> jdbcTemplate.update("UPDATE idempotency_keys SET status_code = :status,"
+                + " headers = :headers, body = :body, body_type = :bodyType, expires_at = :expiresAt"
+                + " WHERE store_key = :key AND owner = :owner", params));
+        return true;
+    }
+
+    private void release(String storeKey, String owner) {
+        storeTx.executeWithoutResult(tx -> jdbcTemplate.update(
+                "DELETE FROM idempotency_keys WHERE store_key = :key AND owner = :owner",
+                new MapSqlParameterSource().addValue("key", storeKey).addValue("owner", owner)));
+    }
+
+    private Stored find(String storeKey) {
+        List<Stored> rows = jdbcTemplate.query("SELECT fingerprint, status_code, headers, body, body_type"
+                        + " FROM idempotency_keys WHERE store_key = :key AND expires_at > :now",
+                new MapSqlParameterSource()
+                        .addValue("key", storeKey)
+                        .addValue("now", Timestamp.from(Instant.now())),
+                (rs, i) -> new Stored(rs.getString("fingerprint"), (Integer) rs.getObject("status_code"),
+                        rs.getString("headers"), rs.getBytes("body"), rs.getString("body_type")));
+        return rows.isEmpty() ? null : rows.get(0);
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> ResponseEntity<T> toResponse(Stored stored) {
+        try {
+            HttpHeaders headers = new HttpHeaders();
+            if (stored.headers() != null) {
+                objectMapper.readValue(stored.headers(), HEADERS_TYPE).forEach(headers::addAll);
+            }
+            Object body = null;
+            if (stored.body() != null) {
+                Class<?> type = ClassUtils.forName(stored.bodyType(), getClass().getClassLoader());
+                body = objectMapper.readValue(stored.body(), type);
+            }
+            return (ResponseEntity<T>) ResponseEntity.status(stored.statusCode()).headers(headers).body(body);
+        } catch (IOException | ClassNotFoundException e) {
+            throw new IllegalStateException("Réponse idempotente illisible", e);
+        }
+    }
+
+    // ============================================================
+    // PURGE
+    // ============================================================
+    @Scheduled(fixedDelayString = "${oxalio.invoice.idempotency.purge-interval-ms:600000}",
+               initialDelayString = "${oxalio.invoice.idempotency.purge-interval-ms:600000}")
+    public void purgeExpired() {
+        int purged = jdbcTemplate.update("DELETE FROM idempotency_keys WHERE expires_at <= :now",
+                new MapSqlParameterSource("now", Timestamp.from(Instant.now())));
+        if (purged > 0) {
+            log.info("{} réponse(s) Idempotency-Key expirée(s) purgée(s)", purged);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IdempotencyConflictException(HttpStatus.CONFLICT, "Attente interrompue");
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.OutboxEventEntity;
+import com.oxalio.invoice.integration.InvoiceEventBroker;
+import com.oxalio.invoice.repository.OutboxEventRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Relais outbox → broker (Kafka).
+ *
+ * Lit les événements non publiés par lots, dans l'ordre d'écriture, les publie, puis les marque publiés.
+ * Livraison au moins une fois : un arrêt entre publication et marquage republie le lot,
+ * les consommateurs dédoublonnent sur l'en-tête eventId.
+ * Sur échec, le relais s'arrête au premier message refusé (ordre préservé) et reprend au passage suivant.
+ *
+ * Un seul relais à la fois, toutes instances confondues : chaque lot est lu, publié et marqué dans
+ * une transaction qui tient le verrou outbox_relay_lock (V31) ; les autres passages l'évitent
+ * (SKIP LOCKED) et s'arrêtent.
+ *
+ * Ordre d'écriture = relay_order, attribué par la base à l'INSERT (et non l'id, réservé par blocs
+ * de 50 par instance). Deux écritures d'une même facture sont sérialisées (version ou verrou
+ * de la facture) : la seconde insère son événement après le commit de la première, donc avec
+ * un relay_order supérieur. L'ordre est garanti par facture, la clé de partition Kafka.
+ */
+@Slf4j
+@Service
+public class OutboxRelay {
+
+    private static final int MAX_ERROR_LENGTH = 1000;
+
+    private final OutboxEventRepository outboxEventRepository;
+    private final InvoiceEventBroker broker;
+    private final TransactionTemplate transactionTemplate;
+    private final int batchSize;
+    private final Duration retention;
+
+    public OutboxRelay(OutboxEventRepository outboxEventRepository,
+                       InvoiceEventBroker broker,
+                       TransactionTemplate transactionTemplate,
+                       @Value("${oxalio.invoice.outbox.batch-size:200}") int batchSize,
+                       @Value("${oxalio.invoice.outbox.retention:7d}") Duration retention) {
+        this.outboxEventRepository = outboxEventRepository;
+        this.broker = broker;
+        this.transactionTemplate = transactionTemplate;
+        this.batchSize = Math.max(1, batchSize);
+        this.retention = retention;
+    }
+
+    /**
+     * Publie tous les événements en attente, lot par lot.
+     *
+     * @return nombre d'événements publiés (0 si un autre relais est en cours)
+     */
+    @Scheduled(fixedDelayString = "${oxalio.invoice.outbox.poll-interval-ms:1000}")
+    public int relayPending() {
+        int total = 0;
+        while (true) {
+            // Lot publié sous le verrou du relais : null si un autre relais le détient
+            Batch batch = transactionTemplate.execute(tx -> {
+                if (outboxEventRepository.tryLockRelay().isEmpty()) {
+                    return null;
+                }
+                List<OutboxEventEntity> events = outboxEventRepository.findUnpublished(PageRequest.of(0, batchSize));
+                return new Batch(events.size(), events.isEmpty() ? 0 : publish(events));
+            });
+            if (batch == null || batch.size() == 0) {
+                return total;
+            }
+            total += batch.published();
+            if (batch.published() < batch.size() || batch.size() < batchSize) {
+                return total;
+            }
+        }
+    }
+
+    private record Batch(int size, int published) {
+    }
+
+    /** Publie le lot et marque les événements acquittés, dans la transaction du lot */
+    private int publish(List<OutboxEventEntity> batch) {
+        List<InvoiceEventBroker.Message> messages = new ArrayList<>(batch.size());
+        for (OutboxEventEntity e : batch) {
+            messages.add(new InvoiceEventBroker.Message(e.getId(), String.valueOf(e.getAggregateId()),
+                    e.getEventType().name(), e.getTenantId(), e.getPayload()));
+        }
+
+        int acked;
+        String error = null;
+        try {
+            acked = broker.publish(messages);
+        } catch (RuntimeException e) {
+            acked = 0;
+            error = e.toString();
+        }
+
+        List<Long> publishedIds = new ArrayList<>(acked);
+        for (int i = 0; i < acked; i++) {
+            publishedIds.add(batch.get(i).getId());
+        }
+        if (!publishedIds.isEmpty()) {
+            outboxEventRepository.markPublished(publishedIds, Instant.now());
+        }
+        if (acked < batch.size()) {
+            Long failedId = batch.get(acked).getId();
+            String failure = error != null ? error : "Publication non acquittée";
+            outboxEventRepository.recordFailure(failedId, truncate(failure));
+            log.warn("Relais outbox interrompu à l'événement {} ({} publié(s) sur {}) : {}",
+                    failedId, acked, batch.size(), failure);
+        }
+        return acked;
+    }
+
+    /** Purge des événements publiés au-delà de la rétention */
+    @Scheduled(fixedDelayString = "${oxalio.invoice.outbox.purge-interval-ms:3600000}",
+               initialDelayString = "${oxalio.invoice.outbox.purge-interval-ms:3600000}")
+    public void purgePublished() {
+        Integer purged = transactionTemplate.execute(tx ->
+                outboxEventRepository.deletePublishedBefore(Instant.now().minus(retention)));
+        if (purged != null && purged > 0) {
+            log.info("{} événement(s) outbox publiés purgés", purged);
+        }
+    }
+
+    private static String truncate(String message) {
+        return message.length() <= MAX_ERROR_LENGTH ? message : message.substring(0, MAX_ERROR_LENGTH);
+    }
+}
@@ -0,0 +1,341 @@
+package com.oxalio.invoice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+
+/**
+ * Cache disque des PDF rendus, adressé par contenu : la clé est l'empreinte du PDF
+ * (InvoiceService.fnePdfKey), un fichier {clé}.pdf par rendu.
+ *
+ * - une facture modifiée, un template ou un logo changé donnent une nouvelle clé :
+ *   pas d'invalidation, les anciens fichiers sortent par LRU
+ * - borné en octets (LRU en mémoire, reconstruit au démarrage par date de modification)
+ * - écriture dans un fichier temporaire du même répertoire puis renommage atomique :
+ *   un lecteur voit le PDF complet ou rien
+ * - lecture : fichier confié à Tomcat (sendfile, zéro copie) par InvoiceController ; sinon
+ *   FileChannel.transferTo vers le flux de réponse, par blocs de 8 Ko (le PDF n'est jamais entier dans le tas)
+ * - métriques oxalio.pdf.cache (result=hit|miss) et oxalio.pdf.cache.size (octets)
+ *
+ * Un fichier évincé déjà ouvert reste lisible jusqu'à sa fermeture (POSIX).
+ */
+@Slf4j
+@Component
+public class PdfDiskCache {
+
+    private static final String SUFFIX = ".pdf";
+    private static final Pattern KEY = Pattern.compile("[0-9a-f]{64}");
+
+    private final Path directory;
+    private final long maxBytes;
+    private volatile boolean enabled;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** clé → taille du fichier, en ordre d'accès (LRU) */
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private long totalBytes;
+
+    private final Counter hits;
+    private final Counter misses;
+
+    public PdfDiskCache(MeterRegistry meterRegistry,
+                        @Value("${oxalio.invoice.pdf-cache.enabled:true}") boolean enabled,
+                        @Value("${oxalio.invoice.pdf-cache.directory:${java.io.tmpdir}/oxalio-pdf-cache}") Path directory,
+                        @Value("${oxalio.invoice.pdf-cache.max-size:512MB}") DataSize maxSize) {
+        this.enabled = enabled;
+        this.directory = directory;
+        this.maxBytes = maxSize.toBytes();
+        this.hits = Counter.builder("oxalio.pdf.cache")
+                .description("Téléchargements PDF servis depuis le cache disque")
+                .tag("result", "hit")
+                .register(meterRegistry);
+        this.misses = Counter.builder("oxalio.pdf.cache")
+                .description("Téléchargements PDF servis depuis le cache disque")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("oxalio.pdf.cache.size", this, PdfDiskCache::sizeInBytes)
+                .description("Taille du cache disque des PDF")
+                .baseUnit("bytes")
+                .register(meterRegistry);
+    }
+
+    /**
+     * PDF ouvert en lecture : à transférer puis fermer (transferTo ferme le canal),
+     * ou à fermer avant de confier file() au connecteur (sendfile).
+     */
+    public static final class CachedPdf implements Closeable {
+
+        private final Path file;
+        private final FileChannel channel;
+        private final long size;
+
+        private CachedPdf(Path file, FileChannel channel, long size) {
+            this.file = file;
+            this.channel = channel;
+            this.size = size;
+        }
+
+        public Path file() {
+            return file;
+        }
+
+        public long size() {
+            return size;
+        }
+
+        /**
+         * Copie le fichier vers le flux de réponse, puis ferme le canal. Un OutputStream n'est pas un canal
+         * de fichier ou de socket : transferTo passe par un tampon de 8 Ko, pas par le noyau seul.
+         */
+        public void transferTo(OutputStream out) throws IOException {
+            try (channel) {
+                WritableByteChannel target = Channels.newChannel(out);
+                long position = 0;
+                while (position < size) {
+                    long sent = channel.transferTo(position, size - position, target);
+                    if (sent <= 0) {
+                        break;
+                    }
+                    position += sent;
+                }
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    // ============================================================
+    // DÉMARRAGE
+    // ============================================================
+    /**
+     * Reprend les PDF déjà présents (les plus récents en dernier dans l'ordre LRU)
+     * et supprime les fichiers temporaires d'une écriture interrompue.
+     */
+    @PostConstruct
+    public void init() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            Files.createDirectories(directory);
+            List<Path> files;
+            try (Stream<Path> stream = Files.list(directory)) {
+                files = stream.toList();
+            }
+            List<Path> cached = new ArrayList<>();
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                if (name.endsWith(".tmp")) {
+                    Files.deleteIfExists(file);
+                } else if (keyOf(file) != null) {
+                    cached.add(file);
+                }
+            }
+            cached.sort(Comparator.comparing(PdfDiskCache::lastModified));
+
+            List<Path> evicted;
+            lock.lock();
+            try {
+                for (Path file : cached) {
+                    long size = Files.size(file);
+                    entries.put(keyOf(file), size);
+                    totalBytes += size;
+                }
+                evicted = evictLocked();
+            } finally {
+                lock.unlock();
+            }
+            delete(evicted);
+            log.info("📦 Cache PDF {} : {} fichiers, {} octets (max {})",
+                    directory, entries.size(), totalBytes, maxBytes);
+        } catch (IOException e) {
+            enabled = false;
+            log.warn("⚠️ Cache PDF désactivé, répertoire {} inutilisable : {}", directory, e.getMessage());
+        }
+    }
+
+    // ============================================================
+    // LECTURE
+    // ============================================================
+    /**
+     * PDF en cache pour cette clé, ouvert en lecture ; vide si absent (ou supprimé hors du cache).
+     */
+    public Optional<CachedPdf> open(String key) {
+        if (!enabled || !isValidKey(key)) {
+            return Optional.empty();
+        }
+        boolean known;
+        lock.lock();
+        try {
+            known = entries.get(key) != null;
+        } finally {
+            lock.unlock();
+        }
+        if (known) {
+            try {
+                Path file = file(key);
+                FileChannel channel = FileChannel.open(file, StandardOpenOption.READ);
+                hits.increment();
+                return Optional.of(new CachedPdf(file, channel, channel.size()));
+            } catch (NoSuchFileException e) {
+                remove(key);
+            } catch (IOException e) {
+                log.warn("Lecture du PDF en cache {} impossible : {}", key, e.getMessage());
+            }
+        }
+        misses.increment();
+        return Optional.empty();
+    }
+
+    // ============================================================
+    // ÉCRITURE
+    // ============================================================
+    /**
+     * Enregistre un PDF rendu. Best-effort : une erreur disque est journalisée, jamais propagée.
+     */
+    public void put(String key, byte[] pdf) {
+        if (!enabled || !isValidKey(key) || pdf.length > maxBytes) {
+            return;
+        }
+        Path tmp = null;
+        try {
+            tmp = Files.createTempFile(directory, key, ".tmp");
+            Files.write(tmp, pdf);
+            Files.move(tmp, file(key), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            log.warn("Écriture du PDF en cache {} impossible : {}", key, e.getMessage());
+            deleteQuietly(tmp);
+            return;
+        }
+
+        List<Path> evicted;
+        lock.lock();
+        try {
+            Long previous = entries.put(key, (long) pdf.length);
+            totalBytes += pdf.length - (previous != null ? previous : 0);
+            evicted = evictLocked();
+        } finally {
+            lock.unlock();
+        }
+        delete(evicted);
+    }
+
+    // ============================================================
+    // ÉTAT
+    // ============================================================
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long sizeInBytes() {
+        lock.lock();
+        try {
+            return totalBytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /** Sort les moins récemment lus jusqu'à repasser sous la taille max ; fichiers supprimés hors verrou */
+    private List<Path> evictLocked() {
+        List<Path> evicted = new ArrayList<>();
+        Iterator<Map.Entry<String, Long>> eldest = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && eldest.hasNext()) {
+            Map.Entry<String, Long> e = eldest.next();
+            eldest.remove();
+            totalBytes -= e.getValue();
+            evicted.add(file(e.getKey()));
+        }
+        return evicted;
+    }
+
+    private void remove(String key) {
+        lock.lock();
+        try {
+            Long size = entries.remove(key);
+            if (size != null) {
+                totalBytes -= size;
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void delete(List<Path> files) {
+        files.forEach(PdfDiskCache::deleteQuietly);
+        if (!files.isEmpty()) {
+            log.debug("Cache PDF : {} fichiers évincés", files.size());
+        }
+    }
+
+    private static void deleteQuietly(Path file) {
+        if (file == null) {
+            return;
+        }
+        try {
+            Files.deleteIfExists(file);
+        } catch (IOException e) {
+            log.warn("Suppression de {} impossible : {}", file, e.getMessage());
+        }
+    }
+
+    private Path file(String key) {
+        return directory.resolve(key + SUFFIX);
+    }
+
+    /** La clé devient un nom de fichier : empreinte SHA-256 hexadécimale uniquement */
+    private static boolean isValidKey(String key) {
+        return key != null && KEY.matcher(key).matches();
+    }
+
+    private static String keyOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.endsWith(SUFFIX)) {
+            return null;
+        }
+        String key = name.substring(0, name.length() - SUFFIX.length());
+        return isValidKey(key) ? key : null;
+    }
+
+    private static FileTime lastModified(Path file) {
+        try {
+            return Files.getLastModifiedTime(file);
+        } catch (IOException e) {
+            return FileTime.fromMillis(0);
+        }
+    }
+}
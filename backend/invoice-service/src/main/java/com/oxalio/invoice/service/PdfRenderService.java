@@ -0,0 +1,110 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.exception.PdfRenderRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu PDF dans le pool borné (PdfRenderConfig).
+ *
+ * submit : rendu asynchrone, le thread de requête est libéré pendant l'attente et le rendu ;
+ * render : même pool, en attendant le résultat (appels internes).
+ * File pleine → PdfRenderRejectedException (503 + Retry-After), sans rien rendre.
+ * Au démarrage, un rendu à blanc préchauffe le moteur sur un thread du pool.
+ *
+ * Métriques : oxalio.pdf.render.queue (rendus en attente), oxalio.pdf.render.active,
+ * oxalio.pdf.render.wait (attente en file), oxalio.pdf.render (durée du rendu),
+ * oxalio.pdf.render.rejected.
+ */
+@Slf4j
+@Service
+public class PdfRenderService {
+
+    private final HtmlPdfService htmlPdfService;
+    private final ThreadPoolTaskExecutor executor;
+    private final Duration retryAfter;
+    private final Timer renderTimer;
+    private final Timer waitTimer;
+    private final Counter rejected;
+
+    public PdfRenderService(HtmlPdfService htmlPdfService,
+                            @Qualifier("pdfRenderExecutor") ThreadPoolTaskExecutor executor,
+                            MeterRegistry meterRegistry,
+                            @Value("${oxalio.invoice.pdf-render.retry-after:5s}") Duration retryAfter) {
+        this.htmlPdfService = htmlPdfService;
+        this.executor = executor;
+        this.retryAfter = retryAfter;
+        this.renderTimer = Timer.builder("oxalio.pdf.render")
+                .description("Durée de rendu d'un PDF de facture")
+                .register(meterRegistry);
+        this.waitTimer = Timer.builder("oxalio.pdf.render.wait")
+                .description("Attente d'un rendu PDF dans la file")
+                .register(meterRegistry);
+        this.rejected = Counter.builder("oxalio.pdf.render.rejected")
+                .description("Rendus PDF refusés, file pleine")
+                .register(meterRegistry);
+        Gauge.builder("oxalio.pdf.render.queue", executor, e -> e.getThreadPoolExecutor().getQueue().size())
+                .description("Rendus PDF en attente")
+                .register(meterRegistry);
+        Gauge.builder("oxalio.pdf.render.active", executor, ThreadPoolTaskExecutor::getActiveCount)
+                .description("Rendus PDF en cours")
+                .register(meterRegistry);
+    }
+
+    /** Préchauffage du moteur PDF dans le pool, sans retarder le démarrage */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        executor.execute(htmlPdfService::warmUp);
+    }
+
+    /**
+     * @throws PdfRenderRejectedException file pleine
+     */
+    public CompletableFuture<byte[]> submit(InvoiceResponse invoice) {
+        long queuedAt = System.nanoTime();
+        try {
+            return executor.submitCompletable(() -> {
+                waitTimer.record(System.nanoTime() - queuedAt, TimeUnit.NANOSECONDS);
+                return renderTimer.recordCallable(() -> htmlPdfService.generatePdf(invoice));
+            });
+        } catch (TaskRejectedException e) {
+            rejected.increment();
+            log.warn("Rendu PDF refusé pour {} : file pleine ({} en attente)",
+                    invoice.getFneReference(), executor.getThreadPoolExecutor().getQueue().size());
+            throw new PdfRenderRejectedException(retryAfter, e);
+        }
+    }
+
+    /** Version du template et du logo du vendeur (voir HtmlPdfService.renderVersion) */
+    public String renderVersion(String sellerTaxId) {
+        return htmlPdfService.renderVersion(sellerTaxId);
+    }
+
+    /** Rendu dans le pool, en attendant le résultat */
+    public byte[] render(InvoiceResponse invoice) {
+        try {
+            return submit(invoice).join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package com.oxalio.invoice.service;
+
+import com.lowagie.text.Image;
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.core.io.Resource;
+import org.springframework.stereotype.Component;
+import org.xhtmlrenderer.pdf.ITextFSImage;
+import org.xhtmlrenderer.pdf.ITextOutputDevice;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+import org.xhtmlrenderer.pdf.ITextUserAgent;
+import org.xhtmlrenderer.resource.ImageResource;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Images des PDF de facture servies par URI (oxalio:...) au lieu de data URI base64 dans le HTML.
+ *
+ * - sticker FNE, logo par défaut et image vide : lus et décodés une fois au démarrage
+ * - logo vendeur : oxalio:seller-logo/{NCC}, servi par SellerLogoCache (logo par défaut s'il manque)
+ * - chaque rendu reçoit une copie légère de l'image décodée (Image.getInstance(Image) : mêmes données,
+ *   mise à l'échelle propre au document) ; l'original partagé n'est jamais modifié
+ *
+ * Un ITextUserAgent est lié au document (périphérique de sortie, contexte) : newRenderer en crée un
+ * par rendu, branché sur les images partagées. Les autres URI (QR en data URI) suivent le chemin standard.
+ */
+@Slf4j
+@Component
+public class PdfResourceResolver {
+
+    public static final String SCHEME = "oxalio:";
+    public static final String FNE_STICKER = SCHEME + "fne-sticker";
+    public static final String DEFAULT_LOGO = SCHEME + "default-logo";
+    public static final String PLACEHOLDER = SCHEME + "placeholder";
+    private static final String SELLER_LOGO = SCHEME + "seller-logo/";
+
+    private static final String FNE_STICKER_PATH = "static/fne-logo.png";
+    private static final String DEFAULT_LOGO_PATH = "static/default-logo.png";
+    /** PNG 1×1 transparent */
+    private static final String PLACEHOLDER_PNG =
+            "iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==";
+    /** NCC utilisable tel quel dans une URI et un nom de fichier */
+    private static final Pattern TAX_ID = Pattern.compile("[A-Za-z0-9_-]+");
+
+    private final SellerLogoCache sellerLogoCache;
+
+    /** URI → image décodée, partagée entre rendus (lecture seule) */
+    private final Map<String, Image> images = new ConcurrentHashMap<>();
+    private String version;
+
+    public PdfResourceResolver(SellerLogoCache sellerLogoCache) {
+        this.sellerLogoCache = sellerLogoCache;
+    }
+
+    @PostConstruct
+    public void init() {
+        byte[] placeholder = Base64.getDecoder().decode(PLACEHOLDER_PNG);
+        byte[] sticker = load(FNE_STICKER_PATH, placeholder);
+        byte[] defaultLogo = load(DEFAULT_LOGO_PATH, placeholder);
+        images.put(PLACEHOLDER, decode(placeholder));
+        images.put(FNE_STICKER, decode(sticker));
+        images.put(DEFAULT_LOGO, decode(defaultLogo));
+
+        ByteArrayOutputStream all = new ByteArrayOutputStream();
+        all.writeBytes(sticker);
+        all.writeBytes(defaultLogo);
+        version = InvoiceQrService.sha256Hex(all.toByteArray());
+        log.info("🖼️ Images PDF décodées : sticker FNE {} o, logo par défaut {} o", sticker.length, defaultLogo.length);
+    }
+
+    // ============================================================
+    // URI DES IMAGES (TEMPLATE)
+    // ============================================================
+    /** URI du logo d'un vendeur ; logo par défaut sans NCC exploitable */
+    public String sellerLogoUri(String taxId) {
+        if (taxId == null || !TAX_ID.matcher(taxId).matches()) {
+            return DEFAULT_LOGO;
+        }
+        return SELLER_LOGO + taxId;
+    }
+
+    /** Version du logo d'un vendeur (empreinte du fichier), sans accès disque une fois en cache */
+    public String sellerLogoVersion(String taxId) {
+        return sellerLogoCache.get(taxId).map(SellerLogoCache.Logo::sha256).orElse("default");
+    }
+
+    /** Empreinte des images embarquées (sticker, logo par défaut) */
+    public String version() {
+        return version;
+    }
+
+    // ============================================================
+    // RENDU
+    // ============================================================
+    /** Renderer d'un document, dont les URI oxalio: sont servies par les images partagées */
+    public ITextRenderer newRenderer() {
+        ITextOutputDevice outputDevice = new ITextOutputDevice(ITextRenderer.DEFAULT_DOTS_PER_POINT);
+        return new ITextRenderer(ITextRenderer.DEFAULT_DOTS_PER_POINT, ITextRenderer.DEFAULT_DOTS_PER_PIXEL,
+                outputDevice, new SharedImageUserAgent(outputDevice));
+    }
+
+    /** Image décodée pour une URI oxalio: ; null si inconnue */
+    Image resolve(String uri) {
+        if (uri.startsWith(SELLER_LOGO)) {
+            return sellerLogo(uri.substring(SELLER_LOGO.length()));
+        }
+        return images.get(uri);
+    }
+
+    private Image sellerLogo(String taxId) {
+        return sellerLogoCache.get(taxId)
+                .map(SellerLogoCache.Logo::image)
+                .orElseGet(() -> images.get(DEFAULT_LOGO));
+    }
+
+    private final class SharedImageUserAgent extends ITextUserAgent {
+
+        SharedImageUserAgent(ITextOutputDevice outputDevice) {
+            super(outputDevice);
+        }
+
+        @Override
+        public ImageResource getImageResource(String uri) {
+            if (uri == null || !uri.startsWith(SCHEME)) {
+                return super.getImageResource(uri);
+            }
+            Image shared = resolve(uri);
+            if (shared == null) {
+                log.warn("Image PDF inconnue : {}", uri);
+                return new ImageResource(uri, null);
+            }
+            // Copie propre au document, à la résolution de sortie (comme ITextUserAgent)
+            Image image = Image.getInstance(shared);
+            float dotsPerPixel = getSharedContext().getDotsPerPixel();
+            image.scaleAbsolute(image.getPlainWidth() * dotsPerPixel, image.getPlainHeight() * dotsPerPixel);
+            return new ImageResource(uri, new ITextFSImage(image));
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private static byte[] load(String path, byte[] fallback) {
+        Resource resource = new ClassPathResource(path);
+        if (!resource.exists()) {
+            log.warn("⚠️ Image {} non trouvée - utilisation placeholder", path);
+            return fallback;
+        }
+        try (InputStream in = resource.getInputStream()) {
+            return in.readAllBytes();
+        } catch (IOException e) {
+            log.warn("⚠️ Erreur chargement {}: {}", path, e.getMessage());
+            return fallback;
+        }
+    }
+
+    private static Image decode(byte[] png) {
+        try {
+            return Image.getInstance(png);
+        } catch (IOException e) {
+            throw new IllegalStateException("Image PDF illisible", e);
+        }
+    }
+}
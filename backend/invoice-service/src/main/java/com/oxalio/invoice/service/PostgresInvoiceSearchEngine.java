@@ -0,0 +1,149 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.model.InvoiceStatus;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recherche support adossée aux index trigrammes PostgreSQL (V24, oxalio.invoice.search.engine=postgres).
+ *
+ * Chaque prédicat reprend exactement l'expression indexée (lower(buyer_name), chiffres du téléphone,
+ * upper(buyer_tax_id), upper(fne_reference)) : le planificateur combine les index GIN (BitmapOr)
+ * au lieu de parcourir la table. La recherche approchée utilise l'opérateur indexable <%
+ * (word_similarity), seuil posé pour la transaction courante.
+ *
+ * Tout ce qui passe le filtre est noté puis trié : les prédicats doivent donc borner les candidats.
+ * Un LIKE '%abc%' ne fournit à l'index GIN qu'un trigramme, commun à une grande partie des noms ;
+ * en dessous de contains-min-length caractères, le nom est cherché en début de mot seulement
+ * (trigrammes de début de mot, bien plus sélectifs) et le téléphone n'est pas cherché.
+ * À appeler dans une transaction (InvoiceSearchService).
+ */
+@Component
+@ConditionalOnProperty(name = "oxalio.invoice.search.engine", havingValue = "postgres", matchIfMissing = true)
+public class PostgresInvoiceSearchEngine implements InvoiceSearchEngine {
+
+    private static final String COLUMNS = "id, invoice_number, invoice_type, status, issue_date, currency, "
+            + "seller_tax_id, seller_company_name, buyer_tax_id, buyer_name, client_phone, "
+            + "total_amount, total_to_pay, payment_method, fne_reference, dgi_reference";
+
+    private static final String PHONE_DIGITS = "regexp_replace(client_phone, '[^0-9]', '', 'g')";
+
+    private static final RowMapper<InvoiceSummary> SUMMARY = (rs, row) -> {
+        String status = rs.getString("status");
+        Timestamp issueDate = rs.getTimestamp("issue_date");
+        return InvoiceSummary.builder()
+                .id(rs.getLong("id"))
+                .invoiceNumber(rs.getString("invoice_number"))
+                .invoiceType(rs.getString("invoice_type"))
+                .status(status != null ? InvoiceStatus.valueOf(status) : null)
+                .issueDate(issueDate != null ? issueDate.toInstant() : null)
+                .currency(rs.getString("currency"))
+                .sellerTaxId(rs.getString("seller_tax_id"))
+                .sellerCompanyName(rs.getString("seller_company_name"))
+                .buyerTaxId(rs.getString("buyer_tax_id"))
+                .buyerName(rs.getString("buyer_name"))
+                .clientPhone(rs.getString("client_phone"))
+                .totalAmount(rs.getBigDecimal("total_amount"))
+                .totalToPay(rs.getBigDecimal("total_to_pay"))
+                .paymentMethod(rs.getString("payment_method"))
+                .fneReference(rs.getString("fne_reference"))
+                .dgiReference(rs.getString("dgi_reference"))
+                .build();
+    };
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final double fuzzyThreshold;
+    private final int containsMinLength;
+
+    public PostgresInvoiceSearchEngine(NamedParameterJdbcTemplate jdbcTemplate,
+                                       @Value("${oxalio.invoice.search.fuzzy-threshold:0.5}") double fuzzyThreshold,
+                                       @Value("${oxalio.invoice.search.contains-min-length:4}") int containsMinLength) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.fuzzyThreshold = fuzzyThreshold;
+        this.containsMinLength = containsMinLength;
+    }
+
+    @Override
+    public List<InvoiceSummary> search(Query query) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("limit", query.limit())
+                .addValue("offset", query.offset());
+        List<String> where = new ArrayList<>();
+        if (query.tenantId() != null) {
+            where.add("tenant_id = :tenantId");
+            params.addValue("tenantId", query.tenantId());
+        } else {
+            where.add("tenant_id IS NULL");
+        }
+        String score = "1";
+
+        if (query.amount() != null) {
+            where.add("total_to_pay = :amount");
+            params.addValue("amount", query.amount());
+        }
+
+        if (query.text() != null) {
+            String lower = query.text().toLowerCase();
+            String upper = query.text().toUpperCase();
+            String digits = query.text().replaceAll("[^0-9]", "");
+            boolean nameContains = lower.length() >= containsMinLength;
+            boolean phoneContains = digits.length() >= containsMinLength;
+            params.addValue("lower", lower)
+                    .addValue("upper", upper)
+                    .addValue("nameContains", "%" + escapeLike(lower) + "%")
+                    .addValue("namePrefix", escapeLike(lower) + "%")
+                    .addValue("nameWordPrefix", "% " + escapeLike(lower) + "%")
+                    .addValue("codePrefix", escapeLike(upper) + "%");
+
+            List<String> any = new ArrayList<>(List.of(
+                    "upper(buyer_tax_id) LIKE :codePrefix",
+                    "upper(fne_reference) LIKE :codePrefix"));
+            List<String> contains = new ArrayList<>();
+            if (nameContains) {
+                contains.add("lower(buyer_name) LIKE :nameContains");
+            } else {
+                any.add("lower(buyer_name) LIKE :namePrefix");
+                any.add("lower(buyer_name) LIKE :nameWordPrefix");
+            }
+            if (phoneContains) {
+                contains.add(PHONE_DIGITS + " LIKE :phoneContains");
+                params.addValue("phoneContains", "%" + digits + "%");
+            }
+            any.addAll(contains);
+            if (query.fuzzy()) {
+                any.add(":lower <% lower(buyer_name)");
+                jdbcTemplate.queryForObject("SELECT set_config('pg_trgm.word_similarity_threshold', :threshold, true)",
+                        new MapSqlParameterSource("threshold", String.valueOf(fuzzyThreshold)), String.class);
+            }
+            where.add("(" + String.join(" OR ", any) + ")");
+
+            // Même barème que InMemoryInvoiceSearchIndex
+            score = "CASE"
+                    + " WHEN upper(buyer_tax_id) = :upper OR upper(fne_reference) = :upper THEN 3"
+                    + " WHEN upper(buyer_tax_id) LIKE :codePrefix OR upper(fne_reference) LIKE :codePrefix"
+                    + "   OR lower(buyer_name) LIKE :namePrefix OR lower(buyer_name) LIKE :nameWordPrefix THEN 2"
+                    + (contains.isEmpty() ? "" : " WHEN " + String.join(" OR ", contains) + " THEN 1.5")
+                    + " ELSE word_similarity(:lower, lower(buyer_name)) END";
+        }
+
+        String sql = "SELECT " + COLUMNS + ", " + score + " AS score FROM invoices"
+                + " WHERE " + String.join(" AND ", where)
+                + " ORDER BY score DESC, issue_date DESC, id DESC"
+                + " LIMIT :limit OFFSET :offset";
+        return jdbcTemplate.query(sql, params, SUMMARY);
+    }
+
+    /** Caractères spéciaux de LIKE pris littéralement (échappement par défaut \) */
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,216 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.client.FneStickerClient.FneRefundRequest;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.entity.RefundLedgerEntryEntity;
+import com.oxalio.invoice.entity.RefundLedgerLineEntity;
+import com.oxalio.invoice.exception.RefundQuantityException;
+import com.oxalio.invoice.model.RefundEntryStatus;
+import com.oxalio.invoice.repository.RefundLedgerEntryRepository;
+import com.oxalio.invoice.repository.RefundLedgerLineRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Registre des avoirs FNE : quantité encore remboursable par article signé (V26).
+ *
+ * 1. open : à la signature FNE, une ligne par article (fneItemId), tout reste remboursable
+ * 2. reserve : validation locale de l'avoir (une lecture, O(articles)), puis déduction
+ *    par UPDATE conditionnel : deux avoirs concurrents ne peuvent dépasser la quantité facturée
+ * 3. l'appel FNE se fait hors transaction, puis confirm (référence de l'avoir) ou release (échec)
+ *
+ * La confirmation retire les montants remboursés des agrégats TVA (VatRollupService), dans la même
+ * transaction que le passage à CONFIRMED.
+ *
+ * Un avoir resté RESERVED (arrêt pendant l'appel FNE) garde sa quantité déduite :
+ * mieux vaut refuser un avoir légitime que laisser passer un doublon.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class RefundLedgerService {
+
+    private final RefundLedgerLineRepository lineRepository;
+    private final RefundLedgerEntryRepository entryRepository;
+    private final VatRollupService vatRollupService;
+
+    /**
+     * Avoir réservé ; refundId null si la facture FNE n'est pas suivie localement
+     * (signée hors de ce service) : la FNE reste seule juge.
+     */
+    public record Reservation(String refundId, String fneInvoiceId) {
+
+        public boolean isTracked() {
+            return refundId != null;
+        }
+    }
+
+    // ============================================================
+    // OUVERTURE (SIGNATURE FNE)
+    // ============================================================
+    /**
+     * Articles signés d'une facture, dans la transaction de la signature.
+     * Un article déjà suivi (nouvel enregistrement de la même signature) est conservé tel quel.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void open(InvoiceEntity invoice) {
+        if (invoice.getFneInvoiceId() == null || invoice.getLines() == null) {
+            return;
+        }
+        List<InvoiceLineEntity> signed = invoice.getLines().stream()
+                .filter(l -> l.getFneItemId() != null)
+                .toList();
+        if (signed.isEmpty()) {
+            return;
+        }
+
+        Set<String> known = lineRepository.findAllById(signed.stream().map(InvoiceLineEntity::getFneItemId).toList())
+                .stream()
+                .map(RefundLedgerLineEntity::getFneItemId)
+                .collect(Collectors.toSet());
+        Instant now = Instant.now();
+        lineRepository.saveAll(signed.stream()
+                .filter(l -> !known.contains(l.getFneItemId()))
+                .map(l -> RefundLedgerLineEntity.builder()
+                        .fneItemId(l.getFneItemId())
+                        .fneInvoiceId(invoice.getFneInvoiceId())
+                        .invoiceId(invoice.getId())
+                        .tenantId(invoice.getTenantId())
+                        .quantity(l.getQuantity())
+                        .remainingQuantity(l.getQuantity())
+                        .updatedAt(now)
+                        .build())
+                .toList());
+    }
+
+    // ============================================================
+    // RÉSERVATION (AVANT L'APPEL FNE)
+    // ============================================================
+    /**
+     * Valide l'avoir et déduit les quantités, tout ou rien.
+     *
+     * @throws RefundQuantityException article inconnu, quantité invalide ou supérieure au restant
+     */
+    @Transactional
+    public Reservation reserve(String fneInvoiceId, List<FneRefundRequest.RefundItem> items) {
+        Map<String, RefundLedgerLineEntity> lines = lineRepository.findByFneInvoiceId(fneInvoiceId).stream()
+                .collect(Collectors.toMap(RefundLedgerLineEntity::getFneItemId, Function.identity()));
+        if (lines.isEmpty()) {
+            log.debug("Facture FNE {} non suivie : avoir transmis sans validation locale", fneInvoiceId);
+            return new Reservation(null, fneInvoiceId);
+        }
+
+        // Un même article peut apparaître plusieurs fois dans la demande
+        Map<String, BigDecimal> requested = new LinkedHashMap<>();
+        Map<String, String> errors = new HashMap<>();
+        for (FneRefundRequest.RefundItem item : items) {
+            if (item.getQuantity() == null || item.getQuantity() <= 0) {
+                errors.put(String.valueOf(item.getId()), "La quantité à rembourser doit être positive");
+                continue;
+            }
+            requested.merge(item.getId(), BigDecimal.valueOf(item.getQuantity()), BigDecimal::add);
+        }
+        requested.forEach((fneItemId, quantity) -> {
+            RefundLedgerLineEntity line = lines.get(fneItemId);
+            if (line == null) {
+                errors.put(fneItemId, "Article inconnu pour la facture FNE " + fneInvoiceId);
+            } else if (quantity.compareTo(line.getRemainingQuantity()) > 0) {
+                errors.put(fneItemId, "Quantité demandée " + quantity.stripTrailingZeros().toPlainString()
+                        + " supérieure au restant remboursable "
+                        + line.getRemainingQuantity().stripTrailingZeros().toPlainString());
+            }
+        });
+        if (!errors.isEmpty()) {
+            throw new RefundQuantityException(errors);
+        }
+
+        // Déduction atomique : un avoir concurrent a pu consommer le restant depuis la lecture
+        Instant now = Instant.now();
+        String refundId = UUID.randomUUID().toString();
+        List<RefundLedgerEntryEntity> entries = new ArrayList<>(requested.size());
+        requested.forEach((fneItemId, quantity) -> {
+            if (lineRepository.consume(fneItemId, quantity, now) == 0) {
+                throw new RefundQuantityException(Map.of(fneItemId,
+                        "Quantité déjà remboursée par un avoir concurrent"));
+            }
+            entries.add(RefundLedgerEntryEntity.builder()
+                    .refundId(refundId)
+                    .fneInvoiceId(fneInvoiceId)
+                    .fneItemId(fneItemId)
+                    .quantity(quantity)
+                    .status(RefundEntryStatus.RESERVED)
+                    .build());
+        });
+        entryRepository.saveAll(entries);
+        return new Reservation(refundId, fneInvoiceId);
+    }
+
+    // ============================================================
+    // ISSUE DE L'APPEL FNE
+    // ============================================================
+    /** Avoir accepté par la FNE (une seule fois) : quantités acquises, montants déduits des agrégats TVA */
+    @Transactional
+    public void confirm(Reservation reservation, String fneReference) {
+        if (!reservation.isTracked()) {
+            return;
+        }
+        List<RefundLedgerEntryEntity> entries =
+                entryRepository.findByRefundIdAndStatus(reservation.refundId(), RefundEntryStatus.RESERVED);
+        Instant now = Instant.now();
+        if (entryRepository.transition(reservation.refundId(), RefundEntryStatus.RESERVED,
+                RefundEntryStatus.CONFIRMED, fneReference, now) == 0 || entries.isEmpty()) {
+            return;
+        }
+        Map<String, BigDecimal> refunded = new HashMap<>();
+        for (RefundLedgerEntryEntity entry : entries) {
+            refunded.merge(entry.getFneItemId(), entry.getQuantity(), BigDecimal::add);
+        }
+        lineRepository.findById(entries.get(0).getFneItemId()).ifPresent(line ->
+                vatRollupService.recordRefund(line.getInvoiceId(), refunded, now));
+    }
+
+    /** Rend les quantités d'un avoir refusé ou en échec (une seule fois) */
+    @Transactional
+    public void release(Reservation reservation) {
+        if (!reservation.isTracked()) {
+            return;
+        }
+        List<RefundLedgerEntryEntity> entries =
+                entryRepository.findByRefundIdAndStatus(reservation.refundId(), RefundEntryStatus.RESERVED);
+        Instant now = Instant.now();
+        if (entryRepository.transition(reservation.refundId(), RefundEntryStatus.RESERVED,
+                RefundEntryStatus.RELEASED, null, now) == 0) {
+            return;
+        }
+        for (RefundLedgerEntryEntity entry : entries) {
+            lineRepository.restore(entry.getFneItemId(), entry.getQuantity(), now);
+        }
+    }
+
+    // ============================================================
+    // LECTURE
+    // ============================================================
+    /** Quantité encore remboursable par article d'une facture FNE */
+    @Transactional(readOnly = true)
+    public Map<String, BigDecimal> remaining(String fneInvoiceId) {
+        return lineRepository.findByFneInvoiceId(fneInvoiceId).stream()
+                .collect(Collectors.toMap(RefundLedgerLineEntity::getFneItemId,
+                        RefundLedgerLineEntity::getRemainingQuantity));
+    }
+}
@@ -0,0 +1,319 @@
+package com.oxalio.invoice.service;
+
+import com.lowagie.text.Image;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.cache.CacheMeterBinder;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.regex.Pattern;
+
+/**
+ * Cache mémoire des logos vendeur ({oxalio.seller-logos-path}/{NCC}.png) par NCC :
+ * octets, image décodée pour le PDF et empreinte SHA-256 (version du logo pour le cache des PDF).
+ *
+ * - borné en octets (LRU) ; l'absence de logo est aussi mise en cache : un rendu ne touche plus le disque
+ * - invalidé par SellerProfileService (upload, suppression), une première fois tout de suite puis après commit
+ * - invalidé par un WatchService sur le répertoire des logos (fichier copié ou supprimé hors application)
+ * - un chargement concurrent d'une invalidation n'est pas mis en cache (compteur de génération)
+ * - métriques Micrometer standard cache.gets / cache.size / cache.evictions (name=seller-logo)
+ */
+@Slf4j
+@Component
+public class SellerLogoCache {
+
+    public static final String CACHE_NAME = "seller-logo";
+
+    private static final String SUFFIX = ".png";
+    /** NCC utilisable tel quel dans un nom de fichier */
+    private static final Pattern TAX_ID = Pattern.compile("[A-Za-z0-9_-]+");
+    /** Poids d'une entrée hors octets du logo (absence comprise) */
+    private static final long ENTRY_OVERHEAD = 256;
+
+    /** Logo d'un vendeur ; image partagée entre rendus, à copier avant mise à l'échelle */
+    public record Logo(byte[] bytes, Image image, String sha256) {
+    }
+
+    private final Path directory;
+    private final long maxBytes;
+    private final boolean watch;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    /** NCC → entrée, en ordre d'accès (LRU) */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true);
+    private long totalBytes;
+    /** incrémenté à chaque invalidation */
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder puts = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    private WatchService watchService;
+
+    public SellerLogoCache(MeterRegistry meterRegistry,
+                           @Value("${oxalio.seller-logos-path:seller-logos/}") Path directory,
+                           @Value("${oxalio.invoice.logo-cache.max-size:16MB}") DataSize maxSize,
+                           @Value("${oxalio.invoice.logo-cache.watch:true}") boolean watch) {
+        this.directory = directory;
+        this.maxBytes = maxSize.toBytes();
+        this.watch = watch;
+        new Metrics(this).bindTo(meterRegistry);
+    }
+
+    // ============================================================
+    // SURVEILLANCE DU RÉPERTOIRE
+    // ============================================================
+    @PostConstruct
+    public void start() {
+        if (!watch) {
+            return;
+        }
+        if (!Files.isDirectory(directory)) {
+            log.info("Répertoire des logos {} absent : invalidation par l'application seulement", directory);
+            return;
+        }
+        try {
+            watchService = directory.getFileSystem().newWatchService();
+            directory.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                    StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+        } catch (IOException e) {
+            log.warn("⚠️ Surveillance de {} impossible : {}", directory, e.getMessage());
+            return;
+        }
+        Thread watcher = new Thread(this::watchLoop, "seller-logo-watch");
+        watcher.setDaemon(true);
+        watcher.start();
+        log.info("👀 Logos vendeur surveillés : {}", directory.toAbsolutePath());
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+
+    private void watchLoop() {
+        while (true) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+                    // Événements perdus : on ne sait plus quels logos ont changé
+                    clear();
+                    continue;
+                }
+                String name = ((Path) event.context()).getFileName().toString();
+                if (name.endsWith(SUFFIX)) {
+                    evict(name.substring(0, name.length() - SUFFIX.length()));
+                }
+            }
+            if (!key.reset()) {
+                log.warn("⚠️ Répertoire des logos {} inaccessible : surveillance arrêtée", directory);
+                clear();
+                return;
+            }
+        }
+    }
+
+    // ============================================================
+    // LECTURE
+    // ============================================================
+    /** Logo du vendeur, vide s'il n'en a pas (ou si le fichier est illisible) */
+    public Optional<Logo> get(String taxId) {
+        if (taxId == null || !TAX_ID.matcher(taxId).matches()) {
+            return Optional.empty();
+        }
+        lock.lock();
+        try {
+            Entry entry = entries.get(taxId);
+            if (entry != null) {
+                hits.increment();
+                return Optional.ofNullable(entry.logo);
+            }
+        } finally {
+            lock.unlock();
+        }
+        misses.increment();
+
+        long loadGeneration = generation.get();
+        Logo logo = load(taxId);
+        put(taxId, logo, loadGeneration);
+        return Optional.ofNullable(logo);
+    }
+
+    private Logo load(String taxId) {
+        Path file = directory.resolve(taxId + SUFFIX);
+        try {
+            byte[] bytes = Files.readAllBytes(file);
+            return new Logo(bytes, Image.getInstance(bytes), InvoiceQrService.sha256Hex(bytes));
+        } catch (NoSuchFileException e) {
+            return null;
+        } catch (Exception e) {
+            log.warn("Impossible de charger le logo pour {}: {}", taxId, e.getMessage());
+            return null;
+        }
+    }
+
+    private void put(String taxId, Logo logo, long loadGeneration) {
+        long weight = ENTRY_OVERHEAD + (logo != null ? logo.bytes().length : 0);
+        if (weight > maxBytes) {
+            return;
+        }
+        lock.lock();
+        try {
+            // Invalidation pendant le chargement : le fichier lu est peut-être déjà remplacé
+            if (generation.get() != loadGeneration) {
+                return;
+            }
+            removeLocked(taxId);
+            entries.put(taxId, new Entry(logo, weight));
+            totalBytes += weight;
+            puts.increment();
+
+            Iterator<Map.Entry<String, Entry>> eldest = entries.entrySet().iterator();
+            while (totalBytes > maxBytes && eldest.hasNext()) {
+                totalBytes -= eldest.next().getValue().weight;
+                eldest.remove();
+                evictions.increment();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ============================================================
+    // INVALIDATION
+    // ============================================================
+    /**
+     * Retire le logo du cache, tout de suite et, dans une transaction, de nouveau après commit
+     * (un rendu concurrent a pu recharger l'ancien fichier).
+     */
+    public void invalidate(String taxId) {
+        if (taxId == null) {
+            return;
+        }
+        evict(taxId);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    evict(taxId);
+                }
+            });
+        }
+    }
+
+    public void clear() {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            entries.clear();
+            totalBytes = 0;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void evict(String taxId) {
+        lock.lock();
+        try {
+            generation.incrementAndGet();
+            removeLocked(taxId);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void removeLocked(String taxId) {
+        Entry removed = entries.remove(taxId);
+        if (removed != null) {
+            totalBytes -= removed.weight;
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    int size() {
+        lock.lock();
+        try {
+            return entries.size();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /** logo null : pas de logo pour ce vendeur */
+    private record Entry(Logo logo, long weight) {
+    }
+
+    /** Métriques au format des caches Spring/Caffeine (cache.gets{result=hit|miss}, cache.size…) */
+    private static final class Metrics extends CacheMeterBinder<SellerLogoCache> {
+
+        Metrics(SellerLogoCache cache) {
+            super(cache, CACHE_NAME, Tags.empty());
+        }
+
+        @Override
+        protected Long size() {
+            return (long) getCache().size();
+        }
+
+        @Override
+        protected long hitCount() {
+            return getCache().hits.sum();
+        }
+
+        @Override
+        protected Long missCount() {
+            return getCache().misses.sum();
+        }
+
+        @Override
+        protected Long evictionCount() {
+            return getCache().evictions.sum();
+        }
+
+        @Override
+        protected long putCount() {
+            return getCache().puts.sum();
+        }
+
+        @Override
+        protected void bindImplementationSpecificMetrics(MeterRegistry registry) {
+        }
+    }
+}
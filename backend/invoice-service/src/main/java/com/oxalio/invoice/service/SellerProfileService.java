@@ -11,6 +11,7 @@ import org.springframework.transaction.annotation.Transactional;
 
 import java.io.IOException;
 import java.nio.file.*;
+import java.util.Optional;
 
 @Slf4j
 @Service
@@ -18,6 +19,7 @@ import java.nio.file.*;
 public class SellerProfileService {
 
     private final SellerProfileRepository sellerProfileRepository;
+    private final SellerLogoCache sellerLogoCache;
 
     @Value("${oxalio.invoice.logo-base-dir:./logos}")
     private String logoBaseDir;
@@ -26,6 +28,7 @@ public class SellerProfileService {
      * Upload / mise à jour du logo vendeur.
      * - Sauvegarde le fichier sur disque
      * - Met à jour le SellerProfileEntity (chemin)
+     * - Invalide le logo en cache (PDF)
      */
     @Transactional
     public SellerProfileEntity uploadLogo(String taxId, MultipartFile file) throws IOException {
@@ -66,6 +69,7 @@ public class SellerProfileService {
         // ⚠️ plus de setLogoMimeType ici car le champ n’existe pas dans l’entité
 
         SellerProfileEntity saved = sellerProfileRepository.save(profile);
+        sellerLogoCache.invalidate(taxId);
         log.info("Logo vendeur sauvegardé pour {} -> {}", taxId, target);
 
         return saved;
@@ -73,6 +77,7 @@ public class SellerProfileService {
 
     /**
      * Récupère le logo en binaire.
+     * - Logo du PDF en cache d'abord (ni base ni disque) ; sinon fichier du profil vendeur
      * - Retourne null si aucun logo ou fichier introuvable.
      * - Ne jette pas d'exception pour ne pas casser la génération de PDF.
      */
@@ -81,6 +86,10 @@ public class SellerProfileService {
             if (taxId == null || taxId.isBlank()) {
                 return null;
             }
+            Optional<SellerLogoCache.Logo> cached = sellerLogoCache.get(taxId);
+            if (cached.isPresent()) {
+                return cached.get().bytes();
+            }
 
             return sellerProfileRepository.findByTaxId(taxId)
                     .map(SellerProfileEntity::getLogoPath)
@@ -119,5 +128,6 @@ public class SellerProfileService {
 
         profile.setLogoPath(null);
         sellerProfileRepository.save(profile);
+        sellerLogoCache.invalidate(taxId);
     }
 }
@@ -0,0 +1,129 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.VatDeclarationResponse;
+import com.oxalio.invoice.model.FneTaxCode;
+import com.oxalio.invoice.security.TenantContext;
+import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Déclaration de TVA d'une période, lue dans les agrégats journaliers (V25) :
+ * au plus quelques dizaines de lignes par jour, lues par la clé primaire, quel que soit
+ * le nombre de factures. Reconstruction à la demande depuis les factures (VatRollupService).
+ */
+@Service
+@RequiredArgsConstructor
+public class VatDeclarationService {
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final VatRollupService vatRollupService;
+
+    /**
+     * Déclaration du tenant courant (sans tenant : factures sans tenant, cf. TenantContext),
+     * jours from et to inclus.
+     */
+    @Transactional(readOnly = true)
+    public VatDeclarationResponse declaration(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        Long tenantId = TenantContext.getTenantId();
+
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("tenantId", tenantId != null ? tenantId : VatRollupService.NO_TENANT);
+        String sql = "SELECT vat_rate_bp, payment_method, certified, SUM(invoice_count) AS invoice_count,"
+                + " SUM(day_invoice_count) AS day_invoice_count,"
+                + " SUM(base_cents) AS base_cents, SUM(vat_cents) AS vat_cents,"
+                + " SUM(stamp_duty_cents) AS stamp_duty_cents"
+                + " FROM vat_daily_rollups"
+                + " WHERE issue_day BETWEEN :from AND :to"
+                + " AND tenant_id = :tenantId"
+                + " GROUP BY vat_rate_bp, payment_method, certified"
+                + " ORDER BY certified DESC, vat_rate_bp DESC, payment_method";
+
+        long[] declared = new long[4];
+        long[] pending = new long[4];
+        List<VatDeclarationResponse.LineDTO> lines = new ArrayList<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            long count = rs.getLong("invoice_count");
+            long dayCount = rs.getLong("day_invoice_count");
+            long base = rs.getLong("base_cents");
+            long vat = rs.getLong("vat_cents");
+            long stamp = rs.getLong("stamp_duty_cents");
+            // Lignes ramenées à zéro par des avoirs ou suppressions
+            if (count == 0 && dayCount == 0 && base == 0 && vat == 0 && stamp == 0) {
+                return;
+            }
+            boolean certified = rs.getBoolean("certified");
+            int rate = rs.getInt("vat_rate_bp");
+            FneTaxCode code = FneTaxCode.fromRate(rate);
+
+            long[] totals = certified ? declared : pending;
+            totals[0] += base;
+            totals[1] += vat;
+            totals[2] += stamp;
+            // Chaque facture compte une fois, quel que soit son nombre de taux
+            totals[3] += dayCount;
+
+            lines.add(VatDeclarationResponse.LineDTO.builder()
+                    .taxCode(code != null ? code.name() : null)
+                    .vatRate(BigDecimal.valueOf(rate, 2))
+                    .paymentMethod(rs.getString("payment_method"))
+                    .certified(certified)
+                    .invoiceCount(count)
+                    .base(FneTotals.amount(base))
+                    .vat(FneTotals.amount(vat))
+                    .stampDuty(FneTotals.amount(stamp))
+                    .build());
+        });
+
+        return VatDeclarationResponse.builder()
+                .from(from)
+                .to(to)
+                .declared(totals(declared))
+                .pending(totals(pending))
+                .lines(lines)
+                .build();
+    }
+
+    /**
+     * Recalcule les agrégats de la période du tenant courant depuis les factures puis renvoie
+     * la déclaration.
+     */
+    public VatDeclarationResponse rebuild(LocalDate from, LocalDate to) {
+        validatePeriod(from, to);
+        vatRollupService.rebuild(TenantContext.getTenantId(), from, to);
+        return declaration(from, to);
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private static void validatePeriod(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Période de déclaration incomplète : 'from' et 'to' requis");
+        }
+        if (from.isAfter(to)) {
+            throw new IllegalArgumentException("'from' doit être antérieure ou égale à 'to'");
+        }
+    }
+
+    /** {base, TVA, timbre} en centimes et nombre de factures → totaux */
+    private static VatDeclarationResponse.TotalsDTO totals(long[] cents) {
+        return VatDeclarationResponse.TotalsDTO.builder()
+                .subtotal(FneTotals.amount(cents[0]))
+                .totalVat(FneTotals.amount(cents[1]))
+                .stampDuty(FneTotals.amount(cents[2]))
+                .totalToPay(FneTotals.amount(cents[0] + cents[1] + cents[2]))
+                .invoiceCount(cents[3])
+                .build();
+    }
+}
@@ -0,0 +1,41 @@
+package com.oxalio.invoice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Remplissage initial des agrégats TVA (V25) : la table est créée vide alors que des factures existent,
+ * et une migration peut la vider pour changer sa forme. Dans les deux cas, reconstruction complète
+ * au démarrage.
+ *
+ * Lancé une fois tous les singletons créés, avant l'ouverture du serveur web et des tâches planifiées :
+ * aucune facture ne peut écrire de delta entre le constat "table vide" et la reconstruction.
+ * Plusieurs réplicas démarrés ensemble reconstruisent chacun le même résultat (table verrouillée
+ * pendant la reconstruction sous PostgreSQL).
+ */
+@Slf4j
+@Component
+public class VatRollupBackfill implements SmartInitializingSingleton {
+
+    private final VatRollupService vatRollupService;
+    private final boolean enabled;
+
+    public VatRollupBackfill(VatRollupService vatRollupService,
+                             @Value("${oxalio.invoice.vat-rollup.backfill-on-startup:true}") boolean enabled) {
+        this.vatRollupService = vatRollupService;
+        this.enabled = enabled;
+    }
+
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        int invoices = vatRollupService.backfillIfEmpty();
+        if (invoices > 0) {
+            log.info("📊 Agrégats TVA remplis au démarrage : {} facture(s)", invoices);
+        }
+    }
+}
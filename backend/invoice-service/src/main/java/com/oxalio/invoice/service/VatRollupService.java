@@ -0,0 +1,625 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.model.InvoiceStatus;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import com.oxalio.invoice.service.InvoiceArchive.ArchivedInvoice;
+import jakarta.persistence.EntityManager;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.jdbc.core.namedparam.SqlParameterSource;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.sql.DatabaseMetaData;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Agrégats journaliers de TVA (V25) par (tenant, jour, taux, mode de paiement, certifiée).
+ *
+ * Chaque écriture de facture fournit sa contribution avant / après :
+ * - une ligne par taux du résumé TVA (base, TVA, une facture), timbre de quittance sur le premier taux
+ * - day_invoice_count : la facture comptée une seule fois, sur son premier taux ; sa somme sans
+ *   regrouper par taux donne le nombre de factures (invoice_count compte une facture par taux)
+ * - facture supprimée : contribution nulle
+ * - facture annulée : contribution nulle, sauf les montants déjà remboursés par avoir FNE, qui restent
+ *   au jour de la facture pour compenser leur retrait au jour de l'avoir (pas de double déduction)
+ * - la certification (DGI ou FNE) déplace la contribution vers certified = true
+ * - avoir FNE partiel confirmé : base et TVA remboursées retirées au jour de l'avoir,
+ *   sans toucher au nombre de factures
+ *
+ * Les deltas d'une transaction sont cumulés puis appliqués juste avant le commit, en un batch
+ * d'upserts triés par clé : verrous de ligne tenus le moins longtemps possible et pris dans
+ * le même ordre par toutes les transactions (pas d'interblocage entre caisses du même jour).
+ * L'archivage ne touche pas aux agrégats : ils couvrent tout l'historique.
+ */
+@Slf4j
+@Service
+public class VatRollupService {
+
+    /** Jour d'émission en heure d'Abidjan (comme les filtres de date de la liste) */
+    static final ZoneId ROLLUP_ZONE = ZoneId.of("Africa/Abidjan");
+
+    /** tenant_id des factures sans tenant (la clé primaire ne peut pas contenir NULL) */
+    static final long NO_TENANT = 0L;
+    static final String UNKNOWN_PAYMENT = "unknown";
+
+    private static final String UPSERT_POSTGRES = "INSERT INTO vat_daily_rollups "
+            + "(tenant_id, issue_day, vat_rate_bp, payment_method, certified, "
+            + " invoice_count, day_invoice_count, base_cents, vat_cents, stamp_duty_cents, updated_at) "
+            + "VALUES (:tenantId, :day, :rate, :payment, :certified, :count, :dayCount, :base, :vat, :stamp, :now) "
+            + "ON CONFLICT (tenant_id, issue_day, vat_rate_bp, payment_method, certified) DO UPDATE SET "
+            + " invoice_count = vat_daily_rollups.invoice_count + EXCLUDED.invoice_count,"
+            + " day_invoice_count = vat_daily_rollups.day_invoice_count + EXCLUDED.day_invoice_count,"
+            + " base_cents = vat_daily_rollups.base_cents + EXCLUDED.base_cents,"
+            + " vat_cents = vat_daily_rollups.vat_cents + EXCLUDED.vat_cents,"
+            + " stamp_duty_cents = vat_daily_rollups.stamp_duty_cents + EXCLUDED.stamp_duty_cents,"
+            + " updated_at = EXCLUDED.updated_at";
+
+    /** H2 : pas de ON CONFLICT DO UPDATE, MERGE standard */
+    private static final String UPSERT_H2 = "MERGE INTO vat_daily_rollups r "
+            + "USING (VALUES (CAST(:tenantId AS BIGINT), CAST(:day AS DATE), CAST(:rate AS INTEGER),"
+            + " CAST(:payment AS VARCHAR(50)), CAST(:certified AS BOOLEAN)))"
+            + " AS k(tenant_id, issue_day, vat_rate_bp, payment_method, certified) "
+            + "ON r.tenant_id = k.tenant_id AND r.issue_day = k.issue_day AND r.vat_rate_bp = k.vat_rate_bp"
+            + " AND r.payment_method = k.payment_method AND r.certified = k.certified "
+            + "WHEN MATCHED THEN UPDATE SET"
+            + " invoice_count = r.invoice_count + :count,"
+            + " day_invoice_count = r.day_invoice_count + :dayCount,"
+            + " base_cents = r.base_cents + :base,"
+            + " vat_cents = r.vat_cents + :vat,"
+            + " stamp_duty_cents = r.stamp_duty_cents + :stamp,"
+            + " updated_at = :now "
+            + "WHEN NOT MATCHED THEN INSERT"
+            + " (tenant_id, issue_day, vat_rate_bp, payment_method, certified,"
+            + "  invoice_count, day_invoice_count, base_cents, vat_cents, stamp_duty_cents, updated_at)"
+            + " VALUES (k.tenant_id, k.issue_day, k.vat_rate_bp, k.payment_method, k.certified,"
+            + "  :count, :dayCount, :base, :vat, :stamp, :now)";
+
+    private final NamedParameterJdbcTemplate jdbcTemplate;
+    private final DataSource dataSource;
+    private final FneTaxEngine fneTaxEngine;
+    private final InvoiceRepository invoiceRepository;
+    private final InvoiceArchive invoiceArchive;
+    private final EntityManager entityManager;
+    private final int fetchSize;
+    private volatile Boolean postgres;
+
+    public VatRollupService(NamedParameterJdbcTemplate jdbcTemplate,
+                            DataSource dataSource,
+                            FneTaxEngine fneTaxEngine,
+                            InvoiceRepository invoiceRepository,
+                            InvoiceArchive invoiceArchive,
+                            EntityManager entityManager,
+                            @Value("${oxalio.invoice.export.fetch-size:500}") int fetchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.dataSource = dataSource;
+        this.fneTaxEngine = fneTaxEngine;
+        this.invoiceRepository = invoiceRepository;
+        this.invoiceArchive = invoiceArchive;
+        this.entityManager = entityManager;
+        this.fetchSize = Math.max(1, fetchSize);
+    }
+
+    /** Clé d'une ligne d'agrégat ; ordre = ordre de verrouillage des upserts */
+    record Key(long tenantId, LocalDate day, int rateBasisPoints, String paymentMethod, boolean certified)
+            implements Comparable<Key> {
+
+        private static final Comparator<Key> ORDER = Comparator
+                .comparingLong(Key::tenantId)
+                .thenComparing(Key::day)
+                .thenComparingInt(Key::rateBasisPoints)
+                .thenComparing(Key::paymentMethod)
+                .thenComparing(Key::certified);
+
+        @Override
+        public int compareTo(Key other) {
+            return ORDER.compare(this, other);
+        }
+    }
+
+    /**
+     * Part d'une facture dans une ligne d'agrégat (montants en centimes).
+     * invoices : 1 par taux ; dayInvoices : 1 sur le premier taux seulement ; 0 et 0 pour un avoir.
+     */
+    record Row(Key key, long invoices, long dayInvoices, long base, long vat, long stampDuty) {
+    }
+
+    /**
+     * Contribution figée d'une facture (valeurs copiées : l'entité peut être modifiée ensuite).
+     */
+    public static final class Contribution {
+
+        public static final Contribution NONE = new Contribution(Collections.emptyList());
+
+        private final List<Row> rows;
+
+        private Contribution(List<Row> rows) {
+            this.rows = rows;
+        }
+
+        List<Row> rows() {
+            return rows;
+        }
+    }
+
+    // ============================================================
+    // CONTRIBUTIONS
+    // ============================================================
+    /**
+     * Contribution actuelle de la facture, à capturer avant de la modifier.
+     * Totaux figés à l'écriture ; recalcul depuis les lignes pour une autre version du moteur.
+     */
+    public Contribution contributionOf(InvoiceEntity invoice) {
+        if (invoice.getIssueDate() == null) {
+            return Contribution.NONE;
+        }
+        if (invoice.getStatus() == InvoiceStatus.CANCELLED) {
+            return invoice.getFneInvoiceId() == null ? Contribution.NONE
+                    : refundContribution(refunded(invoice, confirmedRefundedItems(invoice.getId())),
+                            invoice.getIssueDate());
+        }
+        List<FneTotals.VatBreakdown> breakdown;
+        long stampDuty;
+        if (Integer.valueOf(FneTaxEngine.VERSION).equals(invoice.getTotalsVersion())
+                && invoice.getVatBreakdown() != null) {
+            breakdown = FneTotals.decodeBreakdown(invoice.getVatBreakdown());
+            stampDuty = FneTaxEngine.toUnits(invoice.getOtherTaxes(), 2);
+        } else {
+            FneTotals totals = fneTaxEngine.compute(invoice.getLines(), FneTaxEngine.ENTITY_LINES,
+                    invoice.getPaymentMethod());
+            breakdown = totals.breakdown();
+            stampDuty = FneTaxEngine.toUnits(totals.stampDuty(), 2);
+        }
+        return contribution(invoice.getTenantId(), invoice.getIssueDate(), invoice.getPaymentMethod(),
+                invoice.getDgiReference() != null || invoice.getFneReference() != null,
+                breakdown, stampDuty);
+    }
+
+    /** Contribution d'une facture archivée (réponse complète, totaux figés à l'archivage) */
+    Contribution contributionOf(ArchivedInvoice archived) {
+        InvoiceResponse invoice = archived.invoice();
+        if (invoice.getIssueDate() == null) {
+            return Contribution.NONE;
+        }
+        if (InvoiceStatus.CANCELLED.name().equals(invoice.getStatus())) {
+            return invoice.getFneInvoiceId() == null ? Contribution.NONE
+                    : refundContribution(refunded(archived, confirmedRefundedItems(invoice.getId())),
+                            invoice.getIssueDate());
+        }
+        String paymentMethod = invoice.getPaymentMethod() != null
+                ? invoice.getPaymentMethod() : invoice.getPaymentMode();
+        InvoiceResponse.TotalsDTO totals = invoice.getTotals();
+
+        List<FneTotals.VatBreakdown> breakdown;
+        long stampDuty;
+        if (totals != null && totals.getVatBreakdown() != null) {
+            breakdown = new ArrayList<>(totals.getVatBreakdown().size());
+            for (InvoiceResponse.VatBreakdownDTO b : totals.getVatBreakdown()) {
+                breakdown.add(new FneTotals.VatBreakdown(Math.toIntExact(FneTaxEngine.toUnits(b.getRate(), 2)), null,
+                        FneTaxEngine.toUnits(b.getBase(), 2), FneTaxEngine.toUnits(b.getVat(), 2)));
+            }
+            stampDuty = FneTaxEngine.toUnits(totals.getOtherTaxes(), 2);
+        } else {
+            FneTotals computed = fneTaxEngine.compute(invoice.getLines(), FneTaxEngine.RESPONSE_LINES, paymentMethod);
+            breakdown = computed.breakdown();
+            stampDuty = FneTaxEngine.toUnits(computed.stampDuty(), 2);
+        }
+        return contribution(archived.tenantId(), invoice.getIssueDate(), paymentMethod,
+                invoice.getDgiReference() != null || invoice.getFneReference() != null,
+                breakdown, stampDuty);
+    }
+
+    private static Contribution contribution(Long tenantId, Instant issueDate, String paymentMethod,
+                                             boolean certified, List<FneTotals.VatBreakdown> breakdown,
+                                             long stampDuty) {
+        long tenant = tenantId != null ? tenantId : NO_TENANT;
+        LocalDate day = LocalDate.ofInstant(issueDate, ROLLUP_ZONE);
+        String payment = paymentMethod != null && !paymentMethod.isBlank()
+                ? paymentMethod.trim().toLowerCase(Locale.ROOT) : UNKNOWN_PAYMENT;
+
+        // Facture sans ligne : seul le timbre éventuel, au taux 0
+        if (breakdown.isEmpty()) {
+            return new Contribution(List.of(new Row(new Key(tenant, day, 0, payment, certified), 1, 1, 0, 0, stampDuty)));
+        }
+        List<Row> rows = new ArrayList<>(breakdown.size());
+        for (int i = 0; i < breakdown.size(); i++) {
+            FneTotals.VatBreakdown b = breakdown.get(i);
+            rows.add(new Row(new Key(tenant, day, b.rateBasisPoints(), payment, certified),
+                    1, i == 0 ? 1 : 0, b.base(), b.vat(), i == 0 ? stampDuty : 0));
+        }
+        return new Contribution(rows);
+    }
+
+    // ============================================================
+    // DELTAS (TRANSACTION DE L'APPELANT)
+    // ============================================================
+    /** Factures créées (unitaire ou par lot) */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordCreated(List<InvoiceEntity> invoices) {
+        Map<Key, long[]> deltas = pendingDeltas();
+        for (InvoiceEntity invoice : invoices) {
+            add(deltas, contributionOf(invoice), 1);
+        }
+    }
+
+    /**
+     * Facture modifiée, certifiée, annulée ou supprimée.
+     *
+     * @param before contribution capturée avant la modification
+     * @param after  facture après modification (null = supprimée)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordChange(Contribution before, InvoiceEntity after) {
+        Map<Key, long[]> deltas = pendingDeltas();
+        add(deltas, before, -1);
+        if (after != null) {
+            add(deltas, contributionOf(after), 1);
+        }
+    }
+
+    /**
+     * Avoir FNE confirmé (registre des avoirs) : montants remboursés par taux, retirés des agrégats
+     * certifiés au jour de l'avoir. Remise de chaque ligne au prorata de la quantité remboursée.
+     * Facture déjà annulée : les mêmes montants s'ajoutent à sa contribution (cf. contributionOf),
+     * au jour de la facture.
+     *
+     * @param invoiceId      facture d'origine (tables chaudes ou archive)
+     * @param refundedByItem quantité remboursée par article FNE (fneItemId)
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    public void recordRefund(Long invoiceId, Map<String, BigDecimal> refundedByItem, Instant refundedAt) {
+        Refunded refunded = refunded(invoiceId, refundedByItem);
+        if (refunded == null) {
+            return;
+        }
+        Map<Key, long[]> deltas = pendingDeltas();
+        add(deltas, refundContribution(refunded, refundedAt), -1);
+        if (refunded.cancelled()) {
+            add(deltas, refundContribution(refunded, refunded.issueDate()), 1);
+        }
+    }
+
+    /** Facture d'origine d'un avoir et lignes remboursées */
+    private record Refunded(Long tenantId, String paymentMethod, Instant issueDate, boolean cancelled,
+                            List<RefundedLine> lines) {
+    }
+
+    /** Facture d'origine (tables chaudes ou archive) ; null si introuvable */
+    private Refunded refunded(Long invoiceId, Map<String, BigDecimal> refundedByItem) {
+        Optional<InvoiceEntity> hot = invoiceRepository.findWithLinesById(invoiceId);
+        if (hot.isPresent()) {
+            return refunded(hot.get(), refundedByItem);
+        }
+        ArchivedInvoice archived = invoiceArchive.findAllById(List.of(invoiceId)).get(invoiceId);
+        if (archived == null) {
+            log.warn("Avoir sur la facture {} introuvable : agrégats TVA non mis à jour", invoiceId);
+            return null;
+        }
+        return refunded(archived, refundedByItem);
+    }
+
+    private static Refunded refunded(InvoiceEntity invoice, Map<String, BigDecimal> refundedByItem) {
+        List<RefundedLine> lines = new ArrayList<>();
+        for (InvoiceLineEntity l : invoice.getLines()) {
+            addRefunded(lines, refundedByItem.get(l.getFneItemId()), l.getQuantity(), l.getUnitPrice(),
+                    l.getDiscount(), l.getVatRate());
+        }
+        return new Refunded(invoice.getTenantId(), invoice.getPaymentMethod(), invoice.getIssueDate(),
+                invoice.getStatus() == InvoiceStatus.CANCELLED, lines);
+    }
+
+    private static Refunded refunded(ArchivedInvoice archived, Map<String, BigDecimal> refundedByItem) {
+        InvoiceResponse invoice = archived.invoice();
+        List<RefundedLine> lines = new ArrayList<>();
+        for (InvoiceResponse.InvoiceLineDTO l : invoice.getLines()) {
+            addRefunded(lines, refundedByItem.get(l.getFneItemId()), l.getQuantity(), l.getUnitPrice(),
+                    l.getDiscount(), l.getVatRate());
+        }
+        return new Refunded(archived.tenantId(),
+                invoice.getPaymentMethod() != null ? invoice.getPaymentMethod() : invoice.getPaymentMode(),
+                invoice.getIssueDate(), InvoiceStatus.CANCELLED.name().equals(invoice.getStatus()), lines);
+    }
+
+    /** Montants remboursés au jour donné (à retirer : signe -1), sans facture ni timbre */
+    private Contribution refundContribution(Refunded refunded, Instant day) {
+        if (refunded.lines().isEmpty()) {
+            return Contribution.NONE;
+        }
+        // Timbre de quittance non remboursé ; l'avoir est certifié par la FNE
+        List<FneTotals.VatBreakdown> breakdown =
+                fneTaxEngine.compute(refunded.lines(), REFUNDED_LINES, null).breakdown();
+        Contribution refund = contribution(refunded.tenantId(), day, refunded.paymentMethod(), true, breakdown, 0);
+        List<Row> rows = new ArrayList<>(refund.rows().size());
+        for (Row row : refund.rows()) {
+            rows.add(new Row(row.key(), 0, 0, row.base(), row.vat(), 0));
+        }
+        return new Contribution(rows);
+    }
+
+    /** Quantités remboursées par les avoirs confirmés d'une facture, par article FNE (V30) */
+    private Map<String, BigDecimal> confirmedRefundedItems(Long invoiceId) {
+        Map<String, BigDecimal> items = new HashMap<>();
+        jdbcTemplate.query("SELECT l.fne_item_id, SUM(e.quantity) AS quantity"
+                        + " FROM refund_ledger_lines l"
+                        + " JOIN refund_ledger_entries e ON e.fne_item_id = l.fne_item_id"
+                        + " WHERE l.invoice_id = :invoiceId AND e.status = 'CONFIRMED'"
+                        + " GROUP BY l.fne_item_id",
+                new MapSqlParameterSource("invoiceId", invoiceId), rs -> {
+                    items.put(rs.getString("fne_item_id"), rs.getBigDecimal("quantity"));
+                });
+        return items;
+    }
+
+    /** Ligne remboursée : quantité de l'avoir, remise au prorata */
+    private record RefundedLine(BigDecimal quantity, BigDecimal unitPrice, BigDecimal discount, BigDecimal vatRate) {
+    }
+
+    private static final FneTaxEngine.LineView<RefundedLine> REFUNDED_LINES = new FneTaxEngine.LineView<>() {
+        public BigDecimal quantity(RefundedLine l) { return l.quantity(); }
+        public BigDecimal unitPrice(RefundedLine l) { return l.unitPrice(); }
+        public BigDecimal discount(RefundedLine l) { return l.discount(); }
+        public BigDecimal vatRate(RefundedLine l) { return l.vatRate(); }
+    };
+
+    private static void addRefunded(List<RefundedLine> lines, BigDecimal refunded, BigDecimal quantity,
+                                    BigDecimal unitPrice, BigDecimal discount, BigDecimal vatRate) {
+        if (refunded == null || quantity == null || quantity.signum() <= 0) {
+            return;
+        }
+        BigDecimal proratedDiscount = discount == null ? BigDecimal.ZERO
+                : discount.multiply(refunded).divide(quantity, 2, RoundingMode.HALF_UP);
+        lines.add(new RefundedLine(refunded, unitPrice, proratedDiscount, vatRate));
+    }
+
+    /** Deltas de la transaction courante, appliqués par PendingDeltas.beforeCommit */
+    private Map<Key, long[]> pendingDeltas() {
+        for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+            if (synchronization instanceof PendingDeltas pending) {
+                return pending.deltas;
+            }
+        }
+        PendingDeltas pending = new PendingDeltas();
+        TransactionSynchronizationManager.registerSynchronization(pending);
+        return pending.deltas;
+    }
+
+    private final class PendingDeltas implements TransactionSynchronization {
+
+        /** Trié par clé : ordre de verrouillage stable */
+        private final Map<Key, long[]> deltas = new TreeMap<>();
+
+        @Override
+        public void beforeCommit(boolean readOnly) {
+            apply(deltas);
+        }
+    }
+
+    // ============================================================
+    // RECONSTRUCTION
+    // ============================================================
+    /**
+     * Recalcule les agrégats des jours [from, to] d'un tenant depuis les factures (tables chaudes
+     * et archive).
+     *
+     * Sous PostgreSQL, la table est verrouillée contre les écritures pendant la reconstruction :
+     * une facture validée avant le verrou est lue par le parcours, une facture validée après
+     * applique son delta sur les agrégats reconstruits. Les avoirs confirmés (registre des avoirs)
+     * sont retirés au jour de leur confirmation, comme par recordRefund.
+     *
+     * @param tenantId tenant à reconstruire (null = factures sans tenant, cf. TenantContext)
+     * @return nombre de factures relues
+     */
+    @Transactional
+    public int rebuild(Long tenantId, LocalDate from, LocalDate to) {
+        return rebuild(false, tenantId, from, to);
+    }
+
+    /**
+     * Idem pour tous les tenants (remplissage initial, backfillIfEmpty).
+     *
+     * @return nombre de factures relues
+     */
+    @Transactional
+    public int rebuildAll(LocalDate from, LocalDate to) {
+        return rebuild(true, null, from, to);
+    }
+
+    private int rebuild(boolean allTenants, Long tenantId, LocalDate from, LocalDate to) {
+        if (isPostgres()) {
+            jdbcTemplate.getJdbcTemplate().execute("LOCK TABLE vat_daily_rollups IN SHARE ROW EXCLUSIVE MODE");
+        }
+        MapSqlParameterSource range = new MapSqlParameterSource()
+                .addValue("from", from)
+                .addValue("to", to)
+                .addValue("tenantId", tenantId != null ? tenantId : NO_TENANT);
+        jdbcTemplate.update("DELETE FROM vat_daily_rollups WHERE issue_day BETWEEN :from AND :to"
+                + (allTenants ? "" : " AND tenant_id = :tenantId"), range);
+
+        Instant start = from.atStartOfDay(ROLLUP_ZONE).toInstant();
+        Instant end = to.plusDays(1).atStartOfDay(ROLLUP_ZONE).toInstant();
+        Map<Key, long[]> totals = new TreeMap<>();
+        int[] count = {0};
+
+        InvoiceListFilter filter = InvoiceListFilter.builder().from(start).to(end).build();
+        try (Stream<InvoiceEntity> invoices = allTenants
+                ? invoiceRepository.streamAll(filter, fetchSize)
+                : invoiceRepository.streamForExport(tenantId, filter, fetchSize)) {
+            invoices.forEach(invoice -> {
+                add(totals, contributionOf(invoice), 1);
+                // Lecture seule : on ne garde pas les factures dans le contexte de persistance
+                entityManager.detach(invoice);
+                count[0]++;
+            });
+        }
+        Consumer<ArchivedInvoice> archivedAction = archived -> {
+            add(totals, contributionOf(archived), 1);
+            count[0]++;
+        };
+        if (allTenants) {
+            invoiceArchive.forEachIssuedBetween(start, end, archivedAction);
+        } else {
+            invoiceArchive.forEachIssuedBetween(tenantId, start, end, archivedAction);
+        }
+        // Facture annulée depuis : l'avoir reste retiré à son jour, compensé par contributionOf
+        for (ConfirmedRefund refund : confirmedRefunds(allTenants, tenantId, start, end)) {
+            Refunded refunded = refunded(refund.invoiceId(), refund.items());
+            if (refunded != null) {
+                add(totals, refundContribution(refunded, refund.refundedAt()), -1);
+            }
+        }
+
+        apply(totals);
+        log.info("Agrégats TVA reconstruits du {} au {} (tenant {}) : {} facture(s), {} ligne(s)",
+                from, to, allTenants ? "tous" : tenantId != null ? tenantId : "aucun", count[0], totals.size());
+        return count[0];
+    }
+
+    /** Avoir confirmé : facture d'origine, jour de confirmation, quantité par article FNE */
+    private record ConfirmedRefund(Long invoiceId, Instant refundedAt, Map<String, BigDecimal> items) {
+    }
+
+    /** Avoirs confirmés dans [start, end), du tenant (null = sans tenant) ou de tous */
+    private List<ConfirmedRefund> confirmedRefunds(boolean allTenants, Long tenantId, Instant start, Instant end) {
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("start", Timestamp.from(start))
+                .addValue("end", Timestamp.from(end))
+                .addValue("tenantId", tenantId);
+        String sql = "SELECT e.refund_id, e.fne_item_id, e.quantity, e.updated_at, l.invoice_id"
+                + " FROM refund_ledger_entries e"
+                + " JOIN refund_ledger_lines l ON l.fne_item_id = e.fne_item_id"
+                + " WHERE e.status = 'CONFIRMED' AND e.updated_at >= :start AND e.updated_at < :end"
+                + (allTenants ? "" : tenantId != null ? " AND l.tenant_id = :tenantId" : " AND l.tenant_id IS NULL");
+
+        Map<String, ConfirmedRefund> refunds = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, params, rs -> {
+            String refundId = rs.getString("refund_id");
+            ConfirmedRefund refund = refunds.get(refundId);
+            if (refund == null) {
+                refund = new ConfirmedRefund(rs.getLong("invoice_id"), rs.getTimestamp("updated_at").toInstant(),
+                        new HashMap<>());
+                refunds.put(refundId, refund);
+            }
+            refund.items().merge(rs.getString("fne_item_id"), rs.getBigDecimal("quantity"), BigDecimal::add);
+        });
+        return new ArrayList<>(refunds.values());
+    }
+
+    /**
+     * Reconstruction complète si aucun agrégat n'existe alors que des factures ont été émises
+     * (VatRollupBackfill, au démarrage).
+     *
+     * @return nombre de factures relues (0 si rien à faire)
+     */
+    @Transactional
+    public int backfillIfEmpty() {
+        Integer hasRollups = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT CASE WHEN EXISTS (SELECT 1 FROM vat_daily_rollups) THEN 1 ELSE 0 END", Integer.class);
+        if (hasRollups != null && hasRollups == 1) {
+            return 0;
+        }
+        Timestamp[] range = jdbcTemplate.getJdbcTemplate().queryForObject(
+                "SELECT MIN(d) AS first_day, MAX(d) AS last_day FROM ("
+                        + " SELECT MIN(issue_date) AS d FROM invoices"
+                        + " UNION ALL SELECT MAX(issue_date) FROM invoices"
+                        + " UNION ALL SELECT MIN(issue_date) FROM invoice_archive_entries"
+                        + " UNION ALL SELECT MAX(issue_date) FROM invoice_archive_entries) bounds",
+                (rs, i) -> new Timestamp[]{rs.getTimestamp("first_day"), rs.getTimestamp("last_day")});
+        if (range == null || range[0] == null) {
+            return 0;
+        }
+        // Avoirs confirmés après la dernière facture : jusqu'à aujourd'hui
+        LocalDate today = LocalDate.now(ROLLUP_ZONE);
+        LocalDate last = LocalDate.ofInstant(range[1].toInstant(), ROLLUP_ZONE);
+        return rebuildAll(LocalDate.ofInstant(range[0].toInstant(), ROLLUP_ZONE),
+                last.isAfter(today) ? last : today);
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /** deltas[clé] = {factures par taux, factures du jour, base, TVA, timbre} */
+    private static void add(Map<Key, long[]> deltas, Contribution contribution, int sign) {
+        for (Row row : contribution.rows()) {
+            long[] d = deltas.computeIfAbsent(row.key(), k -> new long[5]);
+            d[0] += sign * row.invoices();
+            d[1] += sign * row.dayInvoices();
+            d[2] += sign * row.base();
+            d[3] += sign * row.vat();
+            d[4] += sign * row.stampDuty();
+        }
+    }
+
+    private void apply(Map<Key, long[]> deltas) {
+        Timestamp now = Timestamp.from(Instant.now());
+        List<SqlParameterSource> batch = new ArrayList<>(deltas.size());
+        for (Map.Entry<Key, long[]> e : deltas.entrySet()) {
+            long[] d = e.getValue();
+            // Modification sans effet fiscal : aucune ligne verrouillée
+            if (d[0] == 0 && d[1] == 0 && d[2] == 0 && d[3] == 0 && d[4] == 0) {
+                continue;
+            }
+            Key k = e.getKey();
+            batch.add(new MapSqlParameterSource()
+                    .addValue("tenantId", k.tenantId())
+                    .addValue("day", k.day())
+                    .addValue("rate", k.rateBasisPoints())
+                    .addValue("payment", k.paymentMethod())
+                    .addValue("certified", k.certified())
+                    .addValue("count", d[0])
+                    .addValue("dayCount", d[1])
+                    .addValue("base", d[2])
+                    .addValue("vat", d[3])
+                    .addValue("stamp", d[4])
+                    .addValue("now", now));
+        }
+        if (!batch.isEmpty()) {
+            jdbcTemplate.batchUpdate(isPostgres() ? UPSERT_POSTGRES : UPSERT_H2,
+                    batch.toArray(new SqlParameterSource[0]));
+        }
+    }
+
+    boolean isPostgres() {
+        Boolean result = postgres;
+        if (result == null) {
+            try {
+                String product = JdbcUtils.extractDatabaseMetaData(dataSource,
+                        DatabaseMetaData::getDatabaseProductName);
+                result = "PostgreSQL".equalsIgnoreCase(product);
+            } catch (MetaDataAccessException e) {
+                log.warn("Type de base inconnu, upsert standard (MERGE) pour les agrégats TVA : {}", e.getMessage());
+                result = false;
+            }
+            postgres = result;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,95 @@
+package db.migration.common;
+
+import org.flywaydb.core.api.migration.BaseJavaMigration;
+import org.flywaydb.core.api.migration.Context;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.HexFormat;
+
+/**
+ * V17 : reprise des QR existants (invoices.qr_base64) vers invoice_qr_codes,
+ * puis suppression de la colonne CLOB.
+ *
+ * En Java car le décodage base64 n'est pas portable en SQL (H2 / PostgreSQL).
+ * Les valeurs illisibles sont ignorées : le QR sera régénéré à la prochaine certification.
+ */
+public class V17__Move_qr_codes_to_binary_table extends BaseJavaMigration {
+
+    private static final int BATCH_SIZE = 200;
+
+    @Override
+    public void migrate(Context context) throws Exception {
+        Connection connection = context.getConnection();
+        MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+        Timestamp now = Timestamp.from(Instant.now());
+
+        try (Statement select = connection.createStatement();
+             PreparedStatement insert = connection.prepareStatement(
+                     "INSERT INTO invoice_qr_codes (invoice_id, sha256, content_type, size_bytes, png, created_at) "
+                             + "VALUES (?, ?, 'image/png', ?, ?, ?)");
+             PreparedStatement update = connection.prepareStatement(
+                     "UPDATE invoices SET qr_sha256 = ? WHERE id = ?")) {
+
+            select.setFetchSize(BATCH_SIZE);
+            int pending = 0;
+
+            try (ResultSet rs = select.executeQuery(
+                    "SELECT id, qr_base64 FROM invoices WHERE qr_base64 IS NOT NULL")) {
+                while (rs.next()) {
+                    byte[] png = decode(rs.getString(2));
+                    if (png == null) {
+                        continue;
+                    }
+                    long id = rs.getLong(1);
+                    String hash = HexFormat.of().formatHex(sha256.digest(png));
+
+                    insert.setLong(1, id);
+                    insert.setString(2, hash);
+                    insert.setInt(3, png.length);
+                    insert.setBytes(4, png);
+                    insert.setTimestamp(5, now);
+                    insert.addBatch();
+
+                    update.setString(1, hash);
+                    update.setLong(2, id);
+                    update.addBatch();
+
+                    if (++pending == BATCH_SIZE) {
+                        insert.executeBatch();
+                        update.executeBatch();
+                        pending = 0;
+                    }
+                }
+            }
+            if (pending > 0) {
+                insert.executeBatch();
+                update.executeBatch();
+            }
+        }
+
+        try (Statement ddl = connection.createStatement()) {
+            ddl.execute("ALTER TABLE invoices DROP COLUMN qr_base64");
+        }
+    }
+
+    private static byte[] decode(String value) {
+        if (value == null || value.isBlank()) {
+            return null;
+        }
+        String base64 = value.startsWith("data:") ? value.substring(value.indexOf(',') + 1) : value;
+        try {
+            byte[] bytes = Base64.getMimeDecoder().decode(base64.getBytes(StandardCharsets.US_ASCII));
+            return bytes.length == 0 ? null : bytes;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,22 @@
+-- ============================================================
+--  V13 : Compteurs de numérotation des factures
+--  Une ligne par (tenant, exercice, point de vente).
+--  next_value = prochain numéro non encore attribué à une instance.
+--  Les instances réservent des blocs (hi/lo) : next_value avance
+--  d'un bloc complet à chaque réservation.
+-- ============================================================
+CREATE TABLE invoice_number_sequences (
+    tenant_id     BIGINT       NOT NULL,
+    fiscal_year   INTEGER      NOT NULL,
+    point_of_sale VARCHAR(32)  NOT NULL,
+    next_value    BIGINT       NOT NULL,
+    updated_at    TIMESTAMP,
+    PRIMARY KEY (tenant_id, fiscal_year, point_of_sale)
+);
+
+-- Reprise de l'existant : l'ancien schéma numérotait via COUNT(*) + 1
+-- (format INV-AAAA-NNNNNN, sans tenant ni point de vente).
+-- On amorce le compteur "global" après le dernier numéro déjà émis.
+INSERT INTO invoice_number_sequences (tenant_id, fiscal_year, point_of_sale, next_value, updated_at)
+SELECT 0, CAST(EXTRACT(YEAR FROM CURRENT_DATE) AS INTEGER), '', COUNT(*) + 1, CURRENT_TIMESTAMP
+FROM invoices;
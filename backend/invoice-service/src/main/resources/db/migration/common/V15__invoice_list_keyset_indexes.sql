@@ -0,0 +1,14 @@
+-- ============================================================
+--  V15 : Index de la liste paginée par curseur (keyset)
+--  Tri : issue_date DESC, id DESC, toujours restreint au tenant.
+--  Les filtres status / NCC acheteur gardent le même ordre de tri
+--  pour éviter un tri en mémoire.
+-- ============================================================
+CREATE INDEX idx_invoices_tenant_issue_id
+    ON invoices (tenant_id, issue_date DESC, id DESC);
+
+CREATE INDEX idx_invoices_tenant_status_issue_id
+    ON invoices (tenant_id, status, issue_date DESC, id DESC);
+
+CREATE INDEX idx_invoices_tenant_buyer_issue_id
+    ON invoices (tenant_id, buyer_tax_id, issue_date DESC, id DESC);
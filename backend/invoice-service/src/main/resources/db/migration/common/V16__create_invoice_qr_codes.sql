@@ -0,0 +1,18 @@
+-- ============================================================
+--  V16 : QR codes hors de la ligne facture
+--  Octets PNG bruts (plus de base64 en CLOB dans invoices) dans
+--  une table dédiée, lue uniquement par /invoices/{id}/qr.png et le PDF.
+--  invoices.qr_sha256 = adresse du contenu (ETag, version d'URL).
+-- ============================================================
+CREATE TABLE invoice_qr_codes (
+    invoice_id   BIGINT       NOT NULL PRIMARY KEY,
+    sha256       VARCHAR(64)  NOT NULL,
+    content_type VARCHAR(32)  NOT NULL,
+    size_bytes   INTEGER      NOT NULL,
+    png          BYTEA        NOT NULL,
+    created_at   TIMESTAMP,
+    CONSTRAINT fk_invoice_qr_codes_invoice
+        FOREIGN KEY (invoice_id) REFERENCES invoices(id) ON DELETE CASCADE
+);
+
+ALTER TABLE invoices ADD COLUMN qr_sha256 VARCHAR(64);
@@ -0,0 +1,8 @@
+-- ============================================================
+--  V18 : Totaux figés à l'écriture
+--  totals_version : version de FneTaxEngine ayant calculé les montants
+--                   (NULL = facture antérieure, recalculée à la lecture)
+--  vat_breakdown  : résumé TVA par taux "taux:base:tva;..." (points de base, centimes)
+-- ============================================================
+ALTER TABLE invoices ADD COLUMN totals_version INTEGER;
+ALTER TABLE invoices ADD COLUMN vat_breakdown VARCHAR(512);
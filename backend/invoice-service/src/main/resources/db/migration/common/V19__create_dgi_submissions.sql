@@ -0,0 +1,26 @@
+-- ============================================================
+--  V19 : Soumissions DGI asynchrones
+--  Une ligne par demande : PENDING → IN_PROGRESS → SUCCEEDED / FAILED.
+--  Le worker réserve une ligne PENDING échue (next_attempt_at) par
+--  UPDATE conditionnel ; l'appel DGI se fait hors transaction.
+-- ============================================================
+CREATE TABLE dgi_submissions (
+    id              BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    invoice_id      BIGINT        NOT NULL,
+    tenant_id       BIGINT,
+    status          VARCHAR(16)   NOT NULL,
+    attempts        INTEGER       NOT NULL DEFAULT 0,
+    next_attempt_at TIMESTAMP     NOT NULL,
+    last_error      VARCHAR(1000),
+    created_at      TIMESTAMP     NOT NULL,
+    updated_at      TIMESTAMP     NOT NULL,
+    completed_at    TIMESTAMP,
+    CONSTRAINT fk_dgi_submissions_invoice
+        FOREIGN KEY (invoice_id) REFERENCES invoices(id) ON DELETE CASCADE
+);
+
+-- Dernière soumission d'une facture (polling)
+CREATE INDEX idx_dgi_submissions_invoice ON dgi_submissions (invoice_id, id DESC);
+
+-- Reprise des soumissions échues / bloquées
+CREATE INDEX idx_dgi_submissions_status_due ON dgi_submissions (status, next_attempt_at);
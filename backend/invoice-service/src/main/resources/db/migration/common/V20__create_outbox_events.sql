@@ -0,0 +1,22 @@
+-- ============================================================
+--  V20 : outbox des événements facture
+--  Écrit dans la même transaction que la facture, puis relayé
+--  vers Kafka par OutboxRelay (au moins une fois, par ordre d'id).
+--  Pas de clé étrangère : l'événement survit à la facture supprimée.
+-- ============================================================
+CREATE SEQUENCE outbox_events_seq START WITH 1 INCREMENT BY 50;
+
+CREATE TABLE outbox_events (
+    id             BIGINT        NOT NULL PRIMARY KEY,
+    aggregate_id   BIGINT        NOT NULL,
+    tenant_id      BIGINT,
+    event_type     VARCHAR(64)   NOT NULL,
+    payload        VARCHAR(4000) NOT NULL,
+    created_at     TIMESTAMP     NOT NULL,
+    published_at   TIMESTAMP,
+    attempts       INTEGER       NOT NULL DEFAULT 0,
+    last_error     VARCHAR(1000)
+);
+
+-- Relais : événements non publiés, plus anciens d'abord ; purge des publiés
+CREATE INDEX idx_outbox_events_pending ON outbox_events (published_at, id);
@@ -0,0 +1,6 @@
+-- ============================================================
+--  V21 : verrouillage optimiste des factures
+--  Incrémentée à chaque mise à jour (@Version) : deux modifications
+--  concurrentes ne s'écrasent plus, la seconde échoue en 409.
+-- ============================================================
+ALTER TABLE invoices ADD COLUMN version BIGINT DEFAULT 0 NOT NULL;
@@ -0,0 +1,31 @@
+-- ============================================================
+--  V23 : archive froide des factures certifiées anciennes
+--  Un segment = un lot de factures complètes (lignes, totaux, QR)
+--  en JSON compressé (gzip). invoice_archive_entries indexe chaque
+--  facture archivée (id, numéro) vers son segment : lecture ponctuelle
+--  sans parcourir les segments.
+-- ============================================================
+CREATE TABLE invoice_archive_segments (
+    id               BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    codec            VARCHAR(16)  NOT NULL,
+    invoice_count    INTEGER      NOT NULL,
+    first_issue_date TIMESTAMP    NOT NULL,
+    last_issue_date  TIMESTAMP    NOT NULL,
+    raw_size         BIGINT       NOT NULL,
+    compressed_size  BIGINT       NOT NULL,
+    payload          BYTEA        NOT NULL,
+    created_at       TIMESTAMP    NOT NULL
+);
+
+CREATE TABLE invoice_archive_entries (
+    invoice_id     BIGINT        NOT NULL PRIMARY KEY,
+    invoice_number VARCHAR(255)  NOT NULL,
+    tenant_id      BIGINT,
+    issue_date     TIMESTAMP     NOT NULL,
+    segment_id     BIGINT        NOT NULL,
+    CONSTRAINT uk_invoice_archive_entries_number UNIQUE (invoice_number),
+    CONSTRAINT fk_invoice_archive_entries_segment
+        FOREIGN KEY (segment_id) REFERENCES invoice_archive_segments(id)
+);
+
+CREATE INDEX idx_invoice_archive_entries_segment ON invoice_archive_entries (segment_id);
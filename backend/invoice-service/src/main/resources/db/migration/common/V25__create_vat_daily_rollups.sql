@@ -0,0 +1,24 @@
+-- ============================================================
+--  V25 : agrégats journaliers de TVA (déclaration)
+--  Une ligne par (tenant, jour d'émission, taux, mode de paiement,
+--  certifiée ou non), tenue à jour par deltas dans la transaction
+--  qui crée, modifie, certifie, annule ou supprime la facture
+--  (VatRollupService). Montants en centimes, taux en points de base.
+--  tenant_id = 0 : factures sans tenant (mode mono-tenant).
+--  Pas de clé étrangère : les agrégats couvrent aussi les factures archivées.
+-- ============================================================
+CREATE TABLE vat_daily_rollups (
+    tenant_id        BIGINT       NOT NULL,
+    issue_day        DATE         NOT NULL,
+    vat_rate_bp      INTEGER      NOT NULL,
+    payment_method   VARCHAR(50)  NOT NULL,
+    certified        BOOLEAN      NOT NULL,
+    invoice_count    BIGINT       NOT NULL DEFAULT 0,
+    base_cents       BIGINT       NOT NULL DEFAULT 0,
+    vat_cents        BIGINT       NOT NULL DEFAULT 0,
+    stamp_duty_cents BIGINT       NOT NULL DEFAULT 0,
+    updated_at       TIMESTAMP    NOT NULL,
+    -- Déclaration d'une période : parcours de la clé primaire (tenant, plage de jours)
+    CONSTRAINT pk_vat_daily_rollups
+        PRIMARY KEY (tenant_id, issue_day, vat_rate_bp, payment_method, certified)
+);
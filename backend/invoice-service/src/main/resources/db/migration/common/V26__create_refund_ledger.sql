@@ -0,0 +1,47 @@
+-- ============================================================
+--  V26 : registre des avoirs FNE
+--  refund_ledger_lines : une ligne par article signé (fne_item_id),
+--  quantité encore remboursable tenue à jour par UPDATE conditionnel
+--  (remaining_quantity >= :quantité) : validation locale avant l'appel FNE.
+--  refund_ledger_entries : journal des avoirs demandés, réservés avant
+--  l'appel FNE puis confirmés (référence FNE) ou libérés (échec).
+--  Sans clé étrangère vers invoices : les factures archivées restent
+--  remboursables (cf. V23).
+-- ============================================================
+CREATE TABLE refund_ledger_lines (
+    fne_item_id        VARCHAR(36)   NOT NULL PRIMARY KEY,
+    fne_invoice_id     VARCHAR(36)   NOT NULL,
+    invoice_id         BIGINT        NOT NULL,
+    tenant_id          BIGINT,
+    quantity           NUMERIC(19,2) NOT NULL,
+    remaining_quantity NUMERIC(19,2) NOT NULL,
+    updated_at         TIMESTAMP     NOT NULL,
+    CONSTRAINT ck_refund_ledger_lines_remaining
+        CHECK (remaining_quantity >= 0 AND remaining_quantity <= quantity)
+);
+
+CREATE INDEX idx_refund_ledger_lines_fne_invoice ON refund_ledger_lines (fne_invoice_id);
+
+CREATE TABLE refund_ledger_entries (
+    id             BIGINT GENERATED BY DEFAULT AS IDENTITY PRIMARY KEY,
+    refund_id      VARCHAR(36)   NOT NULL,
+    fne_invoice_id VARCHAR(36)   NOT NULL,
+    fne_item_id    VARCHAR(36)   NOT NULL,
+    quantity       NUMERIC(19,2) NOT NULL,
+    status         VARCHAR(16)   NOT NULL,
+    fne_reference  VARCHAR(50),
+    created_at     TIMESTAMP     NOT NULL,
+    updated_at     TIMESTAMP     NOT NULL
+);
+
+CREATE INDEX idx_refund_ledger_entries_refund ON refund_ledger_entries (refund_id);
+CREATE INDEX idx_refund_ledger_entries_item ON refund_ledger_entries (fne_item_id);
+
+-- Factures déjà signées : tout reste remboursable (avoirs antérieurs inconnus localement)
+INSERT INTO refund_ledger_lines (fne_item_id, fne_invoice_id, invoice_id, tenant_id,
+                                 quantity, remaining_quantity, updated_at)
+SELECT l.fne_item_id, i.fne_invoice_id, i.id, i.tenant_id, l.quantity, l.quantity, CURRENT_TIMESTAMP
+FROM invoice_lines l
+JOIN invoices i ON i.id = l.invoice_id
+WHERE l.fne_item_id IS NOT NULL
+  AND i.fne_invoice_id IS NOT NULL;
@@ -0,0 +1,22 @@
+-- ============================================================
+--  V27 : Réamorçage des compteurs globaux (tenant 0, sans point de vente)
+--  V13 amorçait next_value à COUNT(*) + 1 : après des suppressions de factures,
+--  le compteur repartait sous le dernier numéro émis (doublons INV-AAAA-NNNNNN).
+--  On repart après le plus grand suffixe numérique déjà émis pour l'exercice,
+--  factures archivées comprises, sans jamais reculer (GREATEST).
+-- ============================================================
+UPDATE invoice_number_sequences
+SET next_value = GREATEST(next_value, 1 + (
+        SELECT COALESCE(MAX(CAST(SUBSTRING(issued.n FROM 10) AS BIGINT)), 0)
+        FROM (SELECT invoice_number AS n FROM invoices
+              UNION ALL
+              SELECT invoice_number AS n FROM invoice_archive_entries) issued
+        WHERE issued.n LIKE 'INV-____-%'
+          AND SUBSTRING(issued.n FROM 5 FOR 4) = CAST(invoice_number_sequences.fiscal_year AS VARCHAR(4))
+          AND LENGTH(issued.n) BETWEEN 10 AND 27
+          AND TRANSLATE(SUBSTRING(issued.n FROM 10), '123456789', '000000000')
+              = REPEAT('0', LENGTH(issued.n) - 9)
+    )),
+    updated_at = CURRENT_TIMESTAMP
+WHERE tenant_id = 0
+  AND point_of_sale = '';
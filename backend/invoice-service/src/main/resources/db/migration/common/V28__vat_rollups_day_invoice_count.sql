@@ -0,0 +1,12 @@
+-- ============================================================
+--  V28 : nombre de factures indépendant du taux
+--  invoice_count compte une facture sur chaque taux qu'elle porte :
+--  sa somme sur plusieurs taux compte deux fois les factures multi-taux.
+--  day_invoice_count compte chaque facture une seule fois (sur son
+--  premier taux) : SUM(day_invoice_count) = nombre de factures.
+--  Les agrégats sont vidés : VatRollupBackfill les reconstruit au
+--  démarrage (table vide, factures présentes), colonne comprise.
+-- ============================================================
+ALTER TABLE vat_daily_rollups ADD COLUMN day_invoice_count BIGINT NOT NULL DEFAULT 0;
+
+DELETE FROM vat_daily_rollups;
@@ -0,0 +1,12 @@
+-- ============================================================
+--  V29 : recherche par référence FNE dans l'archive froide
+--  fne_reference : référence FNE de la facture archivée (NULL si
+--                  certifiée DGI uniquement)
+--  fne_indexed   : entrées du segment renseignées. Les segments
+--                  antérieurs (FALSE) sont décodés une fois par
+--                  InvoiceArchiveJob ; en attendant, la lecture les parcourt.
+-- ============================================================
+ALTER TABLE invoice_archive_entries ADD COLUMN fne_reference VARCHAR(50);
+ALTER TABLE invoice_archive_segments ADD COLUMN fne_indexed BOOLEAN NOT NULL DEFAULT FALSE;
+
+CREATE INDEX idx_invoice_archive_entries_fne_reference ON invoice_archive_entries (fne_reference);
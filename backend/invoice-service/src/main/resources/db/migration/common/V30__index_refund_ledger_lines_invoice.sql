@@ -0,0 +1,7 @@
+-- ============================================================
+--  V30 : avoirs confirmés d'une facture
+--  Une facture annulée garde dans les agrégats TVA les montants déjà
+--  remboursés par avoir (retirés au jour de l'avoir) : lecture par
+--  invoice_id à chaque annulation et à la reconstruction.
+-- ============================================================
+CREATE INDEX idx_refund_ledger_lines_invoice ON refund_ledger_lines (invoice_id);
@@ -0,0 +1,21 @@
+-- ============================================================
+--  V32 : réponses Idempotency-Key partagées entre instances
+--  store_key   : opération | tenant | valeur de l'en-tête
+--  owner       : requête qui a réservé la clé (réservation ou réponse)
+--  status_code : NULL tant que la requête d'origine est en cours
+--  expires_at  : fin du bail de réservation, puis fin du TTL de la réponse
+-- ============================================================
+CREATE TABLE idempotency_keys (
+    store_key   VARCHAR(320)  NOT NULL PRIMARY KEY,
+    fingerprint VARCHAR(64)   NOT NULL,
+    owner       VARCHAR(36)   NOT NULL,
+    status_code INTEGER,
+    headers     VARCHAR(4000),
+    body        BYTEA,
+    body_type   VARCHAR(255),
+    created_at  TIMESTAMP     NOT NULL,
+    expires_at  TIMESTAMP     NOT NULL
+);
+
+-- Purge des réponses expirées
+CREATE INDEX idx_idempotency_keys_expires ON idempotency_keys (expires_at);
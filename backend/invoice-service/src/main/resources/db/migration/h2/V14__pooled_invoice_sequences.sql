@@ -0,0 +1,11 @@
+-- V14__pooled_invoice_sequences.sql (H2)
+-- ============================================================
+-- Identifiants par séquence "pooled" (allocationSize = 50 côté Hibernate)
+-- pour permettre le batching JDBC des INSERT invoices / invoice_lines.
+-- Les séquences démarrent après les identifiants déjà attribués.
+-- ============================================================
+CREATE SEQUENCE invoices_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE invoices_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 51 FROM invoices);
+
+CREATE SEQUENCE invoice_lines_seq START WITH 1 INCREMENT BY 50;
+ALTER SEQUENCE invoice_lines_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 51 FROM invoice_lines);
@@ -0,0 +1,13 @@
+-- V22__partition_invoices_by_month.sql (H2)
+-- ============================================================
+-- H2 ne partitionne pas : seule la colonne invoice_lines.issue_date
+-- (clé de partition côté PostgreSQL, recopiée de la facture) est ajoutée
+-- pour garder le même schéma que l'entité.
+-- ============================================================
+ALTER TABLE invoice_lines ADD COLUMN issue_date TIMESTAMP;
+
+UPDATE invoice_lines l
+SET issue_date = (SELECT i.issue_date FROM invoices i WHERE i.id = l.invoice_id);
+
+ALTER TABLE invoice_lines ALTER COLUMN issue_date SET NOT NULL;
+-- Fin V22__partition_invoices_by_month.sql (H2)
@@ -0,0 +1,27 @@
+-- V31__outbox_relay_order_and_lock.sql (H2)
+-- ============================================================
+-- relay_order : ordre de relais attribué par la base à l'INSERT
+-- (séquence sans cache côté client). Les id viennent d'une séquence
+-- "pooled" (allocationSize = 50) : deux instances ne les attribuent
+-- pas dans l'ordre des écritures.
+-- outbox_relay_lock : une seule ligne, verrouillée par le relais actif
+-- (FOR UPDATE SKIP LOCKED) : un seul relais à la fois, toutes
+-- instances confondues.
+-- Événements existants : ordre d'id conservé.
+-- ============================================================
+CREATE SEQUENCE outbox_events_relay_seq START WITH 1;
+
+ALTER TABLE outbox_events ADD COLUMN relay_order BIGINT;
+UPDATE outbox_events SET relay_order = id;
+ALTER SEQUENCE outbox_events_relay_seq RESTART WITH (SELECT COALESCE(MAX(id), 0) + 1 FROM outbox_events);
+ALTER TABLE outbox_events ALTER COLUMN relay_order SET DEFAULT NEXT VALUE FOR outbox_events_relay_seq;
+ALTER TABLE outbox_events ALTER COLUMN relay_order SET NOT NULL;
+
+DROP INDEX idx_outbox_events_pending;
+CREATE INDEX idx_outbox_events_pending ON outbox_events (published_at, relay_order);
+
+CREATE TABLE outbox_relay_lock (
+    id INTEGER NOT NULL PRIMARY KEY
+);
+INSERT INTO outbox_relay_lock (id) VALUES (1);
+-- Fin V31__outbox_relay_order_and_lock.sql (H2)
@@ -0,0 +1,10 @@
+-- V33__invoice_numbers_issue_date.sql (H2)
+-- ============================================================
+-- H2 ne partitionne pas : le registre invoice_numbers (table tenue par
+-- trigger sous PostgreSQL) est une vue sur invoices, pour que les lectures
+-- par id (filtre invoicePartition) aient le même SQL sur les deux bases.
+-- ============================================================
+CREATE VIEW invoice_numbers AS
+SELECT invoice_number, id AS invoice_id, issue_date
+FROM invoices;
+-- Fin V33__invoice_numbers_issue_date.sql (H2)
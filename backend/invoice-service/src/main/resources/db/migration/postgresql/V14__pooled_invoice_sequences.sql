@@ -0,0 +1,12 @@
+-- V14__pooled_invoice_sequences.sql (PostgreSQL)
+-- ============================================================
+-- Identifiants par séquence "pooled" (allocationSize = 50 côté Hibernate)
+-- pour permettre le batching JDBC des INSERT invoices / invoice_lines.
+-- Les séquences démarrent après les identifiants déjà attribués.
+-- ============================================================
+CREATE SEQUENCE invoices_seq INCREMENT BY 50;
+SELECT setval('invoices_seq', (SELECT COALESCE(MAX(id), 0) FROM invoices) + 50);
+
+CREATE SEQUENCE invoice_lines_seq INCREMENT BY 50;
+SELECT setval('invoice_lines_seq', (SELECT COALESCE(MAX(id), 0) FROM invoice_lines) + 50);
+-- Fin V14__pooled_invoice_sequences.sql (PostgreSQL)
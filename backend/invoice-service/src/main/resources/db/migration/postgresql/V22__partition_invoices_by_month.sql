@@ -0,0 +1,208 @@
+-- V22__partition_invoices_by_month.sql (PostgreSQL)
+-- ============================================================
+-- Partitionnement mensuel (RANGE sur issue_date) de invoices et invoice_lines.
+--
+-- - une partition par mois : invoices_pAAAA_MM / invoice_lines_pAAAA_MM,
+--   plus une partition DEFAULT de secours pour les dates hors plage
+-- - index déclarés sur la table mère → index locaux à chaque partition
+-- - invoice_lines porte issue_date (recopiée de la facture) pour suivre
+--   le même découpage ; FK composite (invoice_id, issue_date)
+-- - la clé primaire doit contenir la clé de partition : (id, issue_date).
+--   Hibernate continue d'adresser les lignes par id seul.
+-- - unicité globale de invoice_number : registre invoice_numbers tenu par trigger
+-- - invoice_qr_codes / dgi_submissions ne peuvent plus référencer invoices(id) seul :
+--   leur ON DELETE CASCADE est repris par trigger
+-- - ensure_invoice_partitions() crée les mois à venir ; appelée ici puis
+--   chaque jour par InvoicePartitionMaintenance
+-- ============================================================
+
+-- ============================================================
+-- 1) Détacher les anciennes tables
+-- ============================================================
+ALTER TABLE invoice_qr_codes DROP CONSTRAINT fk_invoice_qr_codes_invoice;
+ALTER TABLE dgi_submissions  DROP CONSTRAINT fk_dgi_submissions_invoice;
+
+ALTER TABLE invoices      RENAME TO invoices_legacy;
+ALTER TABLE invoice_lines RENAME TO invoice_lines_legacy;
+
+-- Date d'émission recopiée sur chaque ligne (clé de partition)
+ALTER TABLE invoice_lines_legacy ADD COLUMN issue_date TIMESTAMP;
+UPDATE invoice_lines_legacy l
+SET issue_date = i.issue_date
+FROM invoices_legacy i
+WHERE i.id = l.invoice_id;
+
+-- Identifiants fournis par Hibernate (séquences pooled V14) : plus de BIGSERIAL
+ALTER TABLE invoice_lines_legacy ALTER COLUMN id DROP DEFAULT;
+
+-- ============================================================
+-- 2) Tables partitionnées
+-- ============================================================
+-- LIKE sans INCLUDING IDENTITY : l'identité V1 n'est pas reprise
+CREATE TABLE invoices (LIKE invoices_legacy INCLUDING DEFAULTS)
+    PARTITION BY RANGE (issue_date);
+
+CREATE TABLE invoice_lines (LIKE invoice_lines_legacy INCLUDING DEFAULTS)
+    PARTITION BY RANGE (issue_date);
+ALTER TABLE invoice_lines ALTER COLUMN issue_date SET NOT NULL;
+
+CREATE TABLE invoices_default      PARTITION OF invoices      DEFAULT;
+CREATE TABLE invoice_lines_default PARTITION OF invoice_lines DEFAULT;
+
+-- ============================================================
+-- 3) Création des partitions mensuelles
+-- ============================================================
+-- Crée les partitions manquantes de from_month jusqu'au mois courant + months_ahead.
+-- Un mois dont des lignes sont déjà tombées dans la partition DEFAULT est ignoré
+-- (NOTICE) : ces lignes doivent d'abord être déplacées à la main.
+-- Renvoie le nombre de partitions créées.
+CREATE OR REPLACE FUNCTION ensure_invoice_partitions(from_month DATE, months_ahead INTEGER)
+RETURNS INTEGER
+LANGUAGE plpgsql
+AS $$
+DECLARE
+    month_start DATE := date_trunc('month', from_month)::date;
+    last_month  DATE := (date_trunc('month', now()) + make_interval(months => months_ahead))::date;
+    month_end   DATE;
+    parent      TEXT;
+    part_name   TEXT;
+    stray       BOOLEAN;
+    created     INTEGER := 0;
+BEGIN
+    WHILE month_start <= last_month LOOP
+        month_end := (month_start + INTERVAL '1 month')::date;
+        FOREACH parent IN ARRAY ARRAY['invoices', 'invoice_lines'] LOOP
+            part_name := format('%s_p%s', parent, to_char(month_start, 'YYYY_MM'));
+            CONTINUE WHEN to_regclass(part_name) IS NOT NULL;
+
+            EXECUTE format('SELECT EXISTS (SELECT 1 FROM %I WHERE issue_date >= %L AND issue_date < %L)',
+                           parent || '_default', month_start, month_end)
+                INTO stray;
+            IF stray THEN
+                RAISE NOTICE 'Partition % non créée : lignes du mois présentes dans %_default',
+                    part_name, parent;
+                CONTINUE;
+            END IF;
+
+            EXECUTE format('CREATE TABLE %I PARTITION OF %I FOR VALUES FROM (%L) TO (%L)',
+                           part_name, parent, month_start, month_end);
+            created := created + 1;
+        END LOOP;
+        month_start := month_end;
+    END LOOP;
+    RETURN created;
+END;
+$$;
+
+SELECT ensure_invoice_partitions(
+    COALESCE((SELECT MIN(issue_date) FROM invoices_legacy), now())::date, 12);
+
+-- ============================================================
+-- 4) Reprise des données
+-- ============================================================
+INSERT INTO invoices      SELECT * FROM invoices_legacy;
+INSERT INTO invoice_lines SELECT * FROM invoice_lines_legacy;
+
+DROP TABLE invoice_lines_legacy;
+DROP TABLE invoices_legacy;
+
+-- ============================================================
+-- 5) Contraintes et index (locaux à chaque partition)
+-- ============================================================
+ALTER TABLE invoices      ADD CONSTRAINT invoices_pkey      PRIMARY KEY (id, issue_date);
+ALTER TABLE invoice_lines ADD CONSTRAINT invoice_lines_pkey PRIMARY KEY (id, issue_date);
+
+ALTER TABLE invoices
+  ADD CONSTRAINT fk_invoices_tenant
+  FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE;
+ALTER TABLE invoice_lines
+  ADD CONSTRAINT fk_invoice_lines_tenant
+  FOREIGN KEY (tenant_id) REFERENCES tenants(id) ON DELETE CASCADE;
+ALTER TABLE invoice_lines
+  ADD CONSTRAINT fk_invoice_lines_invoice
+  FOREIGN KEY (invoice_id, issue_date) REFERENCES invoices(id, issue_date) ON DELETE CASCADE;
+
+CREATE INDEX idx_invoices_tenant ON invoices(tenant_id);
+CREATE INDEX idx_invoices_tenant_issue_id
+    ON invoices (tenant_id, issue_date DESC, id DESC);
+CREATE INDEX idx_invoices_tenant_status_issue_id
+    ON invoices (tenant_id, status, issue_date DESC, id DESC);
+CREATE INDEX idx_invoices_tenant_buyer_issue_id
+    ON invoices (tenant_id, buyer_tax_id, issue_date DESC, id DESC);
+
+CREATE INDEX idx_invoice_lines_invoice_id ON invoice_lines(invoice_id);
+CREATE INDEX idx_invoice_lines_tenant     ON invoice_lines(tenant_id);
+
+-- ============================================================
+-- 6) Unicité globale du numéro de facture
+-- ============================================================
+-- Une contrainte UNIQUE sur une table partitionnée doit contenir issue_date :
+-- le numéro est donc réservé dans un registre non partitionné.
+CREATE TABLE invoice_numbers (
+    invoice_number VARCHAR(255) NOT NULL PRIMARY KEY,
+    invoice_id     BIGINT       NOT NULL UNIQUE
+);
+
+INSERT INTO invoice_numbers (invoice_number, invoice_id)
+SELECT invoice_number, id FROM invoices;
+
+-- ============================================================
+-- 7) Triggers : registre des numéros + cascades hors FK
+-- ============================================================
+CREATE OR REPLACE FUNCTION invoices_after_insert()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    -- Déplacement entre partitions (DELETE + INSERT) : numéro déjà réservé par cette facture
+    IF NOT EXISTS (SELECT 1 FROM invoice_numbers
+                   WHERE invoice_number = NEW.invoice_number AND invoice_id = NEW.id) THEN
+        INSERT INTO invoice_numbers (invoice_number, invoice_id) VALUES (NEW.invoice_number, NEW.id);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION invoices_after_update_number()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    UPDATE invoice_numbers SET invoice_number = NEW.invoice_number WHERE invoice_id = OLD.id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION invoices_after_delete()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    -- Déplacement entre partitions : la facture existe toujours
+    IF EXISTS (SELECT 1 FROM invoices WHERE id = OLD.id) THEN
+        RETURN NULL;
+    END IF;
+    DELETE FROM invoice_numbers  WHERE invoice_id = OLD.id;
+    DELETE FROM invoice_qr_codes WHERE invoice_id = OLD.id;
+    DELETE FROM dgi_submissions  WHERE invoice_id = OLD.id;
+    RETURN NULL;
+END;
+$$;
+
+CREATE TRIGGER trg_invoices_after_insert
+    AFTER INSERT ON invoices
+    FOR EACH ROW EXECUTE FUNCTION invoices_after_insert();
+
+CREATE TRIGGER trg_invoices_after_update_number
+    AFTER UPDATE OF invoice_number ON invoices
+    FOR EACH ROW
+    WHEN (OLD.invoice_number IS DISTINCT FROM NEW.invoice_number)
+    EXECUTE FUNCTION invoices_after_update_number();
+
+CREATE TRIGGER trg_invoices_after_delete
+    AFTER DELETE ON invoices
+    FOR EACH ROW EXECUTE FUNCTION invoices_after_delete();
+
+ANALYZE invoices;
+ANALYZE invoice_lines;
+-- Fin V22__partition_invoices_by_month.sql (PostgreSQL)
@@ -0,0 +1,32 @@
+-- V24__invoice_search_indexes.sql (PostgreSQL)
+-- ============================================================
+-- Recherche support (PostgresInvoiceSearchEngine) : nom acheteur partiel
+-- ou approché, téléphone client, NCC, référence FNE, montant.
+--
+-- - pg_trgm : LIKE '%…%' / 'abc%' et similarité (<%) servis par index GIN
+-- - btree_gin : tenant_id dans le même index GIN → un seul parcours
+--   d'index par tenant, même sur des dizaines de millions de lignes
+-- - index déclarés sur la table mère partitionnée (V22) : locaux à chaque partition
+-- - les expressions indexées doivent rester identiques à celles des requêtes
+-- ============================================================
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+CREATE EXTENSION IF NOT EXISTS btree_gin;
+
+-- Nom acheteur, insensible à la casse
+CREATE INDEX idx_invoices_search_buyer_name
+    ON invoices USING GIN (tenant_id, lower(buyer_name) gin_trgm_ops);
+
+-- Téléphone client, chiffres seuls (saisie libre "+225 07 …")
+CREATE INDEX idx_invoices_search_client_phone
+    ON invoices USING GIN (tenant_id, regexp_replace(client_phone, '[^0-9]', '', 'g') gin_trgm_ops);
+
+-- NCC et référence FNE : préfixe (trigrammes, pas de collation "C" requise)
+CREATE INDEX idx_invoices_search_buyer_tax_id
+    ON invoices USING GIN (tenant_id, upper(buyer_tax_id) gin_trgm_ops);
+CREATE INDEX idx_invoices_search_fne_reference
+    ON invoices USING GIN (tenant_id, upper(fne_reference) gin_trgm_ops);
+
+-- Montant exact (total à payer)
+CREATE INDEX idx_invoices_search_total_to_pay
+    ON invoices (tenant_id, total_to_pay);
+-- Fin V24__invoice_search_indexes.sql (PostgreSQL)
@@ -0,0 +1,29 @@
+-- V31__outbox_relay_order_and_lock.sql (PostgreSQL)
+-- ============================================================
+-- relay_order : ordre de relais attribué par la base à l'INSERT
+-- (séquence sans cache côté client). Les id viennent d'une séquence
+-- "pooled" (allocationSize = 50) : deux instances ne les attribuent
+-- pas dans l'ordre des écritures.
+-- outbox_relay_lock : une seule ligne, verrouillée par le relais actif
+-- (FOR UPDATE SKIP LOCKED) : un seul relais à la fois, toutes
+-- instances confondues.
+-- Événements existants : ordre d'id conservé.
+-- ============================================================
+CREATE SEQUENCE outbox_events_relay_seq;
+
+ALTER TABLE outbox_events ADD COLUMN relay_order BIGINT;
+UPDATE outbox_events SET relay_order = id;
+SELECT setval('outbox_events_relay_seq', (SELECT COALESCE(MAX(id), 0) + 1 FROM outbox_events), false);
+ALTER TABLE outbox_events ALTER COLUMN relay_order SET DEFAULT nextval('outbox_events_relay_seq');
+ALTER TABLE outbox_events ALTER COLUMN relay_order SET NOT NULL;
+
+-- Relais : seuls les événements en attente sont indexés
+DROP INDEX idx_outbox_events_pending;
+CREATE INDEX idx_outbox_events_pending ON outbox_events (relay_order) WHERE published_at IS NULL;
+CREATE INDEX idx_outbox_events_published ON outbox_events (published_at);
+
+CREATE TABLE outbox_relay_lock (
+    id INTEGER NOT NULL PRIMARY KEY
+);
+INSERT INTO outbox_relay_lock (id) VALUES (1);
+-- Fin V31__outbox_relay_order_and_lock.sql (PostgreSQL)
@@ -0,0 +1,54 @@
+-- V33__invoice_numbers_issue_date.sql (PostgreSQL)
+-- ============================================================
+-- issue_date dans le registre invoice_numbers (V22) : une lecture par id
+-- retrouve la clé de partition dans le registre (sous-requête) et ne lit
+-- qu'une partition de invoices / invoice_lines (élagage à l'exécution).
+-- Tenu à jour par les triggers de V22 (insertion, changement de date).
+-- ============================================================
+ALTER TABLE invoice_numbers ADD COLUMN issue_date TIMESTAMP;
+
+UPDATE invoice_numbers n
+SET issue_date = i.issue_date
+FROM invoices i
+WHERE i.id = n.invoice_id;
+
+ALTER TABLE invoice_numbers ALTER COLUMN issue_date SET NOT NULL;
+
+CREATE OR REPLACE FUNCTION invoices_after_insert()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    -- Déplacement entre partitions (DELETE + INSERT) : facture déjà au registre, nouvelle date
+    UPDATE invoice_numbers
+    SET invoice_number = NEW.invoice_number, issue_date = NEW.issue_date
+    WHERE invoice_id = NEW.id;
+    IF NOT FOUND THEN
+        INSERT INTO invoice_numbers (invoice_number, invoice_id, issue_date)
+        VALUES (NEW.invoice_number, NEW.id, NEW.issue_date);
+    END IF;
+    RETURN NULL;
+END;
+$$;
+
+CREATE OR REPLACE FUNCTION invoices_after_update_number()
+RETURNS TRIGGER
+LANGUAGE plpgsql
+AS $$
+BEGIN
+    UPDATE invoice_numbers
+    SET invoice_number = NEW.invoice_number, issue_date = NEW.issue_date
+    WHERE invoice_id = OLD.id;
+    RETURN NULL;
+END;
+$$;
+
+-- Date changée dans la même partition : aucun INSERT, le registre suit par ce trigger
+DROP TRIGGER trg_invoices_after_update_number ON invoices;
+CREATE TRIGGER trg_invoices_after_update_number
+    AFTER UPDATE OF invoice_number, issue_date ON invoices
+    FOR EACH ROW
+    WHEN (OLD.invoice_number IS DISTINCT FROM NEW.invoice_number
+          OR OLD.issue_date IS DISTINCT FROM NEW.issue_date)
+    EXECUTE FUNCTION invoices_after_update_number();
+-- Fin V33__invoice_numbers_issue_date.sql (PostgreSQL)
@@ -0,0 +1,222 @@
+package com.oxalio.invoice.benchmark;
+
+import com.oxalio.invoice.client.FneStickerClient;
+import com.oxalio.invoice.config.FneConfiguration;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.results.Result;
+import org.openjdk.jmh.results.RunResult;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.boot.web.client.ClientHttpRequestFactories;
+import org.springframework.boot.web.client.ClientHttpRequestFactorySettings;
+import org.springframework.core.task.VirtualThreadTaskExecutor;
+import org.springframework.http.client.ClientHttpRequestFactory;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Signatures FNE simultanées : pool de threads plateforme (200, le maximum Tomcat par défaut)
+ * contre un thread virtuel par requête (mode spring.threads.virtual.enabled).
+ *
+ * Un faux serveur FNE local répond après fneLatencyMs. Chaque invocation lance {@code requests}
+ * signatures via FneStickerClient et attend la dernière. Compteurs JMH secondaires (@AuxCounters,
+ * sommés sur les itérations de mesure) : bursts = rafales, peakInFlight = somme des pics d'appels reçus
+ * simultanément par le serveur, failures = signatures en erreur. peakInFlight / bursts = pic moyen par rafale
+ * (affiché par main). Attendu : plafonné à platformThreads en mode platform, proche de requests en mode virtual.
+ *
+ * Le mode virtual requiert Java 21 (sur Java 17 : -p mode=platform).
+ * Lancement (après mvn test-compile) : méthode main depuis l'IDE, ou
+ * java -cp target/test-classes:target/classes:&lt;classpath de test&gt; com.oxalio.invoice.benchmark.FneSignConcurrencyBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class FneSignConcurrencyBenchmark {
+
+    private static final byte[] SIGN_RESPONSE = ("{\"ncc\":\"2505842N\",\"reference\":\"2505842N26000000001\","
+            + "\"token\":\"https://fne.dgi.gouv.ci/verify/abc\",\"warning\":false,\"balanceFunds\":1000,"
+            + "\"invoice\":{\"id\":\"e2b2d8ce-0000-4000-8000-000000000001\",\"items\":[]}}")
+            .getBytes(StandardCharsets.UTF_8);
+
+    @Param({"platform", "virtual"})
+    public String mode;
+
+    @Param({"2000"})
+    public int requests;
+
+    @Param({"200"})
+    public int fneLatencyMs;
+
+    @Param({"200"})
+    public int platformThreads;
+
+    private HttpServer server;
+    private ExecutorService serverExecutor;
+    private ExecutorService platformPool;
+    private Executor executor;
+    private FneStickerClient client;
+    private FneStickerClient.FneInvoiceRequest request;
+
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger maxInFlight = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        // Faux FNE : un thread par requête, la latence simulée ne limite pas la concurrence côté serveur
+        serverExecutor = Executors.newCachedThreadPool();
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        server.setExecutor(serverExecutor);
+        server.createContext("/external/invoices/sign", exchange -> {
+            maxInFlight.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+            try {
+                exchange.getRequestBody().readAllBytes();
+                Thread.sleep(fneLatencyMs);
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, SIGN_RESPONSE.length);
+                try (OutputStream out = exchange.getResponseBody()) {
+                    out.write(SIGN_RESPONSE);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                inFlight.decrementAndGet();
+                exchange.close();
+            }
+        });
+        server.start();
+
+        FneConfiguration config = new FneConfiguration();
+        config.getApi().setBaseUrl("http://127.0.0.1:" + server.getAddress().getPort());
+        config.getAuth().setApiKey("benchmark");
+
+        // Même client HTTP que l'application dans chaque mode (cf. RestTemplateConfig)
+        ClientHttpRequestFactorySettings settings = ClientHttpRequestFactorySettings.DEFAULTS
+                .withConnectTimeout(Duration.ofSeconds(10))
+                .withReadTimeout(Duration.ofSeconds(30));
+        ClientHttpRequestFactory factory;
+        if ("virtual".equals(mode)) {
+            executor = new VirtualThreadTaskExecutor("fne-sign-");
+            factory = ClientHttpRequestFactories.get(JdkClientHttpRequestFactory.class, settings);
+        } else {
+            platformPool = Executors.newFixedThreadPool(platformThreads);
+            executor = platformPool;
+            factory = ClientHttpRequestFactories.get(settings);
+        }
+        client = new FneStickerClient(new RestTemplate(factory), config);
+
+        FneStickerClient.FneInvoiceItem item = new FneStickerClient.FneInvoiceItem();
+        item.setReference("SKU-A");
+        item.setDescription("Article");
+        item.setTaxes(List.of("TVA"));
+        item.setQuantity(1);
+        item.setAmount(BigDecimal.valueOf(1000));
+        item.setDiscount(0);
+
+        request = new FneStickerClient.FneInvoiceRequest();
+        request.setInvoiceType("sale");
+        request.setPaymentMethod("cash");
+        request.setTemplate("B2C");
+        request.setClientCompanyName("Client Benchmark");
+        request.setPointOfSale("Caisse 1");
+        request.setEstablishment("Siège");
+        request.setItems(List.of(item));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (platformPool != null) {
+            platformPool.shutdownNow();
+        }
+        server.stop(0);
+        serverExecutor.shutdownNow();
+    }
+
+    /** Compteurs publiés dans les résultats JMH (colonnes signBurst:bursts, :peakInFlight, :failures) */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class BurstCounters {
+
+        public long bursts;
+        public long peakInFlight;
+        public long failures;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            bursts = 0;
+            peakInFlight = 0;
+            failures = 0;
+        }
+    }
+
+    /** Une rafale de {@code requests} signatures simultanées */
+    @Benchmark
+    public int signBurst(BurstCounters counters) throws InterruptedException {
+        maxInFlight.set(0);
+        CountDownLatch done = new CountDownLatch(requests);
+        AtomicInteger failures = new AtomicInteger();
+        for (int i = 0; i < requests; i++) {
+            executor.execute(() -> {
+                try {
+                    client.signInvoice(request);
+                } catch (RuntimeException e) {
+                    failures.incrementAndGet();
+                } finally {
+                    done.countDown();
+                }
+            });
+        }
+        done.await();
+        counters.bursts++;
+        counters.peakInFlight += maxInFlight.get();
+        counters.failures += failures.get();
+        return failures.get();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Collection<RunResult> results = new Runner(new OptionsBuilder()
+                .include(FneSignConcurrencyBenchmark.class.getSimpleName())
+                .build()).run();
+        // Pic moyen par rafale, à partir des compteurs JMH
+        for (RunResult result : results) {
+            Map<String, Result> secondary = result.getSecondaryResults();
+            double bursts = secondary.get("bursts").getScore();
+            System.out.printf("[%s] pic moyen = %.0f / %s requêtes%n",
+                    result.getParams().getParam("mode"),
+                    bursts == 0 ? 0 : secondary.get("peakInFlight").getScore() / bursts,
+                    result.getParams().getParam("requests"));
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.oxalio.invoice.benchmark;
+
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.service.FneTaxEngine;
+import com.oxalio.invoice.service.FneTotals;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Calcul des totaux FNE pour 1, 100 et 10 000 lignes (temps moyen + allocations avec -prof gc).
+ *
+ * Lancement (après mvn test-compile) : méthode main depuis l'IDE, ou
+ * java -cp target/test-classes:target/classes:&lt;classpath de test&gt; com.oxalio.invoice.benchmark.FneTaxEngineBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FneTaxEngineBenchmark {
+
+    private static final BigDecimal[] RATES = {
+            new BigDecimal("18.00"), new BigDecimal("9.00"), new BigDecimal("0.00")
+    };
+
+    @Param({"1", "100", "10000"})
+    public int lineCount;
+
+    private FneTaxEngine engine;
+    private List<InvoiceLineEntity> lines;
+
+    @Setup
+    public void setUp() {
+        engine = new FneTaxEngine(new BigDecimal("100"));
+        lines = new ArrayList<>(lineCount);
+        for (int i = 0; i < lineCount; i++) {
+            InvoiceLineEntity line = new InvoiceLineEntity();
+            line.setQuantity(BigDecimal.valueOf(1 + i % 7, 0).setScale(3));
+            line.setUnitPrice(BigDecimal.valueOf(150_000 + i * 37L, 2));
+            line.setDiscount(i % 5 == 0 ? new BigDecimal("100.00") : BigDecimal.ZERO.setScale(2));
+            line.setVatRate(RATES[i % RATES.length]);
+            lines.add(line);
+        }
+    }
+
+    @Benchmark
+    public FneTotals computeTotals() {
+        return engine.compute(lines, FneTaxEngine.ENTITY_LINES, "cash");
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(FneTaxEngineBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
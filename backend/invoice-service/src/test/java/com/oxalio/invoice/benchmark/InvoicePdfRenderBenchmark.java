@@ -0,0 +1,122 @@
+package com.oxalio.invoice.benchmark;
+
+import com.oxalio.invoice.service.HtmlPdfService.Placeholder;
+import com.oxalio.invoice.service.HtmlTemplate;
+import com.oxalio.invoice.service.PdfResourceResolver;
+import com.oxalio.invoice.service.SellerLogoCache;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.unit.DataSize;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendu PDF d'une facture (template réel, 10 lignes) : sticker et logo en data URI base64,
+ * décodés à chaque document par un ITextRenderer standard, contre les URI oxalio: servies
+ * par PdfResourceResolver (images décodées une fois, copie légère par document).
+ *
+ * Lancement (après mvn test-compile) : méthode main depuis l'IDE, ou
+ * java -cp target/test-classes:target/classes:&lt;classpath de test&gt; com.oxalio.invoice.benchmark.InvoicePdfRenderBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class InvoicePdfRenderBenchmark {
+
+    private PdfResourceResolver resolver;
+    private String inlineHtml;
+    private String sharedHtml;
+
+    @Setup
+    public void setUp() throws IOException {
+        resolver = new PdfResourceResolver(new SellerLogoCache(new SimpleMeterRegistry(),
+                Path.of("seller-logos"), DataSize.ofMegabytes(1), false));
+        resolver.init();
+
+        HtmlTemplate<Placeholder> template = HtmlTemplate.compile(read("templates/invoice-template.html"),
+                Placeholder.class);
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < 10; i++) {
+            lines.append("<tr><td>ART-").append(i).append("</td><td class=\"left\">Article ").append(i)
+                    .append("</td><td class=\"right\">1 500</td><td>2</td><td>pcs</td><td>TVA (18)</td>")
+                    .append("<td>0</td><td class=\"right\">3 000</td></tr>");
+        }
+
+        EnumMap<Placeholder, CharSequence> values = new EnumMap<>(Placeholder.class);
+        for (Placeholder p : Placeholder.values()) {
+            values.put(p, "Valeur " + p.name().toLowerCase());
+        }
+        values.put(Placeholder.INVOICE_LINES, lines.toString());
+        values.put(Placeholder.TAX_SUMMARY_LINES, "");
+        values.put(Placeholder.QR_CODE_BASE64, PdfResourceResolver.PLACEHOLDER);
+
+        values.put(Placeholder.SELLER_LOGO_BASE64, PdfResourceResolver.DEFAULT_LOGO);
+        values.put(Placeholder.FNE_STICKER_BASE64, PdfResourceResolver.FNE_STICKER);
+        sharedHtml = template.render(values);
+
+        values.put(Placeholder.SELLER_LOGO_BASE64, dataUri("static/default-logo.png"));
+        values.put(Placeholder.FNE_STICKER_BASE64, dataUri("static/fne-logo.png"));
+        inlineHtml = template.render(values);
+    }
+
+    /** Ancien rendu : images inline, décodées par document */
+    @Benchmark
+    public byte[] inlineBase64() throws Exception {
+        return render(new ITextRenderer(), inlineHtml);
+    }
+
+    @Benchmark
+    public byte[] sharedResources() throws Exception {
+        return render(resolver.newRenderer(), sharedHtml);
+    }
+
+    private static byte[] render(ITextRenderer renderer, String html) throws Exception {
+        renderer.setDocumentFromString(html);
+        renderer.layout();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.createPDF(out);
+        return out.toByteArray();
+    }
+
+    private static String read(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String dataUri(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(in.readAllBytes());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoicePdfRenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,108 @@
+package com.oxalio.invoice.benchmark;
+
+import com.oxalio.invoice.service.HtmlPdfService.Placeholder;
+import com.oxalio.invoice.service.HtmlTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * HTML d'une facture (HtmlPdfService.buildHtml) : String.replace successifs sur tout le document
+ * (une copie par emplacement, logo et sticker base64 compris) contre le template précompilé
+ * rendu en une passe. Allocations par rendu avec -prof gc (gc.alloc.rate.norm).
+ *
+ * Lancement (après mvn test-compile) : méthode main depuis l'IDE, ou
+ * java -cp target/test-classes:target/classes:&lt;classpath de test&gt; com.oxalio.invoice.benchmark.InvoiceTemplateBenchmark -prof gc
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class InvoiceTemplateBenchmark {
+
+    @Param({"5", "100"})
+    public int lineCount;
+
+    private String html;
+    private HtmlTemplate<Placeholder> template;
+    private EnumMap<Placeholder, CharSequence> values;
+
+    @Setup
+    public void setUp() throws IOException {
+        html = read("templates/invoice-template.html");
+        template = HtmlTemplate.compile(html, Placeholder.class);
+
+        String logo = dataUri("static/default-logo.png");
+        String sticker = dataUri("static/fne-logo.png");
+        StringBuilder lines = new StringBuilder();
+        for (int i = 0; i < lineCount; i++) {
+            lines.append("<tr><td>ART-").append(i).append("</td><td class=\"left\">Article ").append(i)
+                    .append("</td><td class=\"right\">1 500</td><td>2</td><td>pcs</td><td>TVA (18)</td>")
+                    .append("<td>0</td><td class=\"right\">3 000</td></tr>");
+        }
+
+        values = new EnumMap<>(Placeholder.class);
+        for (Placeholder p : Placeholder.values()) {
+            values.put(p, "Valeur " + p.name().toLowerCase());
+        }
+        values.put(Placeholder.SELLER_LOGO_BASE64, logo);
+        values.put(Placeholder.FNE_STICKER_BASE64, sticker);
+        values.put(Placeholder.QR_CODE_BASE64, sticker);
+        values.put(Placeholder.INVOICE_LINES, lines.toString());
+    }
+
+    /** Ancien rendu : une copie complète du document par emplacement */
+    @Benchmark
+    public String sequentialReplace() {
+        String out = html;
+        for (Map.Entry<Placeholder, CharSequence> e : values.entrySet()) {
+            out = out.replace("{{" + e.getKey().name() + "}}", e.getValue());
+        }
+        return out;
+    }
+
+    @Benchmark
+    public String precompiled() {
+        return template.render(values);
+    }
+
+    private static String read(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    private static String dataUri(String path) throws IOException {
+        try (InputStream in = new ClassPathResource(path).getInputStream()) {
+            return "data:image/png;base64," + Base64.getEncoder().encodeToString(in.readAllBytes());
+        }
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(InvoiceTemplateBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,81 @@
+package com.oxalio.invoice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.asm.ClassReader;
+import org.springframework.asm.ClassVisitor;
+import org.springframework.asm.MethodVisitor;
+import org.springframework.asm.Opcodes;
+import org.springframework.asm.SpringAsmInfo;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.support.PathMatchingResourcePatternResolver;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Garde-fou du mode threads virtuels : aucune méthode ni aucun bloc synchronized dans le code
+ * du service (lecture du bytecode : ACC_SYNCHRONIZED et MONITORENTER, y compris @Synchronized Lombok).
+ * Un thread virtuel bloqué dans un moniteur épingle son thread porteur : utiliser un ReentrantLock.
+ */
+class VirtualThreadPinningGuardTest {
+
+    @Test
+    void shouldNotUseMonitorsInServiceCode() throws IOException {
+        List<String> offenders = new ArrayList<>();
+        Resource[] classes = new PathMatchingResourcePatternResolver()
+                .getResources("classpath*:com/oxalio/invoice/**/*.class");
+
+        int scanned = 0;
+        for (Resource resource : classes) {
+            // Code principal uniquement (les classes générées par JMH synchronisent en test)
+            if (resource.getURL().toString().contains("/test-classes/")) {
+                continue;
+            }
+            try (InputStream in = resource.getInputStream()) {
+                new ClassReader(in).accept(new MonitorFinder(offenders), ClassReader.SKIP_DEBUG);
+            }
+            scanned++;
+        }
+
+        assertThat(scanned).isPositive();
+        assertThat(offenders).isEmpty();
+    }
+
+    private static final class MonitorFinder extends ClassVisitor {
+
+        private final List<String> offenders;
+        private String className;
+
+        MonitorFinder(List<String> offenders) {
+            super(SpringAsmInfo.ASM_VERSION);
+            this.offenders = offenders;
+        }
+
+        @Override
+        public void visit(int version, int access, String name, String signature,
+                          String superName, String[] interfaces) {
+            className = name.replace('/', '.');
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String descriptor,
+                                         String signature, String[] exceptions) {
+            String method = className + "." + name;
+            if ((access & Opcodes.ACC_SYNCHRONIZED) != 0) {
+                offenders.add(method + " (méthode synchronized)");
+            }
+            return new MethodVisitor(SpringAsmInfo.ASM_VERSION) {
+                @Override
+                public void visitInsn(int opcode) {
+                    if (opcode == Opcodes.MONITORENTER) {
+                        offenders.add(method + " (bloc synchronized)");
+                    }
+                }
+            };
+        }
+    }
+}
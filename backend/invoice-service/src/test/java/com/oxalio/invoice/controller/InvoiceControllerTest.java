@@ -1,23 +1,61 @@
 package com.oxalio.invoice.controller;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.dto.DgiSubmissionResponse;
 import com.oxalio.invoice.dto.InvoiceRequest;
 import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceBatchRequest;
+import com.oxalio.invoice.dto.InvoiceBatchResponse;
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceMultiGetResponse;
+import com.oxalio.invoice.dto.InvoicePageResponse;
+import com.oxalio.invoice.dto.InvoiceSearchResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.InvoiceQrCodeEntity;
+import com.oxalio.invoice.exception.InvoiceVersionRequiredException;
+import com.oxalio.invoice.exception.PdfRenderRejectedException;
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import com.oxalio.invoice.model.InvoiceStatus;
+import com.oxalio.invoice.service.DgiSubmissionService;
+import com.oxalio.invoice.service.IdempotencyService;
+import com.oxalio.invoice.service.InMemoryIdempotencyStore;
+import com.oxalio.invoice.service.InvoiceBatchService;
+import com.oxalio.invoice.service.InvoiceExportService;
+import com.oxalio.invoice.service.InvoiceQrService;
+import com.oxalio.invoice.service.InvoiceSearchService;
 import com.oxalio.invoice.service.InvoiceService;
+import com.oxalio.invoice.service.PdfDiskCache;
+import com.oxalio.invoice.service.VatDeclarationService;
 import com.oxalio.invoice.dto.SellerDTO;
 import com.oxalio.invoice.dto.BuyerDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
 import org.springframework.http.MediaType;
 import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.util.unit.DataSize;
 
+import java.io.OutputStream;
 import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
 import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
 
+import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
@@ -28,8 +66,10 @@ import org.springframework.security.test.context.support.WithMockUser;
 /**
  * ✅ Tests unitaires pour InvoiceController avec les DTOs.
  */
-@WebMvcTest(InvoiceController.class)
+@WebMvcTest(controllers = InvoiceController.class,
+        properties = "oxalio.invoice.idempotency.store=in-memory")
 @AutoConfigureMockMvc(addFilters = false)
+@Import({IdempotencyService.class, InMemoryIdempotencyStore.class})
 class InvoiceControllerTest {
 
     @Autowired
@@ -41,6 +81,30 @@ class InvoiceControllerTest {
     @MockBean
     private InvoiceService invoiceService;
 
+    @MockBean
+    private InvoiceBatchService invoiceBatchService;
+
+    @MockBean
+    private InvoiceExportService invoiceExportService;
+
+    @MockBean
+    private InvoiceQrService invoiceQrService;
+
+    @MockBean
+    private DgiSubmissionService dgiSubmissionService;
+
+    @MockBean
+    private InvoiceSearchService invoiceSearchService;
+
+    @MockBean
+    private VatDeclarationService vatDeclarationService;
+
+    @MockBean
+    private PdfDiskCache pdfDiskCache;
+
+    @TempDir
+    Path cacheDir;
+
     @Test
     void shouldCreateInvoiceSuccessfully() throws Exception {
         // Given
@@ -60,6 +124,77 @@ class InvoiceControllerTest {
                 .andExpect(jsonPath("$.totals.totalAmount").value(23600));
     }
 
+    @Test
+    void shouldTakeUpdateVersionFromIfMatch() throws Exception {
+        when(invoiceService.updateInvoice(eq(42L), any(InvoiceRequest.class))).thenReturn(buildInvoiceResponse());
+
+        mockMvc.perform(put("/api/v1/invoices/42")
+                        .header("If-Match", "\"5\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(buildValidInvoiceRequest())))
+                .andExpect(status().isOk());
+
+        verify(invoiceService).updateInvoice(eq(42L), argThat(r -> Long.valueOf(5).equals(r.getVersion())));
+    }
+
+    @Test
+    void shouldReturn428WhenUpdateHasNoVersion() throws Exception {
+        when(invoiceService.updateInvoice(eq(42L), any(InvoiceRequest.class)))
+                .thenThrow(new InvoiceVersionRequiredException(42L));
+
+        mockMvc.perform(put("/api/v1/invoices/42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(buildValidInvoiceRequest())))
+                .andExpect(status().isPreconditionRequired());
+    }
+
+    @Test
+    void shouldRejectIfMatchThatContradictsBodyVersion() throws Exception {
+        InvoiceRequest request = buildValidInvoiceRequest();
+        request.setVersion(4L);
+
+        mockMvc.perform(put("/api/v1/invoices/42")
+                        .header("If-Match", "\"5\"")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isBadRequest());
+        verify(invoiceService, never()).updateInvoice(any(), any());
+    }
+
+    @Test
+    void shouldReplayCreationWithSameIdempotencyKey() throws Exception {
+        // Given
+        InvoiceRequest request = buildValidInvoiceRequest();
+        when(invoiceService.createInvoice(any(InvoiceRequest.class))).thenReturn(buildInvoiceResponse());
+        String body = objectMapper.writeValueAsString(request);
+
+        // When & Then : le réessai renvoie la même facture sans recréer
+        mockMvc.perform(post("/api/v1/invoices")
+                        .header(IdempotencyService.HEADER, "pos-1-retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(IdempotencyService.REPLAYED_HEADER));
+
+        mockMvc.perform(post("/api/v1/invoices")
+                        .header(IdempotencyService.HEADER, "pos-1-retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(body))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(IdempotencyService.REPLAYED_HEADER, "true"))
+                .andExpect(jsonPath("$.invoiceNumber").value("INV-2025-000001"));
+
+        verify(invoiceService, times(1)).createInvoice(any(InvoiceRequest.class));
+
+        // Même clé, autre facture
+        request.setCurrency("EUR");
+        mockMvc.perform(post("/api/v1/invoices")
+                        .header(IdempotencyService.HEADER, "pos-1-retry-42")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isUnprocessableEntity());
+    }
+
     @Test
     void shouldRejectInvalidInvoiceRequest() throws Exception {
         // Given
@@ -113,16 +248,244 @@ class InvoiceControllerTest {
     }
 
     @Test
-    void shouldGetAllInvoices() throws Exception {
+    void shouldListInvoicesWithCursor() throws Exception {
+        // Given
+        InvoiceSummary summary = InvoiceSummary.builder()
+                .id(1L)
+                .invoiceNumber("INV-2025-000001")
+                .status(InvoiceStatus.RECEIVED)
+                .issueDate(Instant.parse("2025-01-15T10:00:00Z"))
+                .build();
+        InvoicePageResponse page = InvoicePageResponse.builder()
+                .items(List.of(summary))
+                .nextCursor("next")
+                .hasMore(true)
+                .size(1)
+                .build();
+        when(invoiceService.listInvoices(any(InvoiceListFilter.class), eq("abc"), eq(1))).thenReturn(page);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/invoices")
+                        .param("status", "RECEIVED")
+                        .param("from", "2025-01-01")
+                        .param("to", "2025-01-31")
+                        .param("cursor", "abc")
+                        .param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].invoiceNumber").value("INV-2025-000001"))
+                .andExpect(jsonPath("$.hasMore").value(true))
+                .andExpect(jsonPath("$.nextCursor").value("next"));
+    }
+
+    @Test
+    void shouldSearchInvoices() throws Exception {
+        // Given
+        InvoiceSearchResponse result = InvoiceSearchResponse.builder()
+                .items(List.of(InvoiceSummary.builder().id(7L).buyerName("Kouassi Yao").build()))
+                .page(0)
+                .size(20)
+                .hasMore(false)
+                .build();
+        when(invoiceSearchService.search("kouas", null, true, 0, 20)).thenReturn(result);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/invoices/search").param("q", "kouas"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(7))
+                .andExpect(jsonPath("$.hasMore").value(false));
+    }
+
+    @Test
+    void shouldMultiGetInvoicesInRequestOrder() throws Exception {
+        // Given
+        InvoiceMultiGetResponse result = InvoiceMultiGetResponse.builder()
+                .items(List.of(InvoiceResponse.builder().id(9L).build(), InvoiceResponse.builder().id(3L).build()))
+                .missing(List.of(5L))
+                .build();
+        when(invoiceService.getInvoices(List.of(9L, 5L, 3L))).thenReturn(result);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/invoices/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[9,5,3]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.items[0].id").value(9))
+                .andExpect(jsonPath("$.items[1].id").value(3))
+                .andExpect(jsonPath("$.missing[0]").value(5));
+    }
+
+    @Test
+    void shouldRejectEmptyMultiGet() throws Exception {
+        mockMvc.perform(post("/api/v1/invoices/_mget")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\":[]}"))
+                .andExpect(status().isBadRequest());
+
+        verify(invoiceService, never()).getInvoices(any());
+    }
+
+    @Test
+    void shouldStreamCsvExport() throws Exception {
         // Given
-        List<InvoiceResponse> responses = List.of(buildInvoiceResponse());
-        when(invoiceService.getAllInvoices()).thenReturn(responses);
+        when(invoiceExportService.export(any(), any(InvoiceListFilter.class),
+                eq(InvoiceExportService.Format.CSV), eq(false), any(OutputStream.class)))
+                .thenAnswer(inv -> {
+                    inv.getArgument(4, OutputStream.class).write("id,invoiceNumber\r\n".getBytes());
+                    return 0L;
+                });
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/v1/invoices/export").param("format", "csv"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Disposition", "attachment; filename=\"invoices-export.csv\""))
+                .andExpect(content().string("id,invoiceNumber\r\n"));
+    }
+
+    @Test
+    void shouldRejectUnknownExportFormat() throws Exception {
+        mockMvc.perform(get("/api/v1/invoices/export").param("format", "xlsx"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldRenderPdfAsynchronously() throws Exception {
+        // Given : facture modifiée entre l'empreinte et le rendu, la version rendue fait foi
+        String etag = "cd".repeat(32);
+        when(invoiceService.fnePdfKey(42L)).thenReturn("ab".repeat(32));
+        when(invoiceService.renderFnePdf(42L)).thenReturn(CompletableFuture.completedFuture(
+                new InvoiceService.RenderedPdf(etag, new byte[]{'%', 'P'})));
+
+        // When
+        MvcResult result = mockMvc.perform(get("/api/v1/invoices/42/pdf"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        // Then
+        MvcResult streamed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/pdf"))
+                .andExpect(header().stringValues("ETag", "\"" + etag + "\""))
+                .andReturn();
+        // Corps puis mise en cache dans le StreamingResponseBody : attendre sa fin
+        streamed.getAsyncResult();
+        assertThat(streamed.getResponse().getContentAsByteArray()).isEqualTo(new byte[]{'%', 'P'});
+        verify(pdfDiskCache).put(eq(etag), any());
+    }
+
+    @Test
+    void shouldHandCachedPdfToTomcatSendfileWhenSupported() throws Exception {
+        String etag = "ab".repeat(32);
+        byte[] pdf = {'%', 'P', 'D', 'F'};
+        PdfDiskCache disk = diskCache(etag, pdf);
+        when(invoiceService.fnePdfKey(42L)).thenReturn(etag);
+        when(pdfDiskCache.open(etag)).thenReturn(disk.open(etag));
+
+        // Réponse synchrone sans corps : le connecteur envoie le fichier lui-même
+        MvcResult result = mockMvc.perform(get("/api/v1/invoices/42/pdf")
+                        .requestAttr("org.apache.tomcat.sendfile.support", Boolean.TRUE))
+                .andExpect(request().asyncNotStarted())
+                .andExpect(status().isOk())
+                .andExpect(header().string("Content-Type", "application/pdf"))
+                .andExpect(header().string("Content-Length", "4"))
+                .andExpect(header().stringValues("ETag", "\"" + etag + "\""))
+                .andExpect(content().bytes(new byte[0]))
+                .andReturn();
+
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename"))
+                .isEqualTo(cacheDir.resolve(etag + ".pdf").toRealPath().toString());
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.start")).isEqualTo(0L);
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.end")).isEqualTo(4L);
+        verify(invoiceService, never()).renderFnePdf(any());
+    }
+
+    @Test
+    void shouldStreamCachedPdfWithoutSendfile() throws Exception {
+        String etag = "ab".repeat(32);
+        byte[] pdf = {'%', 'P', 'D', 'F'};
+        PdfDiskCache disk = diskCache(etag, pdf);
+        when(invoiceService.fnePdfKey(42L)).thenReturn(etag);
+        when(pdfDiskCache.open(etag)).thenReturn(disk.open(etag));
+
+        MvcResult result = mockMvc.perform(get("/api/v1/invoices/42/pdf"))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        MvcResult streamed = mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isOk())
+                .andReturn();
+        // Corps écrit par une seconde étape asynchrone (StreamingResponseBody) : attendre sa fin
+        streamed.getAsyncResult();
+        assertThat(streamed.getResponse().getContentAsByteArray()).isEqualTo(pdf);
+        assertThat(result.getRequest().getAttribute("org.apache.tomcat.sendfile.filename")).isNull();
+    }
+
+    @Test
+    void shouldReturn304WithoutRenderingWhenPdfEtagMatches() throws Exception {
+        String etag = "ab".repeat(32);
+        when(invoiceService.fnePdfKey(42L)).thenReturn(etag);
+
+        MvcResult result = mockMvc.perform(get("/api/v1/invoices/42/pdf").header("If-None-Match", "\"" + etag + "\""))
+                .andExpect(request().asyncStarted())
+                .andReturn();
+
+        mockMvc.perform(asyncDispatch(result))
+                .andExpect(status().isNotModified());
+        verify(invoiceService, never()).renderFnePdf(any());
+        verify(pdfDiskCache, never()).open(any());
+    }
+
+    @Test
+    void shouldReturn503WithRetryAfterWhenPdfPoolIsSaturated() throws Exception {
+        when(invoiceService.fnePdfKey(42L)).thenReturn("ab".repeat(32));
+        when(invoiceService.renderFnePdf(42L))
+                .thenThrow(new PdfRenderRejectedException(Duration.ofSeconds(5), null));
+
+        mockMvc.perform(get("/api/v1/invoices/42/pdf"))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string("Retry-After", "5"));
+    }
+
+    @Test
+    void shouldServeQrCodeWithImmutableCacheWhenVersioned() throws Exception {
+        // Given
+        String sha256 = "0123456789abcdef".repeat(4);
+        byte[] png = {(byte) 0x89, 'P', 'N', 'G'};
+        when(invoiceQrService.findSha256(1L)).thenReturn(Optional.of(sha256));
+        when(invoiceQrService.find(1L)).thenReturn(Optional.of(InvoiceQrCodeEntity.builder()
+                .invoiceId(1L).sha256(sha256).contentType("image/png").sizeBytes(png.length).png(png).build()));
 
         // When & Then
-        mockMvc.perform(get("/api/v1/invoices"))
+        mockMvc.perform(get("/api/v1/invoices/1/qr.png").param("v", sha256.substring(0, 16)))
                 .andExpect(status().isOk())
-                .andExpect(jsonPath("$").isArray())
-                .andExpect(jsonPath("$[0].invoiceNumber").value("INV-2025-000001"));
+                .andExpect(header().string("ETag", "\"" + sha256 + "\""))
+                .andExpect(header().string("Cache-Control", "max-age=31536000, public, immutable"))
+                .andExpect(content().bytes(png));
+    }
+
+    @Test
+    void shouldAnswerNotModifiedForMatchingQrEtag() throws Exception {
+        // Given
+        String sha256 = "fedcba9876543210".repeat(4);
+        when(invoiceQrService.findSha256(1L)).thenReturn(Optional.of(sha256));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/invoices/1/qr.png").header("If-None-Match", "\"" + sha256 + "\""))
+                .andExpect(status().isNotModified())
+                .andExpect(header().string("Cache-Control", "no-cache"));
+        verify(invoiceQrService, never()).find(any());
+    }
+
+    @Test
+    void shouldRejectInvertedDateRange() throws Exception {
+        mockMvc.perform(get("/api/v1/invoices")
+                        .param("from", "2025-02-01")
+                        .param("to", "2025-01-01"))
+                .andExpect(status().isBadRequest());
     }
 
     @Test
@@ -138,10 +501,71 @@ class InvoiceControllerTest {
                 .andExpect(jsonPath("$.invoiceNumber").value("INV-2025-000001"));
     }
 
+    @Test
+    void shouldCreateInvoicesBatchWithPartialFailure() throws Exception {
+        // Given
+        InvoiceBatchRequest request = InvoiceBatchRequest.builder()
+                .invoices(List.of(buildValidInvoiceRequest(), InvoiceRequest.builder().build()))
+                .build();
+        InvoiceBatchResponse response = InvoiceBatchResponse.builder()
+                .total(2).created(1).failed(1)
+                .results(List.of(
+                        InvoiceBatchResponse.ItemResult.builder()
+                                .index(0).status("CREATED").id(1L).invoiceNumber("INV-2025-000001").build(),
+                        InvoiceBatchResponse.ItemResult.builder()
+                                .index(1).status("FAILED")
+                                .errors(java.util.Map.of("currency", "La devise est obligatoire")).build()))
+                .build();
+        when(invoiceBatchService.createBatch(any())).thenReturn(response);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/invoices/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content(objectMapper.writeValueAsString(request)))
+                .andExpect(status().isMultiStatus())
+                .andExpect(jsonPath("$.created").value(1))
+                .andExpect(jsonPath("$.results[0].invoiceNumber").value("INV-2025-000001"))
+                .andExpect(jsonPath("$.results[1].status").value("FAILED"));
+    }
+
+    @Test
+    void shouldRejectEmptyBatch() throws Exception {
+        mockMvc.perform(post("/api/v1/invoices/batch")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"invoices\":[]}"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void shouldAcceptDgiSubmissionAndPointToStatus() throws Exception {
+        // Given
+        DgiSubmissionResponse pending = DgiSubmissionResponse.builder()
+                .submissionId(7L).invoiceId(1L).invoiceNumber("INV-2025-000001")
+                .status(DgiSubmissionStatus.PENDING).attempts(0).build();
+        when(dgiSubmissionService.requestSubmission(1L)).thenReturn(pending);
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/invoices/1/dgi-submission"))
+                .andExpect(status().isAccepted())
+                .andExpect(header().string("Location", "/api/v1/invoices/1/dgi-submission"))
+                .andExpect(header().exists("Retry-After"))
+                .andExpect(jsonPath("$.status").value("PENDING"))
+                .andExpect(jsonPath("$.submissionId").value(7));
+        verify(invoiceService, never()).submitToDgi(any());
+    }
+
     // -----------------------
     // Helpers pour les objets
     // -----------------------
 
+    /** Vrai cache disque (répertoire temporaire) contenant un PDF, pour obtenir un CachedPdf ouvert */
+    private PdfDiskCache diskCache(String key, byte[] pdf) {
+        PdfDiskCache disk = new PdfDiskCache(new SimpleMeterRegistry(), true, cacheDir, DataSize.ofMegabytes(1));
+        disk.init();
+        disk.put(key, pdf);
+        return disk;
+    }
+
     private InvoiceRequest buildValidInvoiceRequest() {
         return InvoiceRequest.builder()
                 .invoiceType("STANDARD")
@@ -220,7 +644,7 @@ class InvoiceControllerTest {
                         .build())
                 .paymentMode("TRANSFER")
                 .stickerId("STKR-ABC12345")
-                .qrBase64("iVBORw0KGgoAAAANSUhEUg...")
+                .qrUrl("/api/v1/invoices/1/qr.png?v=0123456789abcdef")
                 .status("RECEIVED")
                 .notes("Facture de test")
                 .issueDate(Instant.now())
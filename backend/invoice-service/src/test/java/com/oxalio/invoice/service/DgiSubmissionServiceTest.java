@@ -0,0 +1,231 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.DgiSubmissionResponse;
+import com.oxalio.invoice.entity.DgiSubmissionEntity;
+import com.oxalio.invoice.integration.DgiClientMock;
+import com.oxalio.invoice.model.DgiSubmissionStatus;
+import com.oxalio.invoice.repository.DgiSubmissionRepository;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.task.TaskExecutor;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ✅ Soumission DGI asynchrone : réservation atomique (un seul worker par soumission),
+ * nouvel essai espacé, FAILED après max-attempts, reprise des IN_PROGRESS bloquées
+ * et des soumissions refusées par le pool plein.
+ *
+ * Service construit à la main : client DGI simulé et pool remplacé par une file exécutée à la demande.
+ */
+@ServiceIntegrationTest
+class DgiSubmissionServiceTest {
+
+    private static final Duration RETRY_DELAY = Duration.ofSeconds(30);
+    private static final Duration STALE_AFTER = Duration.ofMinutes(5);
+
+    @Autowired
+    private DgiSubmissionRepository submissionRepository;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private DgiClientMock realDgiClient;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private DgiClientMock dgiClient;
+    private QueuedExecutor executor;
+
+    @BeforeEach
+    void setUp() {
+        dgiClient = mock(DgiClientMock.class);
+        when(dgiClient.simulateCertification(any()))
+                .thenAnswer(inv -> realDgiClient.simulateCertification(inv.getArgument(0)));
+        executor = new QueuedExecutor();
+    }
+
+    // ============================================================
+    // RÉSERVATION
+    // ============================================================
+    @Test
+    void shouldLetOnlyOneWorkerClaimASubmission() throws Exception {
+        DgiSubmissionService service = service(executor, 3);
+        Long submissionId = service.requestSubmission(newInvoice()).getSubmissionId();
+
+        // Deux workers reçoivent la même soumission (dispatch + balayage)
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService workers = Executors.newFixedThreadPool(2);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                futures.add(workers.submit(() -> {
+                    start.await();
+                    service.process(submissionId);
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            workers.shutdownNow();
+        }
+
+        DgiSubmissionEntity submission = submissionRepository.findById(submissionId).orElseThrow();
+        assertThat(submission.getStatus()).isEqualTo(DgiSubmissionStatus.SUCCEEDED);
+        assertThat(submission.getAttempts()).isEqualTo(1);
+        verify(dgiClient, times(1)).simulateCertification(any());
+        Integer reclaimed = transactionTemplate.execute(tx -> submissionRepository.claim(submissionId,
+                Instant.now(), DgiSubmissionStatus.PENDING, DgiSubmissionStatus.IN_PROGRESS));
+        assertThat(reclaimed).isZero();
+    }
+
+    // ============================================================
+    // ÉCHECS
+    // ============================================================
+    @Test
+    void shouldRetryWithIncreasingDelayThenFail() {
+        doThrow(new IllegalStateException("DGI indisponible")).when(dgiClient).simulateCertification(any());
+        DgiSubmissionService service = service(executor, 3);
+        Long invoiceId = newInvoice();
+        Long submissionId = service.requestSubmission(invoiceId).getSubmissionId();
+
+        Instant beforeFirst = Instant.now();
+        service.process(submissionId);
+        DgiSubmissionEntity first = submissionRepository.findById(submissionId).orElseThrow();
+        assertThat(first.getStatus()).isEqualTo(DgiSubmissionStatus.PENDING);
+        assertThat(first.getAttempts()).isEqualTo(1);
+        assertThat(first.getLastError()).contains("DGI indisponible");
+        assertThat(first.getNextAttemptAt())
+                .isBetween(beforeFirst.plus(RETRY_DELAY), Instant.now().plus(RETRY_DELAY));
+
+        // Délai proportionnel au nombre d'essais
+        Instant beforeSecond = Instant.now();
+        service.process(submissionId);
+        DgiSubmissionEntity second = submissionRepository.findById(submissionId).orElseThrow();
+        assertThat(second.getStatus()).isEqualTo(DgiSubmissionStatus.PENDING);
+        Duration secondDelay = RETRY_DELAY.multipliedBy(2);
+        assertThat(second.getNextAttemptAt())
+                .isBetween(beforeSecond.plus(secondDelay), Instant.now().plus(secondDelay));
+
+        service.process(submissionId);
+        DgiSubmissionEntity failed = submissionRepository.findById(submissionId).orElseThrow();
+        assertThat(failed.getStatus()).isEqualTo(DgiSubmissionStatus.FAILED);
+        assertThat(failed.getAttempts()).isEqualTo(3);
+        assertThat(failed.getCompletedAt()).isNotNull();
+        assertThat(invoiceRepository.findById(invoiceId).orElseThrow().getDgiReference()).isNull();
+
+        // Terminée : plus rien à faire pour cette soumission, une nouvelle demande repart de zéro
+        service.process(submissionId);
+        verify(dgiClient, times(3)).simulateCertification(any());
+        DgiSubmissionResponse retried = service.requestSubmission(invoiceId);
+        assertThat(retried.getSubmissionId()).isNotEqualTo(submissionId);
+        assertThat(retried.getStatus()).isEqualTo(DgiSubmissionStatus.PENDING);
+    }
+
+    // ============================================================
+    // REPRISE PAR LE BALAYAGE
+    // ============================================================
+    @Test
+    void shouldRequeueStaleInProgressSubmission() {
+        DgiSubmissionService service = service(executor, 3);
+        Long submissionId = service.requestSubmission(newInvoice()).getSubmissionId();
+        executor.clear();
+
+        // Worker arrêté pendant l'appel DGI, il y a plus de stale-after
+        Instant claimedAt = Instant.now().minus(STALE_AFTER).minusSeconds(60);
+        transactionTemplate.executeWithoutResult(tx -> submissionRepository.claim(submissionId, claimedAt,
+                DgiSubmissionStatus.PENDING, DgiSubmissionStatus.IN_PROGRESS));
+
+        service.sweep();
+
+        assertThat(submissionRepository.findById(submissionId).orElseThrow().getStatus())
+                .isEqualTo(DgiSubmissionStatus.PENDING);
+        executor.runAll();
+        DgiSubmissionEntity done = submissionRepository.findById(submissionId).orElseThrow();
+        assertThat(done.getStatus()).isEqualTo(DgiSubmissionStatus.SUCCEEDED);
+        assertThat(done.getAttempts()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldKeepSubmissionPendingWhenPoolRejectsItAndSweepItLater() {
+        TaskExecutor saturated = task -> {
+            throw new RejectedExecutionException("file pleine");
+        };
+        Long invoiceId = newInvoice();
+
+        DgiSubmissionResponse accepted = service(saturated, 3).requestSubmission(invoiceId);
+
+        assertThat(accepted.getStatus()).isEqualTo(DgiSubmissionStatus.PENDING);
+        assertThat(submissionRepository.findById(accepted.getSubmissionId()).orElseThrow().getStatus())
+                .isEqualTo(DgiSubmissionStatus.PENDING);
+
+        DgiSubmissionService recovered = service(executor, 3);
+        recovered.sweep();
+        executor.runAll();
+
+        assertThat(submissionRepository.findById(accepted.getSubmissionId()).orElseThrow().getStatus())
+                .isEqualTo(DgiSubmissionStatus.SUCCEEDED);
+        assertThat(invoiceRepository.findById(invoiceId).orElseThrow().getDgiReference()).isNotNull();
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private DgiSubmissionService service(TaskExecutor taskExecutor, int maxAttempts) {
+        return new DgiSubmissionService(submissionRepository, invoiceRepository, invoiceService, dgiClient,
+                transactionTemplate, taskExecutor, maxAttempts, RETRY_DELAY, STALE_AFTER, 100);
+    }
+
+    private Long newInvoice() {
+        return invoiceService.createInvoice(invoiceRequest()).getId();
+    }
+
+    /** Pool remplacé par une file : les tâches s'exécutent quand le test le décide */
+    private static final class QueuedExecutor implements TaskExecutor {
+
+        private final List<Runnable> tasks = new ArrayList<>();
+
+        @Override
+        public void execute(Runnable task) {
+            tasks.add(task);
+        }
+
+        void runAll() {
+            List<Runnable> pending = new ArrayList<>(tasks);
+            tasks.clear();
+            pending.forEach(Runnable::run);
+        }
+
+        void clear() {
+            tasks.clear();
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.model.FneTaxCode;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.groups.Tuple.tuple;
+
+/**
+ * Règles de calcul FNE : arrondis, résumé par taux, timbre de quittance.
+ */
+class FneTaxEngineTest {
+
+    private final FneTaxEngine engine = new FneTaxEngine(new BigDecimal("100"));
+
+    @Test
+    void shouldComputeTotalsAndBreakdownPerRate() {
+        InvoiceEntity invoice = new InvoiceEntity();
+        invoice.setPaymentMethod("cash");
+        invoice.getLines().add(line("2", "10000", "0", "18"));
+        invoice.getLines().add(line("1", "5000", "500", "9"));
+        invoice.getLines().add(line("3", "1000", "0", "0"));
+
+        FneTotals totals = engine.applyTo(invoice);
+
+        // HT : 20000 + 4500 + 3000 ; TVA : 3600 + 405
+        assertThat(invoice.getSubtotal()).isEqualByComparingTo("27500");
+        assertThat(invoice.getTotalVat()).isEqualByComparingTo("4005");
+        assertThat(invoice.getTotalDiscount()).isEqualByComparingTo("500");
+        assertThat(invoice.getTotalAmount()).isEqualByComparingTo("31505");
+        assertThat(invoice.getOtherTaxes()).isEqualByComparingTo("100");
+        assertThat(invoice.getTotalToPay()).isEqualByComparingTo("31605");
+
+        assertThat(invoice.getLines().get(1).getVatAmount()).isEqualByComparingTo("405");
+        assertThat(invoice.getLines().get(1).getLineTotal()).isEqualByComparingTo("4905");
+
+        assertThat(totals.breakdown())
+                .extracting(FneTotals.VatBreakdown::code)
+                .containsExactly(FneTaxCode.TVA, FneTaxCode.TVAB, FneTaxCode.TVAD);
+        assertThat(totals.breakdown().get(0).vatAmount()).isEqualByComparingTo("3600");
+    }
+
+    @Test
+    void shouldRoundLineVatToWholeFrancWithoutNonTerminatingDivision() {
+        // 3 × 33.33 = 99.99 ; TVA 18 % = 17.9982 → 18 (BigDecimal.divide sans échelle lèverait ici)
+        FneTotals totals = engine.compute(
+                List.of(line("3", "33.33", "0", "18")), FneTaxEngine.ENTITY_LINES, "card");
+
+        assertThat(totals.lineNet(0)).isEqualByComparingTo("99.99");
+        assertThat(totals.lineVat(0)).isEqualByComparingTo("18");
+        assertThat(totals.stampDuty()).isEqualByComparingTo("0");
+        assertThat(totals.totalToPay()).isEqualByComparingTo("117.99");
+    }
+
+    @Test
+    void shouldNeverProduceNegativeLineAmounts() {
+        FneTotals totals = engine.compute(
+                List.of(line("1", "1000", "1500", "18")), FneTaxEngine.ENTITY_LINES, null);
+
+        assertThat(totals.subtotal()).isEqualByComparingTo("0");
+        assertThat(totals.totalVat()).isEqualByComparingTo("0");
+    }
+
+    @Test
+    void shouldStoreVersionAndBreakdownReadableWithoutRecomputing() {
+        InvoiceEntity invoice = new InvoiceEntity();
+        invoice.getLines().add(line("2", "10000", "0", "18"));
+        invoice.getLines().add(line("1", "5000", "500", "9"));
+
+        engine.applyTo(invoice);
+
+        assertThat(invoice.getTotalsVersion()).isEqualTo(FneTaxEngine.VERSION);
+        assertThat(invoice.getVatBreakdown()).isEqualTo("1800:2000000:360000;900:450000:40500");
+        assertThat(FneTotals.breakdownDTOs(invoice.getVatBreakdown()))
+                .extracting(InvoiceResponse.VatBreakdownDTO::getTaxCode, b -> b.getVat().toPlainString())
+                .containsExactly(
+                        tuple("TVA", "3600.00"),
+                        tuple("TVAB", "405.00"));
+    }
+
+    private static InvoiceLineEntity line(String qty, String unitPrice, String discount, String vatRate) {
+        InvoiceLineEntity line = new InvoiceLineEntity();
+        line.setQuantity(new BigDecimal(qty));
+        line.setUnitPrice(new BigDecimal(unitPrice));
+        line.setDiscount(new BigDecimal(discount));
+        line.setVatRate(new BigDecimal(vatRate));
+        return line;
+    }
+}
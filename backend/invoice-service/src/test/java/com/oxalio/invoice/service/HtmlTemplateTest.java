@@ -0,0 +1,50 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.service.HtmlPdfService.Placeholder;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Template précompilé : même document que les String.replace successifs qu'il remplace.
+ */
+class HtmlTemplateTest {
+
+    @Test
+    void shouldRenderSameHtmlAsSequentialReplace() throws IOException {
+        String html;
+        try (InputStream in = new ClassPathResource("templates/invoice-template.html").getInputStream()) {
+            html = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        EnumMap<Placeholder, CharSequence> values = new EnumMap<>(Placeholder.class);
+        String expected = html;
+        for (Placeholder p : Placeholder.values()) {
+            String value = "<" + p.name().toLowerCase() + ">";
+            values.put(p, value);
+            expected = expected.replace("{{" + p.name() + "}}", value);
+        }
+
+        String rendered = HtmlTemplate.compile(html, Placeholder.class).render(values);
+
+        assertThat(rendered).isEqualTo(expected);
+        assertThat(rendered).doesNotContain("{{");
+    }
+
+    @Test
+    void shouldKeepUnknownPlaceholdersAndRenderMissingValuesEmpty() {
+        HtmlTemplate<Placeholder> template =
+                HtmlTemplate.compile("<p>{{FNE_REFERENCE}}|{{INCONNU}}|{{BUYER_NAME}}|{{FNE_REFERENCE}}{{</p>",
+                        Placeholder.class);
+        EnumMap<Placeholder, CharSequence> values = new EnumMap<>(Placeholder.class);
+        values.put(Placeholder.FNE_REFERENCE, "REF-1");
+
+        assertThat(template.slotCount()).isEqualTo(3);
+        assertThat(template.render(values)).isEqualTo("<p>REF-1|{{INCONNU}}||REF-1{{</p>");
+    }
+}
@@ -0,0 +1,193 @@
+package com.oxalio.invoice.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.oxalio.invoice.client.FneStickerClient.FneInvoiceResponse;
+import com.oxalio.invoice.controller.FneController.InvoiceSignRequest;
+import com.oxalio.invoice.exception.IdempotencyConflictException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ✅ Idempotency-Key en base : requête concurrente de même clé en attente de la première,
+ * expiration du TTL, 409 au-delà de l'attente, rejeu d'une signature FNE sans second appel.
+ */
+@ServiceIntegrationTest
+class IdempotencyServiceTest {
+
+    @Autowired
+    private IdempotencyService idempotencyService;
+
+    @Autowired
+    private NamedParameterJdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Test
+    void shouldMakeConcurrentCallerWaitForFirstResponse() throws Exception {
+        String key = newKey();
+        AtomicInteger calls = new AtomicInteger();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("test", key, Map.of("n", 1), () -> {
+                    calls.incrementAndGet();
+                    started.countDown();
+                    await(release);
+                    return ResponseEntity.status(HttpStatus.CREATED).body("created");
+                }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        CompletableFuture<ResponseEntity<String>> second = CompletableFuture.supplyAsync(() ->
+                idempotencyService.execute("test", key, Map.of("n", 1), counting(calls, "again")));
+        Thread.sleep(200);
+        assertThat(second).isNotDone();
+
+        release.countDown();
+        ResponseEntity<String> original = first.get(10, TimeUnit.SECONDS);
+        ResponseEntity<String> replayed = second.get(10, TimeUnit.SECONDS);
+
+        assertThat(calls).hasValue(1);
+        assertThat(original.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+        assertThat(replayed.getStatusCode()).isEqualTo(HttpStatus.CREATED);
+        assertThat(replayed.getBody()).isEqualTo("created");
+        assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+    }
+
+    @Test
+    void shouldExecuteAgainOnceTtlHasExpired() throws Exception {
+        IdempotencyService shortTtl = service(Duration.ofMillis(100), Duration.ofSeconds(5));
+        String key = newKey();
+        AtomicInteger calls = new AtomicInteger();
+
+        shortTtl.execute("test", key, "body", counting(calls, "first"));
+        assertThat(shortTtl.execute("test", key, "body", counting(calls, "replay")).getBody()).isEqualTo("first");
+
+        Thread.sleep(200);
+        ResponseEntity<String> afterTtl = shortTtl.execute("test", key, "body", counting(calls, "second"));
+        assertThat(afterTtl.getBody()).isEqualTo("second");
+        assertThat(afterTtl.getHeaders().containsKey(IdempotencyService.REPLAYED_HEADER)).isFalse();
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldReturnConflictWhenOriginalRequestOutlastsWaitTimeout() throws Exception {
+        IdempotencyService shortWait = service(Duration.ofHours(1), Duration.ofMillis(200));
+        String key = newKey();
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+
+        CompletableFuture<ResponseEntity<String>> first = CompletableFuture.supplyAsync(() ->
+                shortWait.execute("test", key, "body", () -> {
+                    started.countDown();
+                    await(release);
+                    return ResponseEntity.ok("done");
+                }));
+        assertThat(started.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThatThrownBy(() -> shortWait.execute("test", key, "body", () -> ResponseEntity.ok("again")))
+                .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.CONFLICT));
+
+        release.countDown();
+        assertThat(first.get(10, TimeUnit.SECONDS).getBody()).isEqualTo("done");
+        assertThat(shortWait.execute("test", key, "body", () -> ResponseEntity.ok("again")).getBody())
+                .isEqualTo("done");
+    }
+
+    @Test
+    void shouldReplayFneSignatureWithoutSecondFneCall() {
+        String key = newKey();
+        InvoiceSignRequest request = new InvoiceSignRequest();
+        request.setInvoiceType("sale");
+        request.setPaymentMethod("cash");
+        request.setTemplate("B2C");
+        AtomicInteger fneCalls = new AtomicInteger();
+        Supplier<ResponseEntity<FneInvoiceResponse>> sign = () -> {
+            fneCalls.incrementAndGet();
+            FneInvoiceResponse response = new FneInvoiceResponse();
+            response.setReference("2505842N260000001");
+            response.setInvoice(new FneInvoiceResponse.InvoiceDetails());
+            response.getInvoice().setId(UUID.randomUUID().toString());
+            return ResponseEntity.ok(response);
+        };
+
+        ResponseEntity<FneInvoiceResponse> signed = idempotencyService.execute("fne-sign", key, request, sign);
+        ResponseEntity<FneInvoiceResponse> replayed = idempotencyService.execute("fne-sign", key, request, sign);
+
+        assertThat(fneCalls).hasValue(1);
+        assertThat(replayed.getHeaders().getFirst(IdempotencyService.REPLAYED_HEADER)).isEqualTo("true");
+        assertThat(replayed.getBody()).isInstanceOf(FneInvoiceResponse.class);
+        assertThat(replayed.getBody().getReference()).isEqualTo(signed.getBody().getReference());
+        assertThat(replayed.getBody().getInvoice().getId()).isEqualTo(signed.getBody().getInvoice().getId());
+
+        // Même clé, autre facture : refusée
+        request.setTemplate("B2B");
+        assertThatThrownBy(() -> idempotencyService.execute("fne-sign", key, request, sign))
+                .isInstanceOfSatisfying(IdempotencyConflictException.class,
+                        e -> assertThat(e.getStatus()).isEqualTo(HttpStatus.UNPROCESSABLE_ENTITY));
+        assertThat(fneCalls).hasValue(1);
+    }
+
+    @Test
+    void shouldNotKeepFailedResponse() {
+        String key = newKey();
+        AtomicInteger calls = new AtomicInteger();
+
+        assertThatThrownBy(() -> idempotencyService.execute("test", key, "body", () -> {
+            calls.incrementAndGet();
+            throw new IllegalStateException("FNE indisponible");
+        })).isInstanceOf(IllegalStateException.class);
+
+        assertThat(idempotencyService.execute("test", key, "body", counting(calls, "retried")).getBody())
+                .isEqualTo("retried");
+        assertThat(calls).hasValue(2);
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private IdempotencyService service(Duration ttl, Duration waitTimeout) {
+        return new IdempotencyService(objectMapper, new JdbcIdempotencyStore(jdbcTemplate, objectMapper,
+                transactionManager, ttl, waitTimeout, Duration.ofMinutes(5)));
+    }
+
+    private static Supplier<ResponseEntity<String>> counting(AtomicInteger calls, String body) {
+        return () -> {
+            calls.incrementAndGet();
+            return ResponseEntity.ok(body);
+        };
+    }
+
+    private static String newKey() {
+        return "key-" + UUID.randomUUID();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.repository.InvoiceArchiveEntryRepository;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.UUID;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Archivage des factures certifiées : sortie des tables chaudes, relecture transparente
+ * par id, par numéro, par référence FNE et pour le QR ; les factures non certifiées restent en place.
+ */
+@ServiceIntegrationTest
+class InvoiceArchiveJobTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceArchiveJob archiveJob;
+
+    @Autowired
+    private InvoiceQrService invoiceQrService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private InvoiceArchiveEntryRepository archiveEntryRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldMoveCertifiedInvoicesToArchiveAndReadThemBack() {
+        InvoiceResponse certified = invoiceService.createInvoice(invoiceRequest());
+        invoiceService.submitToDgi(certified.getId());
+        InvoiceResponse before = invoiceService.getInvoiceById(certified.getId());
+        String qrSha256 = invoiceQrService.findSha256(certified.getId()).orElseThrow();
+
+        InvoiceResponse draft = invoiceService.createInvoice(invoiceRequest());
+
+        int archived = archiveJob.archiveOlderThan(Instant.now().plusSeconds(1));
+
+        assertThat(archived).isGreaterThanOrEqualTo(1);
+        assertThat(invoiceRepository.existsById(certified.getId())).isFalse();
+        assertThat(archiveEntryRepository.existsById(certified.getId())).isTrue();
+        assertThat(invoiceRepository.existsById(draft.getId())).isTrue();
+
+        InvoiceResponse byId = invoiceService.getInvoiceById(certified.getId());
+        assertThat(byId).isEqualTo(before);
+        assertThat(byId.getLines()).hasSize(2);
+        assertThat(byId.getTotals().getTotalAmount()).isEqualByComparingTo(before.getTotals().getTotalAmount());
+
+        assertThat(invoiceService.getInvoiceByNumber(certified.getInvoiceNumber()).getId())
+                .isEqualTo(certified.getId());
+        assertThat(invoiceQrService.find(certified.getId()))
+                .hasValueSatisfying(qr -> assertThat(qr.getSha256()).isEqualTo(qrSha256));
+    }
+
+    @Test
+    void shouldFindArchivedInvoiceByFneReferenceIncludingSegmentsArchivedBeforeV29() {
+        InvoiceResponse certified = invoiceService.createInvoice(invoiceRequest());
+        invoiceService.submitToDgi(certified.getId());
+        String fneReference = "2505842N" + UUID.randomUUID().toString().replace("-", "").substring(0, 12);
+        jdbcTemplate.update("UPDATE invoices SET fne_reference = ? WHERE id = ?", fneReference, certified.getId());
+
+        archiveJob.archiveOlderThan(Instant.now().plusSeconds(1));
+
+        assertThat(invoiceRepository.existsById(certified.getId())).isFalse();
+        assertThat(archiveEntryRepository.findByFneReference(fneReference)).isPresent();
+
+        // Segment écrit avant V29 : entrées sans référence FNE, segment non indexé
+        Long segmentId = archiveEntryRepository.findById(certified.getId()).orElseThrow().getSegmentId();
+        jdbcTemplate.update("UPDATE invoice_archive_entries SET fne_reference = NULL WHERE segment_id = ?", segmentId);
+        jdbcTemplate.update("UPDATE invoice_archive_segments SET fne_indexed = FALSE WHERE id = ?", segmentId);
+
+        assertThat(invoiceService.getInvoiceByFneReference(fneReference).getId()).isEqualTo(certified.getId());
+
+        assertThat(archiveJob.indexFneReferences()).isGreaterThanOrEqualTo(1);
+        assertThat(archiveEntryRepository.findByFneReference(fneReference))
+                .hasValueSatisfying(entry -> assertThat(entry.getInvoiceId()).isEqualTo(certified.getId()));
+    }
+}
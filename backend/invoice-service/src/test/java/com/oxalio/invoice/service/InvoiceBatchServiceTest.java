@@ -0,0 +1,110 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceBatchResponse;
+import com.oxalio.invoice.dto.InvoiceBatchResponse.ItemResult;
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Création par lot : INSERT regroupés en batchs JDBC (statistiques Hibernate),
+ * facture fautive en base isolée sans annuler les autres factures de sa tranche.
+ */
+@ServiceIntegrationTest
+// statistiques Hibernate globales à la SessionFactory
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class InvoiceBatchServiceTest {
+
+    private static final int INVOICES = 40;
+    private static final int LINES_PER_INVOICE = 5;
+
+    @Autowired
+    private InvoiceBatchService invoiceBatchService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void shouldBatchInsertsOfAChunk() {
+        List<InvoiceRequest> requests = new ArrayList<>();
+        for (int i = 0; i < INVOICES; i++) {
+            requests.add(request(lines()));
+        }
+
+        statistics.clear();
+        InvoiceBatchResponse response = invoiceBatchService.createBatch(requests);
+
+        assertThat(response.getCreated()).isEqualTo(INVOICES);
+        // au moins les factures, leurs lignes et leurs événements outbox
+        assertThat(statistics.getEntityInsertCount())
+                .isGreaterThanOrEqualTo(INVOICES + INVOICES * LINES_PER_INVOICE + INVOICES);
+        assertThat(statistics.getPrepareStatementCount())
+                .as("requêtes SQL préparées")
+                .isLessThan(INVOICES);
+    }
+
+    @Test
+    void shouldIsolateFailingInvoiceWithoutRollingBackItsChunk() {
+        InvoiceRequest tooLong = request();
+        // Valide pour Jakarta, refusé par la base (buyer_address VARCHAR(512))
+        tooLong.getBuyer().setAddress("X".repeat(600));
+        List<InvoiceRequest> requests = List.of(request(), tooLong, request());
+
+        InvoiceBatchResponse response = invoiceBatchService.createBatch(requests);
+
+        assertThat(response.getTotal()).isEqualTo(3);
+        assertThat(response.getCreated()).isEqualTo(2);
+        assertThat(response.getFailed()).isEqualTo(1);
+        assertThat(response.getResults()).extracting(ItemResult::getStatus)
+                .containsExactly("CREATED", "FAILED", "CREATED");
+        assertThat(response.getResults().get(1).getErrors()).containsKey("error");
+
+        // Les deux autres factures de la tranche sont bien en base
+        for (int i : new int[]{0, 2}) {
+            ItemResult result = response.getResults().get(i);
+            assertThat(invoiceRepository.findById(result.getId()))
+                    .hasValueSatisfying(e -> assertThat(e.getInvoiceNumber()).isEqualTo(result.getInvoiceNumber()));
+        }
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    /** Facture valide pour la validation Jakarta du lot (mode de paiement en majuscules) */
+    private static InvoiceRequest request(InvoiceRequest.InvoiceLineDTO... lines) {
+        InvoiceRequest request = lines.length == 0 ? invoiceRequest() : invoiceRequest(lines);
+        request.setPaymentMode("CASH");
+        return request;
+    }
+
+    private static InvoiceRequest.InvoiceLineDTO[] lines() {
+        InvoiceRequest.InvoiceLineDTO[] lines = new InvoiceRequest.InvoiceLineDTO[LINES_PER_INVOICE];
+        for (int i = 0; i < LINES_PER_INVOICE; i++) {
+            lines[i] = line("SKU-" + i, "1000");
+        }
+        return lines;
+    }
+}
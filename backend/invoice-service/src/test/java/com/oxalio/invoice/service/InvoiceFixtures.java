@@ -0,0 +1,70 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.BuyerDTO;
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.SellerDTO;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Jeux de données des tests : facture STANDARD en XOF, vendeur 2505842N (Caisse 1), acheteur 9502363N,
+ * lignes à 18 % sans remise. Les totaux sont recalculés par le service.
+ */
+final class InvoiceFixtures {
+
+    static final String SELLER_TAX_ID = "2505842N";
+    static final String BUYER_TAX_ID = "9502363N";
+
+    private InvoiceFixtures() {
+    }
+
+    /** Facture avec ces lignes ; la liste retournée est modifiable */
+    static InvoiceRequest invoiceRequest(InvoiceRequest.InvoiceLineDTO... lines) {
+        return InvoiceRequest.builder()
+                .invoiceType("STANDARD")
+                .currency("XOF")
+                .template("B2C")
+                .paymentMode("cash")
+                .seller(SellerDTO.builder()
+                        .taxId(SELLER_TAX_ID)
+                        .companyName("OXALIO SARL")
+                        .address("Abidjan")
+                        .pointOfSaleName("Caisse 1")
+                        .build())
+                .buyer(BuyerDTO.builder()
+                        .taxId(BUYER_TAX_ID)
+                        .name("Client Test")
+                        .build())
+                .lines(new ArrayList<>(List.of(lines)))
+                .totals(InvoiceRequest.TotalsDTO.builder()
+                        .subtotal(BigDecimal.ZERO)
+                        .totalVat(BigDecimal.ZERO)
+                        .totalAmount(BigDecimal.ZERO)
+                        .build())
+                .build();
+    }
+
+    /** Facture de deux lignes : SKU-A à 1000, SKU-B à 2000 */
+    static InvoiceRequest invoiceRequest() {
+        return invoiceRequest(line("SKU-A", "1000"), line("SKU-B", "2000"));
+    }
+
+    /** Ligne d'une unité */
+    static InvoiceRequest.InvoiceLineDTO line(String sku, String unitPrice) {
+        return line(sku, "1", unitPrice);
+    }
+
+    static InvoiceRequest.InvoiceLineDTO line(String sku, String quantity, String unitPrice) {
+        return InvoiceRequest.InvoiceLineDTO.builder()
+                .sku(sku)
+                .description("Article " + sku)
+                .quantity(new BigDecimal(quantity))
+                .unitPrice(new BigDecimal(unitPrice))
+                .vatRate(BigDecimal.valueOf(18))
+                .vatAmount(BigDecimal.ZERO)
+                .discount(BigDecimal.ZERO)
+                .build();
+    }
+}
@@ -0,0 +1,92 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.service.InvoiceLookupCache.KeyType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Cache local des factures : clés multiples, invalidation, bornes taille / TTL, métriques.
+ */
+class InvoiceLookupCacheTest {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @Test
+    void shouldServeAllKeysOfAnInvoiceFromOneLoad() {
+        InvoiceLookupCache cache = new InvoiceLookupCache(registry, 100, Duration.ofMinutes(10));
+        InvoiceResponse invoice = invoice(1L, "INV-1", "2505842N26000000036", "e359054f-79a9-4f2a-84fe-4a44ff6c263b");
+
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice));
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice));
+        cache.get(KeyType.FNE_REFERENCE, "2505842N26000000036", loader(invoice));
+        cache.get(KeyType.FNE_UUID, "e359054f-79a9-4f2a-84fe-4a44ff6c263b", loader(invoice));
+
+        assertThat(loads).hasValue(1);
+        assertThat(cache.hitRatio()).isEqualTo(0.75);
+        assertThat(registry.get("cache.gets").tag("cache", InvoiceLookupCache.CACHE_NAME).tag("result", "hit")
+                .functionCounter().count()).isEqualTo(3.0);
+        assertThat(registry.get("oxalio.invoice.cache.hit.ratio").gauge().value()).isEqualTo(0.75);
+    }
+
+    @Test
+    void shouldReloadAfterInvalidation() {
+        InvoiceLookupCache cache = new InvoiceLookupCache(registry, 100, Duration.ofMinutes(10));
+        InvoiceResponse invoice = invoice(1L, "INV-1", null, null);
+
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice));
+        cache.invalidate(1L);
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedInvoiceBeyondMaxEntries() {
+        InvoiceLookupCache cache = new InvoiceLookupCache(registry, 2, Duration.ofMinutes(10));
+
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice(1L, "INV-1", null, null)));
+        cache.get(KeyType.NUMBER, "INV-2", loader(invoice(2L, "INV-2", null, null)));
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice(1L, "INV-1", null, null)));   // INV-1 récente
+        cache.get(KeyType.NUMBER, "INV-3", loader(invoice(3L, "INV-3", null, null)));   // évince INV-2
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice(1L, "INV-1", null, null)));
+        cache.get(KeyType.NUMBER, "INV-2", loader(invoice(2L, "INV-2", null, null)));
+
+        assertThat(loads).hasValue(4);
+        assertThat(cache.size()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldExpireEntriesAfterTtl() throws InterruptedException {
+        InvoiceLookupCache cache = new InvoiceLookupCache(registry, 100, Duration.ofMillis(20));
+
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice(1L, "INV-1", null, null)));
+        Thread.sleep(40);
+        cache.get(KeyType.NUMBER, "INV-1", loader(invoice(1L, "INV-1", null, null)));
+
+        assertThat(loads).hasValue(2);
+    }
+
+    private Supplier<InvoiceResponse> loader(InvoiceResponse response) {
+        return () -> {
+            loads.incrementAndGet();
+            return response;
+        };
+    }
+
+    private static InvoiceResponse invoice(Long id, String number, String fneReference, String fneInvoiceId) {
+        return InvoiceResponse.builder()
+                .id(id)
+                .invoiceNumber(number)
+                .fneReference(fneReference)
+                .fneInvoiceId(fneInvoiceId)
+                .build();
+    }
+}
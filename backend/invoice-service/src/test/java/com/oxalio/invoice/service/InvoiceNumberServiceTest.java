@@ -0,0 +1,207 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.entity.InvoiceNumberSequenceEntity;
+import com.oxalio.invoice.repository.InvoiceNumberSequenceRepository;
+import com.oxalio.invoice.service.InvoiceNumberService.SequenceKey;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.time.Year;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+/**
+ * ✅ Numérotation hi/lo : blocs réservés puis distribués en mémoire, unicité entre instances
+ * concurrentes, reprise sur création concurrente du compteur, format par tenant et point de vente.
+ */
+@ServiceIntegrationTest
+class InvoiceNumberServiceTest {
+
+    private static final int YEAR = Year.now().getValue();
+
+    @Autowired
+    private InvoiceNumberSequenceRepository sequenceRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    // ============================================================
+    // BLOCS (DB)
+    // ============================================================
+    @Test
+    void shouldLeaseBlocksAndRefillWhenExhausted() {
+        InvoiceNumberSequenceRepository repository = mock(InvoiceNumberSequenceRepository.class);
+        // Ligne absente au départ, créée par le premier bloc puis relue
+        AtomicReference<InvoiceNumberSequenceEntity> row = new AtomicReference<>();
+        when(repository.findForUpdate(anyLong(), anyInt(), anyString()))
+                .thenAnswer(inv -> Optional.ofNullable(row.get()));
+        when(repository.saveAndFlush(any())).thenAnswer(inv -> {
+            row.set(inv.getArgument(0));
+            return row.get();
+        });
+        InvoiceNumberService service = new InvoiceNumberService(repository, mockTransactionManager(), 3);
+
+        List<String> numbers = new ArrayList<>();
+        for (int i = 0; i < 7; i++) {
+            numbers.add(service.generateInvoiceNumber(null, null));
+        }
+
+        assertThat(numbers).containsExactly(
+                "INV-" + YEAR + "-000001", "INV-" + YEAR + "-000002", "INV-" + YEAR + "-000003",
+                "INV-" + YEAR + "-000004", "INV-" + YEAR + "-000005", "INV-" + YEAR + "-000006",
+                "INV-" + YEAR + "-000007");
+        // 3 blocs de 3 : [1,4) [4,7) [7,10) ; aucun accès base entre deux renouvellements
+        verify(repository, times(3)).saveAndFlush(any());
+        assertThat(row.get().getNextValue()).isEqualTo(10L);
+    }
+
+    @Test
+    void shouldHandOutUniqueNumbersAcrossConcurrentInstances() throws Exception {
+        long tenantId = 4242L;
+        InvoiceNumberService first = new InvoiceNumberService(sequenceRepository, transactionManager, 7);
+        InvoiceNumberService second = new InvoiceNumberService(sequenceRepository, transactionManager, 7);
+        int threads = 8;
+        int perThread = 100;
+
+        Set<String> numbers = ConcurrentHashMap.newKeySet();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < threads; t++) {
+                InvoiceNumberService service = t % 2 == 0 ? first : second;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perThread; i++) {
+                        numbers.add(service.generateInvoiceNumber(tenantId, "Caisse 1"));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertThat(numbers).hasSize(threads * perThread)
+                .allMatch(n -> n.startsWith("INV-T4242-CAISSE1-" + YEAR + "-"));
+        // Au plus un bloc entamé non distribué par instance
+        long leased = sequenceRepository.findById(
+                new InvoiceNumberSequenceEntity.Key(tenantId, YEAR, "CAISSE1")).orElseThrow().getNextValue() - 1;
+        assertThat(leased).isBetween((long) threads * perThread, (long) threads * perThread + 2 * 7);
+    }
+
+    @Test
+    void shouldRetryWhenCounterRowIsCreatedConcurrently() {
+        InvoiceNumberSequenceRepository repository = mock(InvoiceNumberSequenceRepository.class);
+        // Une autre instance a créé la ligne entre notre SELECT et notre INSERT
+        when(repository.findForUpdate(anyLong(), anyInt(), anyString()))
+                .thenReturn(Optional.empty(), Optional.of(sequence(51L)));
+        when(repository.saveAndFlush(any()))
+                .thenThrow(new DataIntegrityViolationException("uk_invoice_number_sequences"))
+                .thenAnswer(inv -> inv.getArgument(0));
+        InvoiceNumberService service = new InvoiceNumberService(repository, mockTransactionManager(), 50);
+
+        assertThat(service.generateInvoiceNumber(null, null)).isEqualTo("INV-" + YEAR + "-000051");
+        verify(repository, times(2)).findForUpdate(0L, YEAR, "");
+    }
+
+    @Test
+    void shouldNotOverwriteCounterRowCreatedByAnotherInstance() {
+        long tenantId = 4343L;
+        new InvoiceNumberService(sequenceRepository, transactionManager, 10).generateInvoiceNumber(tenantId, null);
+
+        // Autre instance : SELECT avant le commit de la première, elle crée sa propre ligne [1, 11)
+        InvoiceNumberSequenceEntity racing = InvoiceNumberSequenceEntity.builder()
+                .tenantId(tenantId)
+                .fiscalYear(YEAR)
+                .pointOfSale("")
+                .nextValue(11L)
+                .build();
+
+        assertThatThrownBy(() -> sequenceRepository.saveAndFlush(racing))
+                .isInstanceOf(DataIntegrityViolationException.class);
+    }
+
+    @Test
+    void shouldGiveUpAfterMaxLeaseAttempts() {
+        InvoiceNumberSequenceRepository repository = mock(InvoiceNumberSequenceRepository.class);
+        when(repository.findForUpdate(anyLong(), anyInt(), anyString())).thenReturn(Optional.empty());
+        when(repository.saveAndFlush(any())).thenThrow(new DataIntegrityViolationException("uk"));
+        InvoiceNumberService service = new InvoiceNumberService(repository, mockTransactionManager(), 50);
+
+        assertThatThrownBy(() -> service.generateInvoiceNumber(null, null))
+                .isInstanceOf(DataIntegrityViolationException.class);
+        verify(repository, times(3)).saveAndFlush(any());
+    }
+
+    // ============================================================
+    // FORMAT
+    // ============================================================
+    @Test
+    void shouldFormatPerTenantAndPointOfSale() {
+        assertThat(InvoiceNumberService.format(new SequenceKey(0L, 2025, ""), 1))
+                .isEqualTo("INV-2025-000001");
+        assertThat(InvoiceNumberService.format(new SequenceKey(12L, 2025, ""), 1))
+                .isEqualTo("INV-T12-2025-000001");
+        assertThat(InvoiceNumberService.format(new SequenceKey(12L, 2025, "CAISSE1"), 1234567))
+                .isEqualTo("INV-T12-CAISSE1-2025-1234567");
+        assertThat(InvoiceNumberService.format(new SequenceKey(0L, 2025, "CAISSE1"), 1))
+                .isEqualTo("INV-T0-CAISSE1-2025-000001");
+        assertThat(InvoiceNumberService.normalizePointOfSale(" Caisse n°1 - Plateau ")).isEqualTo("CAISSEN1PLATEAU");
+    }
+
+    @Test
+    void shouldNotConfusePointOfSaleCodeWithTenant() {
+        // Point de vente "T1" sans tenant vs tenant 1 sans point de vente
+        String posT1 = InvoiceNumberService.format(
+                new SequenceKey(0L, 2025, InvoiceNumberService.normalizePointOfSale("t-1")), 1);
+        String tenant1 = InvoiceNumberService.format(new SequenceKey(1L, 2025, ""), 1);
+
+        assertThat(posT1).isEqualTo("INV-T0-T1-2025-000001");
+        assertThat(tenant1).isEqualTo("INV-T1-2025-000001");
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private static InvoiceNumberSequenceEntity sequence(long nextValue) {
+        return InvoiceNumberSequenceEntity.builder()
+                .tenantId(0L)
+                .fiscalYear(YEAR)
+                .pointOfSale("")
+                .nextValue(nextValue)
+                .build();
+    }
+
+    private static PlatformTransactionManager mockTransactionManager() {
+        PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+        when(transactionManager.getTransaction(any())).thenReturn(new SimpleTransactionStatus());
+        return transactionManager;
+    }
+}
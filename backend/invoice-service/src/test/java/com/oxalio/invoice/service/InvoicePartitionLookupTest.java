@@ -0,0 +1,96 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Pattern;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Lectures par id élaguées : issue_date (clé de partition) lue dans le registre invoice_numbers,
+ * pour la facture et pour ses lignes, en une seule requête.
+ */
+@ServiceIntegrationTest
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.session_factory.statement_inspector="
+        + "com.oxalio.invoice.service.InvoicePartitionLookupTest$RecordingInspector")
+class InvoicePartitionLookupTest {
+
+    private static final String PARTITION_KEY =
+            "issue_date = (SELECT n.issue_date FROM invoice_numbers n WHERE n.invoice_id = ?)";
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @BeforeEach
+    void setUp() {
+        RecordingInspector.STATEMENTS.clear();
+    }
+
+    @Test
+    void findWithLinesByIdShouldRestrictInvoiceAndLinesToTheirPartition() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest(
+                line("SKU-1", "1000"), line("SKU-2", "2000"), line("SKU-3", "3000")));
+        RecordingInspector.STATEMENTS.clear();
+
+        InvoiceEntity read = invoiceRepository.findWithLinesById(created.getId()).orElseThrow();
+
+        assertThat(read.getInvoiceNumber()).isEqualTo(created.getInvoiceNumber());
+        assertThat(read.getLines()).hasSize(3);
+        // jointure des lignes (ON) et facture (WHERE)
+        assertThat(RecordingInspector.STATEMENTS).singleElement()
+                .satisfies(sql -> assertThat(sql.split(Pattern.quote(PARTITION_KEY), -1)).hasSize(3));
+    }
+
+    @Test
+    void findByIdShouldRestrictInvoiceToItsPartition() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+        RecordingInspector.STATEMENTS.clear();
+
+        assertThat(invoiceRepository.findById(created.getId()))
+                .hasValueSatisfying(i -> assertThat(i.getInvoiceNumber()).isEqualTo(created.getInvoiceNumber()));
+        assertThat(RecordingInspector.STATEMENTS).singleElement()
+                .satisfies(sql -> assertThat(sql).contains(PARTITION_KEY));
+
+        assertThat(invoiceRepository.findById(-1L)).isEmpty();
+        assertThat(invoiceRepository.findWithLinesById(-1L)).isEmpty();
+    }
+
+    @Test
+    void filterShouldNotOutliveTheLookup() {
+        InvoiceResponse first = invoiceService.createInvoice(invoiceRequest(line("SKU-1", "1000")));
+        InvoiceResponse second = invoiceService.createInvoice(invoiceRequest(line("SKU-1", "1000")));
+        invoiceRepository.findWithLinesById(first.getId()).orElseThrow();
+        RecordingInspector.STATEMENTS.clear();
+
+        List<InvoiceEntity> both = invoiceRepository.findAllById(List.of(first.getId(), second.getId()));
+
+        assertThat(both).extracting(InvoiceEntity::getId).containsExactlyInAnyOrder(first.getId(), second.getId());
+        assertThat(RecordingInspector.STATEMENTS).noneMatch(sql -> sql.contains("invoice_numbers"));
+    }
+
+    /** SQL exécuté par Hibernate, tel qu'envoyé au driver */
+    public static class RecordingInspector implements StatementInspector {
+
+        static final List<String> STATEMENTS = new CopyOnWriteArrayList<>();
+
+        @Override
+        public String inspect(String sql) {
+            STATEMENTS.add(sql);
+            return sql;
+        }
+    }
+}
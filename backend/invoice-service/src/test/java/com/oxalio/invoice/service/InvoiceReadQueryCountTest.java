@@ -0,0 +1,167 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceMultiGetResponse;
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Supplier;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Garde-fou N+1 : nombre de requêtes SQL par chemin de lecture (statistiques Hibernate).
+ */
+@ServiceIntegrationTest
+// statistiques Hibernate globales à la SessionFactory
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class InvoiceReadQueryCountTest {
+
+    private static final int LINES_PER_INVOICE = 5;
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void getInvoiceByIdShouldLoadLinesInOneStatement() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest(lines()));
+
+        InvoiceResponse read = countStatements(1, () -> invoiceService.getInvoiceById(created.getId()));
+
+        assertThat(read.getLines()).hasSize(LINES_PER_INVOICE);
+    }
+
+    @Test
+    void getInvoiceByNumberShouldLoadLinesInOneStatement() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest(lines()));
+
+        InvoiceResponse read = countStatements(1, () -> invoiceService.getInvoiceByNumber(created.getInvoiceNumber()));
+
+        assertThat(read.getLines()).hasSize(LINES_PER_INVOICE);
+    }
+
+    @Test
+    void repeatedLookupByNumberShouldBeServedFromCache() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest(lines()));
+        invoiceService.getInvoiceByNumber(created.getInvoiceNumber());
+
+        InvoiceResponse cached = countStatements(0, () -> invoiceService.getInvoiceByNumber(created.getInvoiceNumber()));
+
+        assertThat(cached.getLines()).hasSize(LINES_PER_INVOICE);
+    }
+
+    @Test
+    void generatePdfShouldNotLoadLinesLazily() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest(lines()));
+
+        // facture + lignes, QR (table dédiée), puis profil vendeur (logo)
+        byte[] pdf = countStatements(3, () -> invoiceService.generateMockPdf(created.getId()));
+
+        assertThat(pdf).isNotEmpty();
+    }
+
+    @Test
+    void listInvoicesShouldIssueOneStatement() {
+        invoiceService.createInvoice(invoiceRequest(lines()));
+        invoiceService.createInvoice(invoiceRequest(lines()));
+
+        countStatements(1, () -> invoiceService.listInvoices(new InvoiceListFilter(), null, 20));
+    }
+
+    @Test
+    void linesOfSeveralInvoicesShouldBeBatchFetched() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(invoiceService.createInvoice(invoiceRequest(lines())).getId());
+        }
+
+        // 1 requête pour les factures + 1 requête IN (...) pour toutes les lignes
+        int lines = countStatements(2, () -> transactionTemplate.execute(status -> {
+            int total = 0;
+            for (InvoiceEntity invoice : invoiceRepository.findAllById(ids)) {
+                total += invoice.getLines().size();
+            }
+            return total;
+        }));
+
+        assertThat(lines).isEqualTo(10 * LINES_PER_INVOICE);
+    }
+
+    @Test
+    void multiGetShouldIssueTwoStatementsAndKeepRequestOrder() {
+        List<Long> ids = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            ids.add(invoiceService.createInvoice(invoiceRequest(lines())).getId());
+        }
+        List<Long> requested = new ArrayList<>(ids);
+        Collections.reverse(requested);
+
+        // factures, puis toutes leurs lignes
+        InvoiceMultiGetResponse read = countStatements(2, () -> invoiceService.getInvoices(requested));
+
+        assertThat(read.getItems()).extracting(InvoiceResponse::getId).containsExactlyElementsOf(requested);
+        assertThat(read.getItems()).allSatisfy(r -> assertThat(r.getLines()).hasSize(LINES_PER_INVOICE));
+        assertThat(read.getMissing()).isEmpty();
+    }
+
+    @Test
+    void multiGetShouldReportMissingIds() {
+        Long id = invoiceService.createInvoice(invoiceRequest(lines())).getId();
+
+        InvoiceMultiGetResponse read = invoiceService.getInvoices(List.of(-1L, id, id, -2L));
+
+        assertThat(read.getItems()).extracting(InvoiceResponse::getId).containsExactly(id);
+        assertThat(read.getMissing()).containsExactly(-1L, -2L);
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private <T> T countStatements(long max, Supplier<T> action) {
+        statistics.clear();
+        T result = action.get();
+        assertThat(statistics.getPrepareStatementCount())
+                .as("requêtes SQL préparées")
+                .isLessThanOrEqualTo(max);
+        return result;
+    }
+
+    private static InvoiceRequest.InvoiceLineDTO[] lines() {
+        InvoiceRequest.InvoiceLineDTO[] lines = new InvoiceRequest.InvoiceLineDTO[LINES_PER_INVOICE];
+        for (int i = 0; i < LINES_PER_INVOICE; i++) {
+            lines[i] = line("SKU-" + i, "1000");
+        }
+        return lines;
+    }
+}
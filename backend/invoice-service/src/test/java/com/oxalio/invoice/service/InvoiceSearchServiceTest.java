@@ -0,0 +1,149 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceSearchResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.TenantEntity;
+import com.oxalio.invoice.repository.TenantRepository;
+import com.oxalio.invoice.security.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ✅ Recherche support (index en mémoire) : nom partiel ou approché, téléphone, NCC,
+ * référence, montant, mise à jour de l'index et pagination, cloisonnement par tenant.
+ */
+@ServiceIntegrationTest
+class InvoiceSearchServiceTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceSearchService searchService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    private Long tenantId;
+
+    @BeforeEach
+    void setTenant() {
+        tenantId = newTenant();
+        TenantContext.setTenantId(tenantId);
+    }
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void shouldFindByPartialAndApproximateBuyerName() {
+        InvoiceResponse created = invoiceService.createInvoice(request("Kouassi Yaozandé Émile", "2407071234", "1000"));
+
+        assertThat(ids(searchService.search("kouas", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("YAOZANDE", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("Yaozende", null, false, 0, 20))).doesNotContain(created.getId());
+        assertThat(ids(searchService.search("Yaozende", null, true, 0, 20))).contains(created.getId());
+    }
+
+    @Test
+    void shouldMatchShortTextAtWordStartOnly() {
+        InvoiceResponse created = invoiceService.createInvoice(request("Kouassi Yaozandé Émile", "2407071234", "1000"));
+
+        // Sous contains-min-length (4) : début de mot seulement, pas de sous-chaîne ni de téléphone partiel
+        assertThat(ids(searchService.search("yao", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("uas", null, false, 0, 20))).doesNotContain(created.getId());
+        assertThat(ids(searchService.search("071", null, false, 0, 20))).doesNotContain(created.getId());
+        assertThat(ids(searchService.search("uass", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("0712", null, false, 0, 20))).contains(created.getId());
+    }
+
+    @Test
+    void shouldFindByPhoneNccAndAmount() {
+        InvoiceResponse created = invoiceService.createInvoice(request("Boutique Adjamé Nord", "+225 07 48 31 55 02", "1700"));
+        BigDecimal totalToPay = created.getTotals().getTotalToPay();
+
+        assertThat(ids(searchService.search("0748 3155", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("95023", null, false, 0, 20))).contains(created.getId());
+        assertThat(ids(searchService.search("adjame", totalToPay, false, 0, 20))).containsExactly(created.getId());
+        assertThat(ids(searchService.search("adjame", totalToPay.add(BigDecimal.ONE), false, 0, 20))).isEmpty();
+    }
+
+    @Test
+    void shouldReindexUpdatedInvoiceAndPage() {
+        InvoiceResponse first = invoiceService.createInvoice(request("Pharmacie Treichville", null, "1000"));
+        InvoiceResponse second = invoiceService.createInvoice(request("Pharmacie Treichville", null, "1000"));
+
+        InvoiceSearchResponse page0 = searchService.search("treichville", null, false, 0, 1);
+        InvoiceSearchResponse page1 = searchService.search("treichville", null, false, 1, 1);
+        assertThat(page0.isHasMore()).isTrue();
+        assertThat(ids(page0)).containsExactly(second.getId());   // plus récente d'abord
+        assertThat(ids(page1)).containsExactly(first.getId());
+
+        InvoiceRequest rename = request("Pharmacie Marcory", null, "1000");
+        rename.setVersion(first.getVersion());
+        invoiceService.updateInvoice(first.getId(), rename);
+
+        assertThat(ids(searchService.search("treichville", null, false, 0, 20))).containsExactly(second.getId());
+        assertThat(ids(searchService.search("marcory", null, false, 0, 20))).contains(first.getId());
+    }
+
+    @Test
+    void shouldRejectTooShortOrMissingCriteria() {
+        assertThatThrownBy(() -> searchService.search("ko", null, true, 0, 20))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> searchService.search("  ", null, true, 0, 20))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    void shouldScopeSearchToTenantOrToInvoicesWithoutTenant() {
+        InvoiceResponse created = invoiceService.createInvoice(request("Quincaillerie Yopougon", null, "1000"));
+        assertThat(ids(searchService.search("yopougon", null, false, 0, 20))).containsExactly(created.getId());
+
+        // Autre tenant : rien
+        TenantContext.setTenantId(newTenant());
+        assertThat(ids(searchService.search("yopougon", null, false, 0, 20))).isEmpty();
+
+        // Sans en-tête : factures sans tenant seulement, pas celles des tenants
+        TenantContext.clear();
+        InvoiceResponse untenanted = invoiceService.createInvoice(request("Quincaillerie Yopougon Sans Tenant", null, "1000"));
+        assertThat(ids(searchService.search("yopougon", null, false, 0, 20))).containsExactly(untenanted.getId());
+    }
+
+    private Long newTenant() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return tenantRepository.save(TenantEntity.builder()
+                .companyName("Tenant " + suffix)
+                .ncc("T" + suffix)
+                .slug("search-" + suffix)
+                .ownerEmail(suffix + "@example.ci")
+                .ownerName("Support")
+                .build()).getId();
+    }
+
+    private static List<Long> ids(InvoiceSearchResponse response) {
+        return response.getItems().stream().map(InvoiceSummary::getId).toList();
+    }
+
+    private static InvoiceRequest request(String buyerName, String phone, String unitPrice) {
+        InvoiceRequest request = invoiceRequest(line("SKU-A", unitPrice));
+        request.getBuyer().setName(buyerName);
+        request.getBuyer().setPhone(phone);
+        return request;
+    }
+}
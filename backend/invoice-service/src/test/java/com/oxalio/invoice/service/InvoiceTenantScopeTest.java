@@ -0,0 +1,100 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceListFilter;
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.InvoiceSummary;
+import com.oxalio.invoice.entity.TenantEntity;
+import com.oxalio.invoice.repository.TenantRepository;
+import com.oxalio.invoice.security.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Cloisonnement des lectures par tenant (liste, export) : sans en-tête X-Tenant-ID,
+ * seules les factures sans tenant sont lues, jamais celles des tenants.
+ */
+@ServiceIntegrationTest
+class InvoiceTenantScopeTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceExportService invoiceExportService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void shouldListAndExportOnlyInvoicesOfCurrentTenantOrWithoutTenant() throws Exception {
+        // Même acheteur, propre au test : le filtre isole ces factures des autres tests
+        String buyerNcc = "B" + UUID.randomUUID().toString().substring(0, 8).toUpperCase();
+        InvoiceListFilter filter = InvoiceListFilter.builder().buyerNcc(buyerNcc).build();
+
+        Long tenantId = newTenant();
+        TenantContext.setTenantId(tenantId);
+        InvoiceResponse tenanted = invoiceService.createInvoice(request(buyerNcc));
+        TenantContext.clear();
+        InvoiceResponse untenanted = invoiceService.createInvoice(request(buyerNcc));
+
+        // Sans tenant
+        assertThat(listedIds(filter)).containsExactly(untenanted.getId());
+        assertThat(export(null, filter))
+                .contains(untenanted.getInvoiceNumber())
+                .doesNotContain(tenanted.getInvoiceNumber());
+
+        // Tenant courant
+        TenantContext.setTenantId(tenantId);
+        assertThat(listedIds(filter)).containsExactly(tenanted.getId());
+        assertThat(export(tenantId, filter))
+                .contains(tenanted.getInvoiceNumber())
+                .doesNotContain(untenanted.getInvoiceNumber());
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private List<Long> listedIds(InvoiceListFilter filter) {
+        return invoiceService.listInvoices(filter, null, 20).getItems().stream()
+                .map(InvoiceSummary::getId)
+                .toList();
+    }
+
+    private String export(Long tenantId, InvoiceListFilter filter) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        invoiceExportService.export(tenantId, filter, InvoiceExportService.Format.CSV, false, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
+    private static InvoiceRequest request(String buyerNcc) {
+        InvoiceRequest request = invoiceRequest();
+        request.getBuyer().setTaxId(buyerNcc);
+        return request;
+    }
+
+    private Long newTenant() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return tenantRepository.save(TenantEntity.builder()
+                .companyName("Tenant " + suffix)
+                .ncc("T" + suffix)
+                .slug("scope-" + suffix)
+                .ownerEmail(suffix + "@example.ci")
+                .ownerName("Support")
+                .build()).getId();
+    }
+}
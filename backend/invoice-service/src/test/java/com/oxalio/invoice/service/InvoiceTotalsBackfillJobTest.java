@@ -0,0 +1,56 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceEntity;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Totaux antérieurs à V18 : recalculés et figés par le job, sans changer la version de la facture.
+ */
+@ServiceIntegrationTest
+class InvoiceTotalsBackfillJobTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceTotalsBackfillJob backfillJob;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldFreezeTotalsOfLegacyInvoicesWithoutBumpingVersion() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+        InvoiceEntity original = invoiceRepository.findById(created.getId()).orElseThrow();
+
+        // Facture écrite avant V18 : ni version du moteur ni résumé TVA, totaux stockés faux
+        jdbcTemplate.update("UPDATE invoices SET totals_version = NULL, vat_breakdown = NULL, "
+                + "total_amount = 0, total_to_pay = 0 WHERE id = ?", created.getId());
+        InvoiceResponse recomputedOnRead = invoiceService.getInvoiceById(created.getId());
+        assertThat(recomputedOnRead.getTotals().getTotalToPay()).isEqualByComparingTo(original.getTotalToPay());
+
+        assertThat(backfillJob.backfill()).isGreaterThanOrEqualTo(1);
+
+        InvoiceEntity backfilled = invoiceRepository.findById(created.getId()).orElseThrow();
+        assertThat(backfilled.getTotalsVersion()).isEqualTo(FneTaxEngine.VERSION);
+        assertThat(backfilled.getVatBreakdown()).isEqualTo(original.getVatBreakdown());
+        assertThat(backfilled.getTotalAmount()).isEqualByComparingTo(original.getTotalAmount());
+        assertThat(backfilled.getTotalToPay()).isEqualByComparingTo(original.getTotalToPay());
+        assertThat(backfilled.getVersion()).isEqualTo(original.getVersion());
+        assertThat(invoiceService.getInvoiceById(created.getId()).getTotals())
+                .isEqualTo(recomputedOnRead.getTotals());
+
+        // Plus rien à recalculer
+        assertThat(backfillJob.backfill()).isZero();
+    }
+}
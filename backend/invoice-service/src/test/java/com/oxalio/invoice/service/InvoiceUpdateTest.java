@@ -0,0 +1,142 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.entity.InvoiceLineEntity;
+import com.oxalio.invoice.exception.InvoiceVersionRequiredException;
+import com.oxalio.invoice.repository.InvoiceRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.EntityStatistics;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ✅ Mise à jour des lignes par différence : seules les lignes modifiées sont écrites,
+ * fneItemId conservé, modification concurrente ou sans version rejetée.
+ */
+@ServiceIntegrationTest
+// statistiques Hibernate globales à la SessionFactory
+@TestPropertySource(properties = "spring.jpa.properties.hibernate.generate_statistics=true")
+class InvoiceUpdateTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceRepository invoiceRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Statistics statistics;
+
+    @BeforeEach
+    void setUp() {
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+    }
+
+    @Test
+    void shouldUpdateOnlyChangedLineAndKeepFneItemIds() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+        Long firstLineId = created.getLines().get(0).getId();
+        setFneItemId(created.getId(), firstLineId, "d0e59056-dbeb-43e8-8086-5ae173cc8e62");
+
+        InvoiceRequest update = invoiceRequest();
+        for (int i = 0; i < update.getLines().size(); i++) {
+            update.getLines().get(i).setId(created.getLines().get(i).getId());
+        }
+        update.getLines().get(0).setQuantity(new BigDecimal("3"));
+        update.setVersion(created.getVersion());
+
+        statistics.clear();
+        InvoiceResponse updated = invoiceService.updateInvoice(created.getId(), update);
+
+        EntityStatistics lines = statistics.getEntityStatistics(InvoiceLineEntity.class.getName());
+        assertThat(lines.getUpdateCount()).isEqualTo(1);
+        assertThat(lines.getInsertCount()).isZero();
+        assertThat(lines.getDeleteCount()).isZero();
+
+        assertThat(updated.getLines()).extracting(InvoiceResponse.InvoiceLineDTO::getId)
+                .containsExactly(created.getLines().get(0).getId(), created.getLines().get(1).getId());
+        assertThat(updated.getLines().get(0).getFneItemId()).isEqualTo("d0e59056-dbeb-43e8-8086-5ae173cc8e62");
+        assertThat(updated.getTotals().getSubtotal()).isEqualByComparingTo("5000");
+        assertThat(updated.getVersion()).isGreaterThan(created.getVersion());
+    }
+
+    @Test
+    void shouldMatchBySkuInsertNewAndDeleteMissingLines() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+
+        InvoiceRequest update = invoiceRequest();
+        update.getLines().remove(1);   // SKU-B supprimée
+        update.getLines().add(line("SKU-C", "500"));
+        update.setVersion(created.getVersion());
+
+        statistics.clear();
+        InvoiceResponse updated = invoiceService.updateInvoice(created.getId(), update);
+
+        EntityStatistics lines = statistics.getEntityStatistics(InvoiceLineEntity.class.getName());
+        assertThat(lines.getUpdateCount()).isZero();
+        assertThat(lines.getInsertCount()).isEqualTo(1);
+        assertThat(lines.getDeleteCount()).isEqualTo(1);
+        assertThat(updated.getLines().get(0).getId()).isEqualTo(created.getLines().get(0).getId());
+        assertThat(updated.getLines()).extracting(InvoiceResponse.InvoiceLineDTO::getSku)
+                .containsExactly("SKU-A", "SKU-C");
+
+        // Clé de partition (V22) recopiée sur la ligne ajoutée
+        transactionTemplate.executeWithoutResult(tx -> {
+            var invoice = invoiceRepository.findWithLinesById(created.getId()).orElseThrow();
+            assertThat(invoice.getLines()).extracting(InvoiceLineEntity::getIssueDate)
+                    .containsOnly(invoice.getIssueDate());
+        });
+    }
+
+    @Test
+    void shouldRejectUpdateBasedOnStaleVersion() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+
+        InvoiceRequest first = invoiceRequest();
+        first.setVersion(created.getVersion());
+        first.getLines().get(0).setQuantity(new BigDecimal("2"));
+        invoiceService.updateInvoice(created.getId(), first);
+
+        InvoiceRequest concurrent = invoiceRequest();
+        concurrent.setVersion(created.getVersion());
+        assertThatThrownBy(() -> invoiceService.updateInvoice(created.getId(), concurrent))
+                .isInstanceOf(ObjectOptimisticLockingFailureException.class);
+    }
+
+    @Test
+    void shouldRequireVersionOnUpdate() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+
+        InvoiceRequest blind = invoiceRequest();
+        blind.setVersion(null);
+        assertThatThrownBy(() -> invoiceService.updateInvoice(created.getId(), blind))
+                .isInstanceOf(InvoiceVersionRequiredException.class);
+        assertThat(invoiceService.getInvoiceById(created.getId()).getVersion()).isEqualTo(created.getVersion());
+    }
+
+    private void setFneItemId(Long invoiceId, Long lineId, String fneItemId) {
+        transactionTemplate.executeWithoutResult(tx ->
+                invoiceRepository.findWithLinesById(invoiceId).orElseThrow().getLines().stream()
+                        .filter(l -> l.getId().equals(lineId))
+                        .forEach(l -> l.setFneItemId(fneItemId)));
+    }
+}
@@ -0,0 +1,134 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.RefundRequest;
+import com.oxalio.invoice.integration.InMemoryInvoiceEventBroker;
+import com.oxalio.invoice.integration.InvoiceEventBroker;
+import com.oxalio.invoice.repository.OutboxEventRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Outbox : événements écrits avec la facture, relayés dans l'ordre d'écriture (pas celui des id),
+ * clé = id facture ; un seul relais à la fois (verrou en base).
+ */
+@ServiceIntegrationTest
+class OutboxRelayTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private OutboxRelay outboxRelay;
+
+    @Autowired
+    private InMemoryInvoiceEventBroker broker;
+
+    @Autowired
+    private OutboxEventRepository outboxEventRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void shouldRelayLifecycleEventsInOrderKeyedByInvoice() {
+        InvoiceResponse created = invoiceService.createInvoice(invoiceRequest());
+        invoiceService.submitToDgi(created.getId());
+        RefundRequest refund = new RefundRequest();
+        refund.setReason("Retour client");
+        invoiceService.refundInvoice(created.getId(), refund);
+
+        outboxRelay.relayPending();
+
+        List<InvoiceEventBroker.Message> events = broker.publishedFor(created.getId());
+        assertThat(events)
+                .extracting(InvoiceEventBroker.Message::eventType)
+                .containsExactly("INVOICE_CREATED", "INVOICE_SUBMITTED_TO_DGI", "INVOICE_REFUNDED");
+        assertThat(events.get(1).payload()).contains(created.getInvoiceNumber(), "SUBMITTED_TO_DGI");
+        assertThat(outboxEventRepository.countByPublishedAtIsNull()).isZero();
+    }
+
+    @Test
+    void shouldNotRecordEventWhenInvoiceTransactionRollsBack() {
+        long before = outboxEventRepository.count();
+
+        transactionTemplate.executeWithoutResult(tx -> {
+            invoiceService.createInvoice(invoiceRequest());
+            tx.setRollbackOnly();
+        });
+
+        assertThat(outboxEventRepository.count()).isEqualTo(before);
+    }
+
+    @Test
+    void shouldRelayInWriteOrderEvenWhenIdsAreOutOfOrder() {
+        // Deux instances, deux blocs d'id : l'événement écrit en second a le plus petit id
+        long aggregateId = -ThreadLocalRandom.current().nextLong(1, Long.MAX_VALUE / 2);
+        long id = 1_000_000_000L + ThreadLocalRandom.current().nextLong(1_000_000_000L);
+        insertEvent(id + 50, aggregateId, "INVOICE_CREATED");
+        insertEvent(id, aggregateId, "INVOICE_SUBMITTED_TO_DGI");
+
+        outboxRelay.relayPending();
+
+        assertThat(broker.publishedFor(aggregateId))
+                .extracting(InvoiceEventBroker.Message::eventId)
+                .containsExactly(id + 50, id);
+    }
+
+    @Test
+    void shouldSkipRelayWhileAnotherRelayHoldsTheLock() throws Exception {
+        outboxRelay.relayPending();
+        invoiceService.createInvoice(invoiceRequest());
+
+        // Autre instance : verrou du relais tenu dans sa propre transaction
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        CompletableFuture<Void> otherRelay = CompletableFuture.runAsync(() ->
+                transactionTemplate.executeWithoutResult(tx -> {
+                    assertThat(outboxEventRepository.tryLockRelay()).isNotEmpty();
+                    locked.countDown();
+                    await(release);
+                }));
+        assertThat(locked.await(10, TimeUnit.SECONDS)).isTrue();
+
+        assertThat(outboxRelay.relayPending()).isZero();
+        assertThat(outboxEventRepository.countByPublishedAtIsNull()).isPositive();
+
+        release.countDown();
+        otherRelay.get(10, TimeUnit.SECONDS);
+        assertThat(outboxRelay.relayPending()).isPositive();
+        assertThat(outboxEventRepository.countByPublishedAtIsNull()).isZero();
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private void insertEvent(long id, long aggregateId, String eventType) {
+        jdbcTemplate.update("INSERT INTO outbox_events (id, aggregate_id, event_type, payload, created_at)"
+                + " VALUES (?, ?, ?, '{}', ?)", id, aggregateId, eventType, Timestamp.from(Instant.now()));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+package com.oxalio.invoice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Cache disque des PDF : lecture par transferTo, LRU borné en octets, reprise au démarrage.
+ */
+class PdfDiskCacheTest {
+
+    private static final String A = "a".repeat(64);
+    private static final String B = "b".repeat(64);
+    private static final String C = "c".repeat(64);
+
+    @TempDir
+    Path directory;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldServeStoredPdfAndCountHitsAndMisses() throws Exception {
+        PdfDiskCache cache = cache(1024);
+
+        assertThat(cache.open(A)).isEmpty();
+        cache.put(A, new byte[]{'%', 'P', 'D', 'F'});
+
+        PdfDiskCache.CachedPdf cached = cache.open(A).orElseThrow();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cached.transferTo(out);
+
+        assertThat(cached.size()).isEqualTo(4);
+        assertThat(out.toByteArray()).containsExactly('%', 'P', 'D', 'F');
+        assertThat(meterRegistry.get("oxalio.pdf.cache").tag("result", "hit").counter().count()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("oxalio.pdf.cache").tag("result", "miss").counter().count()).isEqualTo(1.0);
+        try (var files = Files.list(directory)) {
+            assertThat(files.map(p -> p.getFileName().toString())).containsExactly(A + ".pdf");
+        }
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyReadWhenOverMaxSize() throws Exception {
+        PdfDiskCache cache = cache(250);
+        cache.put(A, new byte[100]);
+        cache.put(B, new byte[100]);
+        cache.open(A).orElseThrow().close();
+
+        cache.put(C, new byte[100]);
+
+        assertThat(cache.open(B)).isEmpty();
+        assertThat(Files.exists(directory.resolve(B + ".pdf"))).isFalse();
+        assertThat(cache.open(A)).isPresent();
+        assertThat(cache.open(C)).isPresent();
+        assertThat(cache.sizeInBytes()).isEqualTo(200);
+    }
+
+    @Test
+    void shouldReloadExistingFilesAndDropTemporaryOnes() throws Exception {
+        cache(1024).put(A, new byte[10]);
+        Files.write(directory.resolve(B + "123.tmp"), new byte[5]);
+        Files.write(directory.resolve("not-a-key.pdf"), new byte[5]);
+
+        PdfDiskCache restarted = cache(1024);
+
+        assertThat(restarted.sizeInBytes()).isEqualTo(10);
+        assertThat(restarted.open(A)).isPresent();
+        assertThat(Files.exists(directory.resolve(B + "123.tmp"))).isFalse();
+        assertThat(restarted.open("../" + A)).isEmpty();
+    }
+
+    private PdfDiskCache cache(long maxBytes) {
+        PdfDiskCache cache = new PdfDiskCache(meterRegistry, true, directory, DataSize.ofBytes(maxBytes));
+        cache.init();
+        return cache;
+    }
+}
@@ -0,0 +1,71 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.exception.PdfRenderRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * ✅ Pool de rendu PDF : parallélisme et file bornés, refus immédiat (Retry-After) quand la file est pleine.
+ */
+class PdfRenderServiceTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private ThreadPoolTaskExecutor executor;
+    private PdfRenderService service;
+
+    @BeforeEach
+    void setUp() {
+        // 1 rendu à la fois, 1 en file
+        executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(1);
+        executor.initialize();
+
+        HtmlPdfService htmlPdfService = mock(HtmlPdfService.class);
+        when(htmlPdfService.generatePdf(any())).thenAnswer(inv -> {
+            release.await(5, TimeUnit.SECONDS);
+            return new byte[]{1};
+        });
+        service = new PdfRenderService(htmlPdfService, executor, meterRegistry, Duration.ofSeconds(7));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void shouldRejectWhenQueueIsFullAndRecordMetrics() throws Exception {
+        CompletableFuture<byte[]> running = service.submit(new InvoiceResponse());
+        CompletableFuture<byte[]> queued = service.submit(new InvoiceResponse());
+
+        assertThatThrownBy(() -> service.submit(new InvoiceResponse()))
+                .isInstanceOfSatisfying(PdfRenderRejectedException.class,
+                        e -> assertThat(e.getRetryAfter()).isEqualTo(Duration.ofSeconds(7)));
+        assertThat(meterRegistry.get("oxalio.pdf.render.queue").gauge().value()).isEqualTo(1.0);
+        assertThat(meterRegistry.get("oxalio.pdf.render.rejected").counter().count()).isEqualTo(1.0);
+
+        release.countDown();
+        assertThat(running.get(5, TimeUnit.SECONDS)).containsExactly(1);
+        assertThat(queued.get(5, TimeUnit.SECONDS)).containsExactly(1);
+        assertThat(meterRegistry.get("oxalio.pdf.render").timer().count()).isEqualTo(2);
+    }
+}
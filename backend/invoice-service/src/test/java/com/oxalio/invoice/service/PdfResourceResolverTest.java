@@ -0,0 +1,67 @@
+package com.oxalio.invoice.service;
+
+import com.lowagie.text.Image;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+import org.xhtmlrenderer.pdf.ITextRenderer;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Images des PDF par URI oxalio: : décodées une fois, copiées par document sans modifier l'original.
+ */
+class PdfResourceResolverTest {
+
+    @TempDir
+    Path logos;
+
+    private PdfResourceResolver resolver;
+
+    @BeforeEach
+    void setUp() {
+        resolver = new PdfResourceResolver(new SellerLogoCache(new SimpleMeterRegistry(), logos,
+                DataSize.ofMegabytes(1), false));
+        resolver.init();
+    }
+
+    @Test
+    void shouldEmbedSharedImagesWithoutScalingTheSharedCopy() throws Exception {
+        Image shared = resolver.resolve(PdfResourceResolver.FNE_STICKER);
+        float width = shared.getScaledWidth();
+
+        String html = "<html><body><img src=\"" + PdfResourceResolver.FNE_STICKER + "\"/>"
+                + "<img src=\"" + PdfResourceResolver.DEFAULT_LOGO + "\"/></body></html>";
+        byte[] first = render(html);
+        byte[] second = render(html);
+
+        assertThat(new String(first, StandardCharsets.ISO_8859_1)).contains("/Subtype/Image");
+        assertThat(second).hasSameSizeAs(first);
+        assertThat(resolver.resolve(PdfResourceResolver.FNE_STICKER)).isSameAs(shared);
+        assertThat(shared.getScaledWidth()).isEqualTo(width);
+    }
+
+    @Test
+    void shouldFallBackToDefaultLogoForUnusableTaxId() {
+        assertThat(resolver.sellerLogoUri(null)).isEqualTo(PdfResourceResolver.DEFAULT_LOGO);
+        assertThat(resolver.sellerLogoUri("../etc/passwd")).isEqualTo(PdfResourceResolver.DEFAULT_LOGO);
+        assertThat(resolver.sellerLogoUri("2505842N")).isEqualTo("oxalio:seller-logo/2505842N");
+        assertThat(resolver.resolve("oxalio:seller-logo/INCONNU"))
+                .isSameAs(resolver.resolve(PdfResourceResolver.DEFAULT_LOGO));
+    }
+
+    private byte[] render(String html) throws Exception {
+        ITextRenderer renderer = resolver.newRenderer();
+        renderer.setDocumentFromString(html);
+        renderer.layout();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        renderer.createPDF(out);
+        return out.toByteArray();
+    }
+}
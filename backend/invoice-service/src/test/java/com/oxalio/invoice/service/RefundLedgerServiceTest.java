@@ -0,0 +1,166 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.client.FneStickerClient.FneInvoiceResponse;
+import com.oxalio.invoice.client.FneStickerClient.FneRefundRequest.RefundItem;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.RefundRequest;
+import com.oxalio.invoice.dto.VatDeclarationResponse;
+import com.oxalio.invoice.exception.RefundQuantityException;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.UUID;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ✅ Registre des avoirs : ouverture à la signature FNE, réservation tout ou rien,
+ * refus local des dépassements, restitution en cas d'échec FNE ; avoir partiel puis annulation
+ * de la facture sans double déduction de TVA.
+ */
+@ServiceIntegrationTest
+class RefundLedgerServiceTest {
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private RefundLedgerService refundLedgerService;
+
+    @Autowired
+    private VatDeclarationService vatDeclarationService;
+
+    @Test
+    void shouldReserveWithinRemainingAndRejectOverRefund() {
+        Signed signed = signInvoice();
+
+        RefundLedgerService.Reservation first = refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemA(), 2)));
+        refundLedgerService.confirm(first, "AVOIR-1");
+        assertThat(refundLedgerService.remaining(signed.fneInvoiceId()).get(signed.itemA()))
+                .isEqualByComparingTo("1");
+
+        // 1 restant sur A : tout l'avoir est refusé, B compris
+        assertThatThrownBy(() -> refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemB(), 1), new RefundItem(signed.itemA(), 1),
+                        new RefundItem(signed.itemA(), 1))))
+                .isInstanceOfSatisfying(RefundQuantityException.class,
+                        e -> assertThat(e.getErrors()).containsOnlyKeys(signed.itemA()));
+        assertThat(refundLedgerService.remaining(signed.fneInvoiceId()).get(signed.itemB()))
+                .isEqualByComparingTo("1");
+    }
+
+    @Test
+    void shouldDeductConfirmedRefundFromVatRollupsOnceAndOnRebuild() {
+        Signed signed = signInvoice();
+        LocalDate today = LocalDate.now(VatRollupService.ROLLUP_ZONE);
+        VatDeclarationResponse before = vatDeclarationService.declaration(today, today);
+
+        RefundLedgerService.Reservation reservation = refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemA(), 2)));
+        refundLedgerService.confirm(reservation, "AVOIR-2");
+        refundLedgerService.confirm(reservation, "AVOIR-2");
+
+        // 2 × 1000 HT à 18 %, une seule fois ; le nombre de factures ne bouge pas
+        VatDeclarationResponse after = vatDeclarationService.declaration(today, today);
+        assertThat(after.getDeclared().getSubtotal().subtract(before.getDeclared().getSubtotal()))
+                .isEqualByComparingTo("-2000");
+        assertThat(after.getDeclared().getTotalVat().subtract(before.getDeclared().getTotalVat()))
+                .isEqualByComparingTo("-360");
+        assertThat(after.getLines().stream().mapToLong(VatDeclarationResponse.LineDTO::getInvoiceCount).sum())
+                .isEqualTo(before.getLines().stream().mapToLong(VatDeclarationResponse.LineDTO::getInvoiceCount).sum());
+
+        // La reconstruction relit l'avoir confirmé
+        assertThat(vatDeclarationService.rebuild(today, today)).isEqualTo(after);
+    }
+
+    @Test
+    void shouldNotDeductPartialRefundTwiceWhenInvoiceIsCancelled() {
+        LocalDate today = LocalDate.now(VatRollupService.ROLLUP_ZONE);
+        VatDeclarationResponse before = vatDeclarationService.declaration(today, today);
+        Signed signed = signInvoice();
+
+        refundLedgerService.confirm(refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemA(), 2))), "AVOIR-3");
+        invoiceService.refundInvoice(signed.invoiceId(), RefundRequest.builder().reason("Annulation").build());
+
+        // Avoir (2 000 HT) + annulation : la facture (4 000 HT) n'est retirée qu'une fois
+        VatDeclarationResponse cancelled = vatDeclarationService.declaration(today, today);
+        assertThat(cancelled.getDeclared().getSubtotal()).isEqualByComparingTo(before.getDeclared().getSubtotal());
+        assertThat(cancelled.getDeclared().getTotalVat()).isEqualByComparingTo(before.getDeclared().getTotalVat());
+        assertThat(cancelled.getDeclared().getInvoiceCount()).isEqualTo(before.getDeclared().getInvoiceCount());
+        assertThat(vatDeclarationService.rebuild(today, today)).isEqualTo(cancelled);
+
+        // Avoir confirmé après l'annulation : rien de plus à retirer
+        refundLedgerService.confirm(refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemB(), 1))), "AVOIR-4");
+        VatDeclarationResponse refunded = vatDeclarationService.declaration(today, today);
+        assertThat(refunded.getDeclared().getSubtotal()).isEqualByComparingTo(before.getDeclared().getSubtotal());
+        assertThat(refunded.getDeclared().getTotalVat()).isEqualByComparingTo(before.getDeclared().getTotalVat());
+        assertThat(vatDeclarationService.rebuild(today, today)).isEqualTo(refunded);
+    }
+
+    @Test
+    void shouldRestoreQuantitiesWhenFneCallFails() {
+        Signed signed = signInvoice();
+
+        RefundLedgerService.Reservation reservation = refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(signed.itemA(), 3)));
+        assertThat(refundLedgerService.remaining(signed.fneInvoiceId()).get(signed.itemA()))
+                .isEqualByComparingTo("0");
+
+        refundLedgerService.release(reservation);
+        refundLedgerService.release(reservation);
+
+        assertThat(refundLedgerService.remaining(signed.fneInvoiceId()).get(signed.itemA()))
+                .isEqualByComparingTo("3");
+    }
+
+    @Test
+    void shouldRejectUnknownItemAndPassThroughUntrackedInvoice() {
+        Signed signed = signInvoice();
+
+        assertThatThrownBy(() -> refundLedgerService.reserve(signed.fneInvoiceId(),
+                List.of(new RefundItem(UUID.randomUUID().toString(), 1))))
+                .isInstanceOf(RefundQuantityException.class);
+
+        RefundLedgerService.Reservation untracked = refundLedgerService.reserve(UUID.randomUUID().toString(),
+                List.of(new RefundItem(signed.itemA(), 99)));
+        assertThat(untracked.isTracked()).isFalse();
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private record Signed(Long invoiceId, String fneInvoiceId, String itemA, String itemB) {
+    }
+
+    /** Facture de 2 lignes (A : 3, B : 1) signée par une fausse réponse FNE */
+    private Signed signInvoice() {
+        InvoiceResponse invoice = invoiceService.createInvoice(
+                invoiceRequest(line("SKU-A", "3", "1000"), line("SKU-B", "1", "1000")));
+        Signed signed = new Signed(invoice.getId(), UUID.randomUUID().toString(),
+                UUID.randomUUID().toString(), UUID.randomUUID().toString());
+
+        FneInvoiceResponse response = new FneInvoiceResponse();
+        response.setReference("2505842N26" + invoice.getId());
+        response.setInvoice(new FneInvoiceResponse.InvoiceDetails());
+        response.getInvoice().setId(signed.fneInvoiceId());
+        response.getInvoice().setItems(List.of(item(signed.itemA()), item(signed.itemB())));
+
+        invoiceService.applyFneSignature(invoice.getId(), response, "cash", "B2C", false, null);
+        return signed;
+    }
+
+    private static FneInvoiceResponse.InvoiceDetails.InvoiceItemDetails item(String id) {
+        FneInvoiceResponse.InvoiceDetails.InvoiceItemDetails item =
+                new FneInvoiceResponse.InvoiceDetails.InvoiceItemDetails();
+        item.setId(id);
+        return item;
+    }
+}
@@ -0,0 +1,113 @@
+package com.oxalio.invoice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * ✅ Logos vendeur en mémoire : plus d'accès disque une fois chargés (absence comprise),
+ * invalidation explicite ou par surveillance du répertoire, LRU borné en octets.
+ */
+class SellerLogoCacheTest {
+
+    @TempDir
+    Path logos;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldServeFromMemoryUntilInvalidated() throws Exception {
+        byte[] png = png();
+        Files.write(logos.resolve("2505842N.png"), png);
+        SellerLogoCache cache = cache(DataSize.ofMegabytes(1), false);
+
+        SellerLogoCache.Logo logo = cache.get("2505842N").orElseThrow();
+        assertThat(logo.bytes()).isEqualTo(png);
+        assertThat(logo.sha256()).isEqualTo(InvoiceQrService.sha256Hex(png));
+        assertThat(cache.get("9502363N")).isEmpty();
+
+        // Fichiers supprimés hors application, sans surveillance : le cache répond seul
+        Files.delete(logos.resolve("2505842N.png"));
+        Files.write(logos.resolve("9502363N.png"), png);
+        assertThat(cache.get("2505842N")).containsSame(logo);
+        assertThat(cache.get("9502363N")).isEmpty();
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "seller-logo").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(2.0);
+
+        cache.invalidate("2505842N");
+        cache.invalidate("9502363N");
+        assertThat(cache.get("2505842N")).isEmpty();
+        assertThat(cache.get("9502363N")).isPresent();
+    }
+
+    @Test
+    void shouldInvalidateWhenLogoFileChangesOnDisk() throws Exception {
+        SellerLogoCache cache = cache(DataSize.ofMegabytes(1), true);
+        try {
+            assertThat(cache.get("2505842N")).isEmpty();
+
+            Files.write(logos.resolve("2505842N.png"), png());
+
+            assertThat(awaitLogo(cache, "2505842N")).isPresent();
+        } finally {
+            cache.stop();
+        }
+    }
+
+    @Test
+    void shouldEvictLeastRecentlyUsedWhenOverMaxSize() throws Exception {
+        byte[] png = png();
+        for (String taxId : new String[]{"A", "B", "C"}) {
+            Files.write(logos.resolve(taxId + ".png"), png);
+        }
+        // Place pour deux logos
+        SellerLogoCache cache = cache(DataSize.ofBytes(2L * (png.length + 256)), false);
+
+        cache.get("A");
+        cache.get("B");
+        cache.get("A");
+        cache.get("C");
+
+        assertThat(cache.size()).isEqualTo(2);
+        assertThat(meterRegistry.get("cache.evictions").tag("cache", "seller-logo")
+                .functionCounter().count()).isEqualTo(1.0);
+        Files.delete(logos.resolve("A.png"));
+        assertThat(cache.get("A")).isPresent();
+    }
+
+    // ============================================================
+    // HELPERS
+    // ============================================================
+    private SellerLogoCache cache(DataSize maxSize, boolean watch) {
+        SellerLogoCache cache = new SellerLogoCache(meterRegistry, logos, maxSize, watch);
+        cache.start();
+        return cache;
+    }
+
+    /** La notification du WatchService est asynchrone (jusqu'à quelques secondes selon le système) */
+    private static Optional<SellerLogoCache.Logo> awaitLogo(SellerLogoCache cache, String taxId)
+            throws InterruptedException {
+        long deadline = System.nanoTime() + 10_000_000_000L;
+        Optional<SellerLogoCache.Logo> logo = cache.get(taxId);
+        while (logo.isEmpty() && System.nanoTime() < deadline) {
+            Thread.sleep(50);
+            logo = cache.get(taxId);
+        }
+        return logo;
+    }
+
+    private static byte[] png() throws Exception {
+        try (InputStream in = new ClassPathResource("static/default-logo.png").getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.oxalio.invoice.service;
+
+import org.springframework.boot.test.context.SpringBootTest;
+
+import java.lang.annotation.Documented;
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+/**
+ * Contexte Spring commun aux tests d'intégration des services (H2, migrations Flyway H2 + communes).
+ *
+ * Les tâches planifiées (relais outbox, balayage des soumissions DGI, recalcul des totaux antérieurs)
+ * sont espacées d'une heure : les tests déclenchent eux-mêmes les traitements qu'ils vérifient. Un seul jeu de propriétés,
+ * donc un seul contexte mis en cache pour toutes les classes qui portent l'annotation.
+ */
+@Target(ElementType.TYPE)
+@Retention(RetentionPolicy.RUNTIME)
+@Documented
+@SpringBootTest(properties = {
+        "spring.flyway.locations=classpath:db/migration/h2,classpath:db/migration/common",
+        "spring.jpa.show-sql=false",
+        "oxalio.invoice.outbox.poll-interval-ms=3600000",
+        "oxalio.invoice.dgi-submission.sweep-interval-ms=3600000",
+        "oxalio.invoice.totals-backfill.interval-ms=3600000"
+})
+public @interface ServiceIntegrationTest {
+}
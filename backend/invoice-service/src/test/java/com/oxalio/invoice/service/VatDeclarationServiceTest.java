@@ -0,0 +1,178 @@
+package com.oxalio.invoice.service;
+
+import com.oxalio.invoice.dto.InvoiceRequest;
+import com.oxalio.invoice.dto.InvoiceResponse;
+import com.oxalio.invoice.dto.RefundRequest;
+import com.oxalio.invoice.dto.VatDeclarationResponse;
+import com.oxalio.invoice.entity.TenantEntity;
+import com.oxalio.invoice.repository.TenantRepository;
+import com.oxalio.invoice.security.TenantContext;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.UUID;
+
+import static com.oxalio.invoice.service.InvoiceFixtures.invoiceRequest;
+import static com.oxalio.invoice.service.InvoiceFixtures.line;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+/**
+ * ✅ Agrégats TVA : création (en attente), certification (déclarée), avoir (déduit),
+ * et reconstruction identique aux agrégats incrémentaux, factures archivées comprises ;
+ * remplissage d'une table vide au démarrage ; cloisonnement par tenant (sans tenant :
+ * factures sans tenant seulement).
+ * Base partagée entre les tests : on compare des écarts, pas des valeurs absolues.
+ */
+@ServiceIntegrationTest
+class VatDeclarationServiceTest {
+
+    private static final LocalDate TODAY = LocalDate.now(ZoneId.of("Africa/Abidjan"));
+
+    @Autowired
+    private InvoiceService invoiceService;
+
+    @Autowired
+    private InvoiceArchiveJob archiveJob;
+
+    @Autowired
+    private VatDeclarationService vatDeclarationService;
+
+    @Autowired
+    private VatRollupService vatRollupService;
+
+    @Autowired
+    private TenantRepository tenantRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @AfterEach
+    void clearTenant() {
+        TenantContext.clear();
+    }
+
+    @Test
+    void shouldMaintainRollupsOnCreateCertifyAndRefund() {
+        VatDeclarationResponse initial = vatDeclarationService.declaration(TODAY, TODAY);
+
+        // 2 lignes à 18 % : HT 3 000, TVA 540, timbre 100 (espèces)
+        InvoiceResponse invoice = invoiceService.createInvoice(invoiceRequest());
+        VatDeclarationResponse created = vatDeclarationService.declaration(TODAY, TODAY);
+        assertDelta(created.getPending(), initial.getPending(), "3000", "540", "100");
+        assertDelta(created.getDeclared(), initial.getDeclared(), "0", "0", "0");
+
+        invoiceService.submitToDgi(invoice.getId());
+        VatDeclarationResponse certified = vatDeclarationService.declaration(TODAY, TODAY);
+        assertDelta(certified.getPending(), initial.getPending(), "0", "0", "0");
+        assertDelta(certified.getDeclared(), initial.getDeclared(), "3000", "540", "100");
+        assertThat(certified.getLines())
+                .anySatisfy(line -> {
+                    assertThat(line.isCertified()).isTrue();
+                    assertThat(line.getTaxCode()).isEqualTo("TVA");
+                    assertThat(line.getPaymentMethod()).isEqualTo("cash");
+                });
+
+        invoiceService.refundInvoice(invoice.getId(), RefundRequest.builder().reason("Retour client").build());
+        VatDeclarationResponse refunded = vatDeclarationService.declaration(TODAY, TODAY);
+        assertDelta(refunded.getDeclared(), initial.getDeclared(), "0", "0", "0");
+        assertDelta(refunded.getPending(), initial.getPending(), "0", "0", "0");
+    }
+
+    @Test
+    void shouldCountMultiRateInvoiceOnce() {
+        VatDeclarationResponse initial = vatDeclarationService.declaration(TODAY, TODAY);
+
+        InvoiceRequest request = invoiceRequest();
+        request.getLines().get(1).setVatRate(new BigDecimal("9"));
+        invoiceService.createInvoice(request);
+
+        VatDeclarationResponse created = vatDeclarationService.declaration(TODAY, TODAY);
+        assertThat(created.getPending().getInvoiceCount() - initial.getPending().getInvoiceCount()).isEqualTo(1);
+        // Une ligne de détail par taux : la facture y figure deux fois
+        assertThat(lineCount(created) - lineCount(initial)).isEqualTo(2);
+    }
+
+    @Test
+    void shouldRebuildSameRollupsIncludingArchivedInvoices() {
+        InvoiceResponse archived = invoiceService.createInvoice(invoiceRequest());
+        invoiceService.submitToDgi(archived.getId());
+        invoiceService.createInvoice(invoiceRequest());
+        archiveJob.archiveOlderThan(Instant.now().plusSeconds(1));
+
+        VatDeclarationResponse incremental = vatDeclarationService.declaration(TODAY, TODAY);
+        VatDeclarationResponse rebuilt = vatDeclarationService.rebuild(TODAY, TODAY);
+
+        assertThat(rebuilt).isEqualTo(incremental);
+        assertThat(rebuilt.getDeclared().getSubtotal()).isGreaterThanOrEqualTo(new BigDecimal("3000"));
+    }
+
+    @Test
+    void shouldBackfillEmptyRollupsFromInvoices() {
+        invoiceService.submitToDgi(invoiceService.createInvoice(invoiceRequest()).getId());
+        VatDeclarationResponse incremental = vatDeclarationService.declaration(TODAY, TODAY);
+
+        // Table vide (création V25, migration) alors que des factures existent
+        jdbcTemplate.update("DELETE FROM vat_daily_rollups");
+        assertThat(vatRollupService.backfillIfEmpty()).isPositive();
+        assertThat(vatDeclarationService.declaration(TODAY, TODAY)).isEqualTo(incremental);
+
+        // Déjà remplie : rien à faire
+        assertThat(vatRollupService.backfillIfEmpty()).isZero();
+    }
+
+    @Test
+    void shouldScopeDeclarationAndRebuildToTenant() {
+        Long tenantId = newTenant();
+        VatDeclarationResponse untenanted = vatDeclarationService.declaration(TODAY, TODAY);
+
+        TenantContext.setTenantId(tenantId);
+        invoiceService.submitToDgi(invoiceService.createInvoice(invoiceRequest()).getId());
+        VatDeclarationResponse tenanted = vatDeclarationService.declaration(TODAY, TODAY);
+        assertThat(tenanted.getDeclared().getSubtotal()).isEqualByComparingTo("3000");
+        assertThat(tenanted.getDeclared().getInvoiceCount()).isEqualTo(1);
+
+        // Sans tenant : la facture du tenant n'est ni déclarée ni touchée par la reconstruction
+        TenantContext.clear();
+        assertThat(vatDeclarationService.declaration(TODAY, TODAY)).isEqualTo(untenanted);
+        assertThat(vatDeclarationService.rebuild(TODAY, TODAY)).isEqualTo(untenanted);
+
+        TenantContext.setTenantId(tenantId);
+        assertThat(vatDeclarationService.declaration(TODAY, TODAY)).isEqualTo(tenanted);
+        assertThat(vatDeclarationService.rebuild(TODAY, TODAY)).isEqualTo(tenanted);
+    }
+
+    @Test
+    void shouldRejectInvertedPeriod() {
+        assertThatThrownBy(() -> vatDeclarationService.declaration(TODAY, TODAY.minusDays(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    private Long newTenant() {
+        String suffix = UUID.randomUUID().toString().substring(0, 8);
+        return tenantRepository.save(TenantEntity.builder()
+                .companyName("Tenant " + suffix)
+                .ncc("T" + suffix)
+                .slug("vat-" + suffix)
+                .ownerEmail(suffix + "@example.ci")
+                .ownerName("Support")
+                .build()).getId();
+    }
+
+    private static long lineCount(VatDeclarationResponse declaration) {
+        return declaration.getLines().stream().mapToLong(VatDeclarationResponse.LineDTO::getInvoiceCount).sum();
+    }
+
+    private static void assertDelta(VatDeclarationResponse.TotalsDTO after, VatDeclarationResponse.TotalsDTO before,
+                                    String base, String vat, String stamp) {
+        assertThat(after.getSubtotal().subtract(before.getSubtotal())).isEqualByComparingTo(base);
+        assertThat(after.getTotalVat().subtract(before.getTotalVat())).isEqualByComparingTo(vat);
+        assertThat(after.getStampDuty().subtract(before.getStampDuty())).isEqualByComparingTo(stamp);
+    }
+}
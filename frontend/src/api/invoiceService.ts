@@ -28,6 +28,9 @@ export interface Invoice {
   
   // Statut
   status: 'draft' | 'certified' | 'paid' | 'cancelled';
+
+  // Version courante, à renvoyer en If-Match lors de la mise à jour
+  version: number;
   
   // Dates
   createdAt: string;
@@ -169,9 +172,13 @@ export const invoiceService = {
 
   /**
    * Mettre à jour une facture
+   * version : celle de la facture lue (Invoice.version), envoyée en If-Match.
+   * Sans version → 428 ; facture modifiée entre-temps → 409 (relire puis réessayer)
    */
-  async updateInvoice(id: number, data: UpdateInvoiceDTO): Promise<Invoice> {
-    const response = await apiClient.put<Invoice>(`/invoices/${id}`, data);
+  async updateInvoice(id: number, data: UpdateInvoiceDTO, version: number): Promise<Invoice> {
+    const response = await apiClient.put<Invoice>(`/invoices/${id}`, data, {
+      headers: { 'If-Match': `"${version}"` },
+    });
     return response.data;
   },
 
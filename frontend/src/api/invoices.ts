@@ -15,22 +15,37 @@ export type InvoiceResponse = {
   totals: { totalAmount: number }
 }
 
+export type InvoiceSummary = {
+  id: number
+  invoiceNumber: string
+  currency: string
+  status: string
+  buyerName?: string
+  totalAmount: number
+}
+
+export type InvoicePage = {
+  items: InvoiceSummary[]
+  nextCursor?: string | null
+  hasMore: boolean
+}
+
 export type InvoiceListItem = {
   id: string
   client: string
   amount: number
   currency: string
   status: string
-  raw: InvoiceResponse
+  raw: InvoiceSummary
 }
 
 // ✅ Charger la vraie liste depuis ton backend
 export async function getInvoices(): Promise<InvoiceListItem[]> {
-  const r = await api.get<InvoiceResponse[]>('/invoices')  // 👈 route réelle
-  return r.data.map((inv) => ({
+  const r = await api.get<InvoicePage>('/invoices')  // 👈 route réelle (première page)
+  return r.data.items.map((inv) => ({
     id: inv.id.toString(),
-    client: inv.buyer?.name ?? '—',
-    amount: inv.totals?.totalAmount ?? 0,
+    client: inv.buyerName ?? '—',
+    amount: inv.totalAmount ?? 0,
     currency: inv.currency ?? 'XOF',
     status: inv.status ?? 'N/A',
     raw: inv,
@@ -2,11 +2,12 @@
 
 import React, { useState, useEffect } from 'react';
 import { Search, Plus, FileText, Download, Eye, Trash2, Send } from 'lucide-react';
-import { InvoiceResponse } from '../types/invoice-types';
+import { InvoiceSummary } from '../types/invoice-types';
 import { invoiceService } from '../services/invoiceService';
 
 const InvoiceList: React.FC = () => {
-  const [invoices, setInvoices] = useState<InvoiceResponse[]>([]);
+  const [invoices, setInvoices] = useState<InvoiceSummary[]>([]);
+  const [nextCursor, setNextCursor] = useState<string | null>(null);
   const [loading, setLoading] = useState(true);
   const [searchTerm, setSearchTerm] = useState('');
   const [statusFilter, setStatusFilter] = useState<string>('ALL');
@@ -20,8 +21,9 @@ const InvoiceList: React.FC = () => {
     try {
       setLoading(true);
       setError(null);
-      const data = await invoiceService.getAllInvoices();
-      setInvoices(data);
+      const page = await invoiceService.listInvoices();
+      setInvoices(page.items);
+      setNextCursor(page.nextCursor ?? null);
     } catch (err) {
       setError('Erreur lors du chargement des factures');
       console.error(err);
@@ -30,6 +32,18 @@ const InvoiceList: React.FC = () => {
     }
   };
 
+  const loadMore = async () => {
+    if (!nextCursor) return;
+    try {
+      const page = await invoiceService.listInvoices({ cursor: nextCursor });
+      setInvoices([...invoices, ...page.items]);
+      setNextCursor(page.nextCursor ?? null);
+    } catch (err) {
+      setError('Erreur lors du chargement des factures');
+      console.error(err);
+    }
+  };
+
   const handleDelete = async (id: number) => {
     if (!confirm('Êtes-vous sûr de vouloir supprimer cette facture ?')) return;
     
@@ -45,7 +59,9 @@ const InvoiceList: React.FC = () => {
   const handleSubmitToDgi = async (id: number) => {
     try {
       const updated = await invoiceService.submitToDgi(id);
-      setInvoices(invoices.map(inv => inv.id === id ? updated : inv));
+      setInvoices(invoices.map(inv => inv.id === id
+        ? { ...inv, status: updated.status, dgiReference: updated.dgiReference }
+        : inv));
       alert(`Facture soumise avec succès ! Référence DGI: ${updated.dgiReference}`);
     } catch (err) {
       alert('Erreur lors de la soumission à la DGI');
@@ -58,8 +74,8 @@ const InvoiceList: React.FC = () => {
   const filteredInvoices = invoices.filter(invoice => {
     const matchesSearch =
       (invoice.invoiceNumber ?? '').toLowerCase().includes(needle) ||
-      invoice.buyer.name.toLowerCase().includes(needle) ||
-      invoice.seller.companyName.toLowerCase().includes(needle);
+      (invoice.buyerName ?? '').toLowerCase().includes(needle) ||
+      (invoice.sellerCompanyName ?? '').toLowerCase().includes(needle);
 
     const matchesStatus = statusFilter === 'ALL' || invoice.status === statusFilter;
 
@@ -233,16 +249,16 @@ const InvoiceList: React.FC = () => {
                       {formatDate(invoice.issueDate)}
                     </td>
                     <td className="px-6 py-4">
-                      <div className="text-sm text-gray-900">{invoice.seller.companyName}</div>
-                      <div className="text-xs text-gray-500">{invoice.seller.taxId}</div>
+                      <div className="text-sm text-gray-900">{invoice.sellerCompanyName}</div>
+                      <div className="text-xs text-gray-500">{invoice.sellerTaxId}</div>
                     </td>
                     <td className="px-6 py-4">
-                      <div className="text-sm text-gray-900">{invoice.buyer.name}</div>
-                      <div className="text-xs text-gray-500">{invoice.buyer.taxId}</div>
+                      <div className="text-sm text-gray-900">{invoice.buyerName}</div>
+                      <div className="text-xs text-gray-500">{invoice.buyerTaxId}</div>
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap">
                       <div className="text-sm font-semibold text-gray-900">
-                        {formatAmount(invoice.totals.totalAmount, invoice.currency)}
+                        {formatAmount(invoice.totalAmount, invoice.currency)}
                       </div>
                     </td>
                     <td className="px-6 py-4 whitespace-nowrap">
@@ -283,6 +299,16 @@ const InvoiceList: React.FC = () => {
             </tbody>
           </table>
         </div>
+        {nextCursor && (
+          <div className="px-6 py-4 border-t border-gray-200 text-center">
+            <button
+              onClick={loadMore}
+              className="text-blue-600 hover:text-blue-900 text-sm font-medium"
+            >
+              Charger plus
+            </button>
+          </div>
+        )}
       </div>
     </div>
   );
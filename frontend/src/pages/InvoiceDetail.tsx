@@ -18,7 +18,7 @@ export default function InvoiceDetail() {
       setSubmitting(true);
       setError(null);
       await invoiceService.submitToDgi(Number(id));
-      await refetch(); // recharge la facture avec dgiReference / qrBase64 à jour
+      await refetch(); // recharge la facture avec dgiReference / qrUrl à jour
     } catch (e: any) {
       setError(e?.message || 'Erreur lors de la soumission à la DGI (mock)');
     } finally {
@@ -60,7 +60,7 @@ export default function InvoiceDetail() {
 
   // Compat FNE + legacy (mock)
   const reference = (data as any).fneReference ?? (data as any).dgiReference;
-  const qrBase64 = (data as any).fneQrCode ?? (data as any).qrBase64;
+  const qrUrl: string | undefined = (data as any).qrUrl;
   const submittedAt = (data as any).fneCertifiedAt ?? (data as any).dgiSubmittedAt;
 
   const isSubmitted = Boolean(reference);
@@ -130,13 +130,13 @@ export default function InvoiceDetail() {
 
       {/* Bloc QR + debug */}
       <section className="flex flex-wrap gap-6 items-start">
-        {qrBase64 && (
+        {qrUrl && (
           <div className="border rounded-lg p-4 bg-gray-50 shadow-sm">
             <p className="text-sm font-medium mb-2">
               QR FNE (mock)
             </p>
             <img
-              src={`data:image/png;base64,${qrBase64}`}
+              src={qrUrl}
               alt="QR code facture (mock FNE)"
               className="w-40 h-40 object-contain border bg-white"
             />
@@ -1,10 +1,10 @@
 // src/services/invoiceService.ts
 import { apiClient } from '../api/client';
-import type { InvoiceRequest, InvoiceResponse } from '../types/invoice-types';
+import type { InvoiceListParams, InvoicePage, InvoiceRequest, InvoiceResponse } from '../types/invoice-types';
 
 class InvoiceService {
-  async getAllInvoices(): Promise<InvoiceResponse[]> {
-    const res = await apiClient.get<InvoiceResponse[]>('/invoices');
+  async listInvoices(params: InvoiceListParams = {}): Promise<InvoicePage> {
+    const res = await apiClient.get<InvoicePage>('/invoices', { params });
     return res.data;
   }
 
@@ -23,8 +23,11 @@ class InvoiceService {
     return res.data;
   }
 
-  async updateInvoice(id: number, invoice: InvoiceRequest): Promise<InvoiceResponse> {
-    const res = await apiClient.put<InvoiceResponse>(`/invoices/${id}`, invoice);
+  // version : InvoiceResponse.version de la facture lue, envoyée en If-Match (absente → 428, périmée → 409)
+  async updateInvoice(id: number, invoice: InvoiceRequest, version: number): Promise<InvoiceResponse> {
+    const res = await apiClient.put<InvoiceResponse>(`/invoices/${id}`, invoice, {
+      headers: { 'If-Match': `"${version}"` },
+    });
     return res.data;
   }
 
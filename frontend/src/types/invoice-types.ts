@@ -95,6 +95,9 @@ export interface InvoiceRequest {
   
   notes?: string;
   terms?: string;
+
+  // Mise à jour : version lue (InvoiceResponse.version), sinon 428 ; changée entre-temps → 409
+  version?: number;
 }
 
 export interface InvoiceLineDTO {
@@ -115,6 +118,44 @@ export interface InvoiceLineDTO {
 // Types pour InvoiceList.tsx et InvoiceDetail.tsx
 // ========================================
 
+// ========================================
+// Liste paginée (GET /invoices)
+// ========================================
+
+export interface InvoiceSummary {
+  id: number;
+  invoiceNumber: string;
+  invoiceType: string;
+  status: string;
+  issueDate: string;
+  currency: string;
+  sellerTaxId?: string;
+  sellerCompanyName?: string;
+  buyerTaxId?: string;
+  buyerName?: string;
+  totalAmount: number;
+  totalToPay?: number;
+  paymentMethod?: string;
+  fneReference?: string;
+  dgiReference?: string;
+}
+
+export interface InvoicePage {
+  items: InvoiceSummary[];
+  nextCursor?: string | null;
+  hasMore: boolean;
+  size: number;
+}
+
+export interface InvoiceListParams {
+  status?: string;
+  from?: string;      // yyyy-MM-dd
+  to?: string;        // yyyy-MM-dd (inclus)
+  buyerNcc?: string;
+  cursor?: string;
+  size?: number;
+}
+
 export interface InvoiceResponse {
   id: number;
   invoiceNumber?: string;
@@ -167,6 +208,9 @@ export interface InvoiceResponse {
   
   // Statut
   status: string;
+
+  // Version courante, à renvoyer en If-Match lors de la mise à jour
+  version: number;
   
   // RNE
   isRne: boolean;
@@ -193,6 +237,9 @@ export interface InvoiceResponse {
   dgiReference?: string;
   qrBase64?: string;
   dgiSubmittedAt?: string;
+
+  // QR code servi en PNG (GET /invoices/{id}/qr.png?v=...)
+  qrUrl?: string;
   
   // Relations
   lines?: InvoiceLineDTO[];
@@ -249,6 +296,7 @@ export interface Invoice extends BaseEntity {
   fneBalanceSticker?: number;
   items: InvoiceItem[];
   user?: User;
+  version?: number;
 }
 
 export interface InvoiceItem extends BaseEntity {
@@ -306,6 +354,7 @@ export interface UpdateInvoiceDTO {
   status?: InvoiceStatus;
   notes?: string;
   terms?: string;
+  version?: number;
 }
 
 // ========================================